@@ -43,7 +43,7 @@ public class GBDaoGenerator {
 
 
     public static void main(String[] args) throws Exception {
-        Schema schema = new Schema(24, MAIN_PACKAGE + ".entities");
+        Schema schema = new Schema(25, MAIN_PACKAGE + ".entities");
 
         Entity userAttributes = addUserAttributes(schema);
         Entity user = addUserInfo(schema, userAttributes);
@@ -80,6 +80,10 @@ public class GBDaoGenerator {
 
         addBipActivitySummary(schema, user, device);
 
+        addDailyActivityRollup(schema, device);
+        addSleepDetection(schema, device);
+        addSampleGeneration(schema, device);
+
         new DaoGenerator().generateAll(schema, "app/src/main/java");
     }
 
@@ -444,6 +448,61 @@ public class GBDaoGenerator {
         summary.addToOne(user, userId);
     }
 
+    private static void addDailyActivityRollup(Schema schema, Entity device) {
+        Entity rollup = addEntity(schema, "DailyActivityRollup");
+        rollup.setJavaDoc(
+                "Precomputed totals of a device's activity samples within a 24 hour window, so that\n" +
+                        "charts and widgets do not need to scan all raw samples of every day they show.");
+        rollup.addIntProperty("dayStart").notNull().primaryKey().javaDocGetterAndSetter("The start of the 24 hour window, in seconds since epoch.");
+        Property deviceId = rollup.addLongProperty("deviceId").primaryKey().notNull().getProperty();
+        rollup.addToOne(device, deviceId);
+        rollup.addIntProperty("activitySeconds").notNull();
+        rollup.addIntProperty("activitySteps").notNull();
+        rollup.addIntProperty("lightSleepSeconds").notNull();
+        rollup.addIntProperty("lightSleepSteps").notNull();
+        rollup.addIntProperty("deepSleepSeconds").notNull();
+        rollup.addIntProperty("deepSleepSteps").notNull();
+        rollup.addIntProperty("heartRateMin").notNull().javaDocGetterAndSetter("The lowest valid heart rate, or 0 if there is none.");
+        rollup.addIntProperty("heartRateAverage").notNull();
+        rollup.addIntProperty("heartRateMax").notNull();
+    }
+
+    private static void addSleepDetection(Schema schema, Entity device) {
+        Entity sleepSession = addEntity(schema, "DetectedSleepSession");
+        sleepSession.setJavaDoc(
+                "A completed sleep session, as detected by the incremental sleep analysis, so that\n" +
+                        "sleep charts do not need to analyze all raw samples of every day they show.");
+        sleepSession.addIntProperty("sleepStart").notNull().primaryKey().javaDocGetterAndSetter("The timestamp of the first sleep sample, in seconds since epoch.");
+        Property deviceId = sleepSession.addLongProperty("deviceId").primaryKey().notNull().getProperty();
+        sleepSession.addToOne(device, deviceId);
+        sleepSession.addIntProperty("sleepEnd").notNull().javaDocGetterAndSetter("The timestamp of the last sleep sample, in seconds since epoch.");
+        sleepSession.addIntProperty("lightSleepSeconds").notNull();
+        sleepSession.addIntProperty("deepSleepSeconds").notNull();
+
+        Entity state = addEntity(schema, "SleepDetectionState");
+        state.setJavaDoc(
+                "The state of the incremental sleep analysis of a device: the last processed sample\n" +
+                        "and the sleep session that is still open at that point.");
+        Property stateDeviceId = state.addLongProperty("deviceId").primaryKey().notNull().getProperty();
+        state.addToOne(device, stateDeviceId);
+        state.addIntProperty("lastTimestamp").notNull().javaDocGetterAndSetter("The timestamp of the last processed sample, in seconds since epoch.");
+        state.addIntProperty("sleepStart").notNull().javaDocGetterAndSetter("The start of the open sleep session, or -1 if there is none.");
+        state.addIntProperty("sleepEnd").notNull();
+        state.addIntProperty("lightSleepSeconds").notNull();
+        state.addIntProperty("deepSleepSeconds").notNull();
+        state.addIntProperty("wakeSeconds").notNull().javaDocGetterAndSetter("The time spent awake since the last sleep sample of the open session.");
+    }
+
+    private static void addSampleGeneration(Schema schema, Entity device) {
+        Entity generation = addEntity(schema, "SampleGeneration");
+        generation.setJavaDoc(
+                "Counts the changes of a device's samples, so that the data derived from them (rollups and\n" +
+                        "detected sleep sessions) is only stored if the samples did not change while it was computed.");
+        Property deviceId = generation.addLongProperty("deviceId").primaryKey().notNull().getProperty();
+        generation.addToOne(device, deviceId);
+        generation.addLongProperty("generation").notNull();
+    }
+
     private static Property findProperty(Entity entity, String propertyName) {
         for (Property prop : entity.getProperties()) {
             if (propertyName.equals(prop.getPropertyName())) {
@@ -0,0 +1,176 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp;
+
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+
+import org.likeapp.likeapp.util.Metrics;
+
+/**
+ * Passes logging events to another appender, usually the file appender, from a background
+ * thread, so that logging never blocks on disk I/O. Events are kept in a bounded ring
+ * buffer; when it is full, events are dropped rather than waiting, and the number of
+ * dropped events is written once there is room again.
+ * <p>
+ * Messages whose arguments are all immutable, e.g. from {@link Logging#hexdumpLazily(byte[])},
+ * are only formatted by the background thread. Other messages are formatted when logged,
+ * since their arguments may change or not be thread safe. The writer flushes once per batch
+ * of events instead of after every event.
+ */
+public class AsyncLogAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+    static final int QUEUE_CAPACITY = 4096;
+    private static final int MAX_BATCH = 256;
+    private static final long STOP_TIMEOUT_MILLIS = 2000;
+
+    private final Appender<ILoggingEvent> delegate;
+    private final BlockingQueue<ILoggingEvent> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong droppedTotal = Metrics.counter("log.dropped");
+    private Thread writer;
+
+    public AsyncLogAppender(Appender<ILoggingEvent> delegate) {
+        this.delegate = delegate;
+    }
+
+    public Appender<ILoggingEvent> getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void start() {
+        if (isStarted()) {
+            return;
+        }
+        writer = new Thread("LogWriter") {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        };
+        writer.setDaemon(true);
+        writer.setPriority(Thread.MIN_PRIORITY);
+        super.start();
+        writer.start();
+    }
+
+    /**
+     * Writes all events still queued and stops the delegate appender.
+     */
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+        writer.interrupt();
+        try {
+            writer.join(STOP_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+        delegate.stop();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        // resolved lazily from the current thread, so it must be done here
+        event.getThreadName();
+        if (!isDeferrable(event.getArgumentArray())) {
+            event.getFormattedMessage();
+        }
+        if (!queue.offer(event)) {
+            dropped.incrementAndGet();
+            droppedTotal.incrementAndGet();
+        }
+    }
+
+    private static boolean isDeferrable(Object[] arguments) {
+        if (arguments == null) {
+            return true;
+        }
+        for (Object argument : arguments) {
+            if (argument != null && !(argument instanceof Logging.LazyBytes || argument instanceof String
+                    || argument instanceof Number || argument instanceof Boolean || argument instanceof Character
+                    || argument instanceof Enum || argument instanceof UUID)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeLoop() {
+        List<ILoggingEvent> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            write(batch);
+            batch.clear();
+        }
+        while (queue.drainTo(batch, MAX_BATCH) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<ILoggingEvent> batch) {
+        long droppedEvents = dropped.getAndSet(0);
+        if (droppedEvents > 0) {
+            Logger logger = (Logger) LoggerFactory.getLogger(AsyncLogAppender.class);
+            delegate.doAppend(new LoggingEvent(AsyncLogAppender.class.getName(), logger, Level.WARN,
+                    "Log buffer full, dropped " + droppedEvents + " events", null, null));
+        }
+        for (ILoggingEvent event : batch) {
+            delegate.doAppend(event);
+        }
+        flush();
+    }
+
+    private void flush() {
+        if (delegate instanceof OutputStreamAppender) {
+            OutputStream out = ((OutputStreamAppender<ILoggingEvent>) delegate).getOutputStream();
+            if (out != null) {
+                try {
+                    out.flush();
+                } catch (IOException e) {
+                    addError("Error flushing log", e);
+                }
+            }
+        }
+    }
+}
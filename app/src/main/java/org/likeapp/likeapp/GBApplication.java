@@ -41,6 +41,7 @@ import android.preference.PreferenceManager;
 import android.provider.ContactsContract.PhoneLookup;
 import android.util.TypedValue;
 
+import androidx.annotation.Nullable;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import java.io.File;
@@ -59,6 +60,7 @@ import java.util.concurrent.locks.ReentrantLock;
 import org.likeapp.likeapp.database.DBHandler;
 import org.likeapp.likeapp.database.DBHelper;
 import org.likeapp.likeapp.database.DBOpenHelper;
+import org.likeapp.likeapp.database.ReadDBHandler;
 import org.likeapp.likeapp.devices.DeviceManager;
 import org.likeapp.likeapp.entities.DaoMaster;
 import org.likeapp.likeapp.entities.DaoSession;
@@ -110,6 +112,7 @@ public class GBApplication extends Application {
     private static Prefs prefs;
     private static GBPrefs gbPrefs;
     private static LockHandler lockHandler;
+    private static ReadLockHandler readLockHandler;
     /**
      * Note: is null on Lollipop and Kitkat
      */
@@ -286,7 +289,11 @@ public class GBApplication extends Application {
     }
 
     public static void setupLogging(boolean enabled) {
-        logging.setupLogging(enabled);
+        setupLogging(enabled, isAsyncFileLoggingEnabled());
+    }
+
+    public static void setupLogging(boolean enabled, boolean async) {
+        logging.setupLogging(enabled, async);
     }
 
     public static String getLogPath() {
@@ -302,6 +309,10 @@ public class GBApplication extends Application {
         return prefs.getBoolean("log_to_file", false);
     }
 
+    public static boolean isAsyncFileLoggingEnabled() {
+        return prefs.getBoolean("log_async", true);
+    }
+
     public static boolean isLoggingToUlmEnabled() {
         return prefs.getBoolean("log_to_ulm", false);
     }
@@ -317,11 +328,14 @@ public class GBApplication extends Application {
             helper = new DaoMaster.DevOpenHelper(this, null, null);
         } else {
             helper = new DBOpenHelper(this, DATABASE_NAME, null);
+            // lets readers run concurrently with a writer, see #acquireReadDB()
+            helper.setWriteAheadLoggingEnabled(true);
         }
         SQLiteDatabase db = helper.getWritableDatabase();
         DaoMaster daoMaster = new DaoMaster(db);
         if (lockHandler == null) {
             lockHandler = new LockHandler();
+            readLockHandler = new ReadLockHandler(lockHandler);
         }
         lockHandler.init(daoMaster, helper);
     }
@@ -364,6 +378,21 @@ public class GBApplication extends Application {
         throw new GBException("Unable to access the database.");
     }
 
+    /**
+     * Like #acquireDB(), but returns null instead of waiting when the lock is held by
+     * another thread.
+     *
+     * @return the DBHandler, or null if the database is in use
+     * @see #releaseDB()
+     */
+    @Nullable
+    public static DBHandler tryAcquireDB() {
+        if (dbLock.tryLock()) {
+            return lockHandler;
+        }
+        return null;
+    }
+
     /**
      * Releases the database lock.
      *
@@ -374,6 +403,40 @@ public class GBApplication extends Application {
         dbLock.unlock();
     }
 
+    /**
+     * Returns a DBHandler for reading, without waiting for the writers that
+     * hold the lock of #acquireDB(). Callers must close it when they are done
+     * (from the same thread that acquired it). Readers only wait while the
+     * database is closed, e.g. during an export or import.
+     * <p>
+     * The returned handler must not be used for writing, and the database cannot be
+     * closed through it.
+     *
+     * @return the ReadDBHandler
+     * @throws GBException
+     * @see #releaseReadDB()
+     */
+    public static ReadDBHandler acquireReadDB() throws GBException {
+        try {
+            if (lockHandler.tryLockRead(30, TimeUnit.SECONDS)) {
+                return readLockHandler;
+            }
+        } catch (InterruptedException ex) {
+            Log.i(TAG, "Interrupted while waiting for DB read lock");
+        }
+        throw new GBException("Unable to access the database.");
+    }
+
+    /**
+     * Releases the database read lock.
+     *
+     * @throws IllegalMonitorStateException if the current thread is not holding the read lock
+     * @see #acquireReadDB()
+     */
+    public static void releaseReadDB() {
+        lockHandler.unlockRead();
+    }
+
     public static boolean isRunningLollipopOrLater() {
         return VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
     }
@@ -617,12 +680,19 @@ public class GBApplication extends Application {
      * @return true on successful deletion
      */
     public static synchronized boolean deleteActivityDatabase(Context context) {
-        // TODO: flush, close, reopen db
-        if (lockHandler != null) {
-            lockHandler.closeDb();
-        }
         boolean result = deleteOldActivityDatabase(context);
-        result &= getContext().deleteDatabase(DATABASE_NAME);
+        try (DBHandler dbHandler = acquireDB()) {
+            dbHandler.closeDb();
+            try {
+                result &= getContext().deleteDatabase(DATABASE_NAME);
+            } finally {
+                // recreates it with empty tables
+                dbHandler.openDb();
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Unable to delete the database", e);
+            return false;
+        }
         return result;
     }
 
@@ -19,6 +19,10 @@ package org.likeapp.likeapp;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import de.greenrobot.dao.identityscope.IdentityScopeType;
 import org.likeapp.likeapp.database.DBHandler;
 import org.likeapp.likeapp.entities.DaoMaster;
 import org.likeapp.likeapp.entities.DaoSession;
@@ -28,10 +32,19 @@ import org.likeapp.likeapp.entities.DaoSession;
  */
 public class LockHandler implements DBHandler {
 
-    private DaoMaster daoMaster = null;
+    private volatile DaoMaster daoMaster = null;
     private DaoSession session = null;
+    private DaoSession readSession = null;
     private SQLiteOpenHelper helper = null;
 
+    /**
+     * Readers (see {@link ReadLockHandler}) hold the read lock while they use the database,
+     * #closeDb() and #init() take the write lock while they change it. Readers arriving while
+     * the database is closed wait on #openMonitor until it is initialized again.
+     */
+    private final ReentrantReadWriteLock lifecycleLock = new ReentrantReadWriteLock();
+    private final Object openMonitor = new Object();
+
     public LockHandler() {
     }
 
@@ -45,13 +58,24 @@ public class LockHandler implements DBHandler {
         if (helper == null) {
             throw new IllegalArgumentException("helper must not be null");
         }
-        this.daoMaster = daoMaster;
-        this.helper = helper;
-
-        session = daoMaster.newSession();
-        if (session == null) {
+        DaoSession newSession = daoMaster.newSession();
+        if (newSession == null) {
             throw new RuntimeException("Unable to create database session");
         }
+
+        lifecycleLock.writeLock().lock();
+        try {
+            this.helper = helper;
+            session = newSession;
+            // no identity scope, the read session is shared by concurrent readers
+            readSession = daoMaster.newSession(IdentityScopeType.None);
+            this.daoMaster = daoMaster;
+        } finally {
+            lifecycleLock.writeLock().unlock();
+        }
+        synchronized (openMonitor) {
+            openMonitor.notifyAll();
+        }
     }
 
     @Override
@@ -71,14 +95,14 @@ public class LockHandler implements DBHandler {
 
     @Override
     public void close() {
-        ensureValid();
+        // also after a failed #openDb(), the lock must be released in any case
         GBApplication.releaseDB();
     }
 
     @Override
     public synchronized void openDb() {
-        if (session != null) {
-            throw new IllegalStateException("session must be null");
+        if (isValid()) {
+            return;
         }
         // this will create completely new db instances and in turn update this handler through #init()
         GBApplication.app().setupDatabase();
@@ -86,14 +110,21 @@ public class LockHandler implements DBHandler {
 
     @Override
     public synchronized void closeDb() {
-        if (session == null) {
-            throw new IllegalStateException("session must not be null");
+        if (!isValid()) {
+            return;
+        }
+        // wait for the readers to finish, new ones wait until the db is opened again
+        lifecycleLock.writeLock().lock();
+        try {
+            daoMaster = null;
+            session.clear();
+            session.getDatabase().close();
+        } finally {
+            session = null;
+            readSession = null;
+            helper = null;
+            lifecycleLock.writeLock().unlock();
         }
-        session.clear();
-        session.getDatabase().close();
-        session = null;
-        helper = null;
-        daoMaster = null;
     }
 
     @Override
@@ -113,4 +144,45 @@ public class LockHandler implements DBHandler {
         ensureValid();
         return daoMaster.getDatabase();
     }
+
+    /**
+     * Takes the read lock once the database is open, waiting for it to be opened again if
+     * it is closed.
+     *
+     * @return false if the database was not open within the given time
+     */
+    boolean tryLockRead(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long remaining = unit.toNanos(timeout);
+        while (lifecycleLock.readLock().tryLock(remaining, TimeUnit.NANOSECONDS)) {
+            if (isValid()) {
+                return true;
+            }
+            // must not keep the lock while waiting, #init() needs the write lock
+            lifecycleLock.readLock().unlock();
+            synchronized (openMonitor) {
+                remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                if (!isValid()) {
+                    TimeUnit.NANOSECONDS.timedWait(openMonitor, remaining);
+                }
+            }
+            remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    void unlockRead() {
+        lifecycleLock.readLock().unlock();
+    }
+
+    DaoSession getReadDaoSession() {
+        ensureValid();
+        return readSession;
+    }
 }
@@ -35,15 +35,29 @@ import org.likeapp.likeapp.util.GB;
 
 public abstract class Logging {
     public static final String PROP_LOGFILES_DIR = "GB_LOGFILES_DIR";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
     private FileAppender<ILoggingEvent> fileLogger;
+    private AsyncLogAppender asyncLogger;
+    private boolean async;
 
     public void setupLogging(boolean enable) {
+        setupLogging(enable, async);
+    }
+
+    /**
+     * @param async whether to write the log file from a background thread, see {@link AsyncLogAppender}
+     */
+    public void setupLogging(boolean enable, boolean async) {
         try {
             if (fileLogger == null) {
                 init();
             }
             if (enable) {
+                if (async != this.async) {
+                    stopFileLogger();
+                }
+                this.async = async;
                 startFileLogger();
             } else {
                 stopFileLogger();
@@ -88,13 +102,28 @@ public abstract class Logging {
 
     private void startFileLogger() {
         if (fileLogger != null && !fileLogger.isStarted()) {
-            addFileLogger(fileLogger);
             fileLogger.setLazy(false); // hack to make sure that start() actually opens the file
             fileLogger.start();
+            if (async) {
+                if (asyncLogger == null) {
+                    asyncLogger = new AsyncLogAppender(fileLogger);
+                    asyncLogger.setContext(fileLogger.getContext());
+                    asyncLogger.setName("ASYNC_FILE");
+                }
+                asyncLogger.start();
+                addFileLogger(asyncLogger);
+            } else {
+                addFileLogger(fileLogger);
+            }
         }
     }
 
     private void stopFileLogger() {
+        if (asyncLogger != null && asyncLogger.isStarted()) {
+            removeFileLogger(asyncLogger);
+            // also stops the file logger, after writing the queued events
+            asyncLogger.stop();
+        }
         if (fileLogger != null && fileLogger.isStarted()) {
             fileLogger.stop();
             removeFileLogger(fileLogger);
@@ -132,6 +161,10 @@ public abstract class Logging {
         return fileLogger;
     }
 
+    public boolean isAsync() {
+        return async;
+    }
+
     public boolean setImmediateFlush(boolean enable) {
         FileAppender<ILoggingEvent> fileLogger = getFileLogger();
         Encoder<ILoggingEvent> encoder = fileLogger.getEncoder();
@@ -155,17 +188,61 @@ public abstract class Logging {
         if (bytes == null) {
             return "(null)";
         }
-        StringBuilder builder = new StringBuilder(bytes.length * 5);
-        for (byte b : bytes) {
-            builder.append(String.format("0x%02x", b));
-            builder.append(" ");
+        if (bytes.length == 0) {
+            return "";
         }
-        return builder.toString().trim();
+        char[] chars = new char[bytes.length * 5 - 1];
+        for (int i = 0; i < bytes.length; i++) {
+            int v = bytes[i] & 0xff;
+            int pos = i * 5;
+            chars[pos] = '0';
+            chars[pos + 1] = 'x';
+            chars[pos + 2] = HEX_DIGITS[v >>> 4];
+            chars[pos + 3] = HEX_DIGITS[v & 0x0f];
+            if (pos + 4 < chars.length) {
+                chars[pos + 4] = ' ';
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Returns an argument for parameterized log messages that is formatted like
+     * {@link #formatBytes(byte[])}, but only if and when the message is written.
+     * The bytes are copied, so the array may be reused afterwards.
+     */
+    public static Object formatBytesLazily(byte[] bytes) {
+        return new LazyBytes(bytes, true);
+    }
+
+    /**
+     * Like {@link #formatBytesLazily(byte[])}, formatted like {@link GB#hexdump(byte[], boolean)} with spaces.
+     */
+    public static Object hexdumpLazily(byte[] bytes) {
+        return new LazyBytes(bytes, false);
     }
 
     public static void logBytes(Logger logger, byte[] value) {
-        if (value != null) {
-            logger.trace ("DATA: " + GB.hexdump (value, 0, value.length, true));
+        if (value != null && logger.isTraceEnabled()) {
+            logger.trace("DATA: {}", hexdumpLazily(value));
+        }
+    }
+
+    static final class LazyBytes {
+        private final byte[] bytes;
+        private final boolean prefixed;
+
+        private LazyBytes(byte[] bytes, boolean prefixed) {
+            this.bytes = bytes != null ? bytes.clone() : null;
+            this.prefixed = prefixed;
+        }
+
+        @Override
+        public String toString() {
+            if (bytes == null) {
+                return "(null)";
+            }
+            return prefixed ? formatBytes(bytes) : GB.hexdump(bytes, 0, bytes.length, true);
         }
     }
 }
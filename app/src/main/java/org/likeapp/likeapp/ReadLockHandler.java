@@ -0,0 +1,65 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import org.likeapp.likeapp.database.ReadDBHandler;
+import org.likeapp.likeapp.entities.DaoMaster;
+import org.likeapp.likeapp.entities.DaoSession;
+
+/**
+ * Provides database access for readers, see GBApplication#acquireReadDB().
+ * Readers do not wait for the writers; in WAL mode, queries outside of a transaction
+ * run on one of the read connections of the database and see the last committed state.
+ * The session is shared by all readers and has no identity scope, so entities loaded
+ * through it are never shared with the writers.
+ */
+public class ReadLockHandler implements ReadDBHandler {
+
+    private final LockHandler lockHandler;
+
+    ReadLockHandler(LockHandler lockHandler) {
+        this.lockHandler = lockHandler;
+    }
+
+    @Override
+    public SQLiteOpenHelper getHelper() {
+        return lockHandler.getHelper();
+    }
+
+    @Override
+    public void close() {
+        GBApplication.releaseReadDB();
+    }
+
+    @Override
+    public SQLiteDatabase getDatabase() {
+        return lockHandler.getDatabase();
+    }
+
+    @Override
+    public DaoMaster getDaoMaster() {
+        return lockHandler.getDaoMaster();
+    }
+
+    @Override
+    public DaoSession getDaoSession() {
+        return lockHandler.getReadDaoSession();
+    }
+}
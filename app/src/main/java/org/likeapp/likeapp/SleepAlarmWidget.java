@@ -102,16 +102,12 @@ public class SleepAlarmWidget extends AppWidgetProvider {
 
             // overwrite the first alarm and activate it, without
 
-            Context appContext = context.getApplicationContext();
-            if (appContext instanceof GBApplication) {
-                GBApplication gbApp = (GBApplication) appContext;
-                GBDevice selectedDevice = gbApp.getDeviceManager().getSelectedDevice();
-                if (selectedDevice == null || !selectedDevice.isInitialized()) {
-                    GB.toast(context,
-                            context.getString(R.string.appwidget_not_connected),
-                            Toast.LENGTH_LONG, GB.WARN);
-                    return;
-                }
+            GBDevice selectedDevice = GBApplication.app().getDeviceManager().getSelectedDevice();
+            if (selectedDevice == null || !selectedDevice.isInitialized()) {
+                GB.toast(context,
+                        context.getString(R.string.appwidget_not_connected),
+                        Toast.LENGTH_LONG, GB.WARN);
+                return;
             }
 
             int hours = calendar.get(Calendar.HOUR_OF_DAY);
@@ -124,7 +120,7 @@ public class SleepAlarmWidget extends AppWidgetProvider {
             Alarm alarm = AlarmUtils.createSingleShot(0, true, false, calendar);
             ArrayList<Alarm> alarms = new ArrayList<>(1);
             alarms.add(alarm);
-            GBApplication.deviceService().onSetAlarms(alarms);
+            GBApplication.deviceService().forDevice(selectedDevice).onSetAlarms(alarms);
 
 //            if (GBApplication.isRunningLollipopOrLater()) {
 //                setAlarmViaAlarmManager(context, calendar.getTimeInMillis());
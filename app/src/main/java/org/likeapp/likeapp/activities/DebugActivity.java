@@ -51,7 +51,9 @@ import androidx.core.content.FileProvider;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import org.likeapp.likeapp.impl.GBDevice;
+import org.json.JSONException;
 import org.likeapp.likeapp.util.FileUtils;
+import org.likeapp.likeapp.util.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -385,7 +387,7 @@ public class DebugActivity extends AbstractGBActivity {
         rebootButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                GBApplication.deviceService().onReset(GBDeviceProtocol.RESET_FLAGS_REBOOT);
+                getSelectedDeviceService().onReset(GBDeviceProtocol.RESET_FLAGS_REBOOT);
             }
         });
 
@@ -400,7 +402,7 @@ public class DebugActivity extends AbstractGBActivity {
                         .setPositiveButton(R.string.ok, new DialogInterface.OnClickListener() {
                             @Override
                             public void onClick(DialogInterface dialog, int which) {
-                                GBApplication.deviceService().onReset(GBDeviceProtocol.RESET_FLAGS_FACTORY_RESET);
+                                getSelectedDeviceService().onReset(GBDeviceProtocol.RESET_FLAGS_FACTORY_RESET);
                             }
                         })
                         .setNegativeButton(R.string.Cancel, new DialogInterface.OnClickListener() {
@@ -417,7 +419,7 @@ public class DebugActivity extends AbstractGBActivity {
             @Override
             public void onClick(View v) {
                 GB.toast("Measuring heart rate, please wait...", Toast.LENGTH_LONG, GB.INFO);
-                GBApplication.deviceService().onHeartRateTest();
+                getSelectedDeviceService().onHeartRateTest();
             }
         });
 
@@ -532,6 +534,22 @@ public class DebugActivity extends AbstractGBActivity {
             }
         });
 
+        Button showMetricsButton = findViewById(R.id.showMetrics);
+        showMetricsButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showMetrics();
+            }
+        });
+
+        Button exportMetricsButton = findViewById(R.id.exportMetrics);
+        exportMetricsButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                exportMetrics();
+            }
+        });
+
         Button clearLogButton = findViewById (R.id.clearLog);
         clearLogButton.setOnClickListener (new View.OnClickListener ()
         {
@@ -595,8 +613,53 @@ public class DebugActivity extends AbstractGBActivity {
                 .show();
     }
 
+    private void showMetrics() {
+        String metrics = Metrics.format();
+        new AlertDialog.Builder(this)
+                .setCancelable(true)
+                .setTitle("BLE Metrics")
+                .setMessage(metrics.isEmpty() ? "Nothing recorded yet" : metrics)
+                .setPositiveButton(R.string.ok, null)
+                .setNeutralButton("Reset", new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        Metrics.reset();
+                    }
+                })
+                .show();
+    }
+
+    private void exportMetrics() {
+        try {
+            File outputDir = FileUtils.getExternalFilesDir();
+            File outputFile = new File(outputDir, "metrics-" + System.currentTimeMillis() + ".json");
+            try (FileOutputStream fileOutputStream = new FileOutputStream(outputFile)) {
+                fileOutputStream.write(Metrics.toJson().toString(2).getBytes("UTF-8"));
+            }
+
+            Intent shareIntent = new Intent();
+            shareIntent.setFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            shareIntent.setAction(Intent.ACTION_SEND);
+            Uri outputUri = FileProvider.getUriForFile(this, getApplicationContext().getPackageName() + ".screenshot_provider", outputFile);
+            shareIntent.putExtra(Intent.EXTRA_STREAM, outputUri);
+            shareIntent.setDataAndType(outputUri, "application/json");
+            startActivity(Intent.createChooser(shareIntent, getResources().getText(R.string.send_via)));
+        } catch (IOException | JSONException e) {
+            GB.toast(this, "Unable to export metrics: " + e.getMessage(), Toast.LENGTH_LONG, GB.ERROR, e);
+        }
+    }
+
+    /**
+     * Returns the DeviceService addressing the selected device, for the actions that only
+     * concern a single device.
+     */
+    private DeviceService getSelectedDeviceService() {
+        GBDevice device = GBApplication.app().getDeviceManager().getSelectedDevice();
+        return device != null ? GBApplication.deviceService().forDevice(device) : GBApplication.deviceService();
+    }
+
     private void testNewFunctionality() {
-        GBApplication.deviceService().onTestNewFunction();
+        getSelectedDeviceService().onTestNewFunction();
     }
 
     private void shareLog() {
@@ -201,6 +201,15 @@ public class SettingsActivity extends AbstractSettingsActivity {
 
         });
 
+        pref = findPreference("log_async");
+        pref.setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
+            @Override
+            public boolean onPreferenceChange(Preference preference, Object newVal) {
+                GBApplication.setupLogging(GBApplication.isFileLoggingEnabled(), Boolean.TRUE.equals(newVal));
+                return true;
+            }
+        });
+
         pref = findPreference("language");
         pref.setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
             @Override
@@ -228,7 +237,7 @@ public class SettingsActivity extends AbstractSettingsActivity {
                 invokeLater(new Runnable() {
                     @Override
                     public void run() {
-                        GBApplication.deviceService().onSendConfiguration(PREF_MEASUREMENT_SYSTEM);
+                        GBApplication.deviceService().forAllDevices().onSendConfiguration(PREF_MEASUREMENT_SYSTEM);
                     }
                 });
                 preference.setSummary(newVal.toString());
@@ -24,15 +24,18 @@ import org.slf4j.LoggerFactory;
 
 import org.likeapp.likeapp.GBApplication;
 import org.likeapp.likeapp.R;
+import org.likeapp.likeapp.impl.GBDevice;
 
 
 public class VibrationActivity extends AbstractGBActivity {
     private static final Logger LOG = LoggerFactory.getLogger(VibrationActivity.class);
     private SeekBar seekBar;
+    private GBDevice device;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        device = getIntent().getParcelableExtra(GBDevice.EXTRA_DEVICE);
         setContentView(R.layout.activity_vibration);
 
         seekBar = (SeekBar) findViewById(R.id.vibration_seekbar);
@@ -42,7 +45,7 @@ public class VibrationActivity extends AbstractGBActivity {
                 if (progress > 0) { // 1-16
                     progress = progress * 16 - 1; // max 255
                 }
-                GBApplication.deviceService().onSetConstantVibration(progress);
+                GBApplication.deviceService().forDevice(device).onSetConstantVibration(progress);
             }
 
             @Override
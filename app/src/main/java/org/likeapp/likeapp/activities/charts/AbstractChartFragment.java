@@ -61,13 +61,14 @@ import org.likeapp.likeapp.R;
 import org.likeapp.likeapp.activities.AbstractGBFragment;
 import org.likeapp.likeapp.activities.HeartRateUtils;
 import org.likeapp.likeapp.database.DBAccess;
-import org.likeapp.likeapp.database.DBHandler;
+import org.likeapp.likeapp.database.ReadDBHandler;
 import org.likeapp.likeapp.devices.DeviceCoordinator;
 import org.likeapp.likeapp.devices.SampleProvider;
 import org.likeapp.likeapp.entities.AbstractActivitySample;
 import org.likeapp.likeapp.impl.GBDevice;
 import org.likeapp.likeapp.model.ActivityKind;
 import org.likeapp.likeapp.model.ActivitySample;
+import org.likeapp.likeapp.model.ActivitySampleBatch;
 import org.likeapp.likeapp.util.DateTimeUtils;
 import org.likeapp.likeapp.util.DeviceHelper;
 
@@ -76,7 +77,7 @@ import org.likeapp.likeapp.util.DeviceHelper;
  * a title to be displayed in the activity by returning non-null in #getTitle()
  * Broadcast events can be received by overriding #onReceive(Context,Intent).
  * The chart can be refreshed by calling #refresh()
- * Implement refreshInBackground(DBHandler, GBDevice) to fetch the samples from the DB,
+ * Implement refreshInBackground(ReadDBHandler, GBDevice) to fetch the samples from the DB,
  * and add the samples to the chart. The actual rendering, which must be performed in the UI
  * thread, must be done in #renderCharts().
  * Access functionality of the hosting activity with #getHost()
@@ -322,7 +323,7 @@ public abstract class AbstractChartFragment extends AbstractGBFragment {
         return akActivity.color;
     }
 
-    protected SampleProvider<? extends AbstractActivitySample> getProvider(DBHandler db, GBDevice device) {
+    protected SampleProvider<? extends AbstractActivitySample> getProvider(ReadDBHandler db, GBDevice device) {
         DeviceCoordinator coordinator = DeviceHelper.getInstance().getCoordinator(device);
         return coordinator.getSampleProvider(device, db.getDaoSession());
     }
@@ -335,18 +336,27 @@ public abstract class AbstractChartFragment extends AbstractGBFragment {
      * @param tsFrom
      * @param tsTo
      */
-    protected List<? extends ActivitySample> getAllSamples(DBHandler db, GBDevice device, int tsFrom, int tsTo) {
+    protected List<? extends ActivitySample> getAllSamples(ReadDBHandler db, GBDevice device, int tsFrom, int tsTo) {
         SampleProvider<? extends ActivitySample> provider = getProvider(db, device);
         return provider.getAllActivitySamples(tsFrom, tsTo);
     }
 
-    protected List<? extends AbstractActivitySample> getActivitySamples(DBHandler db, GBDevice device, int tsFrom, int tsTo) {
+    /**
+     * Returns all kinds of samples for the given device as a columnar batch, which avoids
+     * creating an object per sample.
+     */
+    protected ActivitySampleBatch getAllSampleBatch(ReadDBHandler db, GBDevice device, int tsFrom, int tsTo) {
+        SampleProvider<? extends ActivitySample> provider = getProvider(db, device);
+        return provider.getAllActivitySampleBatch(tsFrom, tsTo);
+    }
+
+    protected List<? extends AbstractActivitySample> getActivitySamples(ReadDBHandler db, GBDevice device, int tsFrom, int tsTo) {
         SampleProvider<? extends AbstractActivitySample> provider = getProvider(db, device);
         return provider.getActivitySamples(tsFrom, tsTo);
     }
 
 
-    protected List<? extends ActivitySample> getSleepSamples(DBHandler db, GBDevice device, int tsFrom, int tsTo) {
+    protected List<? extends ActivitySample> getSleepSamples(ReadDBHandler db, GBDevice device, int tsFrom, int tsTo) {
         SampleProvider<? extends ActivitySample> provider = getProvider(db, device);
         return provider.getSleepSamples(tsFrom, tsTo);
     }
@@ -412,7 +422,7 @@ public abstract class AbstractChartFragment extends AbstractGBFragment {
      * the charts. This will be called from a background task, so there must not be
      * any UI access. #updateChartsInUIThread and #renderCharts will be automatically called after this method.
      */
-    protected abstract ChartsData refreshInBackground(ChartsHost chartsHost, DBHandler db, GBDevice device);
+    protected abstract ChartsData refreshInBackground(ChartsHost chartsHost, ReadDBHandler db, GBDevice device);
 
     /**
      * Triggers the actual (re-) rendering of the chart.
@@ -421,6 +431,10 @@ public abstract class AbstractChartFragment extends AbstractGBFragment {
     protected abstract void renderCharts();
 
     protected DefaultChartsData<LineData> refresh(GBDevice gbDevice, List<? extends ActivitySample> samples) {
+        return refresh(gbDevice, ActivitySampleBatch.fromSamples(samples));
+    }
+
+    protected DefaultChartsData<LineData> refresh(GBDevice gbDevice, ActivitySampleBatch samples) {
 //        Calendar cal = GregorianCalendar.getInstance();
 //        cal.clear();
         TimestampTranslation tsTranslation = new TimestampTranslation();
@@ -449,9 +463,8 @@ public abstract class AbstractChartFragment extends AbstractGBFragment {
             HeartRateUtils heartRateUtilsInstance = HeartRateUtils.getInstance();
 
             for (int i = 0; i < numEntries; i++) {
-                ActivitySample sample = samples.get(i);
-                int type = sample.getKind();
-                int ts = tsTranslation.shorten(sample.getTimestamp());
+                int type = samples.getKind(i);
+                int ts = tsTranslation.shorten(samples.getTimestamp(i));
 
 //                System.out.println(ts);
 //                ts = i;
@@ -466,7 +479,7 @@ public abstract class AbstractChartFragment extends AbstractGBFragment {
 //                    dateStringTo = dateFormat.format(date);
 //                }
 
-                float movement = sample.getIntensity();
+                float movement = samples.getIntensity(i);
 
                 float value = movement;
                 switch (type) {
@@ -516,13 +529,14 @@ public abstract class AbstractChartFragment extends AbstractGBFragment {
                         }
                         activityEntries.add(createLineEntry(value, ts));
                 }
-                if (hr && sample.getKind() != ActivityKind.TYPE_NOT_WORN && heartRateUtilsInstance.isValidHeartRateValue(sample.getHeartRate())) {
+                int heartRate = samples.getHeartRate(i);
+                if (hr && type != ActivityKind.TYPE_NOT_WORN && heartRateUtilsInstance.isValidHeartRateValue(heartRate)) {
                     if (lastHrSampleIndex > -1 && ts - lastHrSampleIndex > 1800*HeartRateUtils.MAX_HR_MEASUREMENTS_GAP_MINUTES) {
                         heartrateEntries.add(createLineEntry(0, lastHrSampleIndex + 1));
                         heartrateEntries.add(createLineEntry(0, ts - 1));
                     }
 
-                    heartrateEntries.add(createLineEntry(sample.getHeartRate(), ts));
+                    heartrateEntries.add(createLineEntry(heartRate, ts));
                     lastHrSampleIndex = ts;
                 }
 
@@ -590,7 +604,7 @@ public abstract class AbstractChartFragment extends AbstractGBFragment {
      * @param tsTo
      * @return
      */
-    protected abstract List<? extends ActivitySample> getSamples(DBHandler db, GBDevice device, int tsFrom, int tsTo);
+    protected abstract List<? extends ActivitySample> getSamples(ReadDBHandler db, GBDevice device, int tsFrom, int tsTo);
 
     protected abstract void setupLegend(Chart chart);
 
@@ -650,7 +664,7 @@ public abstract class AbstractChartFragment extends AbstractGBFragment {
         }
 
         @Override
-        protected void doInBackground(DBHandler db) {
+        protected void doInBackground(ReadDBHandler db) {
             ChartsHost chartsHost = getChartsHost();
             if (chartsHost != null) {
                 chartsData = refreshInBackground(chartsHost, db, chartsHost.getDevice());
@@ -702,7 +716,7 @@ public abstract class AbstractChartFragment extends AbstractGBFragment {
         }
     }
 
-    protected List<? extends ActivitySample> getSamples(DBHandler db, GBDevice device) {
+    protected List<? extends ActivitySample> getSamples(ReadDBHandler db, GBDevice device) {
         int tsStart = getTSStart();
         int tsEnd = getTSEnd();
         List<ActivitySample> samples = (List<ActivitySample>) getSamples(db, device, tsStart, tsEnd);
@@ -717,7 +731,17 @@ public abstract class AbstractChartFragment extends AbstractGBFragment {
         return samples;
     }
 
-    protected List<? extends ActivitySample> getSamplesofSleep(DBHandler db, GBDevice device) {
+    protected List<? extends ActivitySample> getSamplesofSleep(ReadDBHandler db, GBDevice device) {
+        int[] range = getSleepRange();
+        List<ActivitySample> samples = (List<ActivitySample>) getSamples(db, device, range[0], range[1]);
+        ensureStartAndEndSamples(samples, range[0], range[1]);
+        return samples;
+    }
+
+    /**
+     * Returns the time span shown by sleep charts, from noon of the start day to noon of the end day.
+     */
+    protected int[] getSleepRange() {
         int SLEEP_HOUR_LIMIT = 12;
 
         int tsStart = getTSStart();
@@ -735,11 +759,49 @@ public abstract class AbstractChartFragment extends AbstractGBFragment {
         day.set(Calendar.SECOND, 0);
         tsEnd = toTimestamp(day.getTime());
 
-        List<ActivitySample> samples = (List<ActivitySample>) getSamples(db, device, tsStart, tsEnd);
+        return new int[] { tsStart, tsEnd };
+    }
+
+    /**
+     * Like #getSamples(ReadDBHandler, GBDevice), but returns all kinds of samples as a batch.
+     */
+    protected ActivitySampleBatch getSampleBatch(ReadDBHandler db, GBDevice device) {
+        int tsStart = getTSStart();
+        int tsEnd = getTSEnd();
+        ActivitySampleBatch samples = getAllSampleBatch(db, device, tsStart, tsEnd);
         ensureStartAndEndSamples(samples, tsStart, tsEnd);
         return samples;
     }
 
+    /**
+     * Like #getSamplesofSleep(ReadDBHandler, GBDevice), but returns all kinds of samples as a batch.
+     */
+    protected ActivitySampleBatch getSampleBatchOfSleep(ReadDBHandler db, GBDevice device) {
+        int[] range = getSleepRange();
+        ActivitySampleBatch samples = getAllSampleBatch(db, device, range[0], range[1]);
+        ensureStartAndEndSamples(samples, range[0], range[1]);
+        return samples;
+    }
+
+    protected void ensureStartAndEndSamples(ActivitySampleBatch samples, int tsStart, int tsEnd) {
+        if (samples.isEmpty() || samples.getProvider() == null) {
+            return;
+        }
+        // appended in the same order as for the sample list
+        int firstTimestamp = samples.getTimestamp(0);
+        if (samples.getTimestamp(samples.size() - 1) < tsEnd) {
+            addTrailingActivitySample(samples, tsEnd);
+        }
+        if (firstTimestamp > tsStart) {
+            addTrailingActivitySample(samples, tsStart);
+        }
+    }
+
+    private void addTrailingActivitySample(ActivitySampleBatch samples, int timestamp) {
+        int notMeasured = ActivitySample.NOT_MEASURED;
+        samples.add(timestamp, notMeasured, notMeasured, notMeasured, notMeasured);
+    }
+
     protected void ensureStartAndEndSamples(List<ActivitySample> samples, int tsStart, int tsEnd) {
         if (samples == null || samples.isEmpty()) {
             return;
@@ -767,11 +829,11 @@ public abstract class AbstractChartFragment extends AbstractGBFragment {
         return sample;
     }
 
-    private int getTSEnd() {
+    protected int getTSEnd() {
         return toTimestamp(getEndDate());
     }
 
-    private int getTSStart() {
+    protected int getTSStart() {
         return toTimestamp(getStartDate());
     }
 
@@ -49,7 +49,8 @@ import java.util.Locale;
 
 import org.likeapp.likeapp.GBApplication;
 import org.likeapp.likeapp.R;
-import org.likeapp.likeapp.database.DBHandler;
+import org.likeapp.likeapp.database.DailyActivityRollupHelper;
+import org.likeapp.likeapp.database.ReadDBHandler;
 import org.likeapp.likeapp.impl.GBDevice;
 import org.likeapp.likeapp.model.ActivityAmounts;
 import org.likeapp.likeapp.model.ActivitySample;
@@ -70,7 +71,7 @@ public abstract class AbstractWeekChartFragment extends AbstractChartFragment {
     private int mOffsetHours = getOffsetHours();
 
     @Override
-    protected ChartsData refreshInBackground(ChartsHost chartsHost, DBHandler db, GBDevice device) {
+    protected ChartsData refreshInBackground(ChartsHost chartsHost, ReadDBHandler db, GBDevice device) {
         Calendar day = Calendar.getInstance();
         day.setTime(chartsHost.getEndDate());
         //NB: we could have omitted the day, but this way we can move things to the past easily
@@ -117,7 +118,7 @@ public abstract class AbstractWeekChartFragment extends AbstractChartFragment {
         }
     }
 
-    private WeekChartsData<BarData> refreshWeekBeforeData(DBHandler db, BarChart barChart, Calendar day, GBDevice device) {
+    private WeekChartsData<BarData> refreshWeekBeforeData(ReadDBHandler db, BarChart barChart, Calendar day, GBDevice device) {
         day = (Calendar) day.clone(); // do not modify the caller's argument
         day.add(Calendar.DATE, -TOTAL_DAYS);
         List<BarEntry> entries = new ArrayList<>();
@@ -169,7 +170,7 @@ public abstract class AbstractWeekChartFragment extends AbstractChartFragment {
             return new WeekChartsData(barData, new PreformattedXIndexLabelFormatter(labels), getBalanceMessage(balance, mTargetValue));
     }
 
-    private DayData refreshDayPie(DBHandler db, Calendar day, GBDevice device) {
+    private DayData refreshDayPie(ReadDBHandler db, Calendar day, GBDevice device) {
 
         PieData data = new PieData();
         List<PieEntry> entries = new ArrayList<>();
@@ -279,24 +280,18 @@ public abstract class AbstractWeekChartFragment extends AbstractChartFragment {
         yAxisRight.setTextColor(CHART_TEXT_COLOR);
     }
 
-    private List<? extends ActivitySample> getSamplesOfDay(DBHandler db, Calendar day, int offsetHours, GBDevice device) {
-        int startTs;
-        int endTs;
-
+    private int getStartOfDay(Calendar day, int offsetHours) {
         day = (Calendar) day.clone(); // do not modify the caller's argument
         day.set(Calendar.HOUR_OF_DAY, 0);
         day.set(Calendar.MINUTE, 0);
         day.set(Calendar.SECOND, 0);
         day.add(Calendar.HOUR, offsetHours);
 
-        startTs = (int) (day.getTimeInMillis() / 1000);
-        endTs = startTs + 24 * 60 * 60 - 1;
-
-        return getSamples(db, device, startTs, endTs);
+        return (int) (day.getTimeInMillis() / 1000);
     }
 
     @Override
-    protected List<? extends ActivitySample> getSamples(DBHandler db, GBDevice device, int tsFrom, int tsTo) {
+    protected List<? extends ActivitySample> getSamples(ReadDBHandler db, GBDevice device, int tsFrom, int tsTo) {
         return super.getAllSamples(db, device, tsFrom, tsTo);
     }
 
@@ -328,7 +323,7 @@ public abstract class AbstractWeekChartFragment extends AbstractChartFragment {
         }
     }
 
-    private ActivityAmounts getActivityAmountsForDay(DBHandler db, Calendar day, GBDevice device) {
+    private ActivityAmounts getActivityAmountsForDay(ReadDBHandler db, Calendar day, GBDevice device) {
 
         LimitedQueue activityAmountCache = null;
         ActivityAmounts amounts = null;
@@ -341,8 +336,9 @@ public abstract class AbstractWeekChartFragment extends AbstractChartFragment {
         }
 
         if (amounts == null) {
-            ActivityAnalysis analysis = new ActivityAnalysis();
-            amounts = analysis.calculateActivityAmounts(getSamplesOfDay(db, day, mOffsetHours, device));
+            // served from the stored daily rollup, the raw samples are only scanned on a miss
+            amounts = DailyActivityRollupHelper.getActivityAmounts(getProvider(db, device), device,
+                    db.getDaoSession(), getStartOfDay(day, mOffsetHours));
             if (activityAmountCache != null) {
                 activityAmountCache.add(key, amounts);
             }
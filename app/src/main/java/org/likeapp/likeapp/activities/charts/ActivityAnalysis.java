@@ -27,6 +27,7 @@ import org.likeapp.likeapp.model.ActivityAmount;
 import org.likeapp.likeapp.model.ActivityAmounts;
 import org.likeapp.likeapp.model.ActivityKind;
 import org.likeapp.likeapp.model.ActivitySample;
+import org.likeapp.likeapp.model.ActivitySampleBatch;
 
 public class ActivityAnalysis {
     public static final Logger LOG = LoggerFactory.getLogger(ActivityAnalysis.class);
@@ -37,16 +38,21 @@ public class ActivityAnalysis {
     private int maxSpeed = 0;
 
     public ActivityAmounts calculateActivityAmounts(List<? extends ActivitySample> samples) {
+        return calculateActivityAmounts(ActivitySampleBatch.fromSamples(samples));
+    }
+
+    public ActivityAmounts calculateActivityAmounts(ActivitySampleBatch samples) {
         ActivityAmount deepSleep = new ActivityAmount(ActivityKind.TYPE_DEEP_SLEEP);
         ActivityAmount lightSleep = new ActivityAmount(ActivityKind.TYPE_LIGHT_SLEEP);
         ActivityAmount notWorn = new ActivityAmount(ActivityKind.TYPE_NOT_WORN);
         ActivityAmount activity = new ActivityAmount(ActivityKind.TYPE_ACTIVITY);
 
         ActivityAmount previousAmount = null;
-        ActivitySample previousSample = null;
-        for (ActivitySample sample : samples) {
+        for (int i = 0; i < samples.size(); i++) {
+            int kind = samples.getKind(i);
+            int timestamp = samples.getTimestamp(i);
             ActivityAmount amount;
-            switch (sample.getKind()) {
+            switch (kind) {
                 case ActivityKind.TYPE_DEEP_SLEEP:
                     amount = deepSleep;
                     break;
@@ -62,14 +68,14 @@ public class ActivityAnalysis {
                     break;
             }
 
-            int steps = sample.getSteps();
+            int steps = samples.getSteps(i);
             if (steps > 0) {
                 amount.addSteps(steps);
             }
 
-            if (previousSample != null) {
-                long timeDifference = sample.getTimestamp() - previousSample.getTimestamp();
-                if (previousSample.getRawKind() == sample.getRawKind()) {
+            if (i > 0) {
+                long timeDifference = timestamp - samples.getTimestamp(i - 1);
+                if (samples.getRawKind(i - 1) == samples.getRawKind(i)) {
                     amount.addSeconds(timeDifference);
                 } else {
                     long sharedTimeDifference = (long) (timeDifference / 2.0f);
@@ -78,7 +84,7 @@ public class ActivityAnalysis {
                 }
 
                 // add time
-                if (steps > 0 && sample.getKind() == ActivityKind.TYPE_ACTIVITY) {
+                if (steps > 0 && kind == ActivityKind.TYPE_ACTIVITY) {
                     if (steps > maxSpeed) {
                         maxSpeed = steps;
                     }
@@ -94,11 +100,10 @@ public class ActivityAnalysis {
                 }
             }
 
-            amount.setStartDate(sample.getTimestamp());
-            amount.setEndDate(sample.getTimestamp());
+            amount.setStartDate(timestamp);
+            amount.setEndDate(timestamp);
 
             previousAmount = amount;
-            previousSample = sample;
         }
 
         ActivityAmounts result = new ActivityAmounts();
@@ -41,9 +41,10 @@ import java.util.List;
 
 import org.likeapp.likeapp.R;
 import org.likeapp.likeapp.activities.HeartRateUtils;
-import org.likeapp.likeapp.database.DBHandler;
+import org.likeapp.likeapp.database.ReadDBHandler;
 import org.likeapp.likeapp.impl.GBDevice;
 import org.likeapp.likeapp.model.ActivitySample;
+import org.likeapp.likeapp.model.ActivitySampleBatch;
 
 
 public class ActivitySleepChartFragment extends AbstractChartFragment {
@@ -127,8 +128,8 @@ public class ActivitySleepChartFragment extends AbstractChartFragment {
     }
 
     @Override
-    protected ChartsData refreshInBackground(ChartsHost chartsHost, DBHandler db, GBDevice device) {
-        List<? extends ActivitySample> samples = getSamples(db, device);
+    protected ChartsData refreshInBackground(ChartsHost chartsHost, ReadDBHandler db, GBDevice device) {
+        ActivitySampleBatch samples = getSampleBatch(db, device);
         return refresh(device, samples);
     }
 
@@ -183,7 +184,7 @@ public class ActivitySleepChartFragment extends AbstractChartFragment {
     }
 
     @Override
-    protected List<? extends ActivitySample> getSamples(DBHandler db, GBDevice device, int tsFrom, int tsTo) {
+    protected List<? extends ActivitySample> getSamples(ReadDBHandler db, GBDevice device, int tsFrom, int tsTo) {
         return getAllSamples(db, device, tsFrom, tsTo);
     }
 }
@@ -59,7 +59,8 @@ import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import org.likeapp.likeapp.GBApplication;
 import org.likeapp.likeapp.R;
 import org.likeapp.likeapp.activities.HeartRateUtils;
-import org.likeapp.likeapp.database.DBHandler;
+import org.likeapp.likeapp.database.ReadDBHandler;
+import org.likeapp.likeapp.devices.RealtimeSampleSink;
 import org.likeapp.likeapp.impl.GBDevice;
 import org.likeapp.likeapp.model.ActivitySample;
 import org.likeapp.likeapp.model.ActivityUser;
@@ -260,6 +261,20 @@ public class LiveActivityFragment extends AbstractChartFragment {
         return true;
     }
 
+    /**
+     * Shows the heart rates that were measured shortly before, e.g. when the fragment is
+     * recreated, from memory instead of the database, where they may not be stored yet.
+     */
+    private void addRecentHeartRates() {
+        for (ActivitySample sample : RealtimeSampleSink.getRecentSamples(getChartsHost().getDevice())) {
+            int heartRate = sample.getHeartRate();
+            if (HeartRateUtils.getInstance().isValidHeartRateValue(heartRate)) {
+                addHistoryDataSet(true);
+                mHeartRateSet.addEntry(new Entry(tsTranslation.shorten(sample.getTimestamp()), heartRate));
+            }
+        }
+    }
+
     @Nullable
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
@@ -283,6 +298,7 @@ public class LiveActivityFragment extends AbstractChartFragment {
         mTotalStepsData.setDrawValues(true);
         mTotalStepsData.setValueTextColor(DESCRIPTION_COLOR);
         setupHistoryChart(mStepsPerMinuteHistoryChart);
+        addRecentHeartRates();
         mMaxHeartRateView = rootView.findViewById(R.id.livechart_max_heart_rate);
 
         LocalBroadcastManager.getInstance(getActivity()).registerReceiver(mReceiver, filterLocal);
@@ -347,7 +363,19 @@ public class LiveActivityFragment extends AbstractChartFragment {
         renderCharts();
 
         // have to enable it again and again to keep it measuring
-        GBApplication.deviceService().onEnableRealtimeHeartRateMeasurement(true);
+        getDeviceService().onEnableRealtimeHeartRateMeasurement(true);
+    }
+
+    /**
+     * Returns the DeviceService addressing the charted device, or the selected one while
+     * detached from the activity.
+     */
+    private DeviceService getDeviceService() {
+        ChartsHost chartsHost = getChartsHost();
+        if (chartsHost == null || chartsHost.getDevice() == null) {
+            return GBApplication.deviceService();
+        }
+        return GBApplication.deviceService().forDevice(chartsHost.getDevice());
     }
 
     private int getPulseIntervalMillis() {
@@ -366,8 +394,8 @@ public class LiveActivityFragment extends AbstractChartFragment {
             return;
         }
 
-        GBApplication.deviceService().onEnableRealtimeSteps(enable);
-        GBApplication.deviceService().onEnableRealtimeHeartRateMeasurement(enable);
+        getDeviceService().onEnableRealtimeSteps(enable);
+        getDeviceService().onEnableRealtimeHeartRateMeasurement(enable);
         if (enable) {
             if (getActivity() != null) {
                 getActivity().getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
@@ -511,7 +539,7 @@ public class LiveActivityFragment extends AbstractChartFragment {
     }
 
     @Override
-    protected ChartsData refreshInBackground(ChartsHost chartsHost, DBHandler db, GBDevice device) {
+    protected ChartsData refreshInBackground(ChartsHost chartsHost, ReadDBHandler db, GBDevice device) {
         throw new UnsupportedOperationException();
     }
 
@@ -528,7 +556,7 @@ public class LiveActivityFragment extends AbstractChartFragment {
     }
 
     @Override
-    protected List<ActivitySample> getSamples(DBHandler db, GBDevice device, int tsFrom, int tsTo) {
+    protected List<ActivitySample> getSamples(ReadDBHandler db, GBDevice device, int tsFrom, int tsTo) {
         throw new UnsupportedOperationException("no db access supported for live activity");
     }
 
@@ -22,6 +22,7 @@ import java.util.List;
 
 import org.likeapp.likeapp.model.ActivityKind;
 import org.likeapp.likeapp.model.ActivitySample;
+import org.likeapp.likeapp.model.ActivitySampleBatch;
 
 public class SleepAnalysis {
 
@@ -29,57 +30,75 @@ public class SleepAnalysis {
     public static final long MAX_WAKE_PHASE_LENGTH = 2 * 60 * 60;
 
     public List<SleepSession> calculateSleepSessions(List<? extends ActivitySample> samples) {
-        List<SleepSession> result = new ArrayList<>();
-
-        ActivitySample previousSample = null;
-        Date sleepStart = null;
-        Date sleepEnd = null;
-        long lightSleepDuration = 0;
-        long deepSleepDuration = 0;
-        long durationSinceLastSleep = 0;
+        return calculateSleepSessions(ActivitySampleBatch.fromSamples(samples));
+    }
 
-        for (ActivitySample sample : samples) {
-            if (isSleep(sample)) {
-                if (sleepStart == null)
-                    sleepStart = getDateFromSample(sample);
-                sleepEnd = getDateFromSample(sample);
+    public List<SleepSession> calculateSleepSessions(ActivitySampleBatch samples) {
+        List<SleepSession> result = new ArrayList<>();
+        State state = new State();
+        calculateSleepSessions(state, samples, result);
+        SleepSession openSession = getOpenSession(state);
+        if (openSession != null) {
+            result.add(openSession);
+        }
+        return result;
+    }
 
-                durationSinceLastSleep = 0;
+    /**
+     * Continues the analysis of the given state with the given samples, which must be newer
+     * than all samples analyzed with that state before. Completed sessions are added to the
+     * result, while the session that is still open after the last sample is kept in the state.
+     */
+    public void calculateSleepSessions(State state, ActivitySampleBatch samples, List<SleepSession> result) {
+        for (int i = 0; i < samples.size(); i++) {
+            int kind = samples.getKind(i);
+            int timestamp = samples.getTimestamp(i);
+            if (isSleep(kind)) {
+                if (state.sleepStart == State.NONE)
+                    state.sleepStart = timestamp;
+                state.sleepEnd = timestamp;
+
+                state.wakeDuration = 0;
             }
 
-            if (previousSample != null) {
-                long durationSinceLastSample = sample.getTimestamp() - previousSample.getTimestamp();
-                if (sample.getKind() == ActivityKind.TYPE_LIGHT_SLEEP) {
-                    lightSleepDuration += durationSinceLastSample;
-                } else if (sample.getKind() == ActivityKind.TYPE_DEEP_SLEEP) {
-                    deepSleepDuration += durationSinceLastSample;
+            if (state.lastTimestamp != State.NONE) {
+                long durationSinceLastSample = timestamp - state.lastTimestamp;
+                if (kind == ActivityKind.TYPE_LIGHT_SLEEP) {
+                    state.lightSleepDuration += durationSinceLastSample;
+                } else if (kind == ActivityKind.TYPE_DEEP_SLEEP) {
+                    state.deepSleepDuration += durationSinceLastSample;
                 } else {
-                    durationSinceLastSleep += durationSinceLastSample;
-                    if (sleepStart != null && durationSinceLastSleep > MAX_WAKE_PHASE_LENGTH) {
-                        if (lightSleepDuration + deepSleepDuration > MIN_SESSION_LENGTH)
-                            result.add(new SleepSession(sleepStart, sleepEnd, lightSleepDuration, deepSleepDuration));
-                        sleepStart = null;
-                        sleepEnd = null;
-                        lightSleepDuration = 0;
-                        deepSleepDuration = 0;
+                    state.wakeDuration += durationSinceLastSample;
+                    if (state.sleepStart != State.NONE && state.wakeDuration > MAX_WAKE_PHASE_LENGTH) {
+                        SleepSession session = getOpenSession(state);
+                        if (session != null)
+                            result.add(session);
+                        state.closeSession();
                     }
                 }
             }
-
-            previousSample = sample;
+            state.lastTimestamp = timestamp;
         }
-        if (lightSleepDuration + deepSleepDuration > MIN_SESSION_LENGTH) {
-            result.add(new SleepSession(sleepStart, sleepEnd, lightSleepDuration, deepSleepDuration));
+    }
+
+    /**
+     * Returns the session that is still open in the given state, or null if there is none
+     * or it is too short to count.
+     */
+    public SleepSession getOpenSession(State state) {
+        if (state.lightSleepDuration + state.deepSleepDuration > MIN_SESSION_LENGTH) {
+            return new SleepSession(getDateFromTimestamp(state.sleepStart), getDateFromTimestamp(state.sleepEnd),
+                    state.lightSleepDuration, state.deepSleepDuration);
         }
-        return result;
+        return null;
     }
 
-    private boolean isSleep(ActivitySample sample) {
-        return sample.getKind() == ActivityKind.TYPE_DEEP_SLEEP || sample.getKind() == ActivityKind.TYPE_LIGHT_SLEEP;
+    private boolean isSleep(int kind) {
+        return kind == ActivityKind.TYPE_DEEP_SLEEP || kind == ActivityKind.TYPE_LIGHT_SLEEP;
     }
 
-    private Date getDateFromSample(ActivitySample sample) {
-        return new Date(sample.getTimestamp() * 1000L);
+    private Date getDateFromTimestamp(int timestamp) {
+        return new Date(timestamp * 1000L);
     }
 
 
@@ -89,7 +108,7 @@ public class SleepAnalysis {
         private final long lightSleepDuration;
         private final long deepSleepDuration;
 
-        private SleepSession(Date sleepStart,
+        public SleepSession(Date sleepStart,
                              Date sleepEnd,
                              long lightSleepDuration,
                              long deepSleepDuration) {
@@ -115,4 +134,62 @@ public class SleepAnalysis {
             return deepSleepDuration;
         }
     }
+
+    /**
+     * The state of an incremental sleep analysis, i.e. the last analyzed sample and the sleep
+     * session that is open at that point. Timestamps are in seconds since epoch.
+     */
+    public static class State {
+        public static final int NONE = -1;
+
+        private int lastTimestamp = NONE;
+        private int sleepStart = NONE;
+        private int sleepEnd = NONE;
+        private long lightSleepDuration;
+        private long deepSleepDuration;
+        private long wakeDuration;
+
+        public State() {
+        }
+
+        public State(int lastTimestamp, int sleepStart, int sleepEnd, long lightSleepDuration, long deepSleepDuration, long wakeDuration) {
+            this.lastTimestamp = lastTimestamp;
+            this.sleepStart = sleepStart;
+            this.sleepEnd = sleepEnd;
+            this.lightSleepDuration = lightSleepDuration;
+            this.deepSleepDuration = deepSleepDuration;
+            this.wakeDuration = wakeDuration;
+        }
+
+        private void closeSession() {
+            sleepStart = NONE;
+            sleepEnd = NONE;
+            lightSleepDuration = 0;
+            deepSleepDuration = 0;
+        }
+
+        public int getLastTimestamp() {
+            return lastTimestamp;
+        }
+
+        public int getSleepStart() {
+            return sleepStart;
+        }
+
+        public int getSleepEnd() {
+            return sleepEnd;
+        }
+
+        public long getLightSleepDuration() {
+            return lightSleepDuration;
+        }
+
+        public long getDeepSleepDuration() {
+            return deepSleepDuration;
+        }
+
+        public long getWakeDuration() {
+            return wakeDuration;
+        }
+    }
 }
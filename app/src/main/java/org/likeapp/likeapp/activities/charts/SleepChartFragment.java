@@ -46,17 +46,18 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.likeapp.likeapp.R;
 import org.likeapp.likeapp.activities.HeartRateUtils;
 import org.likeapp.likeapp.activities.charts.SleepAnalysis.SleepSession;
-import org.likeapp.likeapp.database.DBHandler;
+import org.likeapp.likeapp.database.ReadDBHandler;
+import org.likeapp.likeapp.database.SleepSessionHelper;
 import org.likeapp.likeapp.impl.GBDevice;
 import org.likeapp.likeapp.model.ActivityKind;
 import org.likeapp.likeapp.model.ActivitySample;
+import org.likeapp.likeapp.model.ActivitySampleBatch;
 import org.likeapp.likeapp.util.DateTimeUtils;
 
 
@@ -73,28 +74,28 @@ public class SleepChartFragment extends AbstractChartFragment {
     private int mSmartAlarmGoneOff = -1;
 
     @Override
-    protected ChartsData refreshInBackground(ChartsHost chartsHost, DBHandler db, GBDevice device) {
+    protected ChartsData refreshInBackground(ChartsHost chartsHost, ReadDBHandler db, GBDevice device) {
         Prefs prefs = GBApplication.getPrefs();
-        List<? extends ActivitySample> samples;
+        ActivitySampleBatch samples;
+        int[] range;
         if (prefs.getBoolean("chart_sleep_range_24h", false)) {
-            samples = getSamples(db, device);
+            samples = getSampleBatch(db, device);
+            range = new int[] { getTSStart(), getTSEnd() };
         }else{
-            samples = getSamplesofSleep(db, device);
+            samples = getSampleBatchOfSleep(db, device);
+            range = getSleepRange();
         }
 
-        MySleepChartsData mySleepChartsData = refreshSleepAmounts(device, samples);
+        List<SleepSession> sleepSessions = SleepSessionHelper.getSleepSessions(getProvider(db, device), device,
+                db.getDaoSession(), range[0], range[1]);
+        MySleepChartsData mySleepChartsData = refreshSleepAmounts(sleepSessions);
 
         if (!prefs.getBoolean("chart_sleep_range_24h", false)) {
             if (mySleepChartsData.sleepSessions.size() > 0) {
                 long tstart = mySleepChartsData.sleepSessions.get(0).getSleepStart().getTime() / 1000;
                 long tend = mySleepChartsData.sleepSessions.get(mySleepChartsData.sleepSessions.size() - 1).getSleepEnd().getTime() / 1000;
 
-                for (Iterator<ActivitySample> iterator = (Iterator<ActivitySample>) samples.iterator(); iterator.hasNext(); ) {
-                    ActivitySample sample = iterator.next();
-                    if (sample.getTimestamp() < tstart || sample.getTimestamp() > tend) {
-                        iterator.remove();
-                    }
-                }
+                samples.retainRange((int) tstart, (int) tend);
             }
         }
         DefaultChartsData chartsData = refresh(device, samples);
@@ -102,10 +103,7 @@ public class SleepChartFragment extends AbstractChartFragment {
         return new MyChartsData(mySleepChartsData, chartsData);
     }
 
-    private MySleepChartsData refreshSleepAmounts(GBDevice mGBDevice, List<? extends ActivitySample> samples) {
-        SleepAnalysis sleepAnalysis = new SleepAnalysis();
-        List<SleepSession> sleepSessions = sleepAnalysis.calculateSleepSessions(samples);
-
+    private MySleepChartsData refreshSleepAmounts(List<SleepSession> sleepSessions) {
         PieData data = new PieData();
 
 
@@ -304,7 +302,7 @@ public class SleepChartFragment extends AbstractChartFragment {
     }
 
     @Override
-    protected List<? extends ActivitySample> getSamples(DBHandler db, GBDevice device, int tsFrom, int tsTo) {
+    protected List<? extends ActivitySample> getSamples(ReadDBHandler db, GBDevice device, int tsFrom, int tsTo) {
 // temporary fix for totally wrong sleep amounts
 //        return super.getSleepSamples(db, device, tsFrom, tsTo);
         return super.getAllSamples(db, device, tsFrom, tsTo);
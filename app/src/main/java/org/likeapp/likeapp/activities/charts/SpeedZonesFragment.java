@@ -38,10 +38,11 @@ import java.util.List;
 import java.util.Map;
 
 import org.likeapp.likeapp.R;
-import org.likeapp.likeapp.database.DBHandler;
+import org.likeapp.likeapp.database.ReadDBHandler;
 import org.likeapp.likeapp.impl.GBDevice;
 import org.likeapp.likeapp.model.ActivityKind;
 import org.likeapp.likeapp.model.ActivitySample;
+import org.likeapp.likeapp.model.ActivitySampleBatch;
 import org.likeapp.likeapp.model.ActivityUser;
 
 
@@ -51,15 +52,15 @@ public class SpeedZonesFragment extends AbstractChartFragment {
     private HorizontalBarChart mStatsChart;
 
     @Override
-    protected ChartsData refreshInBackground(ChartsHost chartsHost, DBHandler db, GBDevice device) {
-        List<? extends ActivitySample> samples = getSamples(db, device);
+    protected ChartsData refreshInBackground(ChartsHost chartsHost, ReadDBHandler db, GBDevice device) {
+        ActivitySampleBatch samples = getSampleBatch(db, device);
 
         MySpeedZonesData mySpeedZonesData = refreshStats(samples);
 
         return new MyChartsData(mySpeedZonesData);
     }
 
-    private MySpeedZonesData refreshStats(List<? extends ActivitySample> samples) {
+    private MySpeedZonesData refreshStats(ActivitySampleBatch samples) {
         ActivityAnalysis analysis = new ActivityAnalysis();
         analysis.calculateActivityAmounts(samples);
         BarData data = new BarData();
@@ -134,7 +135,7 @@ public class SpeedZonesFragment extends AbstractChartFragment {
     }
 
     @Override
-    protected List<? extends ActivitySample> getSamples(DBHandler db, GBDevice device, int tsFrom, int tsTo) {
+    protected List<? extends ActivitySample> getSamples(ReadDBHandler db, GBDevice device, int tsFrom, int tsTo) {
         return super.getAllSamples(db, device, tsFrom, tsTo);
     }
 
@@ -30,6 +30,7 @@ import org.likeapp.likeapp.GBApplication;
 import org.likeapp.likeapp.devices.huami.HuamiConst;
 import org.likeapp.likeapp.devices.makibeshr3.MakibesHR3Constants;
 import org.likeapp.likeapp.devices.miband.MiBandConst;
+import org.likeapp.likeapp.impl.GBDevice;
 import org.likeapp.likeapp.util.Prefs;
 import org.likeapp.likeapp.util.XTimePreference;
 import org.likeapp.likeapp.util.XTimePreferenceFragment;
@@ -75,9 +76,12 @@ public class DeviceSpecificSettingsFragment extends PreferenceFragmentCompat {
 
     static final String FRAGMENT_TAG = "DEVICE_SPECIFIC_SETTINGS_FRAGMENT";
 
-    private void setSettingsFileSuffix(String settingsFileSuffix, @NonNull int[] supportedSettings) {
+    private GBDevice device;
+
+    private void setDevice(GBDevice device, @NonNull int[] supportedSettings) {
         Bundle args = new Bundle();
-        args.putString("settingsFileSuffix", settingsFileSuffix);
+        args.putParcelable(GBDevice.EXTRA_DEVICE, device);
+        args.putString("settingsFileSuffix", device.getAddress());
         args.putIntArray("supportedSettings", supportedSettings);
         setArguments(args);
     }
@@ -89,9 +93,10 @@ public class DeviceSpecificSettingsFragment extends PreferenceFragmentCompat {
         if (arguments == null) {
             return;
         }
+        device = arguments.getParcelable(GBDevice.EXTRA_DEVICE);
         String settingsFileSuffix = arguments.getString("settingsFileSuffix", null);
         int[] supportedSettings = arguments.getIntArray("supportedSettings");
-        if (settingsFileSuffix == null || supportedSettings == null) {
+        if (device == null || settingsFileSuffix == null || supportedSettings == null) {
             return;
         }
 
@@ -143,7 +148,7 @@ public class DeviceSpecificSettingsFragment extends PreferenceFragmentCompat {
                     invokeLater(new Runnable() {
                         @Override
                         public void run() {
-                            GBApplication.deviceService().onSendConfiguration(PREF_DISCONNECT_NOTIFICATION_START);
+                            GBApplication.deviceService().forDevice(device).onSendConfiguration(PREF_DISCONNECT_NOTIFICATION_START);
                         }
                     });
                     return true;
@@ -160,7 +165,7 @@ public class DeviceSpecificSettingsFragment extends PreferenceFragmentCompat {
                     invokeLater(new Runnable() {
                         @Override
                         public void run() {
-                            GBApplication.deviceService().onSendConfiguration(PREF_DISCONNECT_NOTIFICATION_END);
+                            GBApplication.deviceService().forDevice(device).onSendConfiguration(PREF_DISCONNECT_NOTIFICATION_END);
                         }
                     });
                     return true;
@@ -180,7 +185,7 @@ public class DeviceSpecificSettingsFragment extends PreferenceFragmentCompat {
                     invokeLater(new Runnable() {
                         @Override
                         public void run() {
-                            GBApplication.deviceService().onSendConfiguration(PREF_DISCONNECT_NOTIFICATION);
+                            GBApplication.deviceService().forDevice(device).onSendConfiguration(PREF_DISCONNECT_NOTIFICATION);
                         }
                     });
                     return true;
@@ -201,7 +206,7 @@ public class DeviceSpecificSettingsFragment extends PreferenceFragmentCompat {
                     invokeLater(new Runnable() {
                         @Override
                         public void run() {
-                            GBApplication.deviceService().onSendConfiguration(PREF_NIGHT_MODE_START);
+                            GBApplication.deviceService().forDevice(device).onSendConfiguration(PREF_NIGHT_MODE_START);
                         }
                     });
                     return true;
@@ -218,7 +223,7 @@ public class DeviceSpecificSettingsFragment extends PreferenceFragmentCompat {
                     invokeLater(new Runnable() {
                         @Override
                         public void run() {
-                            GBApplication.deviceService().onSendConfiguration(PREF_NIGHT_MODE_END);
+                            GBApplication.deviceService().forDevice(device).onSendConfiguration(PREF_NIGHT_MODE_END);
                         }
                     });
                     return true;
@@ -240,7 +245,7 @@ public class DeviceSpecificSettingsFragment extends PreferenceFragmentCompat {
                     invokeLater(new Runnable() {
                         @Override
                         public void run() {
-                            GBApplication.deviceService().onSendConfiguration(PREF_NIGHT_MODE);
+                            GBApplication.deviceService().forDevice(device).onSendConfiguration(PREF_NIGHT_MODE);
                         }
                     });
                     return true;
@@ -261,7 +266,7 @@ public class DeviceSpecificSettingsFragment extends PreferenceFragmentCompat {
                     invokeLater(new Runnable() {
                         @Override
                         public void run() {
-                            GBApplication.deviceService().onSendConfiguration(PREF_DO_NOT_DISTURB_START);
+                            GBApplication.deviceService().forDevice(device).onSendConfiguration(PREF_DO_NOT_DISTURB_START);
                         }
                     });
                     return true;
@@ -278,7 +283,7 @@ public class DeviceSpecificSettingsFragment extends PreferenceFragmentCompat {
                     invokeLater(new Runnable() {
                         @Override
                         public void run() {
-                            GBApplication.deviceService().onSendConfiguration(PREF_DO_NOT_DISTURB_END);
+                            GBApplication.deviceService().forDevice(device).onSendConfiguration(PREF_DO_NOT_DISTURB_END);
                         }
                     });
                     return true;
@@ -299,7 +304,7 @@ public class DeviceSpecificSettingsFragment extends PreferenceFragmentCompat {
                     invokeLater(new Runnable() {
                         @Override
                         public void run() {
-                            GBApplication.deviceService().onSendConfiguration(PREF_DO_NOT_DISTURB);
+                            GBApplication.deviceService().forDevice(device).onSendConfiguration(PREF_DO_NOT_DISTURB);
                         }
                     });
                     return true;
@@ -333,7 +338,7 @@ public class DeviceSpecificSettingsFragment extends PreferenceFragmentCompat {
                     invokeLater(new Runnable() {
                         @Override
                         public void run() {
-                            GBApplication.deviceService().onSendConfiguration(PREF_MI2_ROTATE_WRIST_TO_SWITCH_INFO);
+                            GBApplication.deviceService().forDevice(device).onSendConfiguration(PREF_MI2_ROTATE_WRIST_TO_SWITCH_INFO);
                         }
                     });
                     return true;
@@ -350,7 +355,7 @@ public class DeviceSpecificSettingsFragment extends PreferenceFragmentCompat {
                     invokeLater(new Runnable() {
                         @Override
                         public void run() {
-                            GBApplication.deviceService().onSendConfiguration(PREF_DISPLAY_ON_LIFT_START);
+                            GBApplication.deviceService().forDevice(device).onSendConfiguration(PREF_DISPLAY_ON_LIFT_START);
                         }
                     });
                     return true;
@@ -367,7 +372,7 @@ public class DeviceSpecificSettingsFragment extends PreferenceFragmentCompat {
                     invokeLater(new Runnable() {
                         @Override
                         public void run() {
-                            GBApplication.deviceService().onSendConfiguration(PREF_DISPLAY_ON_LIFT_END);
+                            GBApplication.deviceService().forDevice(device).onSendConfiguration(PREF_DISPLAY_ON_LIFT_END);
                         }
                     });
                     return true;
@@ -389,7 +394,7 @@ public class DeviceSpecificSettingsFragment extends PreferenceFragmentCompat {
                     invokeLater(new Runnable() {
                         @Override
                         public void run() {
-                            GBApplication.deviceService().onSendConfiguration(PREF_ACTIVATE_DISPLAY_ON_LIFT);
+                            GBApplication.deviceService().forDevice(device).onSendConfiguration(PREF_ACTIVATE_DISPLAY_ON_LIFT);
                         }
                     });
                     return true;
@@ -405,9 +410,9 @@ public class DeviceSpecificSettingsFragment extends PreferenceFragmentCompat {
         setInputTypeFor(DeviceSettingsPreferenceConst.PREF_RESERVER_ALARMS_CALENDAR, InputType.TYPE_CLASS_NUMBER);
     }
 
-    static DeviceSpecificSettingsFragment newInstance(String settingsFileSuffix, @NonNull int[] supportedSettings) {
+    static DeviceSpecificSettingsFragment newInstance(GBDevice device, @NonNull int[] supportedSettings) {
         DeviceSpecificSettingsFragment fragment = new DeviceSpecificSettingsFragment();
-        fragment.setSettingsFileSuffix(settingsFileSuffix, supportedSettings);
+        fragment.setDevice(device, supportedSettings);
 
         return fragment;
     }
@@ -437,7 +442,7 @@ public class DeviceSpecificSettingsFragment extends PreferenceFragmentCompat {
                     invokeLater(new Runnable() {
                         @Override
                         public void run() {
-                            GBApplication.deviceService().onSendConfiguration(preferenceKey);
+                            GBApplication.deviceService().forDevice(device).onSendConfiguration(preferenceKey);
                         }
                     });
                     return true;
@@ -24,8 +24,8 @@ import java.util.List;
 
 import de.greenrobot.dao.query.QueryBuilder;
 import org.likeapp.likeapp.GBApplication;
-import org.likeapp.likeapp.database.DBHandler;
 import org.likeapp.likeapp.database.DBHelper;
+import org.likeapp.likeapp.database.ReadDBHandler;
 import org.likeapp.likeapp.entities.BaseActivitySummary;
 import org.likeapp.likeapp.entities.BaseActivitySummaryDao;
 import org.likeapp.likeapp.entities.Device;
@@ -45,7 +45,7 @@ public class ActivitySummariesAdapter extends AbstractItemAdapter<BaseActivitySu
 
     @Override
     public void loadItems() {
-        try (DBHandler handler = GBApplication.acquireDB()) {
+        try (ReadDBHandler handler = GBApplication.acquireReadDB()) {
             BaseActivitySummaryDao summaryDao = handler.getDaoSession().getBaseActivitySummaryDao();
             Device dbDevice = DBHelper.findDevice(device, handler.getDaoSession());
 
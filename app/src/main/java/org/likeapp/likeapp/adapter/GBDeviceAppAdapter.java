@@ -100,7 +100,7 @@ public class GBDeviceAppAdapter extends RecyclerView.Adapter<GBDeviceAppAdapter.
             @Override
             public void onClick(View view) {
                 UUID uuid = deviceApp.getUUID();
-                GBApplication.deviceService().onAppStart(uuid, true);
+                mParentFragment.getDeviceService().onAppStart(uuid, true);
             }
         });
 
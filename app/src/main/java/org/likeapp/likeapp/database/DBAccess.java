@@ -24,6 +24,10 @@ import org.likeapp.likeapp.GBApplication;
 import org.likeapp.likeapp.R;
 import org.likeapp.likeapp.util.GB;
 
+/**
+ * Runs a database task in the background. The task gets a reader's ReadDBHandler,
+ * see GBApplication#acquireReadDB(), so it does not wait for ongoing writes.
+ */
 public abstract class DBAccess extends AsyncTask {
     private final String mTask;
     private final Context mContext;
@@ -38,11 +42,11 @@ public abstract class DBAccess extends AsyncTask {
         return mContext;
     }
 
-    protected abstract void doInBackground(DBHandler handler);
+    protected abstract void doInBackground(ReadDBHandler handler);
 
     @Override
     protected Object doInBackground(Object[] params) {
-        try (DBHandler db = GBApplication.acquireDB()) {
+        try (ReadDBHandler db = GBApplication.acquireReadDB()) {
             doInBackground(db);
         } catch (Exception e) {
             mError = e;
@@ -17,37 +17,25 @@
     along with this program.  If not, see <http://www.gnu.org/licenses/>. */
 package org.likeapp.likeapp.database;
 
-import android.database.sqlite.SQLiteDatabase;
-import android.database.sqlite.SQLiteOpenHelper;
-
-import org.likeapp.likeapp.entities.DaoMaster;
-import org.likeapp.likeapp.entities.DaoSession;
-
 /**
  * Provides lowlevel access to the database.
  */
-public interface DBHandler extends AutoCloseable {
+public interface DBHandler extends ReadDBHandler {
     /**
-     * Closes the database.
+     * Closes the database. Does nothing if it is closed already.
      */
     void closeDb();
 
     /**
      * Opens the database. Note that this is only possible after an explicit
-     * #closeDb(). Initially the db is implicitly open.
+     * #closeDb(). Initially the db is implicitly open. Does nothing if it is open already.
      */
     void openDb();
 
-    SQLiteOpenHelper getHelper();
-
     /**
      * Releases the DB handler. No DB access will be possible before
      * #openDb() will be called.
      */
+    @Override
     void close() throws Exception;
-
-    SQLiteDatabase getDatabase();
-
-    DaoMaster getDaoMaster();
-    DaoSession getDaoSession();
 }
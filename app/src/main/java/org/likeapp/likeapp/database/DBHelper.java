@@ -88,7 +88,7 @@ public class DBHelper {
     /**
      * Closes the database and returns its name.
      * Important: after calling this, you have to DBHandler#openDb() it again
-     * to get it back to work.
+     * to get it back to work, also if this throws.
      *
      * @param dbHandler
      * @return
@@ -105,8 +105,8 @@ public class DBHelper {
     }
 
     public File exportDB(DBHandler dbHandler, File toDir) throws IllegalStateException, IOException {
-        String dbPath = getClosedDBPath(dbHandler);
         try {
+            String dbPath = getClosedDBPath(dbHandler);
             File sourceFile = new File(dbPath);
             File destFile = new File(toDir, sourceFile.getName());
             if (destFile.exists()) {
@@ -126,8 +126,8 @@ public class DBHelper {
     }
 
     public void exportDB(DBHandler dbHandler, OutputStream dest) throws IOException {
-        String dbPath = getClosedDBPath(dbHandler);
         try {
+            String dbPath = getClosedDBPath(dbHandler);
             File source = new File(dbPath);
             FileUtils.copyFileToStream(source, dest);
         } finally {
@@ -140,15 +140,24 @@ public class DBHelper {
     }
 
     public void importDB(DBHandler dbHandler, File fromFile) throws IllegalStateException, IOException {
-        String dbPath = getClosedDBPath(dbHandler);
         try {
+            String dbPath = getClosedDBPath(dbHandler);
             File toFile = new File(dbPath);
+            // the write-ahead log of the replaced database must not be applied to the imported one
+            deleteIfExists(new File(dbPath + "-wal"));
+            deleteIfExists(new File(dbPath + "-shm"));
             FileUtils.copyFile(fromFile, toFile);
         } finally {
             dbHandler.openDb();
         }
     }
 
+    private void deleteIfExists(File file) throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to delete " + file.getAbsolutePath());
+        }
+    }
+
     public void validateDB(SQLiteOpenHelper dbHandler) throws IOException {
         try (SQLiteDatabase db = dbHandler.getReadableDatabase()) {
             if (!db.isDatabaseIntegrityOk()) {
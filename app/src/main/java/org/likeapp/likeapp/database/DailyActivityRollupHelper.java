@@ -0,0 +1,196 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+import de.greenrobot.dao.query.QueryBuilder;
+import org.likeapp.likeapp.activities.HeartRateUtils;
+import org.likeapp.likeapp.activities.charts.ActivityAnalysis;
+import org.likeapp.likeapp.devices.SampleProvider;
+import org.likeapp.likeapp.entities.DailyActivityRollup;
+import org.likeapp.likeapp.entities.DailyActivityRollupDao;
+import org.likeapp.likeapp.entities.DaoSession;
+import org.likeapp.likeapp.entities.Device;
+import org.likeapp.likeapp.impl.GBDevice;
+import org.likeapp.likeapp.model.ActivityAmount;
+import org.likeapp.likeapp.model.ActivityAmounts;
+import org.likeapp.likeapp.model.ActivityKind;
+import org.likeapp.likeapp.model.ActivitySampleBatch;
+
+/**
+ * Maintains the {@link DailyActivityRollup} entities. A rollup is computed from the raw
+ * samples the first time a window is requested, and stored once the window lies completely
+ * in the past. The windows are chosen by the readers (e.g. local midnight), so they are not
+ * known before. Writing samples updates the stored rollups of all windows containing them,
+ * within the writing transaction, so that readers never have to rescan those windows.
+ * <p>
+ * Rollups are requested by readers, concurrently with the writers invalidating them, and are
+ * only stored if the samples did not change meanwhile, see {@link SampleGenerationHelper}.
+ */
+public class DailyActivityRollupHelper {
+    private static final Logger LOG = LoggerFactory.getLogger(DailyActivityRollupHelper.class);
+
+    public static final int WINDOW_SECONDS = 24 * 60 * 60;
+
+    /**
+     * Returns the rollup of the 24 hour window starting at the given timestamp, computing
+     * (and storing) it from the raw samples if necessary.
+     *
+     * @param windowStart the start of the window, in seconds since epoch
+     * @return the rollup, or null if the device is not known in the database
+     */
+    public static DailyActivityRollup getRollup(SampleProvider<?> provider, GBDevice gbDevice, DaoSession session, int windowStart) {
+        Device dbDevice = DBHelper.findDevice(gbDevice, session);
+        if (dbDevice == null) {
+            return null;
+        }
+        // read before the samples, so that any change of them after this point changes it
+        long generation = SampleGenerationHelper.get(session, dbDevice.getId());
+        QueryBuilder<DailyActivityRollup> qb = session.getDailyActivityRollupDao().queryBuilder();
+        qb.where(DailyActivityRollupDao.Properties.DeviceId.eq(dbDevice.getId()),
+                DailyActivityRollupDao.Properties.DayStart.eq(windowStart));
+        List<DailyActivityRollup> existing = qb.build().list();
+        if (!existing.isEmpty()) {
+            return existing.get(0);
+        }
+
+        ActivitySampleBatch samples = provider.getAllActivitySampleBatch(windowStart, windowStart + WINDOW_SECONDS - 1);
+        final DailyActivityRollup rollup = createRollup(samples);
+        rollup.setDayStart(windowStart);
+        rollup.setDeviceId(dbDevice.getId());
+
+        long now = System.currentTimeMillis() / 1000;
+        if (windowStart + WINDOW_SECONDS <= now) {
+            // only complete windows are stored, the current one keeps changing anyway
+            SampleGenerationHelper.storeIfUnchanged(dbDevice.getId(), generation, new SampleGenerationHelper.StoreOperation() {
+                @Override
+                public void store(DaoSession writerSession) {
+                    writerSession.getDailyActivityRollupDao().insertOrReplace(rollup);
+                }
+            });
+        }
+        return rollup;
+    }
+
+    /**
+     * Convenience method returning the activity amounts of the given window, equivalent to
+     * running {@link ActivityAnalysis#calculateActivityAmounts(ActivitySampleBatch)} over its samples.
+     */
+    public static ActivityAmounts getActivityAmounts(SampleProvider<?> provider, GBDevice gbDevice, DaoSession session, int windowStart) {
+        DailyActivityRollup rollup = getRollup(provider, gbDevice, session, windowStart);
+        if (rollup == null) {
+            return new ActivityAmounts();
+        }
+        return toActivityAmounts(rollup);
+    }
+
+    /**
+     * Updates the stored rollups of all windows that contain a timestamp within the given
+     * range, by recomputing them from the samples of these windows. Must be called whenever
+     * samples in that range are added or changed, in the same transaction of the writer session,
+     * with a sample provider using that session.
+     */
+    public static void update(final SampleProvider<?> provider, final DaoSession session, final long deviceId, final int timestampFrom, final int timestampTo) {
+        session.runInTx(new Runnable() {
+            @Override
+            public void run() {
+                SampleGenerationHelper.increment(session, deviceId);
+                DailyActivityRollupDao dao = session.getDailyActivityRollupDao();
+                QueryBuilder<DailyActivityRollup> qb = dao.queryBuilder();
+                qb.where(DailyActivityRollupDao.Properties.DeviceId.eq(deviceId),
+                        DailyActivityRollupDao.Properties.DayStart.gt(timestampFrom - WINDOW_SECONDS),
+                        DailyActivityRollupDao.Properties.DayStart.le(timestampTo));
+                for (DailyActivityRollup stored : qb.build().list()) {
+                    int windowStart = stored.getDayStart();
+                    DailyActivityRollup rollup = createRollup(provider.getAllActivitySampleBatch(windowStart, windowStart + WINDOW_SECONDS - 1));
+                    rollup.setDayStart(windowStart);
+                    rollup.setDeviceId(deviceId);
+                    dao.insertOrReplace(rollup);
+                }
+                // the identity scope would keep the updates should the transaction be rolled back
+                dao.detachAll();
+            }
+        });
+    }
+
+    public static ActivityAmounts toActivityAmounts(DailyActivityRollup rollup) {
+        ActivityAmounts result = new ActivityAmounts();
+        addAmount(result, ActivityKind.TYPE_DEEP_SLEEP, rollup.getDeepSleepSeconds(), rollup.getDeepSleepSteps());
+        addAmount(result, ActivityKind.TYPE_LIGHT_SLEEP, rollup.getLightSleepSeconds(), rollup.getLightSleepSteps());
+        addAmount(result, ActivityKind.TYPE_ACTIVITY, rollup.getActivitySeconds(), rollup.getActivitySteps());
+        result.calculatePercentages();
+        return result;
+    }
+
+    private static void addAmount(ActivityAmounts amounts, int activityKind, int seconds, int steps) {
+        if (seconds > 0) {
+            ActivityAmount amount = new ActivityAmount(activityKind);
+            amount.addSeconds(seconds);
+            amount.addSteps(steps);
+            amounts.addAmount(amount);
+        }
+    }
+
+    static DailyActivityRollup createRollup(ActivitySampleBatch samples) {
+        DailyActivityRollup rollup = new DailyActivityRollup();
+        ActivityAmounts amounts = new ActivityAnalysis().calculateActivityAmounts(samples);
+        for (ActivityAmount amount : amounts.getAmounts()) {
+            switch (amount.getActivityKind()) {
+                case ActivityKind.TYPE_DEEP_SLEEP:
+                    rollup.setDeepSleepSeconds((int) amount.getTotalSeconds());
+                    rollup.setDeepSleepSteps((int) amount.getTotalSteps());
+                    break;
+                case ActivityKind.TYPE_LIGHT_SLEEP:
+                    rollup.setLightSleepSeconds((int) amount.getTotalSeconds());
+                    rollup.setLightSleepSteps((int) amount.getTotalSteps());
+                    break;
+                default:
+                    rollup.setActivitySeconds((int) amount.getTotalSeconds());
+                    rollup.setActivitySteps((int) amount.getTotalSteps());
+                    break;
+            }
+        }
+
+        int heartRateMin = Integer.MAX_VALUE;
+        int heartRateMax = 0;
+        long heartRateSum = 0;
+        int heartRateCount = 0;
+        for (int i = 0; i < samples.size(); i++) {
+            int heartRate = samples.getHeartRate(i);
+            if (heartRate >= HeartRateUtils.MIN_HEART_RATE_VALUE && heartRate <= HeartRateUtils.MAX_HEART_RATE_VALUE) {
+                heartRateMin = Math.min(heartRateMin, heartRate);
+                heartRateMax = Math.max(heartRateMax, heartRate);
+                heartRateSum += heartRate;
+                heartRateCount++;
+            }
+        }
+        if (heartRateCount > 0) {
+            rollup.setHeartRateMin(heartRateMin);
+            rollup.setHeartRateAverage((int) (heartRateSum / heartRateCount));
+            rollup.setHeartRateMax(heartRateMax);
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("computed daily rollup from " + samples.size() + " samples");
+        }
+        return rollup;
+    }
+}
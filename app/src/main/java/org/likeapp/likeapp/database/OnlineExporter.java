@@ -0,0 +1,370 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.database;
+
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.likeapp.likeapp.util.LatencyHistogram;
+import org.likeapp.likeapp.util.Metrics;
+
+/**
+ * Exports the database while it stays open, so that syncs and charts can go on, unlike
+ * {@link DBHelper#exportDB(DBHandler, File)}, which closes it for copying the file.
+ * <p>
+ * A full export is a snapshot made with <code>VACUUM INTO</code> on a separate connection,
+ * which only needs a read transaction and is available since SQLite 3.27 (Android 11).
+ * With older versions the tables are copied row by row. Before Android 15 there is no API for
+ * a deferred read transaction, and the immediate ones would block all writers, so each table
+ * is read by a query of its own and the copy is <b>not</b> a snapshot of a single point in time.
+ * The sample tables are copied first, so that the devices and users they refer to are contained.
+ * <p>
+ * An incremental export merges the samples newer than those of the previous export (the
+ * watermark) and all rows of the tables without a TIMESTAMP column, which are small, into the
+ * previous export, so that only the new samples have to be read. Samples that are fetched later
+ * with older timestamps, and rows deleted in the meantime, are only taken into account by the
+ * next full export.
+ * <p>
+ * The watermarks are returned with the {@link Result} and only stored by
+ * {@link Result#commitWatermarks(SharedPreferences)}, once the export has been copied to its
+ * destination. Merging the same samples again does no harm.
+ */
+public class OnlineExporter {
+    private static final Logger LOG = LoggerFactory.getLogger(OnlineExporter.class);
+    private static final LatencyHistogram EXPORT_LATENCY = Metrics.histogram("db.export");
+
+    private static final String TIMESTAMP_COLUMN = "TIMESTAMP";
+    private static final String WATERMARK_PREFIX = "export_watermark_";
+    private static final String SCHEMA_QUERY = "SELECT type, name, sql FROM sqlite_master WHERE sql NOT NULL AND name NOT LIKE 'sqlite_%' AND name != 'android_metadata'";
+
+    private final SQLiteDatabase mDb;
+
+    /**
+     * The outcome of an export, with the watermarks to be stored once the export is safe.
+     */
+    public static class Result {
+        private final int mSampleCount;
+        private final Map<String, Long> mWatermarks;
+
+        Result(int sampleCount, Map<String, Long> watermarks) {
+            mSampleCount = sampleCount;
+            mWatermarks = watermarks;
+        }
+
+        /**
+         * Returns the number of samples exported, or -1 if they have not been counted, because
+         * the export is a snapshot.
+         */
+        public int getSampleCount() {
+            return mSampleCount;
+        }
+
+        public void commitWatermarks(SharedPreferences watermarks) {
+            SharedPreferences.Editor editor = watermarks.edit();
+            for (Map.Entry<String, Long> entry : mWatermarks.entrySet()) {
+                editor.putLong(WATERMARK_PREFIX + entry.getKey(), entry.getValue());
+            }
+            editor.apply();
+        }
+    }
+
+    /**
+     * @param dbHandler a reader's handler, see GBApplication#acquireReadDB(), which keeps the
+     *                  database from being closed during the export
+     */
+    public OnlineExporter(ReadDBHandler dbHandler) {
+        mDb = dbHandler.getDatabase();
+    }
+
+    /**
+     * Writes a copy of the whole database to the given file.
+     *
+     * @return the result, with the watermarks of the newest samples exported
+     */
+    public Result exportFull(File dest) throws IOException {
+        long start = System.nanoTime();
+        deleteExisting(dest);
+        Result result;
+        if (supportsVacuumInto()) {
+            // taken before the snapshot, newer samples in it are merged again at worst
+            Map<String, Long> newest = getNewestTimestamps();
+            vacuumInto(dest);
+            result = new Result(-1, newest);
+        } else {
+            Map<String, Long> newest = new HashMap<>();
+            int count = copyTables(dest, null, newest);
+            result = new Result(count, newest);
+        }
+        EXPORT_LATENCY.recordSince(start);
+        LOG.info("Exported database to " + dest + " in " + (System.nanoTime() - start) / 1000000 + "ms");
+        return result;
+    }
+
+    /**
+     * Whether the given file is an earlier export of this database, with the same schema version,
+     * that {@link #exportIncremental(File, SharedPreferences)} can add to.
+     */
+    public boolean canExportIncrementally(File export) {
+        if (!export.isFile()) {
+            return false;
+        }
+        try {
+            SQLiteDatabase db = SQLiteDatabase.openDatabase(export.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+            try {
+                return db.getVersion() == mDb.getVersion();
+            } finally {
+                db.close();
+            }
+        } catch (SQLiteException e) {
+            LOG.warn("Unable to open previous export " + export, e);
+            return false;
+        }
+    }
+
+    /**
+     * Merges the samples newer than the watermarks and all other rows into the given
+     * earlier export, see {@link #canExportIncrementally(File)}.
+     *
+     * @return the result, with the number of new samples and their watermarks
+     */
+    public Result exportIncremental(File export, SharedPreferences watermarks) {
+        long start = System.nanoTime();
+        Map<String, Long> from = new HashMap<>();
+        for (String table : getSampleTables()) {
+            from.put(table, watermarks.getLong(WATERMARK_PREFIX + table, Long.MIN_VALUE));
+        }
+        Map<String, Long> newest = new HashMap<>();
+        int count = copyTables(export, from, newest);
+        EXPORT_LATENCY.recordSince(start);
+        LOG.info("Exported " + count + " new samples to " + export + " in " + (System.nanoTime() - start) / 1000000 + "ms");
+        return new Result(count, newest);
+    }
+
+    /**
+     * Whether the database is a file and the SQLite version supports <code>VACUUM INTO</code>.
+     */
+    boolean supportsVacuumInto() {
+        if (!new File(mDb.getPath()).isFile()) {
+            return false;
+        }
+        String version = DatabaseUtils.stringForQuery(mDb, "SELECT sqlite_version()", null);
+        String[] parts = version.split("\\.");
+        try {
+            int major = Integer.parseInt(parts[0]);
+            int minor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            return major > 3 || (major == 3 && minor >= 27);
+        } catch (NumberFormatException e) {
+            LOG.warn("Unexpected SQLite version: " + version);
+            return false;
+        }
+    }
+
+    private void vacuumInto(File dest) {
+        // a connection of its own, the primary connection of the pool would block all writers
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(mDb.getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE | SQLiteDatabase.ENABLE_WRITE_AHEAD_LOGGING);
+        try {
+            db.execSQL("VACUUM INTO " + DatabaseUtils.sqlEscapeString(dest.getAbsolutePath()));
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * Copies the schema, as far as it is missing, and the rows into the given database. The sample
+     * tables are copied first, so that the devices and users they refer to are contained, too.
+     *
+     * @param from the watermark per sample table, or null to copy all samples
+     * @param outNewest receives the newest timestamp of every sample table copied
+     * @return the number of samples copied
+     */
+    private int copyTables(File dest, Map<String, Long> from, Map<String, Long> outNewest) {
+        List<String> sampleTables = getSampleTables();
+        List<String> tables = new ArrayList<>(sampleTables);
+        List<String> indexes = new ArrayList<>();
+        SQLiteDatabase target = SQLiteDatabase.openOrCreateDatabase(dest, null);
+        try {
+            target.beginTransaction();
+            try {
+                Set<String> existing = getSchemaNames(target);
+                try (Cursor cursor = mDb.rawQuery(SCHEMA_QUERY, null)) {
+                    while (cursor.moveToNext()) {
+                        boolean exists = existing.contains(cursor.getString(1));
+                        if ("table".equals(cursor.getString(0))) {
+                            if (!exists) {
+                                target.execSQL(cursor.getString(2));
+                            }
+                            if (!tables.contains(cursor.getString(1))) {
+                                tables.add(cursor.getString(1));
+                            }
+                        } else if (!exists) {
+                            indexes.add(cursor.getString(2));
+                        }
+                    }
+                }
+                int count = 0;
+                for (String table : tables) {
+                    boolean isSampleTable = sampleTables.contains(table);
+                    Long watermark = from != null && isSampleTable ? from.get(table) : null;
+                    int rows = copyRows(table, watermark, isSampleTable, target, outNewest);
+                    if (isSampleTable) {
+                        count += rows;
+                    }
+                }
+                for (String index : indexes) {
+                    target.execSQL(index);
+                }
+                target.setVersion(mDb.getVersion());
+                target.setTransactionSuccessful();
+                return count;
+            } finally {
+                target.endTransaction();
+            }
+        } finally {
+            target.close();
+        }
+    }
+
+    private int copyRows(String table, Long watermark, boolean isSampleTable, SQLiteDatabase target, Map<String, Long> outNewest) {
+        String query = "SELECT * FROM " + quote(table);
+        String[] args = null;
+        if (watermark != null) {
+            query += " WHERE " + TIMESTAMP_COLUMN + " > ?";
+            args = new String[] { String.valueOf(watermark) };
+        }
+        int rows = 0;
+        try (Cursor cursor = mDb.rawQuery(query, args)) {
+            String[] columns = cursor.getColumnNames();
+            int timestampIndex = isSampleTable ? cursor.getColumnIndexOrThrow(TIMESTAMP_COLUMN) : -1;
+            long newest = watermark != null ? watermark : Long.MIN_VALUE;
+            SQLiteStatement insert = target.compileStatement(createInsert(table, columns));
+            try {
+                while (cursor.moveToNext()) {
+                    for (int i = 0; i < columns.length; i++) {
+                        switch (cursor.getType(i)) {
+                            case Cursor.FIELD_TYPE_NULL:
+                                insert.bindNull(i + 1);
+                                break;
+                            case Cursor.FIELD_TYPE_INTEGER:
+                                insert.bindLong(i + 1, cursor.getLong(i));
+                                break;
+                            case Cursor.FIELD_TYPE_FLOAT:
+                                insert.bindDouble(i + 1, cursor.getDouble(i));
+                                break;
+                            case Cursor.FIELD_TYPE_BLOB:
+                                insert.bindBlob(i + 1, cursor.getBlob(i));
+                                break;
+                            default:
+                                insert.bindString(i + 1, cursor.getString(i));
+                                break;
+                        }
+                    }
+                    insert.executeInsert();
+                    if (timestampIndex >= 0) {
+                        newest = Math.max(newest, cursor.getLong(timestampIndex));
+                    }
+                    rows++;
+                }
+            } finally {
+                insert.close();
+            }
+            if (isSampleTable && newest != Long.MIN_VALUE) {
+                outNewest.put(table, newest);
+            }
+        }
+        return rows;
+    }
+
+    private static String createInsert(String table, String[] columns) {
+        StringBuilder sql = new StringBuilder("INSERT OR REPLACE INTO ").append(quote(table)).append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i == 0 ? "" : ",").append(quote(columns[i]));
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        return sql.append(')').toString();
+    }
+
+    /**
+     * Returns the tables with a TIMESTAMP column, i.e. the activity samples of all devices.
+     */
+    private List<String> getSampleTables() {
+        List<String> result = new ArrayList<>();
+        List<String> tables = new ArrayList<>();
+        try (Cursor cursor = mDb.rawQuery("SELECT name FROM sqlite_master WHERE type = 'table' AND name NOT LIKE 'sqlite_%' AND name != 'android_metadata'", null)) {
+            while (cursor.moveToNext()) {
+                tables.add(cursor.getString(0));
+            }
+        }
+        for (String table : tables) {
+            if (DBHelper.existsColumn(table, TIMESTAMP_COLUMN, mDb)) {
+                result.add(table);
+            }
+        }
+        return result;
+    }
+
+    private Map<String, Long> getNewestTimestamps() {
+        Map<String, Long> result = new HashMap<>();
+        for (String table : getSampleTables()) {
+            try (Cursor cursor = mDb.rawQuery("SELECT MAX(" + TIMESTAMP_COLUMN + ") FROM " + quote(table), null)) {
+                if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                    result.put(table, cursor.getLong(0));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Set<String> getSchemaNames(SQLiteDatabase db) {
+        Set<String> result = new HashSet<>();
+        try (Cursor cursor = db.rawQuery(SCHEMA_QUERY, null)) {
+            while (cursor.moveToNext()) {
+                result.add(cursor.getString(1));
+            }
+        }
+        return result;
+    }
+
+    private static String quote(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+
+    private static void deleteExisting(File file) throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to delete " + file.getAbsolutePath());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.database;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.net.Uri;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.JobIntentService;
+import org.likeapp.likeapp.GBApplication;
+import org.likeapp.likeapp.R;
+import org.likeapp.likeapp.util.FileUtils;
+import org.likeapp.likeapp.util.GB;
+import org.likeapp.likeapp.util.GBPrefs;
+import org.likeapp.likeapp.util.Prefs;
+
+/**
+ * Runs the periodic export, which is started by {@link PeriodicExporter}, as a job, because
+ * exporting a large database can take longer than a broadcast receiver may run.
+ * <p>
+ * The database stays open, see {@link OnlineExporter}. In incremental mode, the previous export
+ * is kept in the app's files dir and only the new samples are added to it, except once a day,
+ * when it is replaced by a full export. Either way, the whole export is copied to the export
+ * location, and the watermarks are only advanced once that has succeeded.
+ */
+public class PeriodicExportService extends JobIntentService {
+    private static final Logger LOG = LoggerFactory.getLogger(PeriodicExportService.class);
+    private static final int JOB_ID = 1001;
+    private static final String LAST_FULL_EXPORT = "auto_export_last_full";
+    private static final long FULL_EXPORT_INTERVAL_MILLIS = 24 * 60 * 60 * 1000L;
+
+    public static void enqueueExport(Context context) {
+        enqueueWork(context, PeriodicExportService.class, JOB_ID, new Intent());
+    }
+
+    @Override
+    protected void onHandleWork(@NonNull Intent intent) {
+        LOG.info("Exporting DB");
+        Prefs prefs = GBApplication.getPrefs();
+        String dst = prefs.getString(GBPrefs.AUTO_EXPORT_LOCATION, null);
+        if (dst == null) {
+            LOG.info("Unable to export DB, export location not set");
+            return;
+        }
+        SharedPreferences sharedPrefs = prefs.getPreferences();
+        boolean keepExport = prefs.getBoolean(GBPrefs.AUTO_EXPORT_INCREMENTAL, false);
+        File export = null;
+        try {
+            OnlineExporter.Result result;
+            boolean incremental;
+            try (ReadDBHandler dbHandler = GBApplication.acquireReadDB()) {
+                OnlineExporter exporter = new OnlineExporter(dbHandler);
+                export = new File(getFilesDir(), dbHandler.getHelper().getDatabaseName() + "_export");
+                long lastFullExport = sharedPrefs.getLong(LAST_FULL_EXPORT, 0);
+                incremental = keepExport
+                        && System.currentTimeMillis() - lastFullExport < FULL_EXPORT_INTERVAL_MILLIS
+                        && exporter.canExportIncrementally(export);
+                if (incremental) {
+                    result = exporter.exportIncremental(export, sharedPrefs);
+                } else {
+                    result = exporter.exportFull(export);
+                }
+            }
+            FileUtils.copyFileToURI(this, export, Uri.parse(dst));
+            result.commitWatermarks(sharedPrefs);
+            if (!incremental) {
+                sharedPrefs.edit().putLong(LAST_FULL_EXPORT, System.currentTimeMillis()).apply();
+            }
+        } catch (Exception ex) {
+            GB.updateExportFailedNotification(getString(R.string.notif_export_failed_title), this);
+            LOG.info("Exception while exporting DB: ", ex);
+        } finally {
+            if (export != null && !keepExport && export.exists() && !export.delete()) {
+                LOG.warn("Unable to delete " + export);
+            }
+        }
+    }
+}
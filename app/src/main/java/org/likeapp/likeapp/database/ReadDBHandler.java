@@ -0,0 +1,41 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import org.likeapp.likeapp.entities.DaoMaster;
+import org.likeapp.likeapp.entities.DaoSession;
+
+/**
+ * Provides lowlevel access to the database, without the operations that change its
+ * lifecycle, see {@link DBHandler}.
+ */
+public interface ReadDBHandler extends AutoCloseable {
+    SQLiteOpenHelper getHelper();
+
+    /**
+     * Releases the DB handler.
+     */
+    void close() throws Exception;
+
+    SQLiteDatabase getDatabase();
+
+    DaoMaster getDaoMaster();
+    DaoSession getDaoSession();
+}
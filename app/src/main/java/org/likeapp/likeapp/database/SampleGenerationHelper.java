@@ -0,0 +1,106 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.likeapp.likeapp.GBApplication;
+import org.likeapp.likeapp.entities.DaoSession;
+import org.likeapp.likeapp.entities.SampleGenerationDao;
+
+/**
+ * Maintains the {@link org.likeapp.likeapp.entities.SampleGeneration} of the devices, which
+ * guards the caches derived from the samples against concurrent writes of the samples.
+ * <p>
+ * Writers increment the generation in the same transaction as they write the samples.
+ * Readers read it before reading the samples, and store what they computed from them only
+ * through the writer session, in a transaction that sees the generation unchanged, since a
+ * transaction of the writer session cannot run while the one of another writer is ongoing.
+ * <p>
+ * The generation is accessed with plain SQL, bypassing the identity scope of the writer
+ * session, which would keep an incremented value of a transaction that was rolled back.
+ */
+class SampleGenerationHelper {
+    private static final String SELECT = "SELECT " + SampleGenerationDao.Properties.Generation.columnName
+            + " FROM " + SampleGenerationDao.TABLENAME
+            + " WHERE " + SampleGenerationDao.Properties.DeviceId.columnName + " = ?";
+    private static final String INSERT = "INSERT OR IGNORE INTO " + SampleGenerationDao.TABLENAME
+            + " (" + SampleGenerationDao.Properties.DeviceId.columnName + ", " + SampleGenerationDao.Properties.Generation.columnName + ")"
+            + " VALUES (?, 0)";
+    private static final String INCREMENT = "UPDATE " + SampleGenerationDao.TABLENAME
+            + " SET " + SampleGenerationDao.Properties.Generation.columnName + " = " + SampleGenerationDao.Properties.Generation.columnName + " + 1"
+            + " WHERE " + SampleGenerationDao.Properties.DeviceId.columnName + " = ?";
+
+    /**
+     * Returns the current generation of the given device's samples, 0 if they were never changed.
+     */
+    static long get(DaoSession session, long deviceId) {
+        Cursor cursor = session.getDatabase().rawQuery(SELECT, new String[]{String.valueOf(deviceId)});
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Increments the generation of the given device's samples. Must be called in the
+     * transaction writing the samples.
+     */
+    static void increment(DaoSession session, long deviceId) {
+        SQLiteDatabase db = session.getDatabase();
+        Object[] args = new Object[]{deviceId};
+        db.execSQL(INSERT, args);
+        db.execSQL(INCREMENT, args);
+    }
+
+    /**
+     * Runs the given store operation in a transaction of the writer session, if the
+     * generation of the device's samples is still the given one. The operation is skipped
+     * if a writer holds the database, so that readers never wait for the writers; the
+     * data is computed again on the next request then.
+     *
+     * @return whether the operation was run
+     */
+    static boolean storeIfUnchanged(final long deviceId, final long generation, final StoreOperation operation) {
+        DBHandler writer = GBApplication.tryAcquireDB();
+        if (writer == null) {
+            return false;
+        }
+        try {
+            final DaoSession session = writer.getDaoSession();
+            final boolean[] stored = new boolean[1];
+            session.runInTx(new Runnable() {
+                @Override
+                public void run() {
+                    if (get(session, deviceId) == generation) {
+                        operation.store(session);
+                        stored[0] = true;
+                    }
+                }
+            });
+            return stored[0];
+        } finally {
+            GBApplication.releaseDB();
+        }
+    }
+
+    interface StoreOperation {
+        void store(DaoSession writerSession);
+    }
+}
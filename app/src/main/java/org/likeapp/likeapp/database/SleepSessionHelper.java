@@ -0,0 +1,249 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import de.greenrobot.dao.query.QueryBuilder;
+import org.likeapp.likeapp.activities.charts.SleepAnalysis;
+import org.likeapp.likeapp.activities.charts.SleepAnalysis.SleepSession;
+import org.likeapp.likeapp.devices.SampleProvider;
+import org.likeapp.likeapp.entities.DaoSession;
+import org.likeapp.likeapp.entities.DetectedSleepSession;
+import org.likeapp.likeapp.entities.DetectedSleepSessionDao;
+import org.likeapp.likeapp.entities.Device;
+import org.likeapp.likeapp.entities.SleepDetectionState;
+import org.likeapp.likeapp.entities.SleepDetectionStateDao;
+import org.likeapp.likeapp.impl.GBDevice;
+import org.likeapp.likeapp.model.ActivitySample;
+
+/**
+ * Maintains the {@link DetectedSleepSession} entities. New samples are analyzed incrementally
+ * whenever sessions are requested, continuing from the {@link SleepDetectionState} stored for
+ * the device, so that every sample is analyzed only once. Writing samples that are older than
+ * the analyzed ones rewinds the analysis to a point before them.
+ * <p>
+ * Sessions are requested by readers, concurrently with the writers invalidating them. The
+ * results of an analysis are therefore only stored if the samples did not change meanwhile,
+ * see {@link SampleGenerationHelper}.
+ */
+public class SleepSessionHelper {
+    private static final Logger LOG = LoggerFactory.getLogger(SleepSessionHelper.class);
+
+    /**
+     * Samples are analyzed in chunks of this length, so that the first analysis of a long
+     * history does not need to load all samples at once.
+     */
+    private static final int CHUNK_SECONDS = 7 * 24 * 60 * 60;
+
+    /**
+     * Serializes the analysis of concurrent readers. It is not taken by #invalidate(), since
+     * writers call that from within their transactions.
+     */
+    private static final Object UPDATE_LOCK = new Object();
+
+    /**
+     * Returns the sleep sessions ending within the given time span, ordered by their start,
+     * after analyzing all samples that are new since the last call. The session that is still
+     * open after the last sample is included as well.
+     *
+     * @param timestampFrom the start of the time span, in seconds since epoch
+     * @param timestampTo   the end of the time span (inclusive), in seconds since epoch
+     */
+    public static List<SleepSession> getSleepSessions(SampleProvider<?> provider, GBDevice gbDevice, DaoSession session, int timestampFrom, int timestampTo) {
+        List<SleepSession> result = new ArrayList<>();
+        Device dbDevice = DBHelper.findDevice(gbDevice, session);
+        if (dbDevice == null) {
+            return result;
+        }
+        SleepAnalysis.State state;
+        List<SleepSession> unstored = new ArrayList<>();
+        synchronized (UPDATE_LOCK) {
+            state = update(provider, session, dbDevice.getId(), unstored);
+        }
+
+        QueryBuilder<DetectedSleepSession> qb = session.getDetectedSleepSessionDao().queryBuilder();
+        qb.where(DetectedSleepSessionDao.Properties.DeviceId.eq(dbDevice.getId()),
+                DetectedSleepSessionDao.Properties.SleepEnd.ge(timestampFrom),
+                DetectedSleepSessionDao.Properties.SleepEnd.le(timestampTo))
+                .orderAsc(DetectedSleepSessionDao.Properties.SleepStart);
+        for (DetectedSleepSession detected : qb.build().list()) {
+            result.add(new SleepSession(toDate(detected.getSleepStart()), toDate(detected.getSleepEnd()),
+                    detected.getLightSleepSeconds(), detected.getDeepSleepSeconds()));
+        }
+        // newer than all stored ones
+        for (SleepSession sleepSession : unstored) {
+            int sleepEnd = toTimestamp(sleepSession.getSleepEnd());
+            if (sleepEnd >= timestampFrom && sleepEnd <= timestampTo) {
+                result.add(sleepSession);
+            }
+        }
+
+        SleepSession openSession = new SleepAnalysis().getOpenSession(state);
+        if (openSession != null && state.getSleepEnd() >= timestampFrom && state.getSleepEnd() <= timestampTo) {
+            result.add(openSession);
+        }
+        return result;
+    }
+
+    /**
+     * Must be called whenever samples starting at the given timestamp are added or changed.
+     * If the analysis has already passed that timestamp, the sessions that could be affected
+     * are deleted and the analysis restarts after the end of the last session before them.
+     * Must be called in the same transaction of the writer session as the samples are written.
+     */
+    public static void invalidate(final DaoSession session, final long deviceId, final int timestampFrom) {
+        // in a transaction, so that the state cannot be updated between reading and replacing it
+        session.runInTx(new Runnable() {
+            @Override
+            public void run() {
+                SampleGenerationHelper.increment(session, deviceId);
+                invalidateInTx(session, deviceId, timestampFrom);
+            }
+        });
+    }
+
+    private static void invalidateInTx(DaoSession session, long deviceId, int timestampFrom) {
+        SleepDetectionStateDao stateDao = session.getSleepDetectionStateDao();
+        SleepDetectionState stored = stateDao.load(deviceId);
+        if (stored == null || stored.getLastTimestamp() < timestampFrom) {
+            // only new samples, they will be analyzed on the next request
+            return;
+        }
+
+        // The last session ending before the changed samples may have been closed only after
+        // them (or extended by them), but the one before it was closed before that session started.
+        DetectedSleepSessionDao sessionDao = session.getDetectedSleepSessionDao();
+        QueryBuilder<DetectedSleepSession> qb = sessionDao.queryBuilder();
+        qb.where(DetectedSleepSessionDao.Properties.DeviceId.eq(deviceId),
+                DetectedSleepSessionDao.Properties.SleepEnd.lt(timestampFrom))
+                .orderDesc(DetectedSleepSessionDao.Properties.SleepEnd)
+                .limit(2);
+        List<DetectedSleepSession> previous = qb.build().list();
+
+        if (previous.size() < 2) {
+            sessionDao.queryBuilder()
+                    .where(DetectedSleepSessionDao.Properties.DeviceId.eq(deviceId))
+                    .buildDelete().executeDeleteWithoutDetachingEntities();
+            stateDao.deleteByKey(deviceId);
+        } else {
+            int restartAfter = previous.get(1).getSleepEnd();
+            sessionDao.queryBuilder()
+                    .where(DetectedSleepSessionDao.Properties.DeviceId.eq(deviceId),
+                            DetectedSleepSessionDao.Properties.SleepEnd.gt(restartAfter))
+                    .buildDelete().executeDeleteWithoutDetachingEntities();
+            // only awake samples follow the end of a closed session, so a fresh state is equivalent
+            stateDao.insertOrReplace(toEntity(deviceId, new SleepAnalysis.State(restartAfter,
+                    SleepAnalysis.State.NONE, SleepAnalysis.State.NONE, 0, 0, 0)));
+        }
+        sessionDao.detachAll();
+    }
+
+    /**
+     * Continues the analysis with the new samples and stores its results.
+     *
+     * @param unstored receives the completed sessions that could not be stored
+     */
+    private static SleepAnalysis.State update(SampleProvider<?> provider, DaoSession session, final long deviceId, List<SleepSession> unstored) {
+        // read before the samples, so that any change of them after this point changes it
+        long generation = SampleGenerationHelper.get(session, deviceId);
+        SleepDetectionState stored = session.getSleepDetectionStateDao().load(deviceId);
+        final SleepAnalysis.State state = stored != null ? toState(stored) : new SleepAnalysis.State();
+
+        int from;
+        if (state.getLastTimestamp() != SleepAnalysis.State.NONE) {
+            from = state.getLastTimestamp() + 1;
+        } else {
+            ActivitySample first = provider.getFirstActivitySample();
+            if (first == null) {
+                return state;
+            }
+            from = first.getTimestamp();
+        }
+        int now = (int) (System.currentTimeMillis() / 1000);
+        if (from > now) {
+            return state;
+        }
+
+        SleepAnalysis analysis = new SleepAnalysis();
+        final List<SleepSession> completed = new ArrayList<>();
+        for (long chunkStart = from; chunkStart <= now; chunkStart += CHUNK_SECONDS) {
+            int chunkEnd = (int) Math.min(now, chunkStart + CHUNK_SECONDS - 1);
+            analysis.calculateSleepSessions(state, provider.getAllActivitySampleBatch((int) chunkStart, chunkEnd), completed);
+        }
+        if (stored != null && stored.getLastTimestamp() == state.getLastTimestamp()) {
+            // no new samples
+            return state;
+        }
+
+        boolean done = SampleGenerationHelper.storeIfUnchanged(deviceId, generation, new SampleGenerationHelper.StoreOperation() {
+            @Override
+            public void store(DaoSession writerSession) {
+                DetectedSleepSessionDao sessionDao = writerSession.getDetectedSleepSessionDao();
+                for (SleepSession sleepSession : completed) {
+                    DetectedSleepSession detected = new DetectedSleepSession();
+                    detected.setDeviceId(deviceId);
+                    detected.setSleepStart(toTimestamp(sleepSession.getSleepStart()));
+                    detected.setSleepEnd(toTimestamp(sleepSession.getSleepEnd()));
+                    detected.setLightSleepSeconds((int) sleepSession.getLightSleepDuration());
+                    detected.setDeepSleepSeconds((int) sleepSession.getDeepSleepDuration());
+                    sessionDao.insertOrReplace(detected);
+                }
+                writerSession.getSleepDetectionStateDao().insertOrReplace(toEntity(deviceId, state));
+            }
+        });
+        if (!done) {
+            // samples were changed during the analysis or the database is busy, the next request starts over
+            unstored.addAll(completed);
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("analyzed sleep from " + from + " to " + state.getLastTimestamp() + ", " + completed.size() + " new sessions");
+        }
+        return state;
+    }
+
+    private static SleepAnalysis.State toState(SleepDetectionState stored) {
+        return new SleepAnalysis.State(stored.getLastTimestamp(), stored.getSleepStart(), stored.getSleepEnd(),
+                stored.getLightSleepSeconds(), stored.getDeepSleepSeconds(), stored.getWakeSeconds());
+    }
+
+    private static SleepDetectionState toEntity(long deviceId, SleepAnalysis.State state) {
+        SleepDetectionState stored = new SleepDetectionState();
+        stored.setDeviceId(deviceId);
+        stored.setLastTimestamp(state.getLastTimestamp());
+        stored.setSleepStart(state.getSleepStart());
+        stored.setSleepEnd(state.getSleepEnd());
+        stored.setLightSleepSeconds((int) state.getLightSleepDuration());
+        stored.setDeepSleepSeconds((int) state.getDeepSleepDuration());
+        // only compared against the maximum wake phase, avoid overflowing after long gaps
+        stored.setWakeSeconds((int) Math.min(state.getWakeDuration(), Integer.MAX_VALUE));
+        return stored;
+    }
+
+    private static Date toDate(int timestamp) {
+        return new Date(timestamp * 1000L);
+    }
+
+    private static int toTimestamp(Date date) {
+        return (int) (date.getTime() / 1000);
+    }
+}
@@ -71,7 +71,7 @@ public abstract class AbstractDeviceCoordinator implements DeviceCoordinator {
     public void deleteDevice(final GBDevice gbDevice) throws GBException {
         LOG.info("will try to delete device: " + gbDevice.getName());
         if (gbDevice.isConnected() || gbDevice.isConnecting()) {
-            GBApplication.deviceService().disconnect();
+            GBApplication.deviceService().forDevice(gbDevice).disconnect();
         }
         Prefs prefs = getPrefs();
         String lastDevice = prefs.getPreferences().getString("last_device_address","");
@@ -179,4 +179,9 @@ public abstract class AbstractDeviceCoordinator implements DeviceCoordinator {
     public int[] getSupportedDeviceSpecificSettings(GBDevice device) {
         return null;
     }
+
+    @Override
+    public int getMaxPipelinedWrites(GBDevice device) {
+        return 1;
+    }
 }
@@ -17,6 +17,8 @@
     along with this program.  If not, see <http://www.gnu.org/licenses/>. */
 package org.likeapp.likeapp.devices;
 
+import android.database.Cursor;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -28,11 +30,17 @@ import de.greenrobot.dao.Property;
 import de.greenrobot.dao.query.QueryBuilder;
 import de.greenrobot.dao.query.WhereCondition;
 import org.likeapp.likeapp.database.DBHelper;
+import org.likeapp.likeapp.database.DailyActivityRollupHelper;
+import org.likeapp.likeapp.database.SleepSessionHelper;
 import org.likeapp.likeapp.entities.AbstractActivitySample;
 import org.likeapp.likeapp.entities.DaoSession;
 import org.likeapp.likeapp.entities.Device;
 import org.likeapp.likeapp.impl.GBDevice;
 import org.likeapp.likeapp.model.ActivityKind;
+import org.likeapp.likeapp.model.ActivitySample;
+import org.likeapp.likeapp.model.ActivitySampleBatch;
+import org.likeapp.likeapp.util.LatencyHistogram;
+import org.likeapp.likeapp.util.Metrics;
 
 /**
  * Base class for all sample providers. A Sample provider is device specific and provides
@@ -41,6 +49,11 @@ import org.likeapp.likeapp.model.ActivityKind;
  */
 public abstract class AbstractSampleProvider<T extends AbstractActivitySample> implements SampleProvider<T> {
     private static final WhereCondition[] NO_CONDITIONS = new WhereCondition[0];
+    private static final String SAMPLE_RAW_INTENSITY = "rawIntensity";
+    private static final String SAMPLE_STEPS = "steps";
+    private static final String SAMPLE_HEART_RATE = "heartRate";
+    private static final LatencyHistogram SAMPLE_BATCH_LATENCY = Metrics.histogram("db.sample_batch");
+
     private final DaoSession mSession;
     private final GBDevice mDevice;
 
@@ -62,6 +75,75 @@ public abstract class AbstractSampleProvider<T extends AbstractActivitySample> i
         return getGBActivitySamples(timestamp_from, timestamp_to, ActivityKind.TYPE_ALL);
     }
 
+    /**
+     * Reads the samples straight from a database cursor into the batch, without creating
+     * sample entities. This relies on the sample getters returning the plain column values;
+     * providers that compute or post-process values in their samples need to override this,
+     * e.g. by returning {@link #getActivitySampleBatchFromEntities(int, int)}.
+     */
+    @NonNull
+    @Override
+    public ActivitySampleBatch getAllActivitySampleBatch(int timestamp_from, int timestamp_to) {
+        Device dbDevice = DBHelper.findDevice(getDevice(), getSession());
+        if (dbDevice == null) {
+            // no device, no samples
+            return new ActivitySampleBatch(this, 0);
+        }
+        AbstractDao<T, ?> dao = getSampleDao();
+        String timestampColumn = getTimestampSampleProperty().columnName;
+        String sql = "SELECT " + timestampColumn
+                + ", " + getColumnOrNotMeasured(getRawKindSampleProperty())
+                + ", " + getColumnOrNotMeasured(findSampleProperty(SAMPLE_RAW_INTENSITY))
+                + ", " + getColumnOrNotMeasured(findSampleProperty(SAMPLE_STEPS))
+                + ", " + getColumnOrNotMeasured(findSampleProperty(SAMPLE_HEART_RATE))
+                + " FROM " + dao.getTablename()
+                + " WHERE " + getDeviceIdentifierSampleProperty().columnName + " = ?"
+                + " AND " + timestampColumn + " >= ? AND " + timestampColumn + " <= ?"
+                + " ORDER BY " + timestampColumn;
+        String[] args = new String[] {
+                String.valueOf(dbDevice.getId()),
+                String.valueOf(timestamp_from),
+                String.valueOf(timestamp_to)
+        };
+        try (Cursor cursor = dao.getDatabase().rawQuery(sql, args)) {
+            ActivitySampleBatch batch = new ActivitySampleBatch(this, cursor.getCount());
+            while (cursor.moveToNext()) {
+                batch.add(cursor.getInt(0), cursor.getInt(1), cursor.getInt(2), cursor.getInt(3), cursor.getInt(4));
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * Creates the batch from the sample entities returned by {@link #getAllActivitySamples(int, int)}.
+     */
+    @NonNull
+    protected ActivitySampleBatch getActivitySampleBatchFromEntities(int timestamp_from, int timestamp_to) {
+        List<T> samples = getAllActivitySamples(timestamp_from, timestamp_to);
+        ActivitySampleBatch batch = new ActivitySampleBatch(this, samples.size());
+        for (T sample : samples) {
+            batch.add(sample);
+        }
+        return batch;
+    }
+
+    @Nullable
+    private Property findSampleProperty(String name) {
+        for (Property property : getSampleDao().getProperties()) {
+            if (name.equals(property.name)) {
+                return property;
+            }
+        }
+        return null;
+    }
+
+    private static String getColumnOrNotMeasured(@Nullable Property property) {
+        if (property == null) {
+            return String.valueOf(ActivitySample.NOT_MEASURED);
+        }
+        return property.columnName;
+    }
+
     @Override
     public List<T> getActivitySamples(int timestamp_from, int timestamp_to) {
         if (getRawKindSampleProperty() != null) {
@@ -81,18 +163,65 @@ public abstract class AbstractSampleProvider<T extends AbstractActivitySample> i
     }
 
     @Override
-    public void addGBActivitySample(T activitySample) {
-        getSampleDao().insertOrReplace(activitySample);
+    public void addGBActivitySample(final T activitySample) {
+        getSession().runInTx(new Runnable() {
+            @Override
+            public void run() {
+                getSampleDao().insertOrReplace(activitySample);
+                DailyActivityRollupHelper.update(AbstractSampleProvider.this, getSession(), activitySample.getDeviceId(),
+                        activitySample.getTimestamp(), activitySample.getTimestamp());
+                SleepSessionHelper.invalidate(getSession(), activitySample.getDeviceId(), activitySample.getTimestamp());
+            }
+        });
     }
 
     @Override
-    public void addGBActivitySamples(T[] activitySamples) {
-        getSampleDao().insertOrReplaceInTx(activitySamples);
+    public void addGBActivitySamples(final T[] activitySamples) {
+        long startNanos = System.nanoTime();
+        getSession().runInTx(new Runnable() {
+            @Override
+            public void run() {
+                getSampleDao().insertOrReplaceInTx(activitySamples);
+                updateDerivedData(activitySamples);
+            }
+        });
+        SAMPLE_BATCH_LATENCY.recordSince(startNanos);
+        Metrics.counter("db.samples_written").addAndGet(activitySamples.length);
+    }
+
+    /**
+     * Updates the stored daily rollups and drops the sleep sessions affected by the given
+     * samples, must be called in the transaction writing them.
+     */
+    protected void updateDerivedData(T[] activitySamples) {
+        if (activitySamples.length == 0) {
+            return;
+        }
+        long deviceId = activitySamples[0].getDeviceId();
+        int minTimestamp = Integer.MAX_VALUE;
+        int maxTimestamp = Integer.MIN_VALUE;
+        for (T sample : activitySamples) {
+            minTimestamp = Math.min(minTimestamp, sample.getTimestamp());
+            maxTimestamp = Math.max(maxTimestamp, sample.getTimestamp());
+        }
+        DailyActivityRollupHelper.update(this, getSession(), deviceId, minTimestamp, maxTimestamp);
+        SleepSessionHelper.invalidate(getSession(), deviceId, minTimestamp);
     }
 
     @Nullable
     @Override
     public T getLatestActivitySample() {
+        return getOutermostActivitySample(true);
+    }
+
+    @Nullable
+    @Override
+    public T getFirstActivitySample() {
+        return getOutermostActivitySample(false);
+    }
+
+    @Nullable
+    private T getOutermostActivitySample(boolean latest) {
         QueryBuilder<T> qb = getSampleDao().queryBuilder();
         Device dbDevice = DBHelper.findDevice(getDevice(), getSession());
         if (dbDevice == null) {
@@ -100,7 +229,13 @@ public abstract class AbstractSampleProvider<T extends AbstractActivitySample> i
             return null;
         }
         Property deviceProperty = getDeviceIdentifierSampleProperty();
-        qb.where(deviceProperty.eq(dbDevice.getId())).orderDesc(getTimestampSampleProperty()).limit(1);
+        qb.where(deviceProperty.eq(dbDevice.getId()));
+        if (latest) {
+            qb.orderDesc(getTimestampSampleProperty());
+        } else {
+            qb.orderAsc(getTimestampSampleProperty());
+        }
+        qb.limit(1);
         List<T> samples = qb.build().list();
         if (samples.isEmpty()) {
             return null;
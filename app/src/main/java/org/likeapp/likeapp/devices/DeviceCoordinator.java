@@ -293,4 +293,11 @@ public interface DeviceCoordinator {
      * Indicates which device specific settings the device supports (not per device type or family, but unique per device).
      */
     int[] getSupportedDeviceSpecificSettings(GBDevice device);
+
+    /**
+     * Returns how many writes without response may be in flight at the same time
+     * when talking to the given device. A value of 1 means every write waits for
+     * its result before the next action is run.
+     */
+    int getMaxPipelinedWrites(GBDevice device);
 }
@@ -21,6 +21,7 @@ package org.likeapp.likeapp.devices;
 import android.net.Uri;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import org.likeapp.likeapp.model.Alarm;
@@ -90,6 +91,13 @@ public interface EventHandler {
 
     void onDeleteCalendarEvent(byte type, long id);
 
+    /**
+     * Deletes and then adds the given calendar events, so that devices can send all changes
+     * of a calendar sync at once. Changed events are contained in both lists.
+     * Only the type and id of the deleted events are set.
+     */
+    void onUpdateCalendarEvents(List<CalendarEventSpec> deletedEvents, List<CalendarEventSpec> addedEvents);
+
     /**
      * Sets the given option in the device, typically with values from the preferences.
      * The config name is device specific.
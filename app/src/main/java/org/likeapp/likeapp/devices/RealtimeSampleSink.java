@@ -0,0 +1,188 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.devices;
+
+import android.content.Context;
+import android.content.Intent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+import org.likeapp.likeapp.GBApplication;
+import org.likeapp.likeapp.database.DBHandler;
+import org.likeapp.likeapp.database.DBHelper;
+import org.likeapp.likeapp.entities.AbstractActivitySample;
+import org.likeapp.likeapp.entities.DaoSession;
+import org.likeapp.likeapp.impl.GBDevice;
+import org.likeapp.likeapp.model.ActivitySample;
+import org.likeapp.likeapp.model.DeviceService;
+
+/**
+ * Receives the samples measured during live activity tracking, usually one per second.
+ * Every sample is published right away with {@link DeviceService#ACTION_REALTIME_SAMPLES}
+ * and kept in memory for a while, see {@link #getRecentSamples(GBDevice)}, but the samples
+ * are only stored in batches, when enough of them have been collected, some time has
+ * passed, or {@link #flush()} is called, e.g. when tracking is stopped or the device
+ * disconnects.
+ *
+ * @param <T> the sample type
+ */
+public abstract class RealtimeSampleSink<T extends AbstractActivitySample> {
+    private static final Logger LOG = LoggerFactory.getLogger(RealtimeSampleSink.class);
+
+    private static final int FLUSH_SAMPLE_COUNT = 60;
+    private static final long FLUSH_INTERVAL_MILLIS = 60000;
+    /**
+     * About 15 minutes of samples at one per second.
+     */
+    private static final int HISTORY_CAPACITY = 900;
+
+    private static final ConcurrentMap<String, RealtimeSampleSink<?>> SINKS = new ConcurrentHashMap<>();
+
+    private final GBDevice mDevice;
+    private final Context mContext;
+
+    private final List<T> mPending = new ArrayList<>();
+    private long mFirstPendingMillis = -1;
+    private final ActivitySample[] mHistory = new ActivitySample[HISTORY_CAPACITY];
+    private int mHistoryStart;
+    private int mHistorySize;
+
+    // resolved on the first flush, accessed with the database lock held
+    private Long mUserId;
+    private Long mDeviceId;
+
+    protected RealtimeSampleSink(GBDevice device, Context context) {
+        mDevice = device;
+        mContext = context;
+        SINKS.put(device.getAddress(), this);
+    }
+
+    public GBDevice getDevice() {
+        return mDevice;
+    }
+
+    protected abstract AbstractSampleProvider<T> createSampleProvider(DaoSession session);
+
+    /**
+     * Queues the given sample to be stored and publishes it.
+     *
+     * @param sample the sample to store, its device and user are set when it is stored
+     * @param published the sample to publish, may be a different one if some values must
+     *                  not be stored, e.g. steps that are also part of the regular samples
+     */
+    public void add(T sample, ActivitySample published) {
+        boolean flush;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (mFirstPendingMillis < 0) {
+                mFirstPendingMillis = now;
+            }
+            mPending.add(sample);
+            mHistory[(mHistoryStart + mHistorySize) % HISTORY_CAPACITY] = published;
+            if (mHistorySize < HISTORY_CAPACITY) {
+                mHistorySize++;
+            } else {
+                mHistoryStart = (mHistoryStart + 1) % HISTORY_CAPACITY;
+            }
+            flush = mPending.size() >= FLUSH_SAMPLE_COUNT || now - mFirstPendingMillis >= FLUSH_INTERVAL_MILLIS;
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("realtime sample: " + published);
+        }
+        Intent intent = new Intent(DeviceService.ACTION_REALTIME_SAMPLES)
+                .putExtra(DeviceService.EXTRA_REALTIME_SAMPLE, published);
+        LocalBroadcastManager.getInstance(mContext).sendBroadcast(intent);
+
+        if (flush) {
+            flush();
+        }
+    }
+
+    /**
+     * Stores all queued samples in a single transaction.
+     */
+    public void flush() {
+        final List<T> samples;
+        synchronized (this) {
+            if (mPending.isEmpty()) {
+                return;
+            }
+            samples = new ArrayList<>(mPending);
+            mPending.clear();
+            mFirstPendingMillis = -1;
+        }
+        try (DBHandler handler = GBApplication.acquireDB()) {
+            DaoSession session = handler.getDaoSession();
+            if (mDeviceId == null) {
+                mUserId = DBHelper.getUser(session).getId();
+                mDeviceId = DBHelper.getDevice(mDevice, session).getId();
+            }
+            @SuppressWarnings("unchecked")
+            T[] array = (T[]) Array.newInstance(samples.get(0).getClass(), samples.size());
+            for (int i = 0; i < array.length; i++) {
+                array[i] = samples.get(i);
+                array[i].setDeviceId(mDeviceId);
+                array[i].setUserId(mUserId);
+            }
+            createSampleProvider(session).addGBActivitySamples(array);
+            LOG.debug("stored " + array.length + " realtime samples");
+        } catch (Exception e) {
+            LOG.warn("Unable to store " + samples.size() + " realtime samples", e);
+        }
+    }
+
+    /**
+     * Stores the queued samples and stops publishing the recent ones.
+     */
+    public void close() {
+        flush();
+        SINKS.remove(mDevice.getAddress(), this);
+    }
+
+    /**
+     * Returns the samples published during the last minutes, oldest first.
+     */
+    public synchronized List<ActivitySample> getRecentSamples() {
+        List<ActivitySample> result = new ArrayList<>(mHistorySize);
+        for (int i = 0; i < mHistorySize; i++) {
+            result.add(mHistory[(mHistoryStart + i) % HISTORY_CAPACITY]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the realtime samples recently published for the given device, oldest first,
+     * without accessing the database.
+     */
+    public static List<ActivitySample> getRecentSamples(GBDevice device) {
+        RealtimeSampleSink<?> sink = device != null ? SINKS.get(device.getAddress()) : null;
+        if (sink == null) {
+            return Collections.emptyList();
+        }
+        return sink.getRecentSamples();
+    }
+}
@@ -22,6 +22,7 @@ import java.util.List;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import org.likeapp.likeapp.entities.AbstractActivitySample;
+import org.likeapp.likeapp.model.ActivitySampleBatch;
 
 /**
  * Interface to retrieve samples from the database, and also create and add samples to the database.
@@ -53,6 +54,17 @@ public interface SampleProvider<T extends AbstractActivitySample> {
     @NonNull
     List<T> getAllActivitySamples(int timestamp_from, int timestamp_to);
 
+    /**
+     * Returns all samples, of any type, within the given time span as a columnar batch,
+     * ordered by timestamp. Unlike {@link #getAllActivitySamples(int, int)}, this does
+     * not need to create an object per sample.
+     * @param timestamp_from the start timestamp
+     * @param timestamp_to the end timestamp
+     * @return the batch of samples of any type
+     */
+    @NonNull
+    ActivitySampleBatch getAllActivitySampleBatch(int timestamp_from, int timestamp_to);
+
     /**
      * Returns the list of all samples that represent user "activity", within
      * the given time span. This excludes samples of type sleep, for example.
@@ -99,4 +111,11 @@ public interface SampleProvider<T extends AbstractActivitySample> {
      */
     @Nullable
     T getLatestActivitySample();
+
+    /**
+     * Returns the activity sample with the lowest timestamp. or null if none
+     * @return the first sample or null
+     */
+    @Nullable
+    T getFirstActivitySample();
 }
@@ -33,6 +33,7 @@ import org.likeapp.likeapp.entities.Device;
 import org.likeapp.likeapp.impl.GBDevice;
 import org.likeapp.likeapp.impl.GBDeviceCandidate;
 import org.likeapp.likeapp.model.ActivityKind;
+import org.likeapp.likeapp.model.ActivitySampleBatch;
 import org.likeapp.likeapp.model.DeviceType;
 
 public class UnknownDeviceCoordinator extends AbstractDeviceCoordinator {
@@ -59,6 +60,11 @@ public class UnknownDeviceCoordinator extends AbstractDeviceCoordinator {
             return null;
         }
 
+        @Override
+        public ActivitySampleBatch getAllActivitySampleBatch(int timestamp_from, int timestamp_to) {
+            return new ActivitySampleBatch(this, 0);
+        }
+
         @Override
         public List getActivitySamples(int timestamp_from, int timestamp_to) {
             return null;
@@ -87,6 +93,12 @@ public class UnknownDeviceCoordinator extends AbstractDeviceCoordinator {
         public AbstractActivitySample getLatestActivitySample() {
             return null;
         }
+
+        @Nullable
+        @Override
+        public AbstractActivitySample getFirstActivitySample() {
+            return null;
+        }
     }
 
     public UnknownDeviceCoordinator() {
@@ -40,6 +40,7 @@ import org.likeapp.likeapp.entities.HPlusHealthActivityOverlayDao;
 import org.likeapp.likeapp.entities.HPlusHealthActivitySample;
 import org.likeapp.likeapp.entities.HPlusHealthActivitySampleDao;
 import org.likeapp.likeapp.impl.GBDevice;
+import org.likeapp.likeapp.model.ActivitySampleBatch;
 import org.likeapp.likeapp.model.ActivityKind;
 import org.likeapp.likeapp.model.ActivitySample;
 import org.likeapp.likeapp.service.devices.hplus.HPlusDataRecord;
@@ -56,6 +57,13 @@ public class HPlusHealthSampleProvider extends AbstractSampleProvider<HPlusHealt
         mDevice = device;
     }
 
+    @NonNull
+    @Override
+    public ActivitySampleBatch getAllActivitySampleBatch(int timestamp_from, int timestamp_to) {
+        // activity overlays are applied to the sample entities
+        return getActivitySampleBatchFromEntities(timestamp_from, timestamp_to);
+    }
+
     public int normalizeType(int rawType) {
         switch (rawType) {
             case HPlusDataRecord.TYPE_DAY_SLOT:
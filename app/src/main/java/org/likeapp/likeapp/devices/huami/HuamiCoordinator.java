@@ -126,6 +126,11 @@ public abstract class HuamiCoordinator extends AbstractDeviceCoordinator {
         return new int[]{R.xml.devicesettings_pairingkey};
     }
 
+    @Override
+    public int getMaxPipelinedWrites(GBDevice device) {
+        return 4;
+    }
+
     @Override
     public SampleProvider<? extends AbstractActivitySample> getSampleProvider(GBDevice device, DaoSession session) {
         return new MiBand2SampleProvider(device, session);
@@ -26,6 +26,7 @@ import org.likeapp.likeapp.devices.huami.HuamiFWHelper;
 import org.likeapp.likeapp.service.devices.huami.amazfitbip.AmazfitBipLiteFirmwareInfo;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class AmazfitBipLiteFWHelper extends HuamiFWHelper
 {
@@ -36,8 +37,8 @@ public class AmazfitBipLiteFWHelper extends HuamiFWHelper
 
     @NonNull
     @Override
-    protected void determineFirmwareInfo(byte[] wholeFirmwareBytes) {
-        firmwareInfo = new AmazfitBipLiteFirmwareInfo (wholeFirmwareBytes);
+    protected void determineFirmwareInfo(ByteBuffer wholeFirmware) {
+        firmwareInfo = new AmazfitBipLiteFirmwareInfo (wholeFirmware);
         if (!firmwareInfo.isHeaderValid()) {
             throw new IllegalArgumentException("Not a an Amazifit Bip Lite firmware");
         }
@@ -20,6 +20,7 @@ import android.content.Context;
 import android.net.Uri;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.likeapp.likeapp.devices.huami.HuamiFWHelper;
 import org.likeapp.likeapp.service.devices.huami.amazfitcor.AmazfitCorFirmwareInfo;
@@ -31,8 +32,8 @@ public class AmazfitCorFWHelper extends HuamiFWHelper {
     }
 
     @Override
-    protected void determineFirmwareInfo(byte[] wholeFirmwareBytes) {
-        firmwareInfo = new AmazfitCorFirmwareInfo(wholeFirmwareBytes);
+    protected void determineFirmwareInfo(ByteBuffer wholeFirmware) {
+        firmwareInfo = new AmazfitCorFirmwareInfo(wholeFirmware);
         if (!firmwareInfo.isHeaderValid()) {
             throw new IllegalArgumentException("Not a an Amazfit Cor firmware");
         }
@@ -20,6 +20,7 @@ import android.content.Context;
 import android.net.Uri;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.likeapp.likeapp.devices.huami.HuamiFWHelper;
 import org.likeapp.likeapp.service.devices.huami.amazfitcor2.AmazfitCor2FirmwareInfo;
@@ -31,8 +32,8 @@ public class AmazfitCor2FWHelper extends HuamiFWHelper {
     }
 
     @Override
-    protected void determineFirmwareInfo(byte[] wholeFirmwareBytes) {
-        firmwareInfo = new AmazfitCor2FirmwareInfo(wholeFirmwareBytes);
+    protected void determineFirmwareInfo(ByteBuffer wholeFirmware) {
+        firmwareInfo = new AmazfitCor2FirmwareInfo(wholeFirmware);
         if (!firmwareInfo.isHeaderValid()) {
             throw new IllegalArgumentException("Not a an Amazfit Cor 2 firmware");
         }
@@ -26,6 +26,7 @@ import org.likeapp.likeapp.devices.huami.HuamiFWHelper;
 import org.likeapp.likeapp.service.devices.huami.amazfitgtr.AmazfitGTRFirmwareInfo;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class AmazfitGTRFWHelper extends HuamiFWHelper
 {
@@ -35,8 +36,8 @@ public class AmazfitGTRFWHelper extends HuamiFWHelper
     }
 
     @Override
-    protected void determineFirmwareInfo(byte[] wholeFirmwareBytes) {
-        firmwareInfo = new AmazfitGTRFirmwareInfo (wholeFirmwareBytes);
+    protected void determineFirmwareInfo(ByteBuffer wholeFirmware) {
+        firmwareInfo = new AmazfitGTRFirmwareInfo (wholeFirmware);
         if (!firmwareInfo.isHeaderValid()) {
             throw new IllegalArgumentException("Not a an Amazifit GTR firmware");
         }
@@ -24,6 +24,7 @@ import org.likeapp.likeapp.devices.huami.HuamiFWHelper;
 import org.likeapp.likeapp.service.devices.huami.amazfitgts.AmazfitGTSFirmwareInfo;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class AmazfitGTSFWHelper extends HuamiFWHelper
 {
@@ -34,8 +35,8 @@ public class AmazfitGTSFWHelper extends HuamiFWHelper
     }
 
     @Override
-    protected void determineFirmwareInfo(byte[] wholeFirmwareBytes) {
-        firmwareInfo = new AmazfitGTSFirmwareInfo (wholeFirmwareBytes);
+    protected void determineFirmwareInfo(ByteBuffer wholeFirmware) {
+        firmwareInfo = new AmazfitGTSFirmwareInfo (wholeFirmware);
         if (!firmwareInfo.isHeaderValid()) {
             throw new IllegalArgumentException("Not a an Amazifit GTS firmware");
         }
@@ -21,6 +21,7 @@ import android.content.Context;
 import android.net.Uri;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import androidx.annotation.NonNull;
 import org.likeapp.likeapp.devices.huami.HuamiFWHelper;
@@ -34,8 +35,8 @@ public class MiBand2FWHelper extends HuamiFWHelper {
 
     @NonNull
     @Override
-    protected void determineFirmwareInfo(byte[] wholeFirmwareBytes) {
-        firmwareInfo = new Mi2FirmwareInfo(wholeFirmwareBytes);
+    protected void determineFirmwareInfo(ByteBuffer wholeFirmware) {
+        firmwareInfo = new Mi2FirmwareInfo(wholeFirmware);
         if (!firmwareInfo.isHeaderValid()) {
             throw new IllegalArgumentException("Not a Mi Band 2 firmware");
         }
@@ -26,6 +26,7 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 import androidx.annotation.NonNull;
 import org.likeapp.likeapp.GBApplication;
@@ -40,8 +41,18 @@ import org.likeapp.likeapp.util.UriHelper;
 public abstract class AbstractMiBandFWHelper {
     private static final Logger LOG = LoggerFactory.getLogger(AbstractMiBandFWHelper.class);
 
+    /**
+     * The maximum size of a firmware that is read into memory, when it cannot be mapped.
+     */
+    private static final int MAX_IN_MEMORY_SIZE = 1024 * 2048; // 2.0 MB
+
+    /**
+     * The maximum size of a memory mapped firmware, as the size is transferred as uint24.
+     */
+    private static final int MAX_MAPPED_SIZE = 0xffffff;
+
     @NonNull
-    private final byte[] fw;
+    private final ByteBuffer fw;
 
     public AbstractMiBandFWHelper(Uri uri, Context context) throws IOException {
         UriHelper uriHelper = UriHelper.get(uri, context);
@@ -50,9 +61,9 @@ public abstract class AbstractMiBandFWHelper {
             throw new IOException("Firmware has a filename that looks like a Pebble app/firmware.");
         }
 
-        try (InputStream in = new BufferedInputStream(uriHelper.openInputStream())) {
-            this.fw = FileUtils.readAll(in, 1024 * 2048); // 2.0 MB
-            determineFirmwareInfo(fw);
+        try {
+            this.fw = readFirmware(uriHelper);
+            determineFirmwareInfo(fw.asReadOnlyBuffer());
         } catch (IOException ex) {
             throw ex; // pass through
         } catch (IllegalArgumentException ex) {
@@ -62,6 +73,28 @@ public abstract class AbstractMiBandFWHelper {
         }
     }
 
+    /**
+     * Maps the firmware file into memory if possible, so that even large files never end up
+     * on the heap as a whole. Otherwise, e.g. for content that is not backed by a file,
+     * the firmware is read into memory.
+     */
+    @NonNull
+    private static ByteBuffer readFirmware(UriHelper uriHelper) throws IOException {
+        if (uriHelper.getFileSize() <= MAX_MAPPED_SIZE) {
+            try {
+                ByteBuffer mapped = uriHelper.mapReadOnly();
+                if (mapped != null) {
+                    return mapped;
+                }
+            } catch (IOException ex) {
+                LOG.info("Unable to map firmware file, reading it instead: " + ex.getMessage());
+            }
+        }
+        try (InputStream in = new BufferedInputStream(uriHelper.openInputStream())) {
+            return ByteBuffer.wrap(FileUtils.readAll(in, MAX_IN_MEMORY_SIZE));
+        }
+    }
+
     /**
      * Returns a localized, user-visible representation of the kind of firmware to be installed.
      */
@@ -93,9 +126,26 @@ public abstract class AbstractMiBandFWHelper {
         return formatFirmwareVersion(version);
     }
 
+    /**
+     * Returns the whole firmware as a byte array. Copies the firmware onto the heap if it was
+     * memory mapped, so prefer {@link #getFwBuffer()} for large firmwares.
+     */
     @NonNull
     public byte[] getFw() {
-        return fw;
+        if (fw.hasArray() && fw.arrayOffset() == 0 && fw.array().length == fw.limit()) {
+            return fw.array();
+        }
+        byte[] bytes = new byte[fw.limit()];
+        fw.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns a read-only view of the whole firmware, positioned at its start.
+     */
+    @NonNull
+    public ByteBuffer getFwBuffer() {
+        return fw.asReadOnlyBuffer();
     }
 
     public boolean isFirmwareWhitelisted() {
@@ -114,12 +164,12 @@ public abstract class AbstractMiBandFWHelper {
     public abstract boolean isSingleFirmware();
 
     /**
-     * @param wholeFirmwareBytes
+     * @param wholeFirmware a read-only view of the firmware, positioned at its start
      * @return
      * @throws IllegalArgumentException when the data is not recognized as firmware data
      */
     @NonNull
-    protected abstract void determineFirmwareInfo(byte[] wholeFirmwareBytes);
+    protected abstract void determineFirmwareInfo(ByteBuffer wholeFirmware);
 
     public abstract void checkValid() throws IllegalArgumentException;
 }
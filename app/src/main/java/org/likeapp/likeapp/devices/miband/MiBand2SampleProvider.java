@@ -19,12 +19,16 @@ package org.likeapp.likeapp.devices.miband;
 
 import java.util.List;
 
+import androidx.annotation.NonNull;
 import de.greenrobot.dao.query.QueryBuilder;
+import org.likeapp.likeapp.database.DBHelper;
 import org.likeapp.likeapp.devices.huami.HuamiConst;
 import org.likeapp.likeapp.entities.DaoSession;
+import org.likeapp.likeapp.entities.Device;
 import org.likeapp.likeapp.entities.MiBandActivitySample;
 import org.likeapp.likeapp.entities.MiBandActivitySampleDao;
 import org.likeapp.likeapp.impl.GBDevice;
+import org.likeapp.likeapp.model.ActivitySampleBatch;
 
 import static org.likeapp.likeapp.devices.huami.HuamiConst.TYPE_IGNORE;
 import static org.likeapp.likeapp.devices.huami.HuamiConst.TYPE_NO_CHANGE;
@@ -43,6 +47,14 @@ public class MiBand2SampleProvider extends AbstractMiBandSampleProvider {
         return samples;
     }
 
+    @NonNull
+    @Override
+    public ActivitySampleBatch getAllActivitySampleBatch(int timestamp_from, int timestamp_to) {
+        ActivitySampleBatch batch = super.getAllActivitySampleBatch(timestamp_from, timestamp_to);
+        postprocess(batch);
+        return batch;
+    }
+
     /**
      * "Temporary" runtime post processing of activity kinds.
      * @param samples
@@ -74,6 +86,54 @@ public class MiBand2SampleProvider extends AbstractMiBandSampleProvider {
         }
     }
 
+    /**
+     * Same as {@link #postprocess(List)}, for the columnar batch.
+     */
+    private void postprocess(ActivitySampleBatch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Device dbDevice = DBHelper.findDevice(getDevice(), getSession());
+        if (dbDevice == null) {
+            return;
+        }
+
+        int lastValidKind = determinePreviousValidActivityType(dbDevice.getId(), batch.getTimestamp(0));
+        for (int i = 0; i < batch.size(); i++) {
+            int rawKind = batch.getRawKind(i);
+            if (rawKind != TYPE_UNSET) {
+                rawKind &= 0xf;
+                batch.setRawKind(i, rawKind);
+            }
+
+            switch (rawKind) {
+                case TYPE_IGNORE:
+                case TYPE_NO_CHANGE:
+                    if (lastValidKind != TYPE_UNSET) {
+                        batch.setRawKind(i, lastValidKind);
+                    }
+                    break;
+                default:
+                    lastValidKind = rawKind;
+                    break;
+            }
+        }
+    }
+
+    private int determinePreviousValidActivityType(long deviceId, int timestamp) {
+        QueryBuilder<MiBandActivitySample> qb = getSampleDao().queryBuilder();
+        qb.where(MiBandActivitySampleDao.Properties.DeviceId.eq(deviceId),
+                MiBandActivitySampleDao.Properties.Timestamp.lt(timestamp),
+                MiBandActivitySampleDao.Properties.RawKind.notIn(TYPE_NO_CHANGE, TYPE_IGNORE, TYPE_UNSET, 16, 80, 96, 112)); // all I ever had that are 0 when doing &=0xf
+        qb.orderDesc(MiBandActivitySampleDao.Properties.Timestamp);
+        qb.limit(1);
+        List<MiBandActivitySample> result = qb.build().list();
+        if (result.size() > 0) {
+            return result.get(0).getRawKind() & 0xf;
+        }
+        return TYPE_UNSET;
+    }
+
     private int determinePreviousValidActivityType(MiBandActivitySample sample) {
         QueryBuilder<MiBandActivitySample> qb = getSampleDao().queryBuilder();
         qb.where(MiBandActivitySampleDao.Properties.DeviceId.eq(sample.getDeviceId()),
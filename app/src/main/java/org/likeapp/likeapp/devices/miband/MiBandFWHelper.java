@@ -24,6 +24,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import androidx.annotation.NonNull;
 import org.likeapp.likeapp.GBApplication;
@@ -108,13 +109,13 @@ public class MiBandFWHelper extends AbstractMiBandFWHelper {
     }
 
     /**
-     * @param wholeFirmwareBytes
+     * @param wholeFirmware
      * @return
      * @throws IllegalArgumentException when the data is not recognized as firmware data
      */
     @Override
-    protected void determineFirmwareInfo(byte[] wholeFirmwareBytes) {
-        firmwareInfo = AbstractMiFirmwareInfo.determineFirmwareInfoFor(wholeFirmwareBytes);
+    protected void determineFirmwareInfo(ByteBuffer wholeFirmware) {
+        firmwareInfo = AbstractMiFirmwareInfo.determineFirmwareInfoFor(getFw());
     }
 
     @Override
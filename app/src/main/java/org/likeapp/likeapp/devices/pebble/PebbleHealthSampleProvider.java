@@ -20,6 +20,7 @@ package org.likeapp.likeapp.devices.pebble;
 import java.util.Collections;
 import java.util.List;
 
+import androidx.annotation.NonNull;
 import de.greenrobot.dao.AbstractDao;
 import de.greenrobot.dao.Property;
 import de.greenrobot.dao.query.QueryBuilder;
@@ -32,6 +33,7 @@ import org.likeapp.likeapp.entities.PebbleHealthActivityOverlayDao;
 import org.likeapp.likeapp.entities.PebbleHealthActivitySample;
 import org.likeapp.likeapp.entities.PebbleHealthActivitySampleDao;
 import org.likeapp.likeapp.impl.GBDevice;
+import org.likeapp.likeapp.model.ActivitySampleBatch;
 import org.likeapp.likeapp.model.ActivityKind;
 
 public class PebbleHealthSampleProvider extends AbstractSampleProvider<PebbleHealthActivitySample> {
@@ -50,6 +52,13 @@ public class PebbleHealthSampleProvider extends AbstractSampleProvider<PebbleHea
         super(device, session);
     }
 
+    @NonNull
+    @Override
+    public ActivitySampleBatch getAllActivitySampleBatch(int timestamp_from, int timestamp_to) {
+        // activity overlays are applied to the sample entities
+        return getActivitySampleBatchFromEntities(timestamp_from, timestamp_to);
+    }
+
     @Override
     public List<PebbleHealthActivitySample> getAllActivitySamples(int timestamp_from, int timestamp_to) {
         List<PebbleHealthActivitySample> samples = super.getGBActivitySamples(timestamp_from, timestamp_to, ActivityKind.TYPE_ALL);
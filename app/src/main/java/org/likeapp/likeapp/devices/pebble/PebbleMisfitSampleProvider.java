@@ -16,6 +16,7 @@
     along with this program.  If not, see <http://www.gnu.org/licenses/>. */
 package org.likeapp.likeapp.devices.pebble;
 
+import androidx.annotation.NonNull;
 import de.greenrobot.dao.AbstractDao;
 import de.greenrobot.dao.Property;
 import org.likeapp.likeapp.devices.AbstractSampleProvider;
@@ -23,6 +24,7 @@ import org.likeapp.likeapp.entities.DaoSession;
 import org.likeapp.likeapp.entities.PebbleMisfitSample;
 import org.likeapp.likeapp.entities.PebbleMisfitSampleDao;
 import org.likeapp.likeapp.impl.GBDevice;
+import org.likeapp.likeapp.model.ActivitySampleBatch;
 
 public class PebbleMisfitSampleProvider extends AbstractSampleProvider<PebbleMisfitSample> {
 
@@ -32,6 +34,13 @@ public class PebbleMisfitSampleProvider extends AbstractSampleProvider<PebbleMis
         super(device, session);
     }
 
+    @NonNull
+    @Override
+    public ActivitySampleBatch getAllActivitySampleBatch(int timestamp_from, int timestamp_to) {
+        // the values are decoded from the raw sample by the entity
+        return getActivitySampleBatchFromEntities(timestamp_from, timestamp_to);
+    }
+
     @Override
     public int normalizeType(int rawType) {
         return rawType;
@@ -16,6 +16,7 @@
     along with this program.  If not, see <http://www.gnu.org/licenses/>. */
 package org.likeapp.likeapp.devices.pebble;
 
+import androidx.annotation.NonNull;
 import de.greenrobot.dao.AbstractDao;
 import de.greenrobot.dao.Property;
 import org.likeapp.likeapp.devices.AbstractSampleProvider;
@@ -23,6 +24,7 @@ import org.likeapp.likeapp.entities.DaoSession;
 import org.likeapp.likeapp.entities.PebbleMorpheuzSample;
 import org.likeapp.likeapp.entities.PebbleMorpheuzSampleDao;
 import org.likeapp.likeapp.impl.GBDevice;
+import org.likeapp.likeapp.model.ActivitySampleBatch;
 
 public class PebbleMorpheuzSampleProvider extends AbstractSampleProvider<PebbleMorpheuzSample> {
 
@@ -32,6 +34,13 @@ public class PebbleMorpheuzSampleProvider extends AbstractSampleProvider<PebbleM
         super(device, session);
     }
 
+    @NonNull
+    @Override
+    public ActivitySampleBatch getAllActivitySampleBatch(int timestamp_from, int timestamp_to) {
+        // the kind is derived from the intensity by the entity
+        return getActivitySampleBatchFromEntities(timestamp_from, timestamp_to);
+    }
+
     @Override
     public AbstractDao<PebbleMorpheuzSample, ?> getSampleDao() {
         return getSession().getPebbleMorpheuzSampleDao();
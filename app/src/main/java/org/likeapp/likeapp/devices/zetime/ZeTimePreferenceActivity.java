@@ -19,9 +19,15 @@ package org.likeapp.likeapp.devices.zetime;
 import android.os.Bundle;
 import android.preference.Preference;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.likeapp.likeapp.GBApplication;
 import org.likeapp.likeapp.R;
 import org.likeapp.likeapp.activities.AbstractSettingsActivity;
+import org.likeapp.likeapp.impl.GBDevice;
+import org.likeapp.likeapp.model.DeviceService;
+import org.likeapp.likeapp.model.DeviceType;
 
 public class ZeTimePreferenceActivity extends AbstractSettingsActivity {
     @Override
@@ -30,13 +36,17 @@ public class ZeTimePreferenceActivity extends AbstractSettingsActivity {
 
         addPreferencesFromResource(R.xml.zetime_preferences);
 
-        GBApplication.deviceService().onReadConfiguration("do_it");
+        for (DeviceService deviceService : getZeTimeDeviceServices()) {
+            deviceService.onReadConfiguration("do_it");
+        }
 
         final Preference heartrateMeasurementInterval = findPreference(ZeTimeConstants.PREF_ZETIME_HEARTRATE_INTERVAL);
         heartrateMeasurementInterval.setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
             @Override
             public boolean onPreferenceChange(Preference preference, Object newVal) {
-                GBApplication.deviceService().onSetHeartRateMeasurementInterval(Integer.parseInt((String) newVal));
+                for (DeviceService deviceService : getZeTimeDeviceServices()) {
+                    deviceService.onSetHeartRateMeasurementInterval(Integer.parseInt((String) newVal));
+                }
                 return true;
             }
         });
@@ -92,11 +102,27 @@ public class ZeTimePreferenceActivity extends AbstractSettingsActivity {
         addPreferenceHandlerFor(ZeTimeConstants.PREF_USER_ACTIVETIME_GOAL);
     }
 
+    /**
+     * Returns the DeviceServices addressing the connected ZeTime devices, which all share
+     * these preferences.
+     */
+    private List<DeviceService> getZeTimeDeviceServices() {
+        List<DeviceService> deviceServices = new ArrayList<>();
+        for (GBDevice device : GBApplication.app().getDeviceManager().getDevices()) {
+            if (device.getType() == DeviceType.ZETIME && device.isInitialized()) {
+                deviceServices.add(GBApplication.deviceService().forDevice(device));
+            }
+        }
+        return deviceServices;
+    }
+
     private void addPreferenceHandlerFor(final String preferenceKey) {
         Preference pref = findPreference(preferenceKey);
         pref.setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
             @Override public boolean onPreferenceChange(Preference preference, Object newVal) {
-                    GBApplication.deviceService().onSendConfiguration(preferenceKey);
+                    for (DeviceService deviceService : getZeTimeDeviceServices()) {
+                        deviceService.onSendConfiguration(preferenceKey);
+                    }
                 return true;
             }
         });
@@ -52,7 +52,7 @@ public class BluetoothStateChangeReceiver extends BroadcastReceiver {
                 GBApplication.deviceService().connect();
             } else if (intent.getIntExtra(BluetoothAdapter.EXTRA_STATE, -1) == BluetoothAdapter.STATE_OFF) {
                 LOG.info("Bluetooth turned off => disconnecting...");
-                GBApplication.deviceService().disconnect();
+                GBApplication.deviceService().forAllDevices().disconnect();
             }
         }
     }
@@ -26,13 +26,15 @@ import android.widget.Toast;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Enumeration;
+import java.util.Collections;
 import java.util.GregorianCalendar;
-import java.util.Hashtable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-import de.greenrobot.dao.query.QueryBuilder;
 import org.likeapp.likeapp.GBApplication;
 import org.likeapp.likeapp.database.DBHandler;
 import org.likeapp.likeapp.database.DBHelper;
@@ -46,47 +48,45 @@ import org.likeapp.likeapp.util.GB;
 
 public class CalendarReceiver extends BroadcastReceiver {
     private static final Logger LOG = LoggerFactory.getLogger(CalendarReceiver.class);
-    private Hashtable<Long, EventSyncState> eventState = new Hashtable<>();
+    /**
+     * The devices this receiver serves, keyed by device address.
+     */
+    private final Map<String, GBDevice> mDevices = new LinkedHashMap<>();
 
-    private GBDevice mGBDevice;
-
-    private class EventSyncState {
-        private int state;
-        private CalendarEvents.CalendarEvent event;
-
-        EventSyncState(CalendarEvents.CalendarEvent event, int state) {
-            this.state = state;
-            this.event = event;
-        }
-
-        public int getState() {
-            return state;
-        }
+    public CalendarReceiver(GBDevice gbDevice) {
+        this(Collections.singletonList(gbDevice));
+    }
 
-        public void setState(int state) {
-            this.state = state;
+    public CalendarReceiver(List<GBDevice> gbDevices) {
+        LOG.info("Created calendar receiver.");
+        for (GBDevice gbDevice : gbDevices) {
+            mDevices.put(gbDevice.getAddress(), gbDevice);
         }
+        onReceive(GBApplication.getContext(), new Intent());
+    }
 
-        public CalendarEvents.CalendarEvent getEvent() {
-            return event;
+    /**
+     * Sets the devices to sync the calendar to. Devices that were not served before
+     * are synced immediately.
+     */
+    public void setDevices(List<GBDevice> gbDevices) {
+        List<String> addresses = new ArrayList<>(gbDevices.size());
+        boolean added = false;
+        for (GBDevice gbDevice : gbDevices) {
+            addresses.add(gbDevice.getAddress());
+            if (!mDevices.containsKey(gbDevice.getAddress())) {
+                mDevices.put(gbDevice.getAddress(), gbDevice);
+                added = true;
+            }
         }
-
-        public void setEvent(CalendarEvents.CalendarEvent event) {
-            this.event = event;
+        mDevices.keySet().retainAll(addresses);
+        if (added) {
+            onReceive(GBApplication.getContext(), new Intent());
         }
     }
 
-    private static class EventState {
-        private static final int NOT_SYNCED = 0;
-        private static final int SYNCED = 1;
-        private static final int NEEDS_UPDATE = 2;
-        private static final int NEEDS_DELETE = 3;
-    }
-
-    public CalendarReceiver(GBDevice gbDevice) {
-        LOG.info("Created calendar receiver.");
-        mGBDevice = gbDevice;
-        onReceive(GBApplication.getContext(), new Intent());
+    public void removeDevice(String deviceAddress) {
+        mDevices.remove(deviceAddress);
     }
 
     @Override
@@ -106,110 +106,97 @@ public class CalendarReceiver extends BroadcastReceiver {
     }
 
     public void syncCalendar(List<CalendarEvents.CalendarEvent> eventList, DaoSession session) {
-        LOG.info("Syncing with calendar.");
-        Hashtable<Long, CalendarEvents.CalendarEvent> eventTable = new Hashtable<>();
-        Long deviceId = DBHelper.getDevice(mGBDevice, session).getId();
-        QueryBuilder<CalendarSyncState> qb = session.getCalendarSyncStateDao().queryBuilder();
+        for (GBDevice gbDevice : mDevices.values()) {
+            syncCalendar(gbDevice, eventList, session);
+        }
+    }
 
+    /**
+     * Compares the events with the sync state stored for the device, using the hash of
+     * each event, stores the new sync state in a single transaction and sends all
+     * changes to the device at once.
+     */
+    private void syncCalendar(GBDevice gbDevice, List<CalendarEvents.CalendarEvent> eventList, DaoSession session) {
+        LOG.info("Syncing with calendar for device " + gbDevice.getName());
+        long deviceId = DBHelper.getDevice(gbDevice, session).getId();
+        final CalendarSyncStateDao calendarSyncStateDao = session.getCalendarSyncStateDao();
+
+        Map<Long, CalendarSyncState> syncStates = new HashMap<>();
+        List<CalendarSyncState> storedStates = calendarSyncStateDao.queryBuilder()
+                .where(CalendarSyncStateDao.Properties.DeviceId.eq(deviceId))
+                .build().list();
+        for (CalendarSyncState syncState : storedStates) {
+            syncStates.put(syncState.getCalendarEntryId(), syncState);
+        }
+
+        final List<CalendarSyncState> changedStates = new ArrayList<>();
+        final List<CalendarSyncState> deletedStates = new ArrayList<>();
+        List<CalendarEventSpec> deletedEvents = new ArrayList<>();
+        List<CalendarEventSpec> addedEvents = new ArrayList<>();
 
         for (CalendarEvents.CalendarEvent e : eventList) {
             long id = e.getId();
-            eventTable.put(id, e);
-            if (!eventState.containsKey(e.getId())) {
-                qb = session.getCalendarSyncStateDao().queryBuilder();
-
-                CalendarSyncState calendarSyncState = qb.where(qb.and(CalendarSyncStateDao.Properties.DeviceId.eq(deviceId), CalendarSyncStateDao.Properties.CalendarEntryId.eq(id)))
-                        .build().unique();
-                if (calendarSyncState == null) {
-                    eventState.put(id, new EventSyncState(e, EventState.NOT_SYNCED));
-                    LOG.info("event id=" + id + " is yet unknown to device id=" + deviceId);
-                } else if (calendarSyncState.getHash() == e.hashCode()) {
-                    eventState.put(id, new EventSyncState(e, EventState.SYNCED));
-                    LOG.info("event id=" + id + " is up to date on device id=" + deviceId);
-                }
-                else {
-                    eventState.put(id, new EventSyncState(e, EventState.NEEDS_UPDATE));
-                    LOG.info("event id=" + id + " is not up to date on device id=" + deviceId);
-                }
+            int hash = e.hashCode();
+            CalendarSyncState syncState = syncStates.remove(id);
+            if (syncState == null) {
+                syncState = new CalendarSyncState(null, deviceId, id, hash);
+            } else if (syncState.getHash() == hash) {
+                continue;
+            } else {
+                LOG.info("event id=" + id + " is not up to date on device id=" + deviceId);
+                deletedEvents.add(createDeleteSpec(id));
+                syncState.setHash(hash);
             }
+            addedEvents.add(createEventSpec(e));
+            changedStates.add(syncState);
         }
-
-        // add all missing calendar ids on the device to sync status (so that they are deleted later)
-        List<CalendarSyncState> CalendarSyncStateList = qb.where(CalendarSyncStateDao.Properties.DeviceId.eq(deviceId)).build().list();
-        for (CalendarSyncState CalendarSyncState : CalendarSyncStateList) {
-            if (!eventState.containsKey(CalendarSyncState.getCalendarEntryId())) {
-                eventState.put(CalendarSyncState.getCalendarEntryId(), new EventSyncState(null, EventState.NEEDS_DELETE));
-                LOG.info("insert null event for orphanded calendar id=" + CalendarSyncState.getCalendarEntryId() + " for device=" + mGBDevice.getName());
-            }
+        // whatever is left is no longer in the calendar
+        for (CalendarSyncState syncState : syncStates.values()) {
+            deletedEvents.add(createDeleteSpec(syncState.getCalendarEntryId()));
+            deletedStates.add(syncState);
         }
 
-        Enumeration<Long> ids = eventState.keys();
-        while (ids.hasMoreElements()) {
-            qb = session.getCalendarSyncStateDao().queryBuilder();
-            Long i = ids.nextElement();
-            EventSyncState es = eventState.get(i);
-            if (eventTable.containsKey(i)) {
-                if (es.getState() == EventState.SYNCED) {
-                    if (!es.getEvent().equals(eventTable.get(i))) {
-                        eventState.put(i, new EventSyncState(eventTable.get(i), EventState.NEEDS_UPDATE));
-                    }
-                }
-            } else {
-                if (es.getState() == EventState.NOT_SYNCED) {
-                    // delete for current device only
-                    qb.where(qb.and(CalendarSyncStateDao.Properties.DeviceId.eq(deviceId), CalendarSyncStateDao.Properties.CalendarEntryId.eq(i)))
-                            .buildDelete().executeDeleteWithoutDetachingEntities();
-                    eventState.remove(i);
-                } else {
-                    es.setState(EventState.NEEDS_DELETE);
-                    eventState.put(i, es);
-                }
-            }
-            updateEvents(deviceId, session);
+        if (changedStates.isEmpty() && deletedStates.isEmpty()) {
+            return;
         }
+        int updatedCount = deletedEvents.size() - deletedStates.size();
+        LOG.info("calendar sync for device id=" + deviceId + ": " + (addedEvents.size() - updatedCount) + " new, "
+                + updatedCount + " changed, " + deletedStates.size() + " deleted events");
+        session.runInTx(new Runnable() {
+            @Override
+            public void run() {
+                calendarSyncStateDao.insertOrReplaceInTx(changedStates);
+                calendarSyncStateDao.deleteInTx(deletedStates);
+            }
+        });
+        GBApplication.deviceService().forDevice(gbDevice).onUpdateCalendarEvents(deletedEvents, addedEvents);
     }
 
-    private void updateEvents(Long deviceId, DaoSession session) {
-        Enumeration<Long> ids = eventState.keys();
-        while (ids.hasMoreElements()) {
-            Long i = ids.nextElement();
-            EventSyncState es = eventState.get(i);
-            int syncState = es.getState();
-            if (syncState == EventState.NOT_SYNCED || syncState == EventState.NEEDS_UPDATE) {
-                CalendarEvents.CalendarEvent calendarEvent = es.getEvent();
-                CalendarEventSpec calendarEventSpec = new CalendarEventSpec();
-                calendarEventSpec.id = i;
-                calendarEventSpec.title = calendarEvent.getTitle();
-                calendarEventSpec.allDay = calendarEvent.isAllDay();
-                calendarEventSpec.timestamp = calendarEvent.getBeginSeconds();
-                calendarEventSpec.durationInSeconds = calendarEvent.getDurationSeconds(); //FIXME: leads to problems right now
-                if (calendarEvent.isAllDay()) {
-                    //force the all day events to begin at midnight and last a whole day
-                    Calendar c = GregorianCalendar.getInstance();
-                    c.setTimeInMillis(calendarEvent.getBegin());
-                    c.set(Calendar.HOUR, 0);
-                    calendarEventSpec.timestamp = (int) (c.getTimeInMillis() / 1000);
-                    calendarEventSpec.durationInSeconds = 24 * 60 * 60;
-                }
-                calendarEventSpec.description = calendarEvent.getDescription();
-                calendarEventSpec.location = calendarEvent.getLocation();
-                calendarEventSpec.type = CalendarEventSpec.TYPE_UNKNOWN;
-                if (syncState == EventState.NEEDS_UPDATE) {
-                    GBApplication.deviceService().onDeleteCalendarEvent(CalendarEventSpec.TYPE_UNKNOWN, i);
-                }
-                GBApplication.deviceService().onAddCalendarEvent(calendarEventSpec);
-                es.setState(EventState.SYNCED);
-                eventState.put(i, es);
-                // update db
-                session.insertOrReplace(new CalendarSyncState(null, deviceId, i, es.event.hashCode()));
-            } else if (syncState == EventState.NEEDS_DELETE) {
-                GBApplication.deviceService().onDeleteCalendarEvent(CalendarEventSpec.TYPE_UNKNOWN, i);
-                eventState.remove(i);
-                // delete from db for current device only
-                QueryBuilder<CalendarSyncState> qb = session.getCalendarSyncStateDao().queryBuilder();
-                qb.where(qb.and(CalendarSyncStateDao.Properties.DeviceId.eq(deviceId), CalendarSyncStateDao.Properties.CalendarEntryId.eq(i)))
-                        .buildDelete().executeDeleteWithoutDetachingEntities();
-            }
+    private CalendarEventSpec createDeleteSpec(long id) {
+        CalendarEventSpec calendarEventSpec = new CalendarEventSpec();
+        calendarEventSpec.id = id;
+        calendarEventSpec.type = CalendarEventSpec.TYPE_UNKNOWN;
+        return calendarEventSpec;
+    }
+
+    private CalendarEventSpec createEventSpec(CalendarEvents.CalendarEvent calendarEvent) {
+        CalendarEventSpec calendarEventSpec = new CalendarEventSpec();
+        calendarEventSpec.id = calendarEvent.getId();
+        calendarEventSpec.title = calendarEvent.getTitle();
+        calendarEventSpec.allDay = calendarEvent.isAllDay();
+        calendarEventSpec.timestamp = calendarEvent.getBeginSeconds();
+        calendarEventSpec.durationInSeconds = calendarEvent.getDurationSeconds(); //FIXME: leads to problems right now
+        if (calendarEvent.isAllDay()) {
+            //force the all day events to begin at midnight and last a whole day
+            Calendar c = GregorianCalendar.getInstance();
+            c.setTimeInMillis(calendarEvent.getBegin());
+            c.set(Calendar.HOUR, 0);
+            calendarEventSpec.timestamp = (int) (c.getTimeInMillis() / 1000);
+            calendarEventSpec.durationInSeconds = 24 * 60 * 60;
         }
+        calendarEventSpec.description = calendarEvent.getDescription();
+        calendarEventSpec.location = calendarEvent.getLocation();
+        calendarEventSpec.type = CalendarEventSpec.TYPE_UNKNOWN;
+        return calendarEventSpec;
     }
 }
@@ -28,6 +28,7 @@ import android.os.Build;
 import android.provider.ContactsContract;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import androidx.annotation.Nullable;
@@ -52,6 +53,9 @@ import static org.likeapp.likeapp.util.JavaExtensions.coalesce;
 public class GBDeviceService implements DeviceService {
     protected final Context mContext;
     private final Class<? extends Service> mServiceClass;
+    @Nullable
+    private final String mDeviceAddress;
+    private final boolean mAllDevices;
     private final String[] transliterationExtras = new String[]{
             EXTRA_NOTIFICATION_PHONENUMBER,
             EXTRA_NOTIFICATION_SENDER,
@@ -67,14 +71,37 @@ public class GBDeviceService implements DeviceService {
             EXTRA_CALENDAREVENT_TITLE,
             EXTRA_CALENDAREVENT_DESCRIPTION
     };
+    private final String[] transliterationArrayExtras = new String[]{
+            EXTRA_CALENDAREVENT_TITLES,
+            EXTRA_CALENDAREVENT_DESCRIPTIONS
+    };
+
+    /**
+     * The maximum number of calendar events sent in one intent, to stay well below
+     * the size limit of binder transactions.
+     */
+    private static final int MAX_CALENDAREVENTS_PER_INTENT = 50;
 
     public GBDeviceService(Context context) {
+        this(context, null, false);
+    }
+
+    protected GBDeviceService(Context context, @Nullable String deviceAddress, boolean allDevices) {
         mContext = context;
         mServiceClass = DeviceCommunicationService.class;
+        mDeviceAddress = deviceAddress;
+        mAllDevices = allDevices;
     }
 
     protected Intent createIntent() {
-        return new Intent(mContext, mServiceClass);
+        Intent intent = new Intent(mContext, mServiceClass);
+        if (mDeviceAddress != null) {
+            intent.putExtra(EXTRA_DEVICE_ADDRESS, mDeviceAddress);
+        }
+        if (mAllDevices) {
+            intent.putExtra(EXTRA_ALL_DEVICES, true);
+        }
+        return intent;
     }
 
     protected void invokeService(Intent intent) {
@@ -84,6 +111,14 @@ public class GBDeviceService implements DeviceService {
                     intent.putExtra(extra, LanguageUtils.transliterate(intent.getStringExtra(extra)));
                 }
             }
+            for (String extra : transliterationArrayExtras) {
+                String[] values = intent.getStringArrayExtra(extra);
+                if (values != null) {
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = LanguageUtils.transliterate(values[i]);
+                    }
+                }
+            }
         }
 
         if (RtlUtils.rtlSupport()) {
@@ -92,6 +127,14 @@ public class GBDeviceService implements DeviceService {
                     intent.putExtra(extra, RtlUtils.fixRtl(intent.getStringExtra(extra)));
                 }
             }
+            for (String extra : transliterationArrayExtras) {
+                String[] values = intent.getStringArrayExtra(extra);
+                if (values != null) {
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = RtlUtils.fixRtl(values[i]);
+                    }
+                }
+            }
         }
 
         mContext.startService(intent);
@@ -137,6 +180,16 @@ public class GBDeviceService implements DeviceService {
         stopService(intent);
     }
 
+    @Override
+    public DeviceService forDevice(GBDevice device) {
+        return new GBDeviceService(mContext, device.getAddress(), false);
+    }
+
+    @Override
+    public DeviceService forAllDevices() {
+        return new GBDeviceService(mContext, null, true);
+    }
+
     @Override
     public void requestDeviceInfo() {
         Intent intent = createIntent().setAction(ACTION_REQUEST_DEVICEINFO);
@@ -374,6 +427,53 @@ public class GBDeviceService implements DeviceService {
         invokeService(intent);
     }
 
+    @Override
+    public void onUpdateCalendarEvents(List<CalendarEventSpec> deletedEvents, List<CalendarEventSpec> addedEvents) {
+        // all deletions are sent before the additions, so that changed events are replaced
+        int total = deletedEvents.size() + addedEvents.size();
+        for (int start = 0; start < total; start += MAX_CALENDAREVENTS_PER_INTENT) {
+            int end = Math.min(total, start + MAX_CALENDAREVENTS_PER_INTENT);
+            List<CalendarEventSpec> deleted = deletedEvents.subList(Math.min(start, deletedEvents.size()), Math.min(end, deletedEvents.size()));
+            List<CalendarEventSpec> added = addedEvents.subList(Math.max(0, start - deletedEvents.size()), Math.max(0, end - deletedEvents.size()));
+
+            long[] deletedIds = new long[deleted.size()];
+            byte[] deletedTypes = new byte[deleted.size()];
+            for (int i = 0; i < deleted.size(); i++) {
+                deletedIds[i] = deleted.get(i).id;
+                deletedTypes[i] = deleted.get(i).type;
+            }
+            long[] ids = new long[added.size()];
+            byte[] types = new byte[added.size()];
+            int[] timestamps = new int[added.size()];
+            int[] durations = new int[added.size()];
+            String[] titles = new String[added.size()];
+            String[] descriptions = new String[added.size()];
+            String[] locations = new String[added.size()];
+            for (int i = 0; i < added.size(); i++) {
+                CalendarEventSpec calendarEventSpec = added.get(i);
+                ids[i] = calendarEventSpec.id;
+                types[i] = calendarEventSpec.type;
+                timestamps[i] = calendarEventSpec.timestamp;
+                durations[i] = calendarEventSpec.durationInSeconds;
+                titles[i] = calendarEventSpec.title;
+                descriptions[i] = calendarEventSpec.description;
+                locations[i] = calendarEventSpec.location;
+            }
+
+            Intent intent = createIntent().setAction(ACTION_UPDATE_CALENDAREVENTS)
+                    .putExtra(EXTRA_CALENDAREVENT_DELETED_IDS, deletedIds)
+                    .putExtra(EXTRA_CALENDAREVENT_DELETED_TYPES, deletedTypes)
+                    .putExtra(EXTRA_CALENDAREVENT_IDS, ids)
+                    .putExtra(EXTRA_CALENDAREVENT_TYPES, types)
+                    .putExtra(EXTRA_CALENDAREVENT_TIMESTAMPS, timestamps)
+                    .putExtra(EXTRA_CALENDAREVENT_DURATIONS, durations)
+                    .putExtra(EXTRA_CALENDAREVENT_TITLES, titles)
+                    .putExtra(EXTRA_CALENDAREVENT_DESCRIPTIONS, descriptions)
+                    .putExtra(EXTRA_CALENDAREVENT_LOCATIONS, locations);
+            invokeService(intent);
+        }
+    }
+
     @Override
     public void onSendConfiguration(String config) {
         Intent intent = createIntent().setAction(ACTION_SEND_CONFIGURATION)
@@ -0,0 +1,205 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+import androidx.annotation.Nullable;
+import org.likeapp.likeapp.devices.SampleProvider;
+
+/**
+ * A read-only batch of activity samples, stored column-wise in parallel primitive
+ * arrays instead of one object per sample. The values of sample {@code i} correspond
+ * to the respective getters of {@link ActivitySample}, with the kind and intensity
+ * already normalized by the {@link SampleProvider}.
+ */
+public class ActivitySampleBatch {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final SampleProvider provider;
+    private int size;
+    private int[] timestamps;
+    private int[] rawKinds;
+    private int[] kinds;
+    private int[] rawIntensities;
+    private float[] intensities;
+    private int[] steps;
+    private int[] heartRates;
+
+    public ActivitySampleBatch(@Nullable SampleProvider provider, int capacity) {
+        this.provider = provider;
+        capacity = Math.max(capacity, 1);
+        timestamps = new int[capacity];
+        rawKinds = new int[capacity];
+        kinds = new int[capacity];
+        rawIntensities = new int[capacity];
+        intensities = new float[capacity];
+        steps = new int[capacity];
+        heartRates = new int[capacity];
+    }
+
+    public ActivitySampleBatch(@Nullable SampleProvider provider) {
+        this(provider, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a batch holding the values of the given samples, for callers that still
+     * deal with sample objects.
+     */
+    public static ActivitySampleBatch fromSamples(List<? extends ActivitySample> samples) {
+        SampleProvider provider = samples.isEmpty() ? null : samples.get(0).getProvider();
+        ActivitySampleBatch batch = new ActivitySampleBatch(provider, samples.size());
+        for (int i = 0; i < samples.size(); i++) {
+            batch.add(samples.get(i));
+        }
+        return batch;
+    }
+
+    /**
+     * Appends a sample from its raw values. The kind and intensity are normalized through
+     * the provider of this batch, which must not be null.
+     */
+    public void add(int timestamp, int rawKind, int rawIntensity, int steps, int heartRate) {
+        ensureCapacity(size + 1);
+        timestamps[size] = timestamp;
+        rawKinds[size] = rawKind;
+        kinds[size] = provider.normalizeType(rawKind);
+        rawIntensities[size] = rawIntensity;
+        intensities[size] = provider.normalizeIntensity(rawIntensity);
+        this.steps[size] = steps;
+        heartRates[size] = heartRate;
+        size++;
+    }
+
+    /**
+     * Appends the values of the given sample.
+     */
+    public void add(ActivitySample sample) {
+        ensureCapacity(size + 1);
+        timestamps[size] = sample.getTimestamp();
+        rawKinds[size] = sample.getRawKind();
+        kinds[size] = sample.getKind();
+        rawIntensities[size] = sample.getRawIntensity();
+        intensities[size] = sample.getIntensity();
+        steps[size] = sample.getSteps();
+        heartRates[size] = sample.getHeartRate();
+        size++;
+    }
+
+    /**
+     * Changes the raw kind of the sample at the given index and updates its normalized kind.
+     */
+    public void setRawKind(int index, int rawKind) {
+        checkIndex(index);
+        rawKinds[index] = rawKind;
+        kinds[index] = provider.normalizeType(rawKind);
+    }
+
+    /**
+     * Removes all samples whose timestamp is outside of the given (inclusive) range,
+     * preserving the order of the remaining ones.
+     */
+    public void retainRange(int timestampFrom, int timestampTo) {
+        int newSize = 0;
+        for (int i = 0; i < size; i++) {
+            int timestamp = timestamps[i];
+            if (timestamp < timestampFrom || timestamp > timestampTo) {
+                continue;
+            }
+            if (newSize != i) {
+                timestamps[newSize] = timestamp;
+                rawKinds[newSize] = rawKinds[i];
+                kinds[newSize] = kinds[i];
+                rawIntensities[newSize] = rawIntensities[i];
+                intensities[newSize] = intensities[i];
+                steps[newSize] = steps[i];
+                heartRates[newSize] = heartRates[i];
+            }
+            newSize++;
+        }
+        size = newSize;
+    }
+
+    @Nullable
+    public SampleProvider getProvider() {
+        return provider;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getTimestamp(int index) {
+        checkIndex(index);
+        return timestamps[index];
+    }
+
+    public int getRawKind(int index) {
+        checkIndex(index);
+        return rawKinds[index];
+    }
+
+    public int getKind(int index) {
+        checkIndex(index);
+        return kinds[index];
+    }
+
+    public int getRawIntensity(int index) {
+        checkIndex(index);
+        return rawIntensities[index];
+    }
+
+    public float getIntensity(int index) {
+        checkIndex(index);
+        return intensities[index];
+    }
+
+    public int getSteps(int index) {
+        checkIndex(index);
+        return steps[index];
+    }
+
+    public int getHeartRate(int index) {
+        checkIndex(index);
+        return heartRates[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= timestamps.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, timestamps.length * 2);
+        timestamps = Arrays.copyOf(timestamps, newCapacity);
+        rawKinds = Arrays.copyOf(rawKinds, newCapacity);
+        kinds = Arrays.copyOf(kinds, newCapacity);
+        rawIntensities = Arrays.copyOf(rawIntensities, newCapacity);
+        intensities = Arrays.copyOf(intensities, newCapacity);
+        steps = Arrays.copyOf(steps, newCapacity);
+        heartRates = Arrays.copyOf(heartRates, newCapacity);
+    }
+}
@@ -26,8 +26,8 @@ import java.util.Calendar;
 import java.util.List;
 
 import org.likeapp.likeapp.GBApplication;
-import org.likeapp.likeapp.activities.charts.ActivityAnalysis;
-import org.likeapp.likeapp.database.DBHandler;
+import org.likeapp.likeapp.database.DailyActivityRollupHelper;
+import org.likeapp.likeapp.database.ReadDBHandler;
 import org.likeapp.likeapp.devices.DeviceCoordinator;
 import org.likeapp.likeapp.devices.SampleProvider;
 import org.likeapp.likeapp.entities.AbstractActivitySample;
@@ -68,13 +68,12 @@ public class DailyTotals {
 
     public long[] getDailyTotalsForDevice(GBDevice device, Calendar day) {
 
-        try (DBHandler handler = GBApplication.acquireDB()) {
-            ActivityAnalysis analysis = new ActivityAnalysis();
+        try (ReadDBHandler handler = GBApplication.acquireReadDB()) {
             ActivityAmounts amountsSteps;
             ActivityAmounts amountsSleep;
 
-            amountsSteps = analysis.calculateActivityAmounts(getSamplesOfDay(handler, day, 0, device));
-            amountsSleep = analysis.calculateActivityAmounts(getSamplesOfDay(handler, day, -12, device));
+            amountsSteps = getActivityAmountsOfDay(handler, day, 0, device);
+            amountsSleep = getActivityAmountsOfDay(handler, day, -12, device);
 
             long[] sleep = getTotalsSleepForActivityAmounts(amountsSleep);
             long steps = getTotalsStepsForActivityAmounts(amountsSteps);
@@ -114,36 +113,21 @@ public class DailyTotals {
     }
 
 
-    private List<? extends ActivitySample> getSamplesOfDay(DBHandler db, Calendar day, int offsetHours, GBDevice device) {
-        int startTs;
-        int endTs;
-
+    private ActivityAmounts getActivityAmountsOfDay(ReadDBHandler db, Calendar day, int offsetHours, GBDevice device) {
         day = (Calendar) day.clone(); // do not modify the caller's argument
         day.set(Calendar.HOUR_OF_DAY, 0);
         day.set(Calendar.MINUTE, 0);
         day.set(Calendar.SECOND, 0);
         day.add(Calendar.HOUR, offsetHours);
 
-        startTs = (int) (day.getTimeInMillis() / 1000);
-        endTs = startTs + 24 * 60 * 60 - 1;
-
-        return getSamples(db, device, startTs, endTs);
-    }
-
+        int startTs = (int) (day.getTimeInMillis() / 1000);
 
-    protected List<? extends ActivitySample> getSamples(DBHandler db, GBDevice device, int tsFrom, int tsTo) {
-        return getAllSamples(db, device, tsFrom, tsTo);
+        return DailyActivityRollupHelper.getActivityAmounts(getProvider(db, device), device, db.getDaoSession(), startTs);
     }
 
 
-    protected SampleProvider<? extends AbstractActivitySample> getProvider(DBHandler db, GBDevice device) {
+    protected SampleProvider<? extends AbstractActivitySample> getProvider(ReadDBHandler db, GBDevice device) {
         DeviceCoordinator coordinator = DeviceHelper.getInstance().getCoordinator(device);
         return coordinator.getSampleProvider(device, db.getDaoSession());
     }
-
-
-    protected List<? extends ActivitySample> getAllSamples(DBHandler db, GBDevice device, int tsFrom, int tsTo) {
-        SampleProvider<? extends ActivitySample> provider = getProvider(db, device);
-        return provider.getAllActivitySamples(tsFrom, tsTo);
-    }
 }
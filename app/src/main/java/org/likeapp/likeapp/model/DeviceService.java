@@ -61,6 +61,7 @@ public interface DeviceService extends EventHandler {
     String ACTION_SET_HEARTRATE_MEASUREMENT_INTERVAL = PREFIX + ".action.set_heartrate_measurement_intervarl";
     String ACTION_ADD_CALENDAREVENT = PREFIX + ".action.add_calendarevent";
     String ACTION_DELETE_CALENDAREVENT = PREFIX + ".action.delete_calendarevent";
+    String ACTION_UPDATE_CALENDAREVENTS = PREFIX + ".action.update_calendarevents";
     String ACTION_SEND_CONFIGURATION = PREFIX + ".action.send_configuration";
     String ACTION_READ_CONFIGURATION = PREFIX + ".action.read_configuration";
     String ACTION_SEND_WEATHER = PREFIX + ".action.send_weather";
@@ -112,6 +113,8 @@ public interface DeviceService extends EventHandler {
     String EXTRA_FM_FREQUENCY = "fm_frequency";
     String EXTRA_LED_COLOR = "led_color";
     String EXTRA_RESET_FLAGS = "reset_flags";
+    String EXTRA_DEVICE_ADDRESS = "device_address";
+    String EXTRA_ALL_DEVICES = "all_devices";
 
     /**
      * Use EXTRA_REALTIME_SAMPLE instead
@@ -132,6 +135,15 @@ public interface DeviceService extends EventHandler {
     String EXTRA_CALENDAREVENT_TITLE = "calendarevent_title";
     String EXTRA_CALENDAREVENT_DESCRIPTION = "calendarevent_description";
     String EXTRA_CALENDAREVENT_LOCATION = "calendarevent_location";
+    String EXTRA_CALENDAREVENT_DELETED_IDS = "calendarevent_deleted_ids";
+    String EXTRA_CALENDAREVENT_DELETED_TYPES = "calendarevent_deleted_types";
+    String EXTRA_CALENDAREVENT_IDS = "calendarevent_ids";
+    String EXTRA_CALENDAREVENT_TYPES = "calendarevent_types";
+    String EXTRA_CALENDAREVENT_TIMESTAMPS = "calendarevent_timestamps";
+    String EXTRA_CALENDAREVENT_DURATIONS = "calendarevent_durations";
+    String EXTRA_CALENDAREVENT_TITLES = "calendarevent_titles";
+    String EXTRA_CALENDAREVENT_DESCRIPTIONS = "calendarevent_descriptions";
+    String EXTRA_CALENDAREVENT_LOCATIONS = "calendarevent_locations";
 
     void start();
 
@@ -153,4 +165,16 @@ public interface DeviceService extends EventHandler {
      * from the service will be reported.
      */
     void requestDeviceInfo();
+
+    /**
+     * Returns a DeviceService that only addresses the given device. Actions sent
+     * through this service instance are not delivered to any other connected device.
+     */
+    DeviceService forDevice(GBDevice device);
+
+    /**
+     * Returns a DeviceService whose actions are delivered to every device, also those
+     * which are usually meant for a single device, like {@link #disconnect()}.
+     */
+    DeviceService forAllDevices();
 }
@@ -44,6 +44,7 @@ import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 
@@ -69,6 +70,7 @@ import org.likeapp.likeapp.deviceevents.GBDeviceEventVersionInfo;
 import org.likeapp.likeapp.externalevents.NotificationListener;
 import org.likeapp.likeapp.impl.GBDevice;
 import org.likeapp.likeapp.model.BatteryState;
+import org.likeapp.likeapp.model.CalendarEventSpec;
 import org.likeapp.likeapp.service.receivers.GBCallControlReceiver;
 import org.likeapp.likeapp.service.receivers.GBMusicControlReceiver;
 import org.likeapp.likeapp.util.GB;
@@ -509,6 +511,20 @@ public abstract class AbstractDeviceSupport implements DeviceSupport {
         return inputString;
     }
 
+    /**
+     * Default implementation sends the events one by one, devices that can send
+     * several events at once should override this.
+     */
+    @Override
+    public void onUpdateCalendarEvents(List<CalendarEventSpec> deletedEvents, List<CalendarEventSpec> addedEvents) {
+        for (CalendarEventSpec calendarEventSpec : deletedEvents) {
+            onDeleteCalendarEvent(calendarEventSpec.type, calendarEventSpec.id);
+        }
+        for (CalendarEventSpec calendarEventSpec : addedEvents) {
+            onAddCalendarEvent(calendarEventSpec);
+        }
+    }
+
     private void handleGBDeviceEvent (LikeAppDeviceEventSleep event)
     {
         if (event.fellAsleep)
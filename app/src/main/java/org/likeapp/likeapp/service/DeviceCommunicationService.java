@@ -46,6 +46,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import org.likeapp.likeapp.GBApplication;
@@ -118,19 +125,29 @@ import static org.likeapp.likeapp.model.DeviceService.ACTION_SET_LED_COLOR;
 import static org.likeapp.likeapp.model.DeviceService.ACTION_START;
 import static org.likeapp.likeapp.model.DeviceService.ACTION_STARTAPP;
 import static org.likeapp.likeapp.model.DeviceService.ACTION_TEST_NEW_FUNCTION;
+import static org.likeapp.likeapp.model.DeviceService.ACTION_UPDATE_CALENDAREVENTS;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_ALARMS;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_APP_CONFIG;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_APP_CONFIG_ID;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_APP_START;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_APP_UUID;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_BOOLEAN_ENABLE;
+import static org.likeapp.likeapp.model.DeviceService.EXTRA_CALENDAREVENT_DELETED_IDS;
+import static org.likeapp.likeapp.model.DeviceService.EXTRA_CALENDAREVENT_DELETED_TYPES;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_CALENDAREVENT_DESCRIPTION;
+import static org.likeapp.likeapp.model.DeviceService.EXTRA_CALENDAREVENT_DESCRIPTIONS;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_CALENDAREVENT_DURATION;
+import static org.likeapp.likeapp.model.DeviceService.EXTRA_CALENDAREVENT_DURATIONS;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_CALENDAREVENT_ID;
+import static org.likeapp.likeapp.model.DeviceService.EXTRA_CALENDAREVENT_IDS;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_CALENDAREVENT_LOCATION;
+import static org.likeapp.likeapp.model.DeviceService.EXTRA_CALENDAREVENT_LOCATIONS;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_CALENDAREVENT_TIMESTAMP;
+import static org.likeapp.likeapp.model.DeviceService.EXTRA_CALENDAREVENT_TIMESTAMPS;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_CALENDAREVENT_TITLE;
+import static org.likeapp.likeapp.model.DeviceService.EXTRA_CALENDAREVENT_TITLES;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_CALENDAREVENT_TYPE;
+import static org.likeapp.likeapp.model.DeviceService.EXTRA_CALENDAREVENT_TYPES;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_CALL_COMMAND;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_CALL_DISPLAYNAME;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_CALL_PHONENUMBER;
@@ -138,6 +155,8 @@ import static org.likeapp.likeapp.model.DeviceService.EXTRA_CANNEDMESSAGES;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_CANNEDMESSAGES_TYPE;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_CONFIG;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_CONNECT_FIRST_TIME;
+import static org.likeapp.likeapp.model.DeviceService.EXTRA_ALL_DEVICES;
+import static org.likeapp.likeapp.model.DeviceService.EXTRA_DEVICE_ADDRESS;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_FIND_START;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_FM_FREQUENCY;
 import static org.likeapp.likeapp.model.DeviceService.EXTRA_INTERVAL_SECONDS;
@@ -179,9 +198,12 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
     private boolean mStarted = false;
 
     private DeviceSupportFactory mFactory;
-    private GBDevice mGBDevice = null;
-    private DeviceSupport mDeviceSupport;
-    private DeviceCoordinator mCoordinator = null;
+
+    /**
+     * All devices this service currently talks to, keyed by device address.
+     * Only accessed from the main thread.
+     */
+    private final Map<String, DeviceStruct> mDevices = new LinkedHashMap<>();
 
     private PhoneCallReceiver mPhoneCallReceiver = null;
     private SMSReceiver mSMSReceiver = null;
@@ -214,6 +236,54 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
             "com.spotify.music.playbackstatechanged"
     };
 
+    /**
+     * Actions about the phone rather than a single device, e.g. a new notification or the
+     * current time. Without a device address, they are delivered to every device. All other
+     * actions without an address only reach the selected device.
+     */
+    private static final Set<String> BROADCAST_ACTIONS = new HashSet<>(Arrays.asList(
+            ACTION_NOTIFICATION,
+            ACTION_DELETE_NOTIFICATION,
+            ACTION_CALLSTATE,
+            ACTION_SETCANNEDMESSAGES,
+            ACTION_SETTIME,
+            ACTION_SETMUSICINFO,
+            ACTION_SETMUSICSTATE,
+            ACTION_REQUEST_DEVICEINFO,
+            ACTION_FETCH_RECORDED_DATA,
+            ACTION_ADD_CALENDAREVENT,
+            ACTION_DELETE_CALENDAREVENT,
+            ACTION_SEND_WEATHER
+    ));
+
+    /**
+     * Bundles a device with the DeviceSupport instance (and thus the connection)
+     * serving it.
+     */
+    private static class DeviceStruct {
+        private GBDevice device;
+        private final DeviceSupport deviceSupport;
+        private DeviceCoordinator coordinator;
+
+        DeviceStruct(DeviceSupport deviceSupport) {
+            this.deviceSupport = deviceSupport;
+            this.device = deviceSupport.getDevice();
+            this.coordinator = DeviceHelper.getInstance().getCoordinator(device);
+        }
+
+        boolean isInitialized() {
+            return device.isInitialized();
+        }
+
+        boolean isConnected() {
+            return device.isConnected();
+        }
+
+        boolean isConnecting() {
+            return device.isConnecting();
+        }
+    }
+
     /**
      * For testing!
      *
@@ -233,11 +303,11 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
             String action = intent.getAction();
             if (GBDevice.ACTION_DEVICE_CHANGED.equals(action)) {
                 GBDevice device = intent.getParcelableExtra(GBDevice.EXTRA_DEVICE);
-                if (mGBDevice != null && mGBDevice.equals(device)) {
-                    mGBDevice = device;
-                    mCoordinator = DeviceHelper.getInstance().getCoordinator(device);
-                    boolean enableReceivers = mDeviceSupport != null && (mDeviceSupport.useAutoConnect() || mGBDevice.isInitialized());
-                    setReceiversEnableState(enableReceivers, mGBDevice.isInitialized(), mCoordinator);
+                DeviceStruct struct = device != null ? mDevices.get(device.getAddress()) : null;
+                if (struct != null) {
+                    struct.device = device;
+                    struct.coordinator = DeviceHelper.getInstance().getCoordinator(device);
+                    updateReceiversState();
                 } else {
                     LOG.error("Got ACTION_DEVICE_CHANGED from unexpected device: " + device);
                 }
@@ -253,7 +323,7 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
         public void onReceive (Context context, Intent intent)
         {
             Prefs prefs = GBApplication.getPrefs ();
-            if (mGBDevice != null && mGBDevice.isInitialized ())
+            if (isAnyDeviceInitialized ())
             {
                 int level = intent.getIntExtra (BatteryManager.EXTRA_LEVEL, -1);
                 int scale = intent.getIntExtra (BatteryManager.EXTRA_SCALE, -1);
@@ -325,6 +395,10 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
 
         LOG.debug("Service startcommand: " + action);
 
+        String deviceAddress = intent.getStringExtra(EXTRA_DEVICE_ADDRESS);
+        boolean allDevices = intent.getBooleanExtra(EXTRA_ALL_DEVICES, false);
+        List<DeviceStruct> targets = Collections.emptyList();
+
         if (!action.equals(ACTION_START) && !action.equals(ACTION_CONNECT)) {
             if (!mStarted) {
                 // using the service before issuing ACTION_START
@@ -332,13 +406,20 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
                 return START_NOT_STICKY;
             }
 
-            if (mDeviceSupport == null || (!isInitialized() && !action.equals(ACTION_DISCONNECT) && (!mDeviceSupport.useAutoConnect() || isConnected()))) {
-                // trying to send notification without valid Bluetooth connection
-                if (mGBDevice != null) {
+            List<DeviceStruct> addressed = getDevices(action, deviceAddress, allDevices);
+            targets = new ArrayList<>(addressed.size());
+            for (DeviceStruct struct : addressed) {
+                if (struct.isInitialized() || action.equals(ACTION_DISCONNECT) || (struct.deviceSupport.useAutoConnect() && !struct.isConnected())) {
+                    targets.add(struct);
+                } else {
+                    // trying to send notification without valid Bluetooth connection,
                     // at least send back the current device state
-                    mGBDevice.sendDeviceUpdateIntent(this);
+                    struct.device.sendDeviceUpdateIntent(this);
                 }
-                else if (action.equals (ACTION_NOTIFICATION))
+            }
+
+            if (targets.isEmpty()) {
+                if (mDevices.isEmpty() && action.equals (ACTION_NOTIFICATION))
                 {
                     // Сохранить уведомление
                     notificationSaved = intent;
@@ -347,7 +428,7 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
             }
         }
 
-        // when we get past this, we should have valid mDeviceSupport and mGBDevice instances
+        // when we get past this, every target has a valid DeviceSupport and GBDevice instance
 
         Prefs prefs = getPrefs();
         switch (action) {
@@ -375,12 +456,13 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
                     autoReconnect = getGBPrefs().getAutoReconnect();
                 }
 
-                if (gbDevice != null && !isConnecting() && !isConnected()) {
-                    setDeviceSupport(null);
+                DeviceStruct existing = gbDevice != null ? mDevices.get(gbDevice.getAddress()) : null;
+                if (gbDevice != null && (existing == null || (!existing.isConnecting() && !existing.isConnected()))) {
+                    removeDeviceSupport(gbDevice.getAddress());
                     try {
                         DeviceSupport deviceSupport = mFactory.createDeviceSupport(gbDevice);
                         if (deviceSupport != null) {
-                            setDeviceSupport(deviceSupport);
+                            addDeviceSupport(deviceSupport);
                             if (firstTime) {
                                 deviceSupport.connectFirstTime();
                             } else {
@@ -392,18 +474,16 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
                         }
                     } catch (Exception e) {
                         GB.toast(this, getString(R.string.cannot_connect, e.getMessage()), Toast.LENGTH_SHORT, GB.ERROR, e);
-                        setDeviceSupport(null);
+                        removeDeviceSupport(gbDevice.getAddress());
                     }
-                } else if (mGBDevice != null) {
+                } else if (existing != null) {
                     // send an update at least
-                    mGBDevice.sendDeviceUpdateIntent(this);
+                    existing.device.sendDeviceUpdateIntent(this);
                 }
                 break;
             default:
-                if (mDeviceSupport == null || mGBDevice == null) {
-                    LOG.warn("device support:" + mDeviceSupport + ", device: " + mGBDevice + ", aborting");
-                } else {
-                    handleAction(intent, action, prefs);
+                for (DeviceStruct struct : targets) {
+                    handleAction(intent, action, prefs, struct);
                 }
                 break;
         }
@@ -414,23 +494,24 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
      * @param text original text
      * @return 'text' or a new String without non supported chars like emoticons, etc.
      */
-    private String sanitizeNotifText(String text) {
+    private String sanitizeNotifText(String text, DeviceStruct struct) {
         if (text == null || text.length() == 0)
             return text;
 
-        text = mDeviceSupport.customStringFilter(text);
+        text = struct.deviceSupport.customStringFilter(text);
 
-        if (!mCoordinator.supportsUnicodeEmojis()) {
+        if (!struct.coordinator.supportsUnicodeEmojis()) {
             return EmojiConverter.convertUnicodeEmojiToAscii(text, getApplicationContext());
         }
 
         return text;
     }
 
-    private void handleAction(Intent intent, String action, Prefs prefs) {
+    private void handleAction(Intent intent, String action, Prefs prefs, DeviceStruct struct) {
+        DeviceSupport deviceSupport = struct.deviceSupport;
         switch (action) {
             case ACTION_REQUEST_DEVICEINFO:
-                mGBDevice.sendDeviceUpdateIntent(this);
+                struct.device.sendDeviceUpdateIntent(this);
                 break;
             case ACTION_NOTIFICATION: {
                 // Удалить сохранённое уведомление
@@ -439,10 +520,10 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
                 int desiredId = intent.getIntExtra(EXTRA_NOTIFICATION_ID, -1);
                 NotificationSpec notificationSpec = new NotificationSpec(desiredId);
                 notificationSpec.phoneNumber = intent.getStringExtra(EXTRA_NOTIFICATION_PHONENUMBER);
-                notificationSpec.sender = sanitizeNotifText(intent.getStringExtra(EXTRA_NOTIFICATION_SENDER));
-                notificationSpec.subject = sanitizeNotifText(intent.getStringExtra(EXTRA_NOTIFICATION_SUBJECT));
-                notificationSpec.title = sanitizeNotifText(intent.getStringExtra(EXTRA_NOTIFICATION_TITLE));
-                notificationSpec.body = sanitizeNotifText(intent.getStringExtra(EXTRA_NOTIFICATION_BODY));
+                notificationSpec.sender = sanitizeNotifText(intent.getStringExtra(EXTRA_NOTIFICATION_SENDER), struct);
+                notificationSpec.subject = sanitizeNotifText(intent.getStringExtra(EXTRA_NOTIFICATION_SUBJECT), struct);
+                notificationSpec.title = sanitizeNotifText(intent.getStringExtra(EXTRA_NOTIFICATION_TITLE), struct);
+                notificationSpec.body = sanitizeNotifText(intent.getStringExtra(EXTRA_NOTIFICATION_BODY), struct);
                 notificationSpec.sourceName = intent.getStringExtra(EXTRA_NOTIFICATION_SOURCENAME);
                 notificationSpec.type = (NotificationType) intent.getSerializableExtra(EXTRA_NOTIFICATION_TYPE);
                 notificationSpec.attachedActions = (ArrayList<NotificationSpec.Action>) intent.getSerializableExtra(EXTRA_NOTIFICATION_ACTIONS);
@@ -470,11 +551,11 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
                     notificationSpec.cannedReplies = replies.toArray(new String[replies.size()]);
                 }
 
-                mDeviceSupport.onNotification(notificationSpec);
+                deviceSupport.onNotification(notificationSpec);
                 break;
             }
             case ACTION_DELETE_NOTIFICATION: {
-                mDeviceSupport.onDeleteNotification(intent.getIntExtra(EXTRA_NOTIFICATION_ID, -1));
+                deviceSupport.onDeleteNotification(intent.getIntExtra(EXTRA_NOTIFICATION_ID, -1));
                 break;
             }
             case ACTION_ADD_CALENDAREVENT: {
@@ -483,60 +564,87 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
                 calendarEventSpec.type = intent.getByteExtra(EXTRA_CALENDAREVENT_TYPE, (byte) -1);
                 calendarEventSpec.timestamp = intent.getIntExtra(EXTRA_CALENDAREVENT_TIMESTAMP, -1);
                 calendarEventSpec.durationInSeconds = intent.getIntExtra(EXTRA_CALENDAREVENT_DURATION, -1);
-                calendarEventSpec.title = sanitizeNotifText(intent.getStringExtra(EXTRA_CALENDAREVENT_TITLE));
-                calendarEventSpec.description = sanitizeNotifText(intent.getStringExtra(EXTRA_CALENDAREVENT_DESCRIPTION));
-                calendarEventSpec.location = sanitizeNotifText(intent.getStringExtra(EXTRA_CALENDAREVENT_LOCATION));
-                mDeviceSupport.onAddCalendarEvent(calendarEventSpec);
+                calendarEventSpec.title = sanitizeNotifText(intent.getStringExtra(EXTRA_CALENDAREVENT_TITLE), struct);
+                calendarEventSpec.description = sanitizeNotifText(intent.getStringExtra(EXTRA_CALENDAREVENT_DESCRIPTION), struct);
+                calendarEventSpec.location = sanitizeNotifText(intent.getStringExtra(EXTRA_CALENDAREVENT_LOCATION), struct);
+                deviceSupport.onAddCalendarEvent(calendarEventSpec);
                 break;
             }
             case ACTION_DELETE_CALENDAREVENT: {
                 long id = intent.getLongExtra(EXTRA_CALENDAREVENT_ID, -1);
                 byte type = intent.getByteExtra(EXTRA_CALENDAREVENT_TYPE, (byte) -1);
-                mDeviceSupport.onDeleteCalendarEvent(type, id);
+                deviceSupport.onDeleteCalendarEvent(type, id);
+                break;
+            }
+            case ACTION_UPDATE_CALENDAREVENTS: {
+                long[] deletedIds = intent.getLongArrayExtra(EXTRA_CALENDAREVENT_DELETED_IDS);
+                byte[] deletedTypes = intent.getByteArrayExtra(EXTRA_CALENDAREVENT_DELETED_TYPES);
+                List<CalendarEventSpec> deletedEvents = new ArrayList<>(deletedIds.length);
+                for (int i = 0; i < deletedIds.length; i++) {
+                    CalendarEventSpec calendarEventSpec = new CalendarEventSpec();
+                    calendarEventSpec.id = deletedIds[i];
+                    calendarEventSpec.type = deletedTypes[i];
+                    deletedEvents.add(calendarEventSpec);
+                }
+                long[] ids = intent.getLongArrayExtra(EXTRA_CALENDAREVENT_IDS);
+                byte[] types = intent.getByteArrayExtra(EXTRA_CALENDAREVENT_TYPES);
+                int[] timestamps = intent.getIntArrayExtra(EXTRA_CALENDAREVENT_TIMESTAMPS);
+                int[] durations = intent.getIntArrayExtra(EXTRA_CALENDAREVENT_DURATIONS);
+                String[] titles = intent.getStringArrayExtra(EXTRA_CALENDAREVENT_TITLES);
+                String[] descriptions = intent.getStringArrayExtra(EXTRA_CALENDAREVENT_DESCRIPTIONS);
+                String[] locations = intent.getStringArrayExtra(EXTRA_CALENDAREVENT_LOCATIONS);
+                List<CalendarEventSpec> addedEvents = new ArrayList<>(ids.length);
+                for (int i = 0; i < ids.length; i++) {
+                    CalendarEventSpec calendarEventSpec = new CalendarEventSpec();
+                    calendarEventSpec.id = ids[i];
+                    calendarEventSpec.type = types[i];
+                    calendarEventSpec.timestamp = timestamps[i];
+                    calendarEventSpec.durationInSeconds = durations[i];
+                    calendarEventSpec.title = sanitizeNotifText(titles[i], struct);
+                    calendarEventSpec.description = sanitizeNotifText(descriptions[i], struct);
+                    calendarEventSpec.location = sanitizeNotifText(locations[i], struct);
+                    addedEvents.add(calendarEventSpec);
+                }
+                deviceSupport.onUpdateCalendarEvents(deletedEvents, addedEvents);
                 break;
             }
             case ACTION_RESET: {
                 int flags = intent.getIntExtra(EXTRA_RESET_FLAGS, 0);
-                mDeviceSupport.onReset(flags);
+                deviceSupport.onReset(flags);
                 break;
             }
             case ACTION_HEARTRATE_TEST: {
-                mDeviceSupport.onHeartRateTest();
+                deviceSupport.onHeartRateTest();
                 break;
             }
             case ACTION_FETCH_RECORDED_DATA: {
                 int dataTypes = intent.getIntExtra(EXTRA_RECORDED_DATA_TYPES, 0);
-                mDeviceSupport.onFetchRecordedData(dataTypes);
+                deviceSupport.onFetchRecordedData(dataTypes);
                 break;
             }
             case ACTION_DISCONNECT: {
-                mDeviceSupport.dispose();
-                if (mGBDevice != null) {
-                    mGBDevice.setState(GBDevice.State.NOT_CONNECTED);
-                    mGBDevice.sendDeviceUpdateIntent(this);
-                }
-                setReceiversEnableState(false, false, null);
-                mGBDevice = null;
-                mDeviceSupport = null;
-                mCoordinator = null;
+                removeDeviceSupport(struct.device.getAddress());
+                struct.device.setState(GBDevice.State.NOT_CONNECTED);
+                struct.device.sendDeviceUpdateIntent(this);
+                updateReceiversState();
                 break;
             }
             case ACTION_FIND_DEVICE: {
                 boolean start = intent.getBooleanExtra(EXTRA_FIND_START, false);
-                mDeviceSupport.onFindDevice(start);
+                deviceSupport.onFindDevice(start);
                 break;
             }
             case ACTION_SET_CONSTANT_VIBRATION: {
                 int intensity = intent.getIntExtra(EXTRA_VIBRATION_INTENSITY, 0);
-                mDeviceSupport.onSetConstantVibration(intensity);
+                deviceSupport.onSetConstantVibration(intensity);
                 break;
             }
             case ACTION_CALLSTATE:
                 CallSpec callSpec = new CallSpec();
                 callSpec.command = intent.getIntExtra(EXTRA_CALL_COMMAND, CallSpec.CALL_UNDEFINED);
                 callSpec.number = intent.getStringExtra(EXTRA_CALL_PHONENUMBER);
-                callSpec.name = sanitizeNotifText(intent.getStringExtra(EXTRA_CALL_DISPLAYNAME));
-                mDeviceSupport.onSetCallState(callSpec);
+                callSpec.name = sanitizeNotifText(intent.getStringExtra(EXTRA_CALL_DISPLAYNAME), struct);
+                deviceSupport.onSetCallState(callSpec);
                 break;
             case ACTION_SETCANNEDMESSAGES:
                 int type = intent.getIntExtra(EXTRA_CANNEDMESSAGES_TYPE, -1);
@@ -545,20 +653,20 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
                 CannedMessagesSpec cannedMessagesSpec = new CannedMessagesSpec();
                 cannedMessagesSpec.type = type;
                 cannedMessagesSpec.cannedMessages = cannedMessages;
-                mDeviceSupport.onSetCannedMessages(cannedMessagesSpec);
+                deviceSupport.onSetCannedMessages(cannedMessagesSpec);
                 break;
             case ACTION_SETTIME:
-                mDeviceSupport.onSetTime();
+                deviceSupport.onSetTime();
                 break;
             case ACTION_SETMUSICINFO:
                 MusicSpec musicSpec = new MusicSpec();
-                musicSpec.artist = sanitizeNotifText(intent.getStringExtra(EXTRA_MUSIC_ARTIST));
-                musicSpec.album = sanitizeNotifText(intent.getStringExtra(EXTRA_MUSIC_ALBUM));
-                musicSpec.track = sanitizeNotifText(intent.getStringExtra(EXTRA_MUSIC_TRACK));
+                musicSpec.artist = sanitizeNotifText(intent.getStringExtra(EXTRA_MUSIC_ARTIST), struct);
+                musicSpec.album = sanitizeNotifText(intent.getStringExtra(EXTRA_MUSIC_ALBUM), struct);
+                musicSpec.track = sanitizeNotifText(intent.getStringExtra(EXTRA_MUSIC_TRACK), struct);
                 musicSpec.duration = intent.getIntExtra(EXTRA_MUSIC_DURATION, 0);
                 musicSpec.trackCount = intent.getIntExtra(EXTRA_MUSIC_TRACKCOUNT, 0);
                 musicSpec.trackNr = intent.getIntExtra(EXTRA_MUSIC_TRACKNR, 0);
-                mDeviceSupport.onSetMusicInfo(musicSpec);
+                deviceSupport.onSetMusicInfo(musicSpec);
                 break;
             case ACTION_SETMUSICSTATE:
                 MusicStateSpec stateSpec = new MusicStateSpec();
@@ -567,23 +675,23 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
                 stateSpec.position = intent.getIntExtra(EXTRA_MUSIC_POSITION, 0);
                 stateSpec.playRate = intent.getIntExtra(EXTRA_MUSIC_RATE, 0);
                 stateSpec.state = intent.getByteExtra(EXTRA_MUSIC_STATE, (byte) 0);
-                mDeviceSupport.onSetMusicState(stateSpec);
+                deviceSupport.onSetMusicState(stateSpec);
                 break;
             case ACTION_REQUEST_APPINFO:
-                mDeviceSupport.onAppInfoReq();
+                deviceSupport.onAppInfoReq();
                 break;
             case ACTION_REQUEST_SCREENSHOT:
-                mDeviceSupport.onScreenshotReq();
+                deviceSupport.onScreenshotReq();
                 break;
             case ACTION_STARTAPP: {
                 UUID uuid = (UUID) intent.getSerializableExtra(EXTRA_APP_UUID);
                 boolean start = intent.getBooleanExtra(EXTRA_APP_START, true);
-                mDeviceSupport.onAppStart(uuid, start);
+                deviceSupport.onAppStart(uuid, start);
                 break;
             }
             case ACTION_DELETEAPP: {
                 UUID uuid = (UUID) intent.getSerializableExtra(EXTRA_APP_UUID);
-                mDeviceSupport.onAppDelete(uuid);
+                deviceSupport.onAppDelete(uuid);
                 break;
             }
             case ACTION_APP_CONFIGURE: {
@@ -593,76 +701,76 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
                 if (intent.hasExtra(EXTRA_APP_CONFIG_ID)) {
                     id = intent.getIntExtra(EXTRA_APP_CONFIG_ID, 0);
                 }
-                mDeviceSupport.onAppConfiguration(uuid, config, id);
+                deviceSupport.onAppConfiguration(uuid, config, id);
                 break;
             }
             case ACTION_APP_REORDER: {
                 UUID[] uuids = (UUID[]) intent.getSerializableExtra(EXTRA_APP_UUID);
-                mDeviceSupport.onAppReorder(uuids);
+                deviceSupport.onAppReorder(uuids);
                 break;
             }
             case ACTION_INSTALL:
                 Uri uri = intent.getParcelableExtra(EXTRA_URI);
                 if (uri != null) {
                     LOG.info("will try to install app/fw");
-                    mDeviceSupport.onInstallApp(uri);
+                    deviceSupport.onInstallApp(uri);
                 }
                 break;
             case ACTION_SET_ALARMS:
                 ArrayList<? extends Alarm> alarms = (ArrayList<? extends Alarm>) intent.getSerializableExtra(EXTRA_ALARMS);
-                mDeviceSupport.onSetAlarms(alarms);
+                deviceSupport.onSetAlarms(alarms);
                 break;
             case ACTION_ENABLE_REALTIME_STEPS: {
                 boolean enable = intent.getBooleanExtra(EXTRA_BOOLEAN_ENABLE, false);
-                mDeviceSupport.onEnableRealtimeSteps(enable);
+                deviceSupport.onEnableRealtimeSteps(enable);
                 break;
             }
             case ACTION_ENABLE_HEARTRATE_SLEEP_SUPPORT: {
                 boolean enable = intent.getBooleanExtra(EXTRA_BOOLEAN_ENABLE, false);
-                mDeviceSupport.onEnableHeartRateSleepSupport(enable);
+                deviceSupport.onEnableHeartRateSleepSupport(enable);
                 break;
             }
             case ACTION_SET_HEARTRATE_MEASUREMENT_INTERVAL: {
                 int seconds = intent.getIntExtra(EXTRA_INTERVAL_SECONDS, 0);
-                mDeviceSupport.onSetHeartRateMeasurementInterval(seconds);
+                deviceSupport.onSetHeartRateMeasurementInterval(seconds);
                 break;
             }
             case ACTION_ENABLE_REALTIME_HEARTRATE_MEASUREMENT: {
                 boolean enable = intent.getBooleanExtra(EXTRA_BOOLEAN_ENABLE, false);
-                mDeviceSupport.onEnableRealtimeHeartRateMeasurement(enable);
+                deviceSupport.onEnableRealtimeHeartRateMeasurement(enable);
                 break;
             }
             case ACTION_SEND_CONFIGURATION: {
                 String config = intent.getStringExtra(EXTRA_CONFIG);
-                mDeviceSupport.onSendConfiguration(config);
+                deviceSupport.onSendConfiguration(config);
                 break;
             }
             case ACTION_READ_CONFIGURATION: {
                 String config = intent.getStringExtra(EXTRA_CONFIG);
-                mDeviceSupport.onReadConfiguration(config);
+                deviceSupport.onReadConfiguration(config);
                 break;
             }
             case ACTION_TEST_NEW_FUNCTION: {
-                mDeviceSupport.onTestNewFunction();
+                deviceSupport.onTestNewFunction();
                 break;
             }
             case ACTION_SEND_WEATHER: {
                 WeatherSpec weatherSpec = intent.getParcelableExtra(EXTRA_WEATHER);
                 if (weatherSpec != null) {
-                    mDeviceSupport.onSendWeather(weatherSpec);
+                    deviceSupport.onSendWeather(weatherSpec);
                 }
                 break;
             }
             case ACTION_SET_LED_COLOR:
                 int color = intent.getIntExtra(EXTRA_LED_COLOR, 0);
                 if (color != 0) {
-                    mDeviceSupport.onSetLedColor(color);
+                    deviceSupport.onSetLedColor(color);
                 }
                 break;
             case ACTION_SET_FM_FREQUENCY:
                 float frequency = intent.getFloatExtra(EXTRA_FM_FREQUENCY, -1);
                 if (frequency != -1) {
-                    mDeviceSupport.onSetFmFrequency(frequency);
+                    deviceSupport.onSetFmFrequency(frequency);
                 }
                 break;
         }
@@ -670,29 +778,82 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
 
     private void sendNotificationSaved ()
     {
-        if (notificationSaved != null && mDeviceSupport != null && isInitialized ())
+        if (notificationSaved != null)
         {
-            LOG.debug ("Send notification saved: " + notificationSaved);
-            handleAction (notificationSaved, notificationSaved.getAction (), getPrefs ());
+            Intent intent = notificationSaved;
+            for (DeviceStruct struct : mDevices.values ())
+            {
+                if (struct.isInitialized ())
+                {
+                    LOG.debug ("Send notification saved: " + intent);
+                    handleAction (intent, intent.getAction (), getPrefs (), struct);
+                }
+            }
         }
     }
 
     /**
-     * Disposes the current DeviceSupport instance (if any) and sets a new device support instance
-     * (if not null).
+     * Adds the given DeviceSupport instance, disposing the one previously serving the
+     * same device (if any). Other devices are not affected.
      *
      * @param deviceSupport
      */
-    private void setDeviceSupport(@Nullable DeviceSupport deviceSupport) {
-        if (deviceSupport != mDeviceSupport && mDeviceSupport != null) {
-            mDeviceSupport.dispose();
-            mDeviceSupport = null;
-            mGBDevice = null;
-            mCoordinator = null;
-        }
-        mDeviceSupport = deviceSupport;
-        mGBDevice = mDeviceSupport != null ? mDeviceSupport.getDevice() : null;
-        mCoordinator = mGBDevice != null ? DeviceHelper.getInstance().getCoordinator(mGBDevice) : null;
+    private void addDeviceSupport(DeviceSupport deviceSupport) {
+        String address = deviceSupport.getDevice().getAddress();
+        DeviceStruct previous = mDevices.get(address);
+        if (previous != null && previous.deviceSupport != deviceSupport) {
+            removeDeviceSupport(address);
+        }
+        mDevices.put(address, new DeviceStruct(deviceSupport));
+    }
+
+    /**
+     * Disposes the DeviceSupport instance for the given device address (if any).
+     */
+    private void removeDeviceSupport(String address) {
+        DeviceStruct struct = mDevices.remove(address);
+        if (struct != null) {
+            struct.deviceSupport.dispose();
+            if (mCalendarReceiver != null) {
+                mCalendarReceiver.removeDevice(address);
+            }
+        }
+    }
+
+    private void removeAllDeviceSupports() {
+        for (String address : new ArrayList<>(mDevices.keySet())) {
+            removeDeviceSupport(address);
+        }
+    }
+
+    /**
+     * Returns the devices an action is addressed to: the one with the given address, or
+     * all of them if requested or if the address is null and the action is one of
+     * {@link #BROADCAST_ACTIONS}. Any other action without an address goes to the only
+     * device, or to the device selected in the DeviceManager if there are several.
+     */
+    private List<DeviceStruct> getDevices(String action, @Nullable String address, boolean allDevices) {
+        if (allDevices || (address == null && BROADCAST_ACTIONS.contains(action))) {
+            return new ArrayList<>(mDevices.values());
+        }
+        if (address == null) {
+            if (mDevices.size() > 1) {
+                GBDevice selected = GBApplication.app().getDeviceManager().getSelectedDevice();
+                DeviceStruct struct = selected != null ? mDevices.get(selected.getAddress()) : null;
+                if (struct == null) {
+                    LOG.warn("Ignoring " + action + " without a device address, there are " + mDevices.size() + " devices and none is selected");
+                    return Collections.emptyList();
+                }
+                return Collections.singletonList(struct);
+            }
+            return new ArrayList<>(mDevices.values());
+        }
+        DeviceStruct struct = mDevices.get(address);
+        if (struct == null) {
+            LOG.warn("Action for unknown device " + address);
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(struct);
     }
 
     private void start() {
@@ -706,32 +867,69 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
         return mStarted;
     }
 
-    private boolean isConnected() {
-        return mGBDevice != null && mGBDevice.isConnected();
-    }
-
-    private boolean isConnecting() {
-        return mGBDevice != null && mGBDevice.isConnecting();
+    private boolean isAnyDeviceInitialized() {
+        for (DeviceStruct struct : mDevices.values()) {
+            if (struct.isInitialized()) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private boolean isInitialized() {
-        return mGBDevice != null && mGBDevice.isInitialized();
+    /**
+     * Enables the broadcast receivers if at least one device wants them. Each receiver is
+     * registered only once and its events are delivered to every device.
+     * Receivers for features only some devices support, e.g. music info, are unregistered
+     * again once none of those devices is left.
+     */
+    private void updateReceiversState() {
+        boolean enable = false;
+        List<DeviceStruct> initialized = new ArrayList<>();
+        List<DeviceCoordinator> coordinators = new ArrayList<>();
+        for (DeviceStruct struct : mDevices.values()) {
+            if (struct.deviceSupport.useAutoConnect() || struct.isInitialized()) {
+                enable = true;
+                coordinators.add(struct.coordinator);
+            }
+            if (struct.isInitialized()) {
+                initialized.add(struct);
+            }
+        }
+        setReceiversEnableState(enable, initialized, coordinators);
     }
 
-
-    private void setReceiversEnableState(boolean enable, boolean initialized, DeviceCoordinator coordinator) {
+    private void setReceiversEnableState(boolean enable, List<DeviceStruct> initialized, List<DeviceCoordinator> coordinators) {
         LOG.info("Setting broadcast receivers to: " + enable);
 
-        if (enable && initialized && coordinator != null && coordinator.supportsCalendarEvents()) {
+        List<GBDevice> calendarDevices = new ArrayList<>();
+        if (enable) {
+            for (DeviceStruct struct : initialized) {
+                if (struct.coordinator.supportsCalendarEvents()) {
+                    calendarDevices.add(struct.device);
+                }
+            }
+        }
+        boolean supportsMusicInfo = false;
+        boolean supportsWeather = false;
+        boolean supportsActivityDataFetching = false;
+        for (DeviceCoordinator coordinator : coordinators) {
+            supportsMusicInfo |= coordinator.supportsMusicInfo();
+            supportsWeather |= coordinator.supportsWeather();
+            supportsActivityDataFetching |= coordinator.supportsActivityDataFetching();
+        }
+
+        if (!calendarDevices.isEmpty()) {
             if (mCalendarReceiver == null && getPrefs().getBoolean("enable_calendar_sync", true)) {
                 if (!(GBApplication.isRunningMarshmallowOrLater() && ContextCompat.checkSelfPermission(this, Manifest.permission.READ_CALENDAR) == PackageManager.PERMISSION_DENIED)) {
                     IntentFilter calendarIntentFilter = new IntentFilter();
                     calendarIntentFilter.addAction("android.intent.action.PROVIDER_CHANGED");
                     calendarIntentFilter.addDataScheme("content");
                     calendarIntentFilter.addDataAuthority("com.android.calendar", null);
-                    mCalendarReceiver = new CalendarReceiver(mGBDevice);
+                    mCalendarReceiver = new CalendarReceiver(calendarDevices);
                     registerReceiver(mCalendarReceiver, calendarIntentFilter);
                 }
+            } else if (mCalendarReceiver != null) {
+                mCalendarReceiver.setDevices(calendarDevices);
             }
             if (mAlarmReceiver == null) {
                 mAlarmReceiver = new AlarmReceiver();
@@ -765,13 +963,17 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
                 mPebbleReceiver = new PebbleReceiver();
                 registerReceiver(mPebbleReceiver, new IntentFilter("com.getpebble.action.SEND_NOTIFICATION"));
             }
-            if (mMusicPlaybackReceiver == null && coordinator != null && coordinator.supportsMusicInfo()) {
+            if (mMusicPlaybackReceiver == null && supportsMusicInfo) {
                 mMusicPlaybackReceiver = new MusicPlaybackReceiver();
                 IntentFilter filter = new IntentFilter();
                 for (String action : mMusicActions) {
                     filter.addAction(action);
                 }
                 registerReceiver(mMusicPlaybackReceiver, filter);
+            } else if (mMusicPlaybackReceiver != null && !supportsMusicInfo) {
+                // the device which wanted it is gone
+                unregisterReceiver(mMusicPlaybackReceiver);
+                mMusicPlaybackReceiver = null;
             }
             if (mTimeChangeReceiver == null) {
                 mTimeChangeReceiver = new TimeChangeReceiver();
@@ -804,29 +1006,41 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
 
                 registerReceiver(mAlarmClockReceiver, filter);
             }
-            if (mCMWeatherReceiver == null && coordinator != null && coordinator.supportsWeather()) {
+            if (mCMWeatherReceiver == null && supportsWeather) {
                 mCMWeatherReceiver = new CMWeatherReceiver();
                 registerReceiver(mCMWeatherReceiver, new IntentFilter("GB_UPDATE_WEATHER"));
+            } else if (mCMWeatherReceiver != null && !supportsWeather) {
+                unregisterReceiver(mCMWeatherReceiver);
+                mCMWeatherReceiver = null;
             }
             if (GBApplication.isRunningOreoOrLater()) {
-                if (mLineageOsWeatherReceiver == null && coordinator != null && coordinator.supportsWeather()) {
+                if (mLineageOsWeatherReceiver == null && supportsWeather) {
 
                     mLineageOsWeatherReceiver = new LineageOsWeatherReceiver();
                     registerReceiver(mLineageOsWeatherReceiver, new IntentFilter("GB_UPDATE_WEATHER"));
+                } else if (mLineageOsWeatherReceiver != null && !supportsWeather) {
+                    unregisterReceiver(mLineageOsWeatherReceiver);
+                    mLineageOsWeatherReceiver = null;
                 }
             }
-            if (mOmniJawsObserver == null && coordinator != null && coordinator.supportsWeather()) {
+            if (mOmniJawsObserver == null && supportsWeather) {
                 try {
                     mOmniJawsObserver = new OmniJawsObserver(new Handler());
                     getContentResolver().registerContentObserver(OmniJawsObserver.WEATHER_URI, true, mOmniJawsObserver);
                 } catch (PackageManager.NameNotFoundException e) {
                     //Nothing wrong, it just means we're not running on omnirom.
                 }
+            } else if (mOmniJawsObserver != null && !supportsWeather) {
+                getContentResolver().unregisterContentObserver(mOmniJawsObserver);
+                mOmniJawsObserver = null;
             }
             if (GBApplication.getPrefs().getBoolean("auto_fetch_enabled", false) &&
-                    coordinator != null && coordinator.supportsActivityDataFetching() && mGBAutoFetchReceiver == null) {
+                    supportsActivityDataFetching && mGBAutoFetchReceiver == null) {
                 mGBAutoFetchReceiver = new GBAutoFetchReceiver();
                 registerReceiver(mGBAutoFetchReceiver, new IntentFilter("android.intent.action.USER_PRESENT"));
+            } else if (mGBAutoFetchReceiver != null && !supportsActivityDataFetching) {
+                unregisterReceiver(mGBAutoFetchReceiver);
+                mGBAutoFetchReceiver = null;
             }
             if (mAutoConnectIntervalReceiver == null) {
                 mAutoConnectIntervalReceiver = new AutoConnectIntervalReceiver(this);
@@ -879,6 +1093,7 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
             }
             if (mOmniJawsObserver != null) {
                 getContentResolver().unregisterContentObserver(mOmniJawsObserver);
+                mOmniJawsObserver = null;
             }
             if (mGBAutoFetchReceiver != null) {
                 unregisterReceiver(mGBAutoFetchReceiver);
@@ -904,9 +1119,10 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
         unregisterReceiver (mBatteryLevelReceiver);
 
         LocalBroadcastManager.getInstance(this).unregisterReceiver(mReceiver);
-        setReceiversEnableState(false, false, null); // disable BroadcastReceivers
+        List<DeviceStruct> none = Collections.emptyList();
+        setReceiversEnableState(false, none, Collections.<DeviceCoordinator>emptyList()); // disable BroadcastReceivers
 
-        setDeviceSupport(null);
+        removeAllDeviceSupports();
         NotificationManager nm = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
         if (nm != null) {
             nm.cancel(GB.NOTIFICATION_ID); // need to do this because the updated notification won't be cancelled when service stops
@@ -922,8 +1138,8 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
     public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
         if (GBPrefs.AUTO_RECONNECT.equals(key)) {
             boolean autoReconnect = getGBPrefs().getAutoReconnect();
-            if (mDeviceSupport != null) {
-                mDeviceSupport.setAutoReconnect(autoReconnect);
+            for (DeviceStruct struct : mDevices.values()) {
+                struct.deviceSupport.setAutoReconnect(autoReconnect);
             }
         }
         if (GBPrefs.CHART_MAX_HEART_RATE.equals(key) || GBPrefs.CHART_MIN_HEART_RATE.equals(key)) {
@@ -943,7 +1159,24 @@ public class DeviceCommunicationService extends Service implements SharedPrefere
         return GBApplication.getGBPrefs();
     }
 
-    public GBDevice getGBDevice() {
-        return mGBDevice;
+    /**
+     * Returns the device with the given address, or null if this service does not
+     * currently talk to it.
+     */
+    @Nullable
+    public GBDevice getGBDevice(String address) {
+        DeviceStruct struct = mDevices.get(address);
+        return struct != null ? struct.device : null;
+    }
+
+    /**
+     * Returns all devices this service currently talks to.
+     */
+    public List<GBDevice> getGBDevices() {
+        List<GBDevice> devices = new ArrayList<>(mDevices.size());
+        for (DeviceStruct struct : mDevices.values()) {
+            devices.add(struct.device);
+        }
+        return devices;
     }
 }
@@ -27,6 +27,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.UUID;
 
 import org.likeapp.likeapp.impl.GBDevice;
@@ -357,6 +358,14 @@ public class ServiceDeviceSupport implements DeviceSupport {
         delegate.onDeleteCalendarEvent(type, id);
     }
 
+    @Override
+    public void onUpdateCalendarEvents(List<CalendarEventSpec> deletedEvents, List<CalendarEventSpec> addedEvents) {
+        if (checkBusy("update calendar events")) {
+            return;
+        }
+        delegate.onUpdateCalendarEvents(deletedEvents, addedEvents);
+    }
+
     @Override
     public void onSendConfiguration(String config) {
         if (checkBusy("send configuration: " + config)) {
@@ -39,6 +39,7 @@ import org.likeapp.likeapp.impl.GBDevice;
 import org.likeapp.likeapp.service.AbstractDeviceSupport;
 import org.likeapp.likeapp.service.btle.actions.CheckInitializedAction;
 import org.likeapp.likeapp.service.btle.profiles.AbstractBleProfile;
+import org.likeapp.likeapp.util.DeviceHelper;
 
 /**
  * Abstract base class for all devices connected through Bluetooth Low Energy (LE) aka
@@ -74,6 +75,7 @@ public abstract class AbstractBTLEDeviceSupport extends AbstractDeviceSupport im
         if (mQueue == null) {
             mQueue = new BtLEQueue(getBluetoothAdapter(), getDevice(), this, this, getContext(), mSupportedServerServices);
             mQueue.setAutoReconnect(getAutoReconnect());
+            mQueue.setMaxPipelinedWrites(DeviceHelper.getInstance().getCoordinator(getDevice()).getMaxPipelinedWrites(getDevice()));
         }
         return mQueue.connect();
     }
@@ -132,6 +134,8 @@ public abstract class AbstractBTLEDeviceSupport extends AbstractDeviceSupport im
         if (!isInitialized()) {
             // first, add a transaction that performs device initialization
             TransactionBuilder builder = createTransactionBuilder("Initialize device");
+            // must run before the transaction the caller is about to queue, whatever its priority
+            builder.setPriority(TransactionPriority.INTERACTIVE);
             builder.add(new CheckInitializedAction(gbDevice));
             initializeDevice(builder).queue(getQueue());
         }
@@ -268,7 +272,9 @@ public abstract class AbstractBTLEDeviceSupport extends AbstractDeviceSupport im
      * @param value
      */
     public void logMessageContent(byte[] value) {
-        logger.trace ("DATA WITH LENGTH: " + ((value != null) ? value.length : "(null)"));
+        if (logger.isTraceEnabled ()) {
+            logger.trace ("DATA WITH LENGTH: " + ((value != null) ? value.length : "(null)"));
+        }
         Logging.logBytes(logger, value);
     }
 
@@ -288,7 +294,9 @@ public abstract class AbstractBTLEDeviceSupport extends AbstractDeviceSupport im
             logger.warn("Services discovered, but device state is already " + getDevice().getState() + " for device: " + getDevice() + ", so ignoring");
             return;
         }
-        initializeDevice(createTransactionBuilder("Initializing device")).queue(getQueue());
+        TransactionBuilder builder = createTransactionBuilder("Initializing device");
+        builder.setPriority(TransactionPriority.INTERACTIVE);
+        initializeDevice(builder).queue(getQueue());
     }
 
     @Override
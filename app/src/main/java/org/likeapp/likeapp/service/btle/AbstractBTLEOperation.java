@@ -106,15 +106,25 @@ public abstract class AbstractBTLEOperation<T extends AbstractBTLEDeviceSupport>
     public TransactionBuilder performInitialized(String taskName) throws IOException {
         TransactionBuilder builder = mSupport.performInitialized(taskName);
         builder.setGattCallback(this);
+        builder.setPriority(getTransactionPriority());
         return builder;
     }
 
     public TransactionBuilder createTransactionBuilder(String taskName) {
         TransactionBuilder builder = getSupport().createTransactionBuilder(taskName);
         builder.setGattCallback(this);
+        builder.setPriority(getTransactionPriority());
         return builder;
     }
 
+    /**
+     * Returns the priority of the transactions created by this operation. All transactions
+     * of an operation should have the same priority, so that they are run in order.
+     */
+    protected TransactionPriority getTransactionPriority() {
+        return TransactionPriority.NORMAL;
+    }
+
     public void performImmediately(TransactionBuilder builder) throws IOException {
         mSupport.performImmediately(builder);
     }
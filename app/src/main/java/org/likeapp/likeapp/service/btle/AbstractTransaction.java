@@ -24,6 +24,9 @@ import java.util.Locale;
 public abstract class AbstractTransaction {
     private final String mName;
     private final long creationTimestamp = System.currentTimeMillis();
+    private long enqueueNanos;
+    private TransactionPriority priority = TransactionPriority.NORMAL;
+    private String coalescingKey;
 
     public AbstractTransaction(String taskName) {
         this.mName = taskName;
@@ -39,6 +42,38 @@ public abstract class AbstractTransaction {
 
     public abstract int getActionCount();
 
+    public TransactionPriority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(TransactionPriority priority) {
+        this.priority = priority;
+    }
+
+    public String getCoalescingKey() {
+        return coalescingKey;
+    }
+
+    /**
+     * Transactions with the same key send the same kind of state to the device, so that a
+     * newer one supersedes one that is still queued. Null, the default, never supersedes
+     * anything.
+     */
+    public void setCoalescingKey(String coalescingKey) {
+        this.coalescingKey = coalescingKey;
+    }
+
+    /**
+     * Remembers when the transaction was added to a queue, to measure how long it waited there.
+     */
+    void markEnqueued() {
+        enqueueNanos = System.nanoTime();
+    }
+
+    long getEnqueueNanos() {
+        return enqueueNanos;
+    }
+
     @Override
     public String toString() {
         return String.format(Locale.US, "%s: Transaction task: %s with %d actions", getCreationTime(), getTaskName(), getActionCount());
@@ -49,6 +49,25 @@ public abstract class BtLEAction {
      */
     public abstract boolean expectsResult();
 
+    /**
+     * Returns true if this action may be issued without waiting for the result
+     * of the previous one, when the queue runs in pipelined mode. This is only
+     * the case for writes without response, whose completion callback is used
+     * for flow control only.
+     *
+     * @see BtLEQueue#setMaxPipelinedWrites(int)
+     */
+    public boolean isPipelinable() {
+        return false;
+    }
+
+    /**
+     * Returns the number of bytes written by this action, if it is {@link #isPipelinable()}.
+     */
+    public int getPipelinedWriteLength() {
+        return 0;
+    }
+
     /**
      * Executes this action, e.g. reads or write a GATT characteristic.
      *
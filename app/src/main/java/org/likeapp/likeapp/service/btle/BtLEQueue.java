@@ -37,13 +37,13 @@ import org.likeapp.likeapp.service.receivers.AutoConnectIntervalReceiver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import androidx.annotation.Nullable;
 import org.likeapp.likeapp.GBApplication;
@@ -51,6 +51,9 @@ import org.likeapp.likeapp.Logging;
 import org.likeapp.likeapp.impl.GBDevice;
 import org.likeapp.likeapp.impl.GBDevice.State;
 import org.likeapp.likeapp.service.DeviceSupport;
+import org.likeapp.likeapp.service.btle.actions.RequestMtuAction;
+import org.likeapp.likeapp.util.LatencyHistogram;
+import org.likeapp.likeapp.util.Metrics;
 
 /**
  * One queue/thread per connectable device.
@@ -65,7 +68,7 @@ public final class BtLEQueue {
     private BluetoothGattServer mBluetoothGattServer;
     private final Set<BluetoothGattService> mSupportedServerServices;
 
-    private final BlockingQueue<AbstractTransaction> mTransactions = new LinkedBlockingQueue<>();
+    private final TransactionQueue mTransactions = new TransactionQueue();
     private volatile boolean mDisposed;
     private volatile boolean mCrashed;
     private volatile boolean mAbortTransaction;
@@ -80,6 +83,26 @@ public final class BtLEQueue {
     private final InternalGattServerCallback internalGattServerCallback;
     private boolean mAutoReconnect;
 
+    /**
+     * Maximum time to wait for the completion of a pipelined write before giving up.
+     */
+    private static final long PIPELINED_WRITE_TIMEOUT_MILLIS = 5000;
+
+    private final PipelinedWriteWindow mWriteWindow = new PipelinedWriteWindow();
+
+    private volatile long mBytesWritten;
+    private volatile long mFirstWriteTimestamp;
+    private volatile long mLastWriteTimestamp;
+
+    private static final LatencyHistogram QUEUE_WAIT_LATENCY = Metrics.histogram("btle.queue_wait");
+    private static final LatencyHistogram CONNECT_LATENCY = Metrics.histogram("btle.connect");
+    private static final LatencyHistogram MTU_LATENCY = Metrics.histogram("btle.mtu_request");
+    private static final ConcurrentMap<Class<?>, LatencyHistogram> ACTION_LATENCIES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<UUID, Metrics.Meter> WRITE_METERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<UUID, Metrics.Meter> NOTIFY_METERS = new ConcurrentHashMap<>();
+    private volatile long mConnectStartNanos;
+    private volatile long mMtuRequestNanos;
+
     private Thread dispatchThread = new Thread("LikeApp GATT Dispatcher") {
 
         @Override
@@ -89,6 +112,7 @@ public final class BtLEQueue {
             while (!mDisposed && !mCrashed) {
                 try {
                     AbstractTransaction qTransaction = mTransactions.take();
+                    QUEUE_WAIT_LATENCY.recordSince(qTransaction.getEnqueueNanos());
 
                     if (!isConnected()) {
                         LOG.debug("not connected, waiting for connection...");
@@ -139,12 +163,27 @@ public final class BtLEQueue {
                         Transaction transaction = (Transaction)qTransaction;
                         internalGattCallback.setTransactionGattCallback(transaction.getGattCallback());
                         mAbortTransaction = false;
+                        mWriteWindow.reset();
+                        boolean pipelined = mWriteWindow.getMaxSize() > 1;
                         // Run all actions of the transaction until one doesn't succeed
                         for (BtLEAction action : transaction.getActions()) {
                             if (mAbortTransaction) { // got disconnected
                                 LOG.info("Aborting running transaction");
                                 break;
                             }
+                            if (pipelined) {
+                                if (action.isPipelinable() && !(action instanceof GattListenerAction)) {
+                                    if (!runPipelinedWrite(action)) {
+                                        LOG.error("Pipelined write failed: " + action);
+                                        break; // abort the transaction
+                                    }
+                                    continue;
+                                }
+                                // all other actions rely on mWaitCharacteristic, so let the window drain first
+                                if (!awaitPipelinedWrites()) {
+                                    break;
+                                }
+                            }
                             mWaitCharacteristic = action.getCharacteristic();
                             mWaitForActionResultLatch = new CountDownLatch(1);
                             if (LOG.isDebugEnabled()) {
@@ -155,6 +194,10 @@ public final class BtLEQueue {
                                 // always be the last action in the transaction
                                 internalGattCallback.setTransactionGattCallback(((GattListenerAction) action).getGattCallback());
                             }
+                            long actionStartNanos = System.nanoTime();
+                            if (action instanceof RequestMtuAction) {
+                                mMtuRequestNanos = actionStartNanos;
+                            }
                             if (action.run(mBluetoothGatt)) {
                                 // check again, maybe due to some condition, action did not need to write, so we can't wait
                                 boolean waitForResult = action.expectsResult();
@@ -162,14 +205,20 @@ public final class BtLEQueue {
                                     mWaitForActionResultLatch.await();
                                     mWaitForActionResultLatch = null;
                                     if (mAbortTransaction) {
+                                        Metrics.counter("btle.transactions_aborted").incrementAndGet();
                                         break;
                                     }
                                 }
+                                getActionLatency(action).recordSince(actionStartNanos);
                             } else {
                                 LOG.error("Action returned false: " + action);
+                                Metrics.counter("btle.actions_failed").incrementAndGet();
                                 break; // abort the transaction
                             }
                         }
+                        if (pipelined && !awaitPipelinedWrites()) {
+                            Metrics.counter("btle.transactions_aborted").incrementAndGet();
+                        }
                     }
                 } catch (InterruptedException ignored) {
                     mConnectionLatch = null;
@@ -181,6 +230,7 @@ public final class BtLEQueue {
                 } finally {
                     mWaitForActionResultLatch = null;
                     mWaitCharacteristic = null;
+                    mWriteWindow.reset();
                 }
             }
             LOG.info("Queue Dispatch Thread terminated.");
@@ -202,6 +252,130 @@ public final class BtLEQueue {
         mAutoReconnect = enable;
     }
 
+    /**
+     * Sets the number of write-without-response actions that may be in flight at the same time.
+     * With a value greater than 1, such writes of a transaction are issued back-to-back until
+     * the window is full, and every {@code onCharacteristicWrite} callback returns a credit.
+     * All other actions still wait for their result, after the window has been drained.
+     *
+     * @param maxPipelinedWrites the window size; 1 disables pipelining
+     * @see org.likeapp.likeapp.devices.DeviceCoordinator#getMaxPipelinedWrites(GBDevice)
+     */
+    public void setMaxPipelinedWrites(int maxPipelinedWrites) {
+        mWriteWindow.setMaxSize(maxPipelinedWrites);
+    }
+
+    public int getMaxPipelinedWrites() {
+        return mWriteWindow.getMaxSize();
+    }
+
+    /**
+     * Returns the number of bytes successfully written to characteristics since the last
+     * call to {@link #resetWriteStatistics()}.
+     */
+    public long getBytesWritten() {
+        return mBytesWritten;
+    }
+
+    /**
+     * Returns the average write throughput in bytes per second, measured between the first
+     * and the last successful write since the last call to {@link #resetWriteStatistics()}.
+     */
+    public long getWriteThroughput() {
+        long duration = mLastWriteTimestamp - mFirstWriteTimestamp;
+        if (duration <= 0) {
+            return 0;
+        }
+        return mBytesWritten * 1000 / duration;
+    }
+
+    public void resetWriteStatistics() {
+        mBytesWritten = 0;
+        mFirstWriteTimestamp = 0;
+        mLastWriteTimestamp = 0;
+    }
+
+    private void countBytesWritten(BluetoothGattCharacteristic characteristic, int length) {
+        long now = System.currentTimeMillis();
+        if (mFirstWriteTimestamp == 0) {
+            mFirstWriteTimestamp = now;
+        }
+        mLastWriteTimestamp = now;
+        mBytesWritten += length;
+        getMeter(WRITE_METERS, "btle.write.", characteristic.getUuid()).mark(length);
+    }
+
+    private static LatencyHistogram getActionLatency(BtLEAction action) {
+        LatencyHistogram histogram = ACTION_LATENCIES.get(action.getClass());
+        if (histogram == null) {
+            histogram = Metrics.histogram("btle.action." + action.getClass().getSimpleName());
+            ACTION_LATENCIES.put(action.getClass(), histogram);
+        }
+        return histogram;
+    }
+
+    private static Metrics.Meter getMeter(ConcurrentMap<UUID, Metrics.Meter> meters, String prefix, UUID uuid) {
+        Metrics.Meter meter = meters.get(uuid);
+        if (meter == null) {
+            meter = Metrics.meter(prefix + uuid);
+            meters.put(uuid, meter);
+        }
+        return meter;
+    }
+
+    /**
+     * Runs the given write without waiting for its result, once there is a free slot in
+     * the write window. The Android stack itself only accepts one pending operation, so
+     * when it reports being busy, the write is retried after the next completion. All of
+     * this must happen within {@link #PIPELINED_WRITE_TIMEOUT_MILLIS}.
+     *
+     * @return false if the write could not be issued in time or the transaction was aborted
+     */
+    private boolean runPipelinedWrite(BtLEAction action) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + PIPELINED_WRITE_TIMEOUT_MILLIS;
+        while (true) {
+            long completedBefore = mWriteWindow.acquire(action.getPipelinedWriteLength(), deadline);
+            if (completedBefore < 0 || mAbortTransaction) {
+                if (completedBefore >= 0) {
+                    mWriteWindow.cancel();
+                } else if (!mAbortTransaction) {
+                    LOG.warn("Timeout waiting for a free slot for a pipelined write");
+                }
+                return false;
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("About to run pipelined action: " + action);
+            }
+            if (action.run(mBluetoothGatt)) {
+                return true;
+            }
+            mWriteWindow.cancel();
+            if (mWriteWindow.size() == 0) {
+                // nothing pending that could keep the stack busy
+                return false;
+            }
+            if (!mWriteWindow.awaitCompletion(completedBefore, deadline)) {
+                LOG.warn("Timeout waiting for pipelined write to complete");
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Waits until all pipelined writes have been acknowledged by the stack.
+     *
+     * @return false if the transaction was aborted or the writes did not complete in time
+     */
+    private boolean awaitPipelinedWrites() throws InterruptedException {
+        if (!mWriteWindow.awaitEmpty(System.currentTimeMillis() + PIPELINED_WRITE_TIMEOUT_MILLIS)) {
+            if (!mAbortTransaction) {
+                LOG.warn("Timeout waiting for " + mWriteWindow.size() + " pipelined writes");
+            }
+            return false;
+        }
+        return !mAbortTransaction;
+    }
+
     protected boolean isConnected() {
         return mGbDevice.isConnected();
     }
@@ -245,6 +419,7 @@ public final class BtLEQueue {
             }
         }
 
+        mConnectStartNanos = System.nanoTime();
         synchronized (mGattMonitor) {
             // connectGatt with true doesn't really work ;( too often connection problems
             if (GBApplication.isRunningMarshmallowOrLater()) {
@@ -289,6 +464,7 @@ public final class BtLEQueue {
 
     private void handleDisconnected(int status) {
         LOG.debug("handleDisconnected: " + status);
+        Metrics.counter("btle.disconnects").incrementAndGet();
         internalGattCallback.reset();
         mTransactions.clear();
         mAbortTransaction = true;
@@ -299,6 +475,7 @@ public final class BtLEQueue {
         if (mWaitForServerActionResultLatch != null) {
             mWaitForServerActionResultLatch.countDown();
         }
+        mWriteWindow.abort();
 
         setDeviceConnectionState(State.NOT_CONNECTED);
 
@@ -348,9 +525,12 @@ public final class BtLEQueue {
     }
 
     /**
-     * Adds a transaction to the end of the queue.
+     * Adds a transaction to the end of the lane of its priority. A queued transaction with
+     * the same coalescing key is replaced.
      *
      * @param transaction
+     * @see TransactionBuilder#setPriority(TransactionPriority)
+     * @see TransactionBuilder#setCoalescingKey(String)
      */
     public void add(Transaction transaction) {
         LOG.debug("about to add: " + transaction);
@@ -372,7 +552,7 @@ public final class BtLEQueue {
     }
 
     /**
-     * Adds a transaction to the beginning of the queue.
+     * Adds a transaction to the beginning of the queue, before transactions of any priority.
      * Note that actions of the *currently executing* transaction
      * will still be executed before the given transaction.
      *
@@ -381,14 +561,7 @@ public final class BtLEQueue {
     public void insert(Transaction transaction) {
         LOG.debug("about to insert: " + transaction);
         if (!transaction.isEmpty()) {
-            List<AbstractTransaction> tail = new ArrayList<>(mTransactions.size() + 2);
-            //mTransactions.drainTo(tail);
-            for( AbstractTransaction t : mTransactions) {
-                tail.add(t);
-            }
-            mTransactions.clear();
-            mTransactions.add(transaction);
-            mTransactions.addAll(tail);
+            mTransactions.insert(transaction);
         }
     }
 
@@ -509,6 +682,12 @@ public final class BtLEQueue {
             }
 
             if (status == BluetoothGatt.GATT_SUCCESS) {
+                long connectStartNanos = mConnectStartNanos;
+                if (connectStartNanos != 0) {
+                    // from connect() until the services are known, i.e. the connection is usable
+                    CONNECT_LATENCY.recordSince(connectStartNanos);
+                    mConnectStartNanos = 0;
+                }
                 if (getCallbackToUse() != null) {
                     // only propagate the successful event
                     getCallbackToUse().onServicesDiscovered(gatt);
@@ -527,10 +706,24 @@ public final class BtLEQueue {
             if (!checkCorrectGattInstance(gatt, "characteristic write")) {
                 return;
             }
+            // with pipelined writes, the characteristic may already hold the value of a later one
+            int length = mWriteWindow.complete(status == BluetoothGatt.GATT_SUCCESS);
+            boolean pipelined = length >= 0;
+            if (!pipelined) {
+                byte[] value = characteristic.getValue();
+                length = value != null ? value.length : 0;
+            } else if (status != BluetoothGatt.GATT_SUCCESS) {
+                mAbortTransaction = true;
+            }
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                countBytesWritten(characteristic, length);
+            }
             if (getCallbackToUse() != null) {
                 getCallbackToUse().onCharacteristicWrite(gatt, characteristic, status);
             }
-            checkWaitingCharacteristic(characteristic, status);
+            if (!pipelined) {
+                checkWaitingCharacteristic(characteristic, status);
+            }
         }
 
 
@@ -538,6 +731,11 @@ public final class BtLEQueue {
         @Override
         public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
             super.onMtuChanged(gatt, mtu, status);
+            long mtuRequestNanos = mMtuRequestNanos;
+            if (mtuRequestNanos != 0) {
+                MTU_LATENCY.recordSince(mtuRequestNanos);
+                mMtuRequestNanos = 0;
+            }
 
             if(getCallbackToUse() != null){
                 getCallbackToUse().onMtuChanged(gatt, mtu, status);
@@ -600,12 +798,15 @@ public final class BtLEQueue {
         public void onCharacteristicChanged(BluetoothGatt gatt,
                                             BluetoothGattCharacteristic characteristic) {
             if (LOG.isTraceEnabled()) {
-                String content = Logging.formatBytes(characteristic.getValue());
-                LOG.trace ("characteristic changed: " + characteristic.getUuid() + " value: " + content);
+                LOG.trace ("characteristic changed: {} value: {}", characteristic.getUuid(), Logging.formatBytesLazily(characteristic.getValue()));
             }
             if (!checkCorrectGattInstance(gatt, "characteristic changed")) {
                 return;
             }
+            byte[] value = characteristic.getValue();
+            if (value != null) {
+                getMeter(NOTIFY_METERS, "btle.notify.", characteristic.getUuid()).mark(value.length);
+            }
             if (getCallbackToUse() != null) {
                 try {
                     getCallbackToUse().onCharacteristicChanged(gatt, characteristic);
@@ -0,0 +1,147 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.service.btle;
+
+import java.util.ArrayDeque;
+
+/**
+ * The writes without response a {@link BtLEQueue} has issued and whose
+ * {@code onCharacteristicWrite} callback is still pending. Completions arrive in the
+ * order of the writes, so the length of every write is remembered when it is issued,
+ * because the characteristic's value may already have been replaced by a later write.
+ * <p>
+ * All waits end at the given deadline, so a lost callback fails the transaction instead
+ * of blocking the queue forever.
+ */
+final class PipelinedWriteWindow {
+    private final ArrayDeque<Integer> mLengths = new ArrayDeque<>();
+    private int mMaxSize = 1;
+    private long mCompleted;
+    private boolean mAborted;
+
+    synchronized void setMaxSize(int maxSize) {
+        mMaxSize = Math.max(1, maxSize);
+        notifyAll();
+    }
+
+    synchronized int getMaxSize() {
+        return mMaxSize;
+    }
+
+    synchronized int size() {
+        return mLengths.size();
+    }
+
+    /**
+     * Waits for a free slot and takes it for a write of the given length.
+     *
+     * @return the number of writes completed so far, or -1 if the window was aborted or
+     * the deadline passed
+     */
+    synchronized long acquire(int length, long deadlineMillis) throws InterruptedException {
+        while (mLengths.size() >= mMaxSize && !mAborted) {
+            if (!waitUntil(deadlineMillis)) {
+                return -1;
+            }
+        }
+        if (mAborted) {
+            return -1;
+        }
+        mLengths.addLast(length);
+        return mCompleted;
+    }
+
+    /**
+     * Frees the slot of the last acquired write, because it could not be issued.
+     */
+    synchronized void cancel() {
+        mLengths.pollLast();
+        notifyAll();
+    }
+
+    /**
+     * Waits until more than the given number of writes have been completed.
+     *
+     * @return false if the window was aborted or the deadline passed
+     */
+    synchronized boolean awaitCompletion(long completedBefore, long deadlineMillis) throws InterruptedException {
+        while (mCompleted == completedBefore && !mAborted) {
+            if (!waitUntil(deadlineMillis)) {
+                return false;
+            }
+        }
+        return !mAborted;
+    }
+
+    /**
+     * Waits until all writes have been completed.
+     *
+     * @return false if the window was aborted or the deadline passed
+     */
+    synchronized boolean awaitEmpty(long deadlineMillis) throws InterruptedException {
+        while (!mLengths.isEmpty() && !mAborted) {
+            if (!waitUntil(deadlineMillis)) {
+                return false;
+            }
+        }
+        return !mAborted;
+    }
+
+    /**
+     * Completes the oldest write in flight and aborts the window if it failed.
+     *
+     * @return the length of the completed write, or -1 if there was none in flight
+     */
+    synchronized int complete(boolean success) {
+        Integer length = mLengths.pollFirst();
+        if (length == null) {
+            return -1;
+        }
+        mCompleted++;
+        if (!success) {
+            mAborted = true;
+        }
+        notifyAll();
+        return length;
+    }
+
+    /**
+     * Wakes up all waiting threads, which give up.
+     */
+    synchronized void abort() {
+        mAborted = true;
+        notifyAll();
+    }
+
+    /**
+     * Forgets all writes in flight, e.g. when a new transaction starts.
+     */
+    synchronized void reset() {
+        mLengths.clear();
+        mAborted = false;
+        notifyAll();
+    }
+
+    private boolean waitUntil(long deadlineMillis) throws InterruptedException {
+        long remaining = deadlineMillis - System.currentTimeMillis();
+        if (remaining <= 0) {
+            return false;
+        }
+        wait(remaining);
+        return true;
+    }
+}
@@ -20,7 +20,7 @@ package org.likeapp.likeapp.service.btle;
 import android.bluetooth.BluetoothGattCharacteristic;
 import android.os.Build;
 
-import org.likeapp.likeapp.util.GB;
+import org.likeapp.likeapp.Logging;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,7 +58,9 @@ public class TransactionBuilder {
             LOG.trace ("Unable to write characteristic: null", new Exception ());
             return this;
         }
-        LOG.trace ("---> WRITE:  " + characteristic.getUuid () + ": " + GB.hexdump (data, 0, data.length, true));
+        if (LOG.isTraceEnabled ()) {
+            LOG.trace ("---> WRITE:  {}: {}", characteristic.getUuid (), Logging.hexdumpLazily (data));
+        }
         WriteAction action = new WriteAction(characteristic, data);
         return add(action);
     }
@@ -117,6 +119,23 @@ public class TransactionBuilder {
         return mTransaction.getGattCallback();
     }
 
+    /**
+     * Sets the lane the transaction will be queued in, {@link TransactionPriority#NORMAL} by default.
+     */
+    public void setPriority(TransactionPriority priority) {
+        mTransaction.setPriority(priority);
+    }
+
+    /**
+     * Lets the transaction replace a still queued transaction with the same key, e.g. for
+     * music info or weather updates, where only the latest one needs to be sent.
+     *
+     * @param key the kind of state sent by the transaction, or null
+     */
+    public void setCoalescingKey(@Nullable String key) {
+        mTransaction.setCoalescingKey(key);
+    }
+
     /**
      * To be used as the final step to execute the transaction by the given queue.
      *
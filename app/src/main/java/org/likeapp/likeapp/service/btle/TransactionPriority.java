@@ -0,0 +1,39 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.service.btle;
+
+/**
+ * The lane a transaction is queued in by the {@link BtLEQueue}. Queued transactions of a
+ * higher priority are run before those of a lower one, unless these have waited too long (see
+ * {@link TransactionQueue#MAX_WAIT_MILLIS}), transactions of the same priority in the order
+ * they were queued.
+ */
+public enum TransactionPriority {
+    /**
+     * For things the user waits for, like incoming calls or finding the device, and for
+     * the device initialization, which everything else depends on.
+     */
+    INTERACTIVE,
+    /**
+     * The default, e.g. for notifications and settings.
+     */
+    NORMAL,
+    /**
+     * For long running transfers like fetching activity data or updating the firmware.
+     */
+    BULK
+}
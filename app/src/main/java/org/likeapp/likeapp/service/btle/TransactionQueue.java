@@ -0,0 +1,208 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.service.btle;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.likeapp.likeapp.util.Metrics;
+
+/**
+ * The transactions waiting to be run by a {@link BtLEQueue}, with one FIFO lane per
+ * {@link TransactionPriority}. A transaction with a coalescing key replaces a queued one
+ * with the same key, which would only send outdated data. It takes the replaced one's
+ * place if both have the same priority.
+ * <p>
+ * To keep a steady stream of higher priority transactions from starving the lower lanes,
+ * e.g. a fetch whose device gives up waiting for the next step, a transaction that has waited
+ * longer than {@link #MAX_WAIT_MILLIS} is run next, before those of higher lanes. Only the
+ * transactions added with {@link #insert(AbstractTransaction)} always come first.
+ */
+final class TransactionQueue {
+    static final long MAX_WAIT_MILLIS = 3000;
+
+    private final LinkedList<AbstractTransaction> mImmediate = new LinkedList<>();
+    private final List<LinkedList<AbstractTransaction>> mLanes = new ArrayList<>();
+    private final Map<String, AbstractTransaction> mCoalescable = new HashMap<>();
+    private final AtomicLong mCoalescedCount = Metrics.counter("btle.transactions_coalesced");
+    private final AtomicLong mOverdueCount = Metrics.counter("btle.transactions_overdue");
+    private final long mMaxWaitNanos;
+    private int mSize;
+
+    TransactionQueue() {
+        this(MAX_WAIT_MILLIS);
+    }
+
+    TransactionQueue(long maxWaitMillis) {
+        mMaxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        for (int i = 0; i < TransactionPriority.values().length; i++) {
+            mLanes.add(new LinkedList<AbstractTransaction>());
+        }
+    }
+
+    /**
+     * Adds the transaction to the end of its lane.
+     */
+    synchronized void add(AbstractTransaction transaction) {
+        transaction.markEnqueued();
+        if (!coalesce(transaction)) {
+            mLanes.get(transaction.getPriority().ordinal()).addLast(transaction);
+            mSize++;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Adds the transaction before all others, regardless of its priority and how long the
+     * others have waited.
+     */
+    synchronized void insert(AbstractTransaction transaction) {
+        transaction.markEnqueued();
+        String key = transaction.getCoalescingKey();
+        if (key != null) {
+            AbstractTransaction replaced = mCoalescable.put(key, transaction);
+            if (replaced != null) {
+                remove(replaced);
+                mCoalescedCount.incrementAndGet();
+            }
+        }
+        mImmediate.addFirst(transaction);
+        mSize++;
+        notifyAll();
+    }
+
+    /**
+     * Waits for and removes the first transaction of the highest priority lane that is not empty,
+     * unless one of a lower lane is overdue.
+     */
+    synchronized AbstractTransaction take() throws InterruptedException {
+        while (mSize == 0) {
+            wait();
+        }
+        LinkedList<AbstractTransaction> next = !mImmediate.isEmpty() ? mImmediate : getOverdueLane();
+        if (next == null) {
+            for (LinkedList<AbstractTransaction> lane : mLanes) {
+                if (!lane.isEmpty()) {
+                    next = lane;
+                    break;
+                }
+            }
+        }
+        if (next == null) {
+            throw new IllegalStateException("queue size is " + mSize + ", but all lanes are empty");
+        }
+        AbstractTransaction transaction = next.removeFirst();
+        mSize--;
+        String key = transaction.getCoalescingKey();
+        if (key != null && mCoalescable.get(key) == transaction) {
+            mCoalescable.remove(key);
+        }
+        return transaction;
+    }
+
+    /**
+     * Returns the lane below the highest non-empty one whose first transaction has waited
+     * the longest, if that is longer than the maximum wait time, or null.
+     */
+    private LinkedList<AbstractTransaction> getOverdueLane() {
+        long now = System.nanoTime();
+        LinkedList<AbstractTransaction> result = null;
+        long oldest = 0;
+        boolean higherLaneWaiting = false;
+        for (LinkedList<AbstractTransaction> lane : mLanes) {
+            AbstractTransaction first = lane.peekFirst();
+            if (first == null) {
+                continue;
+            }
+            long waited = now - first.getEnqueueNanos();
+            if (higherLaneWaiting && waited > mMaxWaitNanos && waited > oldest) {
+                result = lane;
+                oldest = waited;
+            }
+            higherLaneWaiting = true;
+        }
+        if (result != null) {
+            mOverdueCount.incrementAndGet();
+        }
+        return result;
+    }
+
+    synchronized void clear() {
+        mImmediate.clear();
+        for (LinkedList<AbstractTransaction> lane : mLanes) {
+            lane.clear();
+        }
+        mCoalescable.clear();
+        mSize = 0;
+    }
+
+    synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Replaces a queued transaction with the same coalescing key as the given one in place,
+     * if it is queued in the same lane. Otherwise the queued transaction is just removed.
+     *
+     * @return true if the given transaction has been put into the place of the replaced one
+     */
+    private boolean coalesce(AbstractTransaction transaction) {
+        String key = transaction.getCoalescingKey();
+        if (key == null) {
+            return false;
+        }
+        AbstractTransaction replaced = mCoalescable.put(key, transaction);
+        if (replaced == null) {
+            return false;
+        }
+        mCoalescedCount.incrementAndGet();
+        if (replaced.getPriority() == transaction.getPriority()) {
+            ListIterator<AbstractTransaction> it = mLanes.get(replaced.getPriority().ordinal()).listIterator();
+            while (it.hasNext()) {
+                if (it.next() == replaced) {
+                    it.set(transaction);
+                    return true;
+                }
+            }
+        }
+        // in another lane, or at the front after #insert()
+        remove(replaced);
+        return false;
+    }
+
+    private void remove(AbstractTransaction transaction) {
+        List<LinkedList<AbstractTransaction>> lists = new ArrayList<>(mLanes);
+        lists.add(mImmediate);
+        for (LinkedList<AbstractTransaction> lane : lists) {
+            Iterator<AbstractTransaction> it = lane.iterator();
+            while (it.hasNext()) {
+                if (it.next() == transaction) {
+                    it.remove();
+                    mSize--;
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -33,6 +33,12 @@ public abstract class ConditionalWriteAction extends WriteAction {
         return true;
     }
 
+    @Override
+    public boolean isPipelinable() {
+        // we might not write anything at all, so there would be no callback to return the credit
+        return false;
+    }
+
     /**
      * Checks the condition whether the write shall happen or not.
      * Returns the actual value to be written or null in case nothing shall be written.
@@ -55,7 +55,7 @@ public class WriteAction extends BtLEAction {
 
     protected boolean writeValue(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, byte[] value) {
         if (LOG.isTraceEnabled ()) {
-            LOG.trace ("writing to characteristic: " + characteristic.getUuid() + ": " + Logging.formatBytes(value));
+            LOG.trace ("writing to characteristic: {}: {}", characteristic.getUuid(), Logging.formatBytesLazily(value));
         }
         if (characteristic.setValue(value)) {
             return gatt.writeCharacteristic(characteristic);
@@ -71,4 +71,14 @@ public class WriteAction extends BtLEAction {
     public boolean expectsResult() {
         return true;
     }
+
+    @Override
+    public boolean isPipelinable() {
+        return getCharacteristic().getWriteType() == BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE;
+    }
+
+    @Override
+    public int getPipelinedWriteLength() {
+        return value != null ? value.length : 0;
+    }
 }
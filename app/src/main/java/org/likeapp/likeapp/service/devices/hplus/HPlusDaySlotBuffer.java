@@ -0,0 +1,157 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.service.devices.hplus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.likeapp.likeapp.database.DailyActivityRollupHelper;
+import org.likeapp.likeapp.database.SleepSessionHelper;
+import org.likeapp.likeapp.devices.hplus.HPlusHealthSampleProvider;
+import org.likeapp.likeapp.entities.DaoSession;
+import org.likeapp.likeapp.entities.HPlusHealthActivityOverlay;
+import org.likeapp.likeapp.entities.HPlusHealthActivitySample;
+import org.likeapp.likeapp.model.ActivityKind;
+import org.likeapp.likeapp.model.ActivitySample;
+
+/**
+ * Collects the day slots received during a sync, ordered by time. Slots are stored at
+ * their position within the last and the current day, so they never need to be sorted,
+ * and a slot received twice replaces the earlier one.
+ */
+class HPlusDaySlotBuffer {
+    private static final int SLOT_SECONDS = 10 * 60;
+    private static final int SLOTS_PER_DAY = 144;
+    private static final int CAPACITY = 2 * SLOTS_PER_DAY + 1;
+
+    /**
+     * The slot index (timestamp / SLOT_SECONDS) of position 0, set by the first slot added.
+     */
+    private int firstIndex = -1;
+    private int count;
+    private final int[] timestamps = new int[CAPACITY];
+    private final int[] rawKinds = new int[CAPACITY];
+    private final int[] steps = new int[CAPACITY];
+    private final int[] heartRates = new int[CAPACITY];
+    private final int[] intensities = new int[CAPACITY];
+    private final byte[][] rawData = new byte[CAPACITY][];
+
+    /**
+     * Adds the given slot, unless it is invalid, i.e. contains no data.
+     *
+     * @return false if the slot is too far apart from the buffered ones and the buffer
+     * needs to be written before
+     */
+    boolean add(HPlusDataRecordDaySlot record) {
+        if (!record.isValid()) {
+            return true;
+        }
+        int index = record.timestamp / SLOT_SECONDS;
+        if (firstIndex < 0) {
+            // all slots of a sync are within a day of each other
+            firstIndex = index - SLOTS_PER_DAY;
+        }
+        int position = index - firstIndex;
+        if (position < 0 || position >= CAPACITY) {
+            return false;
+        }
+        if (rawData[position] == null) {
+            count++;
+        }
+        timestamps[position] = record.timestamp;
+        rawKinds[position] = record.type;
+        steps[position] = record.steps;
+        heartRates[position] = record.heartRate;
+        intensities[position] = record.intensity;
+        rawData[position] = record.getRawData();
+        return true;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    void clear() {
+        for (int i = 0; i < CAPACITY; i++) {
+            rawData[i] = null;
+        }
+        firstIndex = -1;
+        count = 0;
+    }
+
+    /**
+     * Writes the buffered slots as samples, together with the not worn overlays, in a single
+     * transaction and clears the buffer.
+     *
+     * @param detectNotWorn whether slots without heart rate and steps mean that the device was not worn
+     */
+    void write(final DaoSession session, final HPlusHealthSampleProvider provider, final long deviceId, long userId, boolean detectNotWorn) {
+        final HPlusHealthActivitySample[] samples = new HPlusHealthActivitySample[count];
+        final List<HPlusHealthActivityOverlay> overlays = new ArrayList<>();
+        int notWornFrom = -1;
+        int notWornTo = -1;
+        int n = 0;
+        for (int i = 0; i < CAPACITY; i++) {
+            if (rawData[i] == null) {
+                continue;
+            }
+            int timestamp = timestamps[i];
+            HPlusHealthActivitySample sample = new HPlusHealthActivitySample(timestamp, deviceId, userId,
+                    rawData[i], rawKinds[i], intensities[i], steps[i], heartRates[i],
+                    ActivitySample.NOT_MEASURED, ActivitySample.NOT_MEASURED);
+            sample.setProvider(provider);
+            samples[n++] = sample;
+
+            if (detectNotWorn && heartRates[i] == ActivitySample.NOT_MEASURED && steps[i] <= 0) {
+                // consecutive not worn slots are merged into one overlay
+                if (notWornFrom >= 0 && timestamp - notWornTo > SLOT_SECONDS) {
+                    overlays.add(new HPlusHealthActivityOverlay(notWornFrom, notWornTo, ActivityKind.TYPE_NOT_WORN, deviceId, userId, null));
+                    notWornFrom = -1;
+                }
+                if (notWornFrom < 0) {
+                    notWornFrom = timestamp;
+                }
+                notWornTo = timestamp + SLOT_SECONDS;
+            }
+        }
+        if (notWornFrom >= 0) {
+            overlays.add(new HPlusHealthActivityOverlay(notWornFrom, notWornTo, ActivityKind.TYPE_NOT_WORN, deviceId, userId, null));
+        }
+        int from = Integer.MAX_VALUE;
+        int to = Integer.MIN_VALUE;
+        for (HPlusHealthActivityOverlay overlay : overlays) {
+            from = Math.min(from, overlay.getTimestampFrom());
+            to = Math.max(to, overlay.getTimestampTo());
+        }
+        final int overlayFrom = from;
+        final int overlayTo = to;
+
+        session.runInTx(new Runnable() {
+            @Override
+            public void run() {
+                provider.addGBActivitySamples(samples);
+                if (!overlays.isEmpty()) {
+                    session.getHPlusHealthActivityOverlayDao().insertOrReplaceInTx(overlays);
+                    // the samples are handled already, but the last overlay ends after them
+                    DailyActivityRollupHelper.update(provider, session, deviceId, overlayFrom, overlayTo);
+                    SleepSessionHelper.invalidate(session, deviceId, overlayFrom);
+                }
+            }
+        });
+        clear();
+    }
+}
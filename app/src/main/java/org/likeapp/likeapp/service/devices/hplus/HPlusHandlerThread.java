@@ -29,8 +29,6 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.GregorianCalendar;
 import java.util.List;
 
@@ -38,6 +36,8 @@ import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import org.likeapp.likeapp.GBApplication;
 import org.likeapp.likeapp.GBException;
 import org.likeapp.likeapp.database.DBHandler;
+import org.likeapp.likeapp.database.DailyActivityRollupHelper;
+import org.likeapp.likeapp.database.SleepSessionHelper;
 import org.likeapp.likeapp.database.DBHelper;
 import org.likeapp.likeapp.devices.hplus.HPlusConstants;
 import org.likeapp.likeapp.devices.hplus.HPlusCoordinator;
@@ -87,7 +87,13 @@ class HPlusHandlerThread extends GBDeviceIoThread {
 
     private final Object waitObject = new Object();
 
-    List<HPlusDataRecordDaySlot> mDaySlotRecords = new ArrayList<>();
+    private final HPlusDaySlotBuffer mDaySlots = new HPlusDaySlotBuffer();
+
+    /**
+     * The database ids of the user and device, resolved once per sync.
+     */
+    private Long mUserId = null;
+    private Long mDeviceId = null;
 
     private HPlusDataRecordDaySlot mCurrentDaySlot = null;
 
@@ -175,7 +181,9 @@ class HPlusHandlerThread extends GBDeviceIoThread {
         mLastSlotReceived = -1;
         mLastSlotRequested = 0;
         mCurrentDaySlot = null;
-        mDaySlotRecords.clear();
+        mDaySlots.clear();
+        mUserId = null;
+        mDeviceId = null;
 
         try {
             if (!mHPlusSupport.isConnected())
@@ -236,7 +244,7 @@ class HPlusHandlerThread extends GBDeviceIoThread {
         if (record.slot == nowSlot){
             if (mCurrentDaySlot != null && mCurrentDaySlot != record) {
                 mCurrentDaySlot.accumulate(record);
-                mDaySlotRecords.add(mCurrentDaySlot);
+                addDaySlot(mCurrentDaySlot);
                 mCurrentDaySlot = null;
             } else {
                 //Store it to a temp variable as this is an intermediate value
@@ -259,7 +267,7 @@ class HPlusHandlerThread extends GBDeviceIoThread {
 
             //Ignore the current slot as it is incomplete
             if (record.slot != nowSlot)
-                mDaySlotRecords.add(record);
+                addDaySlot(record);
 
             //Still fetching ring buffer. Request the next slots
             if (record.slot == mLastSlotRequested) {
@@ -277,89 +285,43 @@ class HPlusHandlerThread extends GBDeviceIoThread {
             mGetDaySlotsTime.add(Calendar.DAY_OF_MONTH, 1);
         }
 
-        if (mDaySlotRecords.size() > 0) {
-            //Sort the samples
-            Collections.sort(mDaySlotRecords, new Comparator<HPlusDataRecordDaySlot>() {
-                public int compare(HPlusDataRecordDaySlot one, HPlusDataRecordDaySlot other) {
-                    return one.timestamp - other.timestamp;
-                }
-            });
-
-            List<Integer> notWornSlots = new ArrayList<>();
-
-            try (DBHandler dbHandler = GBApplication.acquireDB()) {
-                HPlusHealthSampleProvider provider = new HPlusHealthSampleProvider(getDevice(), dbHandler.getDaoSession());
-                List<HPlusHealthActivitySample> samples = new ArrayList<>();
-
-                for (HPlusDataRecordDaySlot storedRecord : mDaySlotRecords) {
-
-                    //Invalid records (no data) will be ignored
-                    if (!storedRecord.isValid())
-                        continue;
-
-                    HPlusHealthActivitySample sample = createSample(dbHandler, storedRecord.timestamp);
-
-                    sample.setRawHPlusHealthData(storedRecord.getRawData());
-                    sample.setSteps(storedRecord.steps);
-
-                    sample.setRawIntensity(storedRecord.intensity);
-                    sample.setHeartRate(storedRecord.heartRate);
-                    sample.setRawKind(storedRecord.type);
-                    sample.setProvider(provider);
-                    samples.add(sample);
-
-                    if (HPlusCoordinator.getAllDayHR(gbDevice.getAddress()) == HPlusConstants.ARG_HEARTRATE_ALLDAY_ON && storedRecord.heartRate == ActivitySample.NOT_MEASURED && storedRecord.steps <= 0) {
-                        notWornSlots.add(sample.getTimestamp());
-                        notWornSlots.add(sample.getTimestamp() + 10 * 60);
-
-                    }
-                }
-
-                provider.getSampleDao().insertOrReplaceInTx(samples);
-                mDaySlotRecords.clear();
-
-                //Create an overlay with unused slots
-                if (notWornSlots.size() > 0) {
-                    DaoSession session = dbHandler.getDaoSession();
-                    Long userId = DBHelper.getUser(session).getId();
-                    Long deviceId = DBHelper.getDevice(getDevice(), session).getId();
-
-                    HPlusHealthActivityOverlayDao overlayDao = session.getHPlusHealthActivityOverlayDao();
-                    List<HPlusHealthActivityOverlay> overlayList = new ArrayList<>();
-
-
-                    int firstSlotTimestamp = notWornSlots.get(0);
-                    int lastSlotTimestamp = notWornSlots.get(0);
-
-                    int i = 1;
-                    for (Integer timestamp : notWornSlots) {
-
-                        //If it is the last of the samples or of the interruption period
-                        if (timestamp - lastSlotTimestamp > 10 * 60) {
-                            overlayList.add(new HPlusHealthActivityOverlay(firstSlotTimestamp, lastSlotTimestamp, ActivityKind.TYPE_NOT_WORN, deviceId, userId, null));
-                            firstSlotTimestamp = timestamp;
-                        }
-
-                        lastSlotTimestamp = timestamp;
-
-                    }
+        if (!mDaySlots.isEmpty()) {
+            writeDaySlots();
+        }
 
-                    if (firstSlotTimestamp != lastSlotTimestamp)
-                        overlayList.add(new HPlusHealthActivityOverlay(firstSlotTimestamp, lastSlotTimestamp, ActivityKind.TYPE_NOT_WORN, deviceId, userId, null));
+        return true;
+    }
 
-                    overlayDao.insertOrReplaceInTx(overlayList);
-                }
 
-            } catch (GBException ex) {
-                LOG.info((ex.getMessage()));
-            } catch (Exception ex) {
-                LOG.info(ex.getMessage());
+    private void addDaySlot(HPlusDataRecordDaySlot record) {
+        if (!mDaySlots.add(record)) {
+            // an empty buffer takes any slot, so this only fails if the buffered ones were not written
+            if (!writeDaySlots() || !mDaySlots.add(record)) {
+                LOG.warn("Dropping day slot, the buffered slots could not be written: " + record);
             }
         }
-
-        return true;
     }
 
+    /**
+     * Writes the buffered day slots and the resulting not worn overlays
+     *
+     * @return false if writing failed and the slots are still buffered
+     */
+    private boolean writeDaySlots() {
+        try (DBHandler dbHandler = GBApplication.acquireDB()) {
+            DaoSession session = dbHandler.getDaoSession();
+            resolveIds(session);
+            HPlusHealthSampleProvider provider = new HPlusHealthSampleProvider(getDevice(), session);
+            boolean detectNotWorn = HPlusCoordinator.getAllDayHR(gbDevice.getAddress()) == HPlusConstants.ARG_HEARTRATE_ALLDAY_ON;
+            mDaySlots.write(session, provider, mDeviceId, mUserId, detectNotWorn);
+            return true;
+        } catch (GBException ex) {
+            LOG.info((ex.getMessage()));
+        } catch (Exception ex) {
+            LOG.info(ex.getMessage());
+        }
+        return false;
+    }
 
     /**
      * Process sleep data from the device
@@ -383,8 +345,9 @@ class HPlusHandlerThread extends GBDeviceIoThread {
 
         try (DBHandler dbHandler = GBApplication.acquireDB()) {
             DaoSession session = dbHandler.getDaoSession();
-            Long userId = DBHelper.getUser(session).getId();
-            Long deviceId = DBHelper.getDevice(getDevice(), session).getId();
+            resolveIds(session);
+            Long userId = mUserId;
+            Long deviceId = mDeviceId;
 
             HPlusHealthActivityOverlayDao overlayDao = session.getHPlusHealthActivityOverlayDao();
             HPlusHealthSampleProvider provider = new HPlusHealthSampleProvider(getDevice(), dbHandler.getDaoSession());
@@ -392,12 +355,21 @@ class HPlusHandlerThread extends GBDeviceIoThread {
             //Get the individual Sleep overlays and insert them
             List<HPlusHealthActivityOverlay> overlayList = new ArrayList<>();
             List<HPlusDataRecord.RecordInterval> intervals = record.getIntervals();
+            int timestampFrom = Integer.MAX_VALUE;
+            int timestampTo = Integer.MIN_VALUE;
 
             for(HPlusDataRecord.RecordInterval interval : intervals) {
                 overlayList.add(new HPlusHealthActivityOverlay(interval.timestampFrom, interval.timestampTo, interval.activityKind, deviceId, userId, null));
+                timestampFrom = Math.min(timestampFrom, interval.timestampFrom);
+                timestampTo = Math.max(timestampTo, interval.timestampTo);
             }
 
             overlayDao.insertOrReplaceInTx(overlayList);
+            if (!overlayList.isEmpty()) {
+                // the overlays change the kind of the samples they cover
+                DailyActivityRollupHelper.update(provider, session, deviceId, timestampFrom, timestampTo);
+                SleepSessionHelper.invalidate(session, deviceId, timestampFrom);
+            }
 
             //Store the data
             HPlusHealthActivitySample sample = createSample(dbHandler, record.timestamp);
@@ -636,11 +608,10 @@ class HPlusHandlerThread extends GBDeviceIoThread {
      * @return The sample just created
      */
     private HPlusHealthActivitySample createSample(DBHandler dbHandler, int timestamp) {
-        Long userId = DBHelper.getUser(dbHandler.getDaoSession()).getId();
-        Long deviceId = DBHelper.getDevice(getDevice(), dbHandler.getDaoSession()).getId();
+        resolveIds(dbHandler.getDaoSession());
         HPlusHealthActivitySample sample = new HPlusHealthActivitySample(
                 timestamp,                      // ts
-                deviceId, userId,               // User id
+                mDeviceId, mUserId,             // User id
                 null,            // Raw Data
                 ActivityKind.TYPE_UNKNOWN,
                 0,                              // Intensity
@@ -653,6 +624,17 @@ class HPlusHandlerThread extends GBDeviceIoThread {
         return sample;
     }
 
+    /**
+     * Looks up the ids of the user and device, unless that already happened during this sync
+     * @param session The database session
+     */
+    private void resolveIds(DaoSession session) {
+        if (mUserId == null || mDeviceId == null) {
+            mUserId = DBHelper.getUser(session).getId();
+            mDeviceId = DBHelper.getDevice(getDevice(), session).getId();
+        }
+    }
+
     public void setHPlusSupport(HPlusSupport HPlusSupport) {
         LOG.info("Updating HPlusSupport object");
         this.mHPlusSupport = HPlusSupport;
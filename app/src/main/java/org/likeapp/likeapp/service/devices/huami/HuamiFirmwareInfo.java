@@ -21,9 +21,12 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
 
 import org.likeapp.likeapp.impl.GBDevice;
 import org.likeapp.likeapp.util.ArrayUtils;
+import org.likeapp.likeapp.util.CRC16;
 import org.likeapp.likeapp.util.CheckSums;
 
 
@@ -60,19 +63,19 @@ public abstract class HuamiFirmwareInfo {
         {
             switch (firmwareType) {
                 case FIRMWARE:
-                    version = searchFirmwareVersion(bytes);
+                    version = searchFirmwareVersion(data);
                     break;
                 case RES:
-                    version = "RES " + bytes[5];
+                    version = "RES " + data.get(5);
                     break;
                 case RES_COMPRESSED:
-                    version = "RES " + bytes[14];
+                    version = "RES " + data.get(14);
                     break;
                 case FONT:
-                    version = "FONT " + bytes[4];
+                    version = "FONT " + data.get(4);
                     break;
                 case FONT_LATIN:
-                    version = "FONT LATIN " + bytes[4];
+                    version = "FONT LATIN " + data.get(4);
                     break;
             }
         }
@@ -109,13 +112,24 @@ public abstract class HuamiFirmwareInfo {
     private final int crc16;
     private final int crc32;
 
-    private byte[] bytes;
+    /**
+     * The firmware, usually a read-only memory mapped file. Its position is never changed,
+     * all accesses are absolute or go through a duplicate.
+     */
+    private ByteBuffer data;
 
-    public HuamiFirmwareInfo(byte[] bytes) {
-        this.bytes = bytes;
-        crc16 = CheckSums.getCRC16(bytes);
-        crc32 = CheckSums.getCRC32(bytes);
-        firmwareType = determineFirmwareType(bytes);
+    /**
+     * @param data the firmware, from its position up to its limit. The buffer is not copied,
+     *             so a memory mapped file is never read into the heap as a whole.
+     */
+    public HuamiFirmwareInfo(ByteBuffer data) {
+        this.data = data.slice();
+        Checksum crc16 = new CRC16();
+        Checksum crc32 = new CRC32();
+        CheckSums.updateAll(this.data.duplicate(), crc16, crc32);
+        this.crc16 = (int) crc16.getValue();
+        this.crc32 = (int) crc32.getValue();
+        firmwareType = determineFirmwareType(this.data);
     }
 
     public abstract boolean isGenerallyCompatibleWith(GBDevice device);
@@ -133,11 +147,15 @@ public abstract class HuamiFirmwareInfo {
      * @return
      */
     public int getSize() {
-        return bytes.length;
+        return data.limit();
     }
 
-    public byte[] getBytes() {
-        return bytes;
+    /**
+     * Returns a read-only view of the firmware, positioned at its start. Every invocation
+     * returns a new view with its own position.
+     */
+    public ByteBuffer getData() {
+        return data.asReadOnlyBuffer();
     }
 
     public int getCrc16() {
@@ -157,10 +175,10 @@ public abstract class HuamiFirmwareInfo {
 
     protected abstract Map<Integer, String> getCrcMap();
 
-    protected abstract HuamiFirmwareType determineFirmwareType(byte[] bytes);
+    protected abstract HuamiFirmwareType determineFirmwareType(ByteBuffer bytes);
 
-    protected String searchFirmwareVersion(byte[] fwbytes) {
-        ByteBuffer buf = ByteBuffer.wrap(fwbytes);
+    protected String searchFirmwareVersion(ByteBuffer fwbytes) {
+        ByteBuffer buf = fwbytes.duplicate();
         buf.order(ByteOrder.BIG_ENDIAN);
         while (buf.remaining() > 3) {
             int word = buf.getInt();
@@ -182,7 +200,7 @@ public abstract class HuamiFirmwareInfo {
         return null;
     }
 
-    protected boolean searchString32BitAligned(byte[] fwbytes, String findString) {
+    protected boolean searchString32BitAligned(ByteBuffer fwbytes, String findString) {
         ByteBuffer stringBuf = ByteBuffer.wrap((findString + "\0").getBytes());
         stringBuf.order(ByteOrder.BIG_ENDIAN);
         int[] findArray = new int[stringBuf.remaining() / 4];
@@ -190,7 +208,7 @@ public abstract class HuamiFirmwareInfo {
             findArray[i] = stringBuf.getInt();
         }
 
-        ByteBuffer buf = ByteBuffer.wrap(fwbytes);
+        ByteBuffer buf = fwbytes.duplicate();
         buf.order(ByteOrder.BIG_ENDIAN);
         while (buf.remaining() > 3) {
             int arrayPos = 0;
@@ -209,6 +227,7 @@ public abstract class HuamiFirmwareInfo {
         boolean result = false;
         if (version.length () > 0)
         {
+            ensureWritable ();
             switch (firmwareType)
             {
                 case FIRMWARE:
@@ -220,17 +239,17 @@ public abstract class HuamiFirmwareInfo {
                 case RES:
                 {
                     int v = Integer.parseInt (version);
-                    result = bytes[5] != v;
-                    bytes[5] = (byte) v;
-                    bytes[10] = (byte) (v >= 83 ? 15 : 3);
+                    result = data.get (5) != v;
+                    data.put (5, (byte) v);
+                    data.put (10, (byte) (v >= 83 ? 15 : 3));
                     break;
                 }
 
                 case RES_COMPRESSED:
                 {
                     int v = Integer.parseInt (version);
-                    result = bytes[14] != v;
-                    bytes[14] = (byte) v;
+                    result = data.get (14) != v;
+                    data.put (14, (byte) v);
                     break;
                 }
 
@@ -238,8 +257,8 @@ public abstract class HuamiFirmwareInfo {
                 case FONT_LATIN:
                 {
                     int v = Integer.parseInt (version);
-                    result = bytes[4] != v;
-                    bytes[4] = (byte) v;
+                    result = data.get (4) != v;
+                    data.put (4, (byte) v);
                     break;
                 }
             }
@@ -253,7 +272,7 @@ public abstract class HuamiFirmwareInfo {
         boolean result = false;
         if (versionNew.length == 8)
         {
-            ByteBuffer buf = ByteBuffer.wrap (bytes);
+            ByteBuffer buf = data.duplicate ();
             buf.order (ByteOrder.BIG_ENDIAN);
             while (buf.remaining () > 3)
             {
@@ -291,4 +310,19 @@ public abstract class HuamiFirmwareInfo {
 
         return result;
     }
+
+    /**
+     * Replaces a read-only (memory mapped) firmware by a copy on the heap, so that it can be
+     * modified. Only needed when changing the version, which is the exception.
+     */
+    private void ensureWritable ()
+    {
+        if (data.isReadOnly ())
+        {
+            ByteBuffer copy = ByteBuffer.allocate (data.limit ());
+            copy.put (data.duplicate ());
+            copy.flip ();
+            data = copy;
+        }
+    }
 }
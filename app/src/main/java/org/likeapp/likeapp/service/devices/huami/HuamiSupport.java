@@ -70,14 +70,15 @@ import org.likeapp.likeapp.GBApplication;
 import org.likeapp.likeapp.Logging;
 import org.likeapp.likeapp.R;
 import org.likeapp.likeapp.activities.SettingsActivity;
-import org.likeapp.likeapp.database.DBHandler;
 import org.likeapp.likeapp.database.DBHelper;
 import org.likeapp.likeapp.deviceevents.GBDeviceEventBatteryInfo;
 import org.likeapp.likeapp.deviceevents.GBDeviceEventCallControl;
 import org.likeapp.likeapp.deviceevents.GBDeviceEventFindPhone;
 import org.likeapp.likeapp.deviceevents.GBDeviceEventMusicControl;
 import org.likeapp.likeapp.deviceevents.GBDeviceEventVersionInfo;
+import org.likeapp.likeapp.devices.AbstractSampleProvider;
 import org.likeapp.likeapp.devices.DeviceCoordinator;
+import org.likeapp.likeapp.devices.RealtimeSampleSink;
 import org.likeapp.likeapp.devices.SampleProvider;
 import org.likeapp.likeapp.devices.huami.ActivateDisplayOnLift;
 import org.likeapp.likeapp.devices.huami.DisconnectNotificationSetting;
@@ -123,6 +124,7 @@ import org.likeapp.likeapp.service.btle.BtLEAction;
 import org.likeapp.likeapp.service.btle.GattCharacteristic;
 import org.likeapp.likeapp.service.btle.GattService;
 import org.likeapp.likeapp.service.btle.TransactionBuilder;
+import org.likeapp.likeapp.service.btle.TransactionPriority;
 import org.likeapp.likeapp.service.btle.actions.AbortTransactionAction;
 import org.likeapp.likeapp.service.btle.actions.ConditionalWriteAction;
 import org.likeapp.likeapp.service.btle.actions.SetDeviceStateAction;
@@ -202,6 +204,7 @@ public class HuamiSupport extends AbstractBTLEDeviceSupport {
     private final GBDeviceEventFindPhone findPhoneEvent = new GBDeviceEventFindPhone();
 
     private RealtimeSamplesSupport realtimeSamplesSupport;
+    private RealtimeSampleSink<MiBandActivitySample> realtimeSampleSink;
     private boolean alarmClockRinging;
 
     private boolean isMusicAppStarted = false;
@@ -566,9 +569,10 @@ public class HuamiSupport extends AbstractBTLEDeviceSupport {
         return this;
     }
 
-    private void performDefaultNotification(String task, SimpleNotification simpleNotification, short repeat, BtLEAction extraAction) {
+    private void performDefaultNotification(String task, SimpleNotification simpleNotification, short repeat, BtLEAction extraAction, TransactionPriority priority) {
         try {
             TransactionBuilder builder = performInitialized(task);
+            builder.setPriority(priority);
             sendDefaultNotification(builder, simpleNotification, repeat, extraAction);
             builder.queue(getQueue());
         } catch (IOException ex) {
@@ -576,9 +580,10 @@ public class HuamiSupport extends AbstractBTLEDeviceSupport {
         }
     }
 
-    private void performPreferredNotification(String task, String notificationOrigin, SimpleNotification simpleNotification, int alertLevel, BtLEAction extraAction) {
+    private void performPreferredNotification(String task, String notificationOrigin, SimpleNotification simpleNotification, int alertLevel, BtLEAction extraAction, TransactionPriority priority) {
         try {
             TransactionBuilder builder = performInitialized(task);
+            builder.setPriority(priority);
             Prefs prefs = GBApplication.getPrefs();
             short vibrateTimes = getPreferredVibrateCount(notificationOrigin, prefs);
             VibrationProfile profile = getPreferredVibrateProfile(notificationOrigin, prefs, vibrateTimes);
@@ -734,7 +739,7 @@ public class HuamiSupport extends AbstractBTLEDeviceSupport {
         String message = NotificationUtils.getPreferredTextFor(notificationSpec, 40, 40, getContext()).trim();
         String origin = notificationSpec.type.getGenericType();
         SimpleNotification simpleNotification = new SimpleNotification(message, BLETypeConversions.toAlertCategory(notificationSpec.type), notificationSpec.type);
-        performPreferredNotification(origin + " received", origin, simpleNotification, alertLevel, null);
+        performPreferredNotification(origin + " received", origin, simpleNotification, alertLevel, null, TransactionPriority.NORMAL);
     }
 
     protected void onAlarmClock(NotificationSpec notificationSpec) {
@@ -747,7 +752,7 @@ public class HuamiSupport extends AbstractBTLEDeviceSupport {
         };
         String message = NotificationUtils.getPreferredTextFor(notificationSpec, 40, 40, getContext());
         SimpleNotification simpleNotification = new SimpleNotification(message, AlertCategory.HighPriorityAlert, notificationSpec.type);
-        performPreferredNotification("alarm clock ringing", MiBandConst.ORIGIN_ALARM_CLOCK, simpleNotification, HuamiService.ALERT_LEVEL_VIBRATE_ONLY, abortAction);
+        performPreferredNotification("alarm clock ringing", MiBandConst.ORIGIN_ALARM_CLOCK, simpleNotification, HuamiService.ALERT_LEVEL_VIBRATE_ONLY, abortAction, TransactionPriority.INTERACTIVE);
     }
 
     @Override
@@ -759,6 +764,7 @@ public class HuamiSupport extends AbstractBTLEDeviceSupport {
     public void onSetTime() {
         try {
             TransactionBuilder builder = performInitialized("Set date and time");
+            builder.setCoalescingKey("time");
             setCurrentTimeWithService(builder);
             //TODO: once we have a common strategy for sending events (e.g. EventHandler), remove this call from here. Meanwhile it does no harm.
             // = we should genaralize the pebble calender code
@@ -792,7 +798,7 @@ public class HuamiSupport extends AbstractBTLEDeviceSupport {
             }
 
             SimpleNotification simpleNotification = new SimpleNotification(message, AlertCategory.IncomingCall, null);
-            performPreferredNotification("incoming call", MiBandConst.ORIGIN_INCOMING_CALL, simpleNotification, HuamiService.ALERT_LEVEL_PHONE_CALL, abortAction);
+            performPreferredNotification("incoming call", MiBandConst.ORIGIN_INCOMING_CALL, simpleNotification, HuamiService.ALERT_LEVEL_PHONE_CALL, abortAction, TransactionPriority.INTERACTIVE);
         } else if ((callSpec.command == CallSpec.CALL_START) || (callSpec.command == CallSpec.CALL_END)) {
             telephoneRinging = false;
             stopCurrentCallNotification();
@@ -802,6 +808,8 @@ public class HuamiSupport extends AbstractBTLEDeviceSupport {
     private void stopCurrentCallNotification() {
         try {
             TransactionBuilder builder = performInitialized("stop notification");
+            // must not be overtaken by the incoming call notification
+            builder.setPriority(TransactionPriority.INTERACTIVE);
             getNotificationStrategy().stopCurrentNotification(builder);
             builder.queue(getQueue());
         } catch (IOException e) {
@@ -861,6 +869,7 @@ public class HuamiSupport extends AbstractBTLEDeviceSupport {
         if (bufferMusicSpec == null || bufferMusicStateSpec == null) {
             try {
                 TransactionBuilder builder = performInitialized("send dummy playback info to enable music controls");
+                builder.setCoalescingKey("music");
                 writeToChunked(builder, 3, new byte[]{1, 0, 1, 0, 0, 0, 1, 0});
                 builder.queue(getQueue());
             } catch (IOException e) {
@@ -921,6 +930,7 @@ public class HuamiSupport extends AbstractBTLEDeviceSupport {
 
 
             TransactionBuilder builder = performInitialized("send playback info");
+            builder.setCoalescingKey("music");
             writeToChunked(builder, 3, buf.array());
 
             builder.queue(getQueue());
@@ -1017,7 +1027,7 @@ public class HuamiSupport extends AbstractBTLEDeviceSupport {
                 }
             };
             SimpleNotification simpleNotification = new SimpleNotification(getContext().getString(R.string.find_device_you_found_it), AlertCategory.HighPriorityAlert, null);
-            performDefaultNotification("locating device", simpleNotification, (short) 255, abortAction);
+            performDefaultNotification("locating device", simpleNotification, (short) 255, abortAction, TransactionPriority.INTERACTIVE);
         }
     }
 
@@ -1700,6 +1710,7 @@ public class HuamiSupport extends AbstractBTLEDeviceSupport {
             if (!realtimeSamplesSupport.isRunning()) {
                 // single shot measurement, manually invoke storage and result publishing
                 realtimeSamplesSupport.triggerCurrentSample();
+                getRealtimeSampleSink().flush();
             }
         }
     }
@@ -1808,6 +1819,9 @@ public class HuamiSupport extends AbstractBTLEDeviceSupport {
             if (realtimeSamplesSupport != null) {
                 realtimeSamplesSupport.stop();
             }
+            if (realtimeSampleSink != null) {
+                realtimeSampleSink.flush();
+            }
         }
     }
 
@@ -1826,45 +1840,52 @@ public class HuamiSupport extends AbstractBTLEDeviceSupport {
             realtimeSamplesSupport = new RealtimeSamplesSupport(1000, 1000) {
                 @Override
                 public void doCurrentSample() {
+                    int ts = (int) (System.currentTimeMillis() / 1000);
+                    MiBandActivitySample sample = createSample(ts);
+                    // set the steps only in the published sample, since realtime steps are also
+                    // recorded in the regular samples and we must not count them twice
+                    MiBandActivitySample published = createSample(ts);
+                    published.setSteps(getSteps());
+                    getRealtimeSampleSink().add(sample, published);
+                }
 
-                    try (DBHandler handler = GBApplication.acquireDB()) {
-                        DaoSession session = handler.getDaoSession();
-
-                        Device device = DBHelper.getDevice(gbDevice, session);
-                        User user = DBHelper.getUser(session);
-                        int ts = (int) (System.currentTimeMillis() / 1000);
-                        MiBand2SampleProvider provider = new MiBand2SampleProvider(gbDevice, session);
-                        MiBandActivitySample sample = createActivitySample(device, user, ts, provider);
-                        sample.setHeartRate(getHeartrateBpm());
-//                        sample.setSteps(getSteps());
-                        sample.setRawIntensity(ActivitySample.NOT_MEASURED);
-                        sample.setRawKind(HuamiConst.TYPE_ACTIVITY); // to make it visible in the charts TODO: add a MANUAL kind for that?
-
-                        provider.addGBActivitySample(sample);
-
-                        // set the steps only afterwards, since realtime steps are also recorded
-                        // in the regular samples and we must not count them twice
-                        // Note: we know that the DAO sample is never committed again, so we simply
-                        // change the value here in memory.
-                        sample.setSteps(getSteps());
-
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("realtime sample: " + sample);
-                        }
-
-                        Intent intent = new Intent(DeviceService.ACTION_REALTIME_SAMPLES)
-                                .putExtra(DeviceService.EXTRA_REALTIME_SAMPLE, sample);
-                        LocalBroadcastManager.getInstance(getContext()).sendBroadcast(intent);
-
-                    } catch (Exception e) {
-                        LOG.warn("Unable to acquire db for saving realtime samples", e);
-                    }
+                private MiBandActivitySample createSample(int timestampInSeconds) {
+                    MiBandActivitySample sample = new MiBandActivitySample();
+                    sample.setTimestamp(timestampInSeconds);
+                    sample.setHeartRate(getHeartrateBpm());
+                    sample.setRawIntensity(ActivitySample.NOT_MEASURED);
+                    sample.setRawKind(HuamiConst.TYPE_ACTIVITY); // to make it visible in the charts TODO: add a MANUAL kind for that?
+                    return sample;
                 }
             };
         }
         return realtimeSamplesSupport;
     }
 
+    private synchronized RealtimeSampleSink<MiBandActivitySample> getRealtimeSampleSink() {
+        if (realtimeSampleSink == null) {
+            realtimeSampleSink = new RealtimeSampleSink<MiBandActivitySample>(gbDevice, getContext()) {
+                @Override
+                protected AbstractSampleProvider<MiBandActivitySample> createSampleProvider(DaoSession session) {
+                    return new MiBand2SampleProvider(getDevice(), session);
+                }
+            };
+        }
+        return realtimeSampleSink;
+    }
+
+    @Override
+    public void dispose() {
+        enableRealtimeSamplesTimer(false);
+        synchronized (this) {
+            if (realtimeSampleSink != null) {
+                realtimeSampleSink.close();
+                realtimeSampleSink = null;
+            }
+        }
+        super.dispose();
+    }
+
     private void handleDeviceName(byte[] value, int status) {
 //        if (status == BluetoothGatt.GATT_SUCCESS) {
 //            versionCmd.hwVersion = new String(value);
@@ -2148,6 +2169,7 @@ public class HuamiSupport extends AbstractBTLEDeviceSupport {
         try {
             TransactionBuilder builder;
             builder = performInitialized("Sending current temp");
+            builder.setCoalescingKey("weather.current");
 
             byte condition = HuamiWeatherConditions.mapToAmazfitBipWeatherCode(weatherSpec.currentConditionCode);
 
@@ -2196,6 +2218,7 @@ public class HuamiSupport extends AbstractBTLEDeviceSupport {
         try {
             TransactionBuilder builder;
             builder = performInitialized("Sending air quality index");
+            builder.setCoalescingKey("weather.aqi");
             int length = 8;
 
             String aqiString;
@@ -2253,6 +2276,7 @@ public class HuamiSupport extends AbstractBTLEDeviceSupport {
 
         try {
             TransactionBuilder builder = performInitialized("Sending weather forecast");
+            builder.setCoalescingKey("weather.forecast");
 
             final byte NR_DAYS = (byte) (1 + weatherSpec.forecasts.size());
             int bytesPerDay = 4;
@@ -2365,6 +2389,7 @@ public class HuamiSupport extends AbstractBTLEDeviceSupport {
         try {
             TransactionBuilder builder;
             builder = performInitialized("Sending forecast location");
+            builder.setCoalescingKey("weather.location");
 
             int length = 2 + weatherSpec.location.getBytes().length;
             ByteBuffer buf = ByteBuffer.allocate(length);
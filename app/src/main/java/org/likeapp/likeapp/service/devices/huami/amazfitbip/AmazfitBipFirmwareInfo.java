@@ -28,6 +28,7 @@ import android.widget.Toast;
 
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -181,17 +182,17 @@ public class AmazfitBipFirmwareInfo extends HuamiFirmwareInfo {
         crcToVersion.put(61135, "1.1.2.05 (BipOS 0.5.1)");
     }
 
-    public AmazfitBipFirmwareInfo(byte[] bytes) {
+    public AmazfitBipFirmwareInfo(ByteBuffer bytes) {
         super(bytes);
     }
 
     @Override
-    protected HuamiFirmwareType determineFirmwareType(byte[] bytes) {
+    protected HuamiFirmwareType determineFirmwareType(ByteBuffer bytes) {
         if (ArrayUtils.startsWith(bytes, RES_HEADER) || ArrayUtils.startsWith(bytes, NEWRES_HEADER)) {
-            if ((bytes.length <= 100000) || (bytes.length > 0xce000)) { // dont know how to distinguish from Cor/Mi Band 3 .res
+            if ((bytes.limit() <= 100000) || (bytes.limit() > 0xce000)) { // dont know how to distinguish from Cor/Mi Band 3 .res
                 Context context = GBApplication.getContext ();
                 Intent intent = new Intent (GB.ACTION_DISPLAY_MESSAGE);
-                intent.putExtra (GB.DISPLAY_MESSAGE_MESSAGE, context.getString (R.string.install_file_length_bad, bytes.length));
+                intent.putExtra (GB.DISPLAY_MESSAGE_MESSAGE, context.getString (R.string.install_file_length_bad, bytes.limit()));
                 intent.putExtra (GB.DISPLAY_MESSAGE_DURATION, Toast.LENGTH_SHORT);
                 intent.putExtra( GB.DISPLAY_MESSAGE_SEVERITY, GB.ERROR);
                 LocalBroadcastManager.getInstance (context).sendBroadcast (intent);
@@ -215,9 +216,9 @@ public class AmazfitBipFirmwareInfo extends HuamiFirmwareInfo {
             return HuamiFirmwareType.WATCHFACE;
         }
         if (ArrayUtils.startsWith(bytes, NEWFT_HEADER)) {
-            if (bytes[10] == 0x01) {
+            if (bytes.get(10) == 0x01) {
                 return HuamiFirmwareType.FONT;
-            } else if (bytes[10] == 0x02 || bytes[10] == 0x0A) {
+            } else if (bytes.get(10) == 0x02 || bytes.get(10) == 0x0A) {
                 return HuamiFirmwareType.FONT_LATIN;
             }
         }
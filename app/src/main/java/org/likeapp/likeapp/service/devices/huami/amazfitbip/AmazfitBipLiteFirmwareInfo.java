@@ -22,6 +22,7 @@ import org.likeapp.likeapp.service.devices.huami.HuamiFirmwareInfo;
 import org.likeapp.likeapp.service.devices.huami.HuamiFirmwareType;
 import org.likeapp.likeapp.util.ArrayUtils;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -50,14 +51,14 @@ public class AmazfitBipLiteFirmwareInfo extends HuamiFirmwareInfo
         crcToVersion.put(59577, "9 (Latin)");
     }
 
-    public AmazfitBipLiteFirmwareInfo(byte[] bytes) {
+    public AmazfitBipLiteFirmwareInfo(ByteBuffer bytes) {
         super(bytes);
     }
 
     @Override
-    protected HuamiFirmwareType determineFirmwareType(byte[] bytes) {
+    protected HuamiFirmwareType determineFirmwareType(ByteBuffer bytes) {
         if (ArrayUtils.startsWith(bytes, NEWRES_HEADER)) {
-            if ((bytes.length <= 100000) || (bytes.length > 900000)) { // dont know how to distinguish from Cor/Mi Band 3 .res
+            if ((bytes.limit() <= 100000) || (bytes.limit() > 900000)) { // dont know how to distinguish from Cor/Mi Band 3 .res
                 return HuamiFirmwareType.INVALID;
             }
             return HuamiFirmwareType.RES;
@@ -72,9 +73,9 @@ public class AmazfitBipLiteFirmwareInfo extends HuamiFirmwareInfo
             return HuamiFirmwareType.WATCHFACE;
         }
         if (ArrayUtils.startsWith(bytes, NEWFT_HEADER)) {
-            if (bytes[10] == 0x01) {
+            if (bytes.get(10) == 0x01) {
                 return HuamiFirmwareType.FONT;
-            } else if (bytes[10] == 0x02 || bytes[10] == 0x0A) {
+            } else if (bytes.get(10) == 0x02 || bytes.get(10) == 0x0A) {
                 return HuamiFirmwareType.FONT_LATIN;
             }
         }
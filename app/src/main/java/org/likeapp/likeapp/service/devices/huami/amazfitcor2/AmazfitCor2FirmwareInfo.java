@@ -16,6 +16,7 @@
     along with this program.  If not, see <http://www.gnu.org/licenses/>. */
 package org.likeapp.likeapp.service.devices.huami.amazfitcor2;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -39,13 +40,13 @@ public class AmazfitCor2FirmwareInfo extends HuamiFirmwareInfo {
         crcToVersion.put(62291, "9 (Latin)");
     }
 
-    public AmazfitCor2FirmwareInfo(byte[] bytes) {
+    public AmazfitCor2FirmwareInfo(ByteBuffer bytes) {
         super(bytes);
     }
 
     @Override
-    protected HuamiFirmwareType determineFirmwareType(byte[] bytes) {
-        if (ArrayUtils.equals(bytes, RES_HEADER, COMPRESSED_RES_HEADER_OFFSET) || ArrayUtils.equals(bytes, NEWRES_HEADER, COMPRESSED_RES_HEADER_OFFSET_NEW) || ArrayUtils.equals(bytes, NEWRES_HEADER, COMPRESSED_RES_HEADER_OFFSET)) {
+    protected HuamiFirmwareType determineFirmwareType(ByteBuffer bytes) {
+        if (ArrayUtils.equalsAt(bytes, RES_HEADER, COMPRESSED_RES_HEADER_OFFSET) || ArrayUtils.equalsAt(bytes, NEWRES_HEADER, COMPRESSED_RES_HEADER_OFFSET_NEW) || ArrayUtils.equalsAt(bytes, NEWRES_HEADER, COMPRESSED_RES_HEADER_OFFSET)) {
             return HuamiFirmwareType.RES_COMPRESSED;
         }
         if (ArrayUtils.startsWith(bytes, FW_HEADER)) {
@@ -62,9 +63,9 @@ public class AmazfitCor2FirmwareInfo extends HuamiFirmwareInfo {
             return HuamiFirmwareType.WATCHFACE;
         }
         if (ArrayUtils.startsWith(bytes, NEWFT_HEADER)) {
-            if (bytes[10] == 0x01) {
+            if (bytes.get(10) == 0x01) {
                 return HuamiFirmwareType.FONT;
-            } else if (bytes[10] == 0x02) {
+            } else if (bytes.get(10) == 0x02) {
                 return HuamiFirmwareType.FONT_LATIN;
             }
         }
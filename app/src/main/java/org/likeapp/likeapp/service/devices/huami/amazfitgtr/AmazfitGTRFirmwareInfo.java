@@ -22,6 +22,7 @@ import org.likeapp.likeapp.service.devices.huami.HuamiFirmwareInfo;
 import org.likeapp.likeapp.service.devices.huami.HuamiFirmwareType;
 import org.likeapp.likeapp.util.ArrayUtils;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -62,16 +63,16 @@ public class AmazfitGTRFirmwareInfo extends HuamiFirmwareInfo {
         crcToVersion.put(62532, "18344,eb2f43f,126");
     }
 
-    public AmazfitGTRFirmwareInfo(byte[] bytes) {
+    public AmazfitGTRFirmwareInfo(ByteBuffer bytes) {
         super(bytes);
     }
 
     @Override
-    protected HuamiFirmwareType determineFirmwareType(byte[] bytes) {
-        if (ArrayUtils.equals(bytes, NEWRES_HEADER, COMPRESSED_RES_HEADER_OFFSET_NEW)) {
+    protected HuamiFirmwareType determineFirmwareType(ByteBuffer bytes) {
+        if (ArrayUtils.equalsAt(bytes, NEWRES_HEADER, COMPRESSED_RES_HEADER_OFFSET_NEW)) {
             return HuamiFirmwareType.RES_COMPRESSED;
         }
-        if (ArrayUtils.equals(bytes, FW_HEADER, FW_OFFSET)) {
+        if (ArrayUtils.equalsAt(bytes, FW_HEADER, FW_OFFSET)) {
             if (searchString32BitAligned(bytes, "Amazfit GTR")) {
                 return HuamiFirmwareType.FIRMWARE;
             }
@@ -81,9 +82,9 @@ public class AmazfitGTRFirmwareInfo extends HuamiFirmwareInfo {
             return HuamiFirmwareType.WATCHFACE;
         }
         if (ArrayUtils.startsWith(bytes, NEWFT_HEADER)) {
-            if (bytes[10] == 0x01) {
+            if (bytes.get(10) == 0x01) {
                 return HuamiFirmwareType.FONT;
-            } else if (bytes[10] == 0x02) {
+            } else if (bytes.get(10) == 0x02) {
                 return HuamiFirmwareType.FONT_LATIN;
             }
         }
@@ -17,6 +17,7 @@
     along with this program.  If not, see <http://www.gnu.org/licenses/>. */
 package org.likeapp.likeapp.service.devices.huami.miband2;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -73,19 +74,19 @@ public class Mi2FirmwareInfo extends HuamiFirmwareInfo {
         crcToVersion.put(6377,  "Font (En)");
     }
 
-    public Mi2FirmwareInfo(byte[] bytes) {
+    public Mi2FirmwareInfo(ByteBuffer bytes) {
         super(bytes);
     }
 
-    protected HuamiFirmwareType determineFirmwareType(byte[] bytes) {
+    protected HuamiFirmwareType determineFirmwareType(ByteBuffer bytes) {
         if (ArrayUtils.startsWith(bytes, FT_HEADER)) {
-            if (bytes[FONT_TYPE_OFFSET] == 0x00 || bytes[FONT_TYPE_OFFSET] == (byte) 0xff) {
+            if (bytes.get(FONT_TYPE_OFFSET) == 0x00 || bytes.get(FONT_TYPE_OFFSET) == (byte) 0xff) {
                 return HuamiFirmwareType.FONT;
             }
             return HuamiFirmwareType.INVALID;
         }
-        if (ArrayUtils.equals(bytes, FW_HEADER, FW_HEADER_OFFSET)
-                && (bytes[FW_MAGIC_OFFSET] == FW_MAGIC)) {
+        if (ArrayUtils.equalsAt(bytes, FW_HEADER, FW_HEADER_OFFSET)
+                && (bytes.get(FW_MAGIC_OFFSET) == FW_MAGIC)) {
             // TODO: this is certainly not a correct validation, but it works for now
             return HuamiFirmwareType.FIRMWARE;
         }
@@ -101,7 +102,7 @@ public class Mi2FirmwareInfo extends HuamiFirmwareInfo {
     }
 
     @Override
-    protected String searchFirmwareVersion(byte[] fwbytes) {
+    protected String searchFirmwareVersion(ByteBuffer fwbytes) {
         // does not work for Mi Band 2
         return null;
     }
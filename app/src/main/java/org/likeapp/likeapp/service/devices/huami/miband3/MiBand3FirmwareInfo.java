@@ -17,6 +17,7 @@
     along with this program.  If not, see <http://www.gnu.org/licenses/>. */
 package org.likeapp.likeapp.service.devices.huami.miband3;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -83,26 +84,26 @@ public class MiBand3FirmwareInfo extends HuamiFirmwareInfo {
         crcToVersion.put(12052, "1 (Jap/Kor)");
     }
 
-    public MiBand3FirmwareInfo(byte[] bytes) {
+    public MiBand3FirmwareInfo(ByteBuffer bytes) {
         super(bytes);
     }
 
     @Override
-    protected HuamiFirmwareType determineFirmwareType(byte[] bytes) {
+    protected HuamiFirmwareType determineFirmwareType(ByteBuffer bytes) {
         if (ArrayUtils.startsWith(bytes, FT_HEADER)) {
-            if (bytes[FONT_TYPE_OFFSET] >= 0x03 && bytes[FONT_TYPE_OFFSET] <= 0x05) {
+            if (bytes.get(FONT_TYPE_OFFSET) >= 0x03 && bytes.get(FONT_TYPE_OFFSET) <= 0x05) {
                 return HuamiFirmwareType.FONT;
             }
             return HuamiFirmwareType.INVALID;
         }
         if (ArrayUtils.startsWith(bytes, RES_HEADER)) {
-            if (bytes.length > 150000) { // don't know how to distinguish from Bip/Cor .res
+            if (bytes.limit() > 150000) { // don't know how to distinguish from Bip/Cor .res
                 return HuamiFirmwareType.INVALID;
             }
             return HuamiFirmwareType.RES;
         }
-        if (ArrayUtils.equals(bytes, FW_HEADER, FW_HEADER_OFFSET)
-                && (bytes[FW_MAGIC_OFFSET] == FW_MAGIC)) {
+        if (ArrayUtils.equalsAt(bytes, FW_HEADER, FW_HEADER_OFFSET)
+                && (bytes.get(FW_MAGIC_OFFSET) == FW_MAGIC)) {
             // TODO: this is certainly not a correct validation, but it works for now
             return HuamiFirmwareType.FIRMWARE;
         }
@@ -121,7 +122,7 @@ public class MiBand3FirmwareInfo extends HuamiFirmwareInfo {
     }
 
     @Override
-    protected String searchFirmwareVersion(byte[] fwbytes) {
+    protected String searchFirmwareVersion(ByteBuffer fwbytes) {
         // does not work for Mi Band 3
         return null;
     }
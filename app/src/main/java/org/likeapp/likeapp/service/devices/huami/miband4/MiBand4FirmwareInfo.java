@@ -16,6 +16,7 @@
     along with this program.  If not, see <http://www.gnu.org/licenses/>. */
 package org.likeapp.likeapp.service.devices.huami.miband4;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -54,16 +55,16 @@ public class MiBand4FirmwareInfo extends HuamiFirmwareInfo {
         crcToVersion.put(31978, "1");
     }
 
-    public MiBand4FirmwareInfo(byte[] bytes) {
+    public MiBand4FirmwareInfo(ByteBuffer bytes) {
         super(bytes);
     }
 
     @Override
-    protected HuamiFirmwareType determineFirmwareType(byte[] bytes) {
-        if (ArrayUtils.equals(bytes, RES_HEADER, COMPRESSED_RES_HEADER_OFFSET) || ArrayUtils.equals(bytes, NEWRES_HEADER, COMPRESSED_RES_HEADER_OFFSET_NEW) || ArrayUtils.equals(bytes, NEWRES_HEADER, COMPRESSED_RES_HEADER_OFFSET)) {
+    protected HuamiFirmwareType determineFirmwareType(ByteBuffer bytes) {
+        if (ArrayUtils.equalsAt(bytes, RES_HEADER, COMPRESSED_RES_HEADER_OFFSET) || ArrayUtils.equalsAt(bytes, NEWRES_HEADER, COMPRESSED_RES_HEADER_OFFSET_NEW) || ArrayUtils.equalsAt(bytes, NEWRES_HEADER, COMPRESSED_RES_HEADER_OFFSET)) {
             return HuamiFirmwareType.RES_COMPRESSED;
         }
-        if (ArrayUtils.equals(bytes, FW_HEADER, FW_HEADER_OFFSET)) {
+        if (ArrayUtils.equalsAt(bytes, FW_HEADER, FW_HEADER_OFFSET)) {
             if (searchString32BitAligned(bytes, "Mi Smart Band 4")) {
                 return HuamiFirmwareType.FIRMWARE;
             }
@@ -73,7 +74,7 @@ public class MiBand4FirmwareInfo extends HuamiFirmwareInfo {
             return HuamiFirmwareType.WATCHFACE;
         }
         if (ArrayUtils.startsWith(bytes, NEWFT_HEADER)) {
-            if (bytes[10] == 0x03 || bytes[10] == 0x06) {
+            if (bytes.get(10) == 0x03 || bytes.get(10) == 0x06) {
                 return HuamiFirmwareType.FONT;
             }
         }
@@ -42,12 +42,14 @@ import org.likeapp.likeapp.R;
 import org.likeapp.likeapp.devices.huami.HuamiService;
 import org.likeapp.likeapp.service.btle.BLETypeConversions;
 import org.likeapp.likeapp.service.btle.TransactionBuilder;
+import org.likeapp.likeapp.service.btle.TransactionPriority;
 import org.likeapp.likeapp.service.btle.actions.AbstractGattListenerWriteAction;
 import org.likeapp.likeapp.service.btle.actions.SetDeviceBusyAction;
 import org.likeapp.likeapp.service.devices.huami.AbstractHuamiOperation;
 import org.likeapp.likeapp.service.devices.huami.HuamiSupport;
 import org.likeapp.likeapp.util.ArrayUtils;
 import org.likeapp.likeapp.util.GB;
+import org.likeapp.likeapp.util.Metrics;
 import org.likeapp.likeapp.util.StringUtils;
 
 /**
@@ -61,6 +63,7 @@ public abstract class AbstractFetchOperation extends AbstractHuamiOperation {
     int fetchCount;
     protected BluetoothGattCharacteristic characteristicActivityData;
     protected BluetoothGattCharacteristic characteristicFetch;
+    private long fetchStartNanos;
     Calendar startTimestamp;
 
     public AbstractFetchOperation(HuamiSupport support) {
@@ -76,6 +79,11 @@ public abstract class AbstractFetchOperation extends AbstractHuamiOperation {
         }
     }
 
+    @Override
+    protected TransactionPriority getTransactionPriority() {
+        return TransactionPriority.BULK;
+    }
+
     @Override
     protected void doPerform() throws IOException {
         startFetching();
@@ -83,6 +91,7 @@ public abstract class AbstractFetchOperation extends AbstractHuamiOperation {
 
     protected void startFetching() throws IOException {
         lastPacketCounter = -1;
+        fetchStartNanos = System.nanoTime();
 
         TransactionBuilder builder = performInitialized(getName());
         getSupport().setLowLatency(builder);
@@ -123,6 +132,7 @@ public abstract class AbstractFetchOperation extends AbstractHuamiOperation {
 
     @CallSuper
     protected void handleActivityFetchFinish(boolean success) {
+        Metrics.histogram("huami.fetch." + getClass().getSimpleName()).recordSince(fetchStartNanos);
         GB.updateTransferNotification(null, "", false, 100, getContext());
         operationFinished();
         unsetBusy();
@@ -17,6 +17,8 @@
     along with this program.  If not, see <http://www.gnu.org/licenses/>. */
 package org.likeapp.likeapp.service.devices.huami.operations;
 
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.text.format.DateUtils;
 import android.widget.Toast;
 
@@ -24,25 +26,26 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.GregorianCalendar;
-import java.util.List;
 
 import org.likeapp.likeapp.GBApplication;
 import org.likeapp.likeapp.database.DBHandler;
 import org.likeapp.likeapp.database.DBHelper;
+import org.likeapp.likeapp.database.DailyActivityRollupHelper;
+import org.likeapp.likeapp.database.SleepSessionHelper;
 import org.likeapp.likeapp.devices.SampleProvider;
 import org.likeapp.likeapp.devices.huami.HuamiService;
-import org.likeapp.likeapp.devices.miband.MiBandSampleProvider;
 import org.likeapp.likeapp.entities.DaoSession;
 import org.likeapp.likeapp.entities.Device;
-import org.likeapp.likeapp.entities.MiBandActivitySample;
+import org.likeapp.likeapp.entities.MiBandActivitySampleDao;
 import org.likeapp.likeapp.entities.User;
 import org.likeapp.likeapp.service.btle.TransactionBuilder;
 import org.likeapp.likeapp.service.devices.huami.HuamiSupport;
 import org.likeapp.likeapp.util.DateTimeUtils;
+import org.likeapp.likeapp.util.DeviceHelper;
 import org.likeapp.likeapp.util.GB;
+import org.likeapp.likeapp.util.LatencyHistogram;
+import org.likeapp.likeapp.util.Metrics;
 import org.likeapp.likeapp.util.StringUtils;
 
 /**
@@ -51,8 +54,27 @@ import org.likeapp.likeapp.util.StringUtils;
  */
 public class FetchActivityOperation extends AbstractFetchOperation {
     private static final Logger LOG = LoggerFactory.getLogger(FetchActivityOperation.class);
+    private static final LatencyHistogram SAMPLE_BATCH_LATENCY = Metrics.histogram("db.sample_batch");
 
-    private List<MiBandActivitySample> samples = new ArrayList<>(60*24); // 1day per default
+    /**
+     * Number of samples that are buffered before they are written to the database,
+     * which keeps the memory usage flat for long backlogs.
+     */
+    private static final int FLUSH_CHUNK_SAMPLES = 60 * 24; // 1 day
+    private static final int BYTES_PER_SAMPLE = 4;
+    /**
+     * Number of packets after which the buffered samples are committed and the sync
+     * timestamp is advanced, so that an interrupted fetch resumes from there.
+     */
+    private static final int CHECKPOINT_PACKETS = 30;
+
+    /** The raw 4-byte records (category, intensity, steps, heart rate), reused for every chunk */
+    private final byte[] sampleBuffer = new byte[FLUSH_CHUNK_SAMPLES * BYTES_PER_SAMPLE];
+    private int bufferedSamples;
+    private int packetsSinceCheckpoint;
+    /** Number of samples already written to the database in the current round */
+    private int savedSamples;
+    private boolean saveFailed;
 
     public FetchActivityOperation(HuamiSupport support) {
         super(support);
@@ -61,7 +83,10 @@ public class FetchActivityOperation extends AbstractFetchOperation {
 
     @Override
     protected void startFetching() throws IOException {
-        samples.clear();
+        bufferedSamples = 0;
+        packetsSinceCheckpoint = 0;
+        savedSamples = 0;
+        saveFailed = false;
         super.startFetching();
     }
 
@@ -106,41 +131,105 @@ public class FetchActivityOperation extends AbstractFetchOperation {
         return true;
     }
 
+    /**
+     * Writes the remaining buffered samples.
+     * @return the timestamp after the last saved sample, or null if nothing was saved
+     */
     private GregorianCalendar saveSamples() {
-        if (samples.size() > 0) {
-            // save all the samples that we got
-            try (DBHandler handler = GBApplication.acquireDB()) {
-                DaoSession session = handler.getDaoSession();
-                SampleProvider<MiBandActivitySample> sampleProvider = new MiBandSampleProvider(getDevice(), session);
-                Device device = DBHelper.getDevice(getDevice(), session);
-                User user = DBHelper.getUser(session);
-
-                GregorianCalendar timestamp = (GregorianCalendar) startTimestamp.clone();
-                for (MiBandActivitySample sample : samples) {
-                    sample.setDevice(device);
-                    sample.setUser(user);
-                    sample.setTimestamp((int) (timestamp.getTimeInMillis() / 1000));
-                    sample.setProvider(sampleProvider);
-
-                    if (LOG.isDebugEnabled()) {
-//                        LOG.debug("sample: " + sample);
-                    }
-
-                    timestamp.add(Calendar.MINUTE, 1);
-                }
-                sampleProvider.addGBActivitySamples(samples.toArray(new MiBandActivitySample[0]));
+        flushSamples();
+        if (savedSamples == 0 || saveFailed) {
+            return null;
+        }
+        GregorianCalendar timestamp = getSyncTimestamp();
+        LOG.info("Mi2 activity data: last sample timestamp: " + DateTimeUtils.formatDateTime(timestamp.getTime()));
+        return timestamp;
+    }
 
-                saveLastSyncTimestamp(timestamp);
-                LOG.info("Mi2 activity data: last sample timestamp: " + DateTimeUtils.formatDateTime(timestamp.getTime()));
-                return timestamp;
+    private GregorianCalendar getSyncTimestamp() {
+        GregorianCalendar timestamp = (GregorianCalendar) startTimestamp.clone();
+        timestamp.setTimeInMillis(startTimestamp.getTimeInMillis() + savedSamples * 60 * 1000L);
+        return timestamp;
+    }
 
-            } catch (Exception ex) {
-                GB.toast(getContext(), "Error saving activity samples", Toast.LENGTH_LONG, GB.ERROR);
-            } finally {
-                samples.clear();
+    /**
+     * Writes the buffered samples to the database and empties the buffer. The samples are
+     * inserted and the derived daily rollups and sleep sessions updated in a single
+     * transaction, so that they cannot get out of sync. Samples are one minute apart,
+     * starting at the fetch start timestamp.
+     * On success, the sync timestamp is advanced behind the written samples. As it is
+     * stored in the preferences, it cannot be part of the database transaction; should
+     * it be lost, the samples are fetched again and simply replaced.
+     */
+    private void flushSamples() {
+        packetsSinceCheckpoint = 0;
+        if (bufferedSamples == 0 || startTimestamp == null) {
+            return;
+        }
+        final int firstTimestamp = (int) (startTimestamp.getTimeInMillis() / 1000) + savedSamples * 60;
+        final int lastTimestamp = firstTimestamp + (bufferedSamples - 1) * 60;
+        long startNanos = System.nanoTime();
+        try (DBHandler handler = GBApplication.acquireDB()) {
+            final DaoSession session = handler.getDaoSession();
+            final Device device = DBHelper.getDevice(getDevice(), session);
+            final User user = DBHelper.getUser(session);
+            final SampleProvider<?> provider = DeviceHelper.getInstance().getCoordinator(getDevice()).getSampleProvider(getDevice(), session);
+
+            session.runInTx(new Runnable() {
+                @Override
+                public void run() {
+                    insertSamples(session.getDatabase(), device.getId(), user.getId(), firstTimestamp);
+                    // the samples were written behind the back of the dao, drop any cached ones
+                    session.getMiBandActivitySampleDao().detachAll();
+                    DailyActivityRollupHelper.update(provider, session, device.getId(), firstTimestamp, lastTimestamp);
+                    SleepSessionHelper.invalidate(session, device.getId(), firstTimestamp);
+                }
+            });
+            SAMPLE_BATCH_LATENCY.recordSince(startNanos);
+            Metrics.counter("db.samples_written").addAndGet(bufferedSamples);
+        } catch (Exception ex) {
+            LOG.error("Error saving activity samples", ex);
+            GB.toast(getContext(), "Error saving activity samples", Toast.LENGTH_LONG, GB.ERROR);
+            saveFailed = true;
+        } finally {
+            savedSamples += bufferedSamples;
+            bufferedSamples = 0;
+        }
+        if (!saveFailed) {
+            // never advance past samples that could not be saved
+            saveLastSyncTimestamp(getSyncTimestamp());
+        }
+    }
+
+    /**
+     * Inserts the buffered samples, must be called in a transaction.
+     */
+    private void insertSamples(SQLiteDatabase db, long deviceId, long userId, int firstTimestamp) {
+        String sql = "INSERT OR REPLACE INTO " + MiBandActivitySampleDao.TABLENAME + " ("
+                + MiBandActivitySampleDao.Properties.Timestamp.columnName + ", "
+                + MiBandActivitySampleDao.Properties.DeviceId.columnName + ", "
+                + MiBandActivitySampleDao.Properties.UserId.columnName + ", "
+                + MiBandActivitySampleDao.Properties.RawIntensity.columnName + ", "
+                + MiBandActivitySampleDao.Properties.Steps.columnName + ", "
+                + MiBandActivitySampleDao.Properties.RawKind.columnName + ", "
+                + MiBandActivitySampleDao.Properties.HeartRate.columnName
+                + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+        SQLiteStatement statement = db.compileStatement(sql);
+        try {
+            for (int i = 0; i < bufferedSamples; i++) {
+                int offset = i * BYTES_PER_SAMPLE;
+                statement.clearBindings();
+                statement.bindLong(1, firstTimestamp + i * 60);
+                statement.bindLong(2, deviceId);
+                statement.bindLong(3, userId);
+                statement.bindLong(4, sampleBuffer[offset + 1] & 0xff);
+                statement.bindLong(5, sampleBuffer[offset + 2] & 0xff);
+                statement.bindLong(6, sampleBuffer[offset] & 0xff);
+                statement.bindLong(7, sampleBuffer[offset + 3] & 0xff);
+                statement.executeInsert();
             }
+        } finally {
+            statement.close();
         }
-        return null;
     }
 
     /**
@@ -176,7 +265,8 @@ public class FetchActivityOperation extends AbstractFetchOperation {
     }
 
     /**
-     * Creates samples from the given 17-length array
+     * Buffers the raw samples of the given 17-length array, writing the buffer to the
+     * database whenever it is full or a checkpoint is due.
      * @param value
      */
     protected void bufferActivityData(byte[] value) {
@@ -186,20 +276,17 @@ public class FetchActivityOperation extends AbstractFetchOperation {
             throw new AssertionError("Unexpected activity array size: " + len);
         }
 
-        for (int i = 1; i < len; i+=4) {
-            MiBandActivitySample sample = createSample(value[i], value[i + 1], value[i + 2], value[i + 3]); // lgtm [java/index-out-of-bounds]
-            samples.add(sample);
+        for (int i = 1; i < len; i += BYTES_PER_SAMPLE) {
+            if (bufferedSamples == FLUSH_CHUNK_SAMPLES) {
+                flushSamples();
+            }
+            System.arraycopy(value, i, sampleBuffer, bufferedSamples * BYTES_PER_SAMPLE, BYTES_PER_SAMPLE);
+            bufferedSamples++;
         }
-    }
-
-    private MiBandActivitySample createSample(byte category, byte intensity, byte steps, byte heartrate) {
-        MiBandActivitySample sample = new MiBandActivitySample();
-        sample.setRawKind(category & 0xff);
-        sample.setRawIntensity(intensity & 0xff);
-        sample.setSteps(steps & 0xff);
-        sample.setHeartRate(heartrate & 0xff);
 
-        return sample;
+        if (++packetsSinceCheckpoint >= CHECKPOINT_PACKETS) {
+            flushSamples();
+        }
     }
 
     @Override
@@ -41,6 +41,7 @@ import org.likeapp.likeapp.devices.huami.HuamiService;
 import org.likeapp.likeapp.impl.GBDevice;
 import org.likeapp.likeapp.service.btle.AbstractBTLEOperation;
 import org.likeapp.likeapp.service.btle.TransactionBuilder;
+import org.likeapp.likeapp.service.btle.TransactionPriority;
 import org.likeapp.likeapp.service.btle.actions.SetDeviceStateAction;
 import org.likeapp.likeapp.service.devices.huami.HuamiSupport;
 import org.likeapp.likeapp.util.GB;
@@ -64,6 +65,12 @@ public class InitOperation extends AbstractBTLEOperation<HuamiSupport> {
         builder.setGattCallback(this);
     }
 
+    @Override
+    protected TransactionPriority getTransactionPriority() {
+        // the authentication steps must not be overtaken by anything else
+        return TransactionPriority.INTERACTIVE;
+    }
+
     @Override
     protected void doPerform() {
         huamiSupport.enableNotifications(builder, true);
@@ -27,7 +27,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 import java.util.UUID;
 
 import org.likeapp.likeapp.GBApplication;
@@ -37,6 +37,8 @@ import org.likeapp.likeapp.devices.huami.HuamiFWHelper;
 import org.likeapp.likeapp.devices.huami.HuamiService;
 import org.likeapp.likeapp.service.btle.BLETypeConversions;
 import org.likeapp.likeapp.service.btle.TransactionBuilder;
+import org.likeapp.likeapp.service.btle.TransactionPriority;
+import org.likeapp.likeapp.service.btle.actions.PlainAction;
 import org.likeapp.likeapp.service.btle.actions.SetDeviceBusyAction;
 import org.likeapp.likeapp.service.btle.actions.SetProgressAction;
 import org.likeapp.likeapp.service.devices.huami.AbstractHuamiOperation;
@@ -49,6 +51,8 @@ import org.likeapp.likeapp.util.Prefs;
 public class UpdateFirmwareOperation extends AbstractHuamiOperation {
     private static final Logger LOG = LoggerFactory.getLogger(UpdateFirmwareOperation.class);
 
+    private static final int SYNC_INTERVAL_PACKETS = 100;
+
     protected final Uri uri;
     final BluetoothGattCharacteristic fwCControlChar;
     private final BluetoothGattCharacteristic fwCDataChar;
@@ -67,6 +71,11 @@ public class UpdateFirmwareOperation extends AbstractHuamiOperation {
         builder.notify(fwCControlChar, enable);
     }
 
+    @Override
+    protected TransactionPriority getTransactionPriority() {
+        return TransactionPriority.BULK;
+    }
+
     @Override
     protected void doPerform() throws IOException {
         firmwareInfo = createFwInfo(uri, getContext());
@@ -220,8 +229,12 @@ public class UpdateFirmwareOperation extends AbstractHuamiOperation {
     }
 
     /**
-     * Method that uploads a firmware (fwbytes) to the Mi Band.
-     * The firmware has to be split into chunks of 20 bytes each, and periodically a COMMAND_SYNC command has to be issued to the Mi Band.
+     * Method that uploads a firmware to the Mi Band.
+     * The firmware has to be split into chunks of (MTU - 3) bytes each, and periodically a COMMAND_SYNC command has to be issued to the Mi Band.
+     * <p/>
+     * The chunks are not queued all at once, but in windows of SYNC_INTERVAL_PACKETS packets. Each window
+     * ends with an action that queues the next one, so that only a small part of the firmware is held in
+     * memory at any time, no matter how large the (memory mapped) firmware file is.
      * <p/>
      * The Mi Band will send a notification after receiving this data to confirm if the firmware looks good to it.
      *
@@ -230,41 +243,10 @@ public class UpdateFirmwareOperation extends AbstractHuamiOperation {
      * @see #handleNotificationNotif
      */
     private boolean sendFirmwareData(HuamiFirmwareInfo info) {
-        byte[] fwbytes = info.getBytes();
-        int len = fwbytes.length;
-        final int packetLength = getSupport().getMTU() - 3;
-        int packets = len / packetLength;
-
         try {
-            // going from 0 to len
-            int firmwareProgress = 0;
-
             TransactionBuilder builder = performInitialized("send firmware packet");
             builder.write(fwCControlChar, getFirmwareStartCommand());
-
-            for (int i = 0; i < packets; i++) {
-                byte[] fwChunk = Arrays.copyOfRange(fwbytes, i * packetLength, i * packetLength + packetLength);
-
-                builder.write(fwCDataChar, fwChunk);
-                firmwareProgress += packetLength;
-
-                int progressPercent = (int) ((((float) firmwareProgress) / len) * 100);
-                if ((i > 0) && (i % 100 == 0)) {
-                    Context context = getContext ();
-                    builder.write(fwCControlChar, new byte[]{HuamiService.COMMAND_FIRMWARE_UPDATE_SYNC});
-                    builder.add(new SetProgressAction(context.getString(R.string.updatefirmwareoperation_update_in_progress), true, progressPercent, context));
-                    builder.add(new SetDeviceBusyAction (getDevice (), context.getString(R.string.updating_firmware_percent, progressPercent), context));
-                }
-            }
-
-            if (firmwareProgress < len) {
-                byte[] lastChunk = Arrays.copyOfRange(fwbytes, packets * packetLength, len);
-                builder.write(fwCDataChar, lastChunk);
-            }
-
-            builder.write(fwCControlChar, new byte[]{HuamiService.COMMAND_FIRMWARE_UPDATE_SYNC});
-            builder.queue(getQueue());
-
+            sendFirmwareWindow(builder, info.getData(), getSupport().getMTU() - 3, 0);
         } catch (IOException ex) {
             LOG.error("Unable to send fw to device", ex);
             GB.updateInstallNotification(getContext().getString(R.string.updatefirmwareoperation_firmware_not_sent), false, 0, getContext());
@@ -273,6 +255,46 @@ public class UpdateFirmwareOperation extends AbstractHuamiOperation {
         return true;
     }
 
+    /**
+     * Adds the packets up to and including the next sync command to the given builder and queues it.
+     *
+     * @param builder      the builder to add the packets to
+     * @param fwData       the firmware, positioned at the first byte not sent yet
+     * @param packetLength the number of bytes per packet
+     * @param packetIndex  the index of the first packet to add
+     */
+    private void sendFirmwareWindow(TransactionBuilder builder, final ByteBuffer fwData, final int packetLength, int packetIndex) {
+        final int len = fwData.limit();
+        while (fwData.hasRemaining()) {
+            byte[] fwChunk = new byte[Math.min(packetLength, fwData.remaining())];
+            fwData.get(fwChunk);
+            builder.write(fwCDataChar, fwChunk);
+
+            if (packetIndex > 0 && packetIndex % SYNC_INTERVAL_PACKETS == 0 && fwData.hasRemaining()) {
+                int progressPercent = (int) ((((float) fwData.position()) / len) * 100);
+                Context context = getContext ();
+                builder.write(fwCControlChar, new byte[]{HuamiService.COMMAND_FIRMWARE_UPDATE_SYNC});
+                builder.add(new SetProgressAction(context.getString(R.string.updatefirmwareoperation_update_in_progress), true, progressPercent, context));
+                builder.add(new SetDeviceBusyAction (getDevice (), context.getString(R.string.updating_firmware_percent, progressPercent), context));
+
+                final int nextPacketIndex = packetIndex + 1;
+                builder.add(new PlainAction() {
+                    @Override
+                    public boolean run(BluetoothGatt gatt) {
+                        // runs on the queue's thread, the next window is executed after this transaction
+                        sendFirmwareWindow(createTransactionBuilder("send firmware packet"), fwData, packetLength, nextPacketIndex);
+                        return true;
+                    }
+                });
+                builder.queue(getQueue());
+                return;
+            }
+            packetIndex++;
+        }
+
+        builder.write(fwCControlChar, new byte[]{HuamiService.COMMAND_FIRMWARE_UPDATE_SYNC});
+        builder.queue(getQueue());
+    }
 
     protected void sendChecksum(HuamiFirmwareInfo firmwareInfo) throws IOException {
         TransactionBuilder builder = performInitialized("send firmware checksum");
@@ -20,12 +20,10 @@ package org.likeapp.likeapp.service.devices.miband;
 
 import android.bluetooth.BluetoothGatt;
 import android.bluetooth.BluetoothGattCharacteristic;
-import android.content.Intent;
 import android.net.Uri;
 import android.widget.Toast;
 
 import androidx.annotation.Nullable;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,10 +39,10 @@ import java.util.UUID;
 
 import org.likeapp.likeapp.GBApplication;
 import org.likeapp.likeapp.R;
-import org.likeapp.likeapp.database.DBHandler;
-import org.likeapp.likeapp.database.DBHelper;
 import org.likeapp.likeapp.deviceevents.GBDeviceEventBatteryInfo;
 import org.likeapp.likeapp.deviceevents.GBDeviceEventVersionInfo;
+import org.likeapp.likeapp.devices.AbstractSampleProvider;
+import org.likeapp.likeapp.devices.RealtimeSampleSink;
 import org.likeapp.likeapp.devices.SampleProvider;
 import org.likeapp.likeapp.devices.miband.MiBandConst;
 import org.likeapp.likeapp.devices.miband.MiBandCoordinator;
@@ -78,6 +76,7 @@ import org.likeapp.likeapp.service.btle.BtLEAction;
 import org.likeapp.likeapp.service.btle.GattCharacteristic;
 import org.likeapp.likeapp.service.btle.GattService;
 import org.likeapp.likeapp.service.btle.TransactionBuilder;
+import org.likeapp.likeapp.service.btle.TransactionPriority;
 import org.likeapp.likeapp.service.btle.actions.AbortTransactionAction;
 import org.likeapp.likeapp.service.btle.actions.ConditionalWriteAction;
 import org.likeapp.likeapp.service.btle.actions.SetDeviceStateAction;
@@ -130,6 +129,7 @@ public class MiBandSupport extends AbstractBTLEDeviceSupport {
     private final GBDeviceEventVersionInfo versionCmd = new GBDeviceEventVersionInfo();
     private final GBDeviceEventBatteryInfo batteryCmd = new GBDeviceEventBatteryInfo();
     private RealtimeSamplesSupport realtimeSamplesSupport;
+    private RealtimeSampleSink<MiBandActivitySample> realtimeSampleSink;
     private boolean alarmClockRining;
     private boolean alarmClockRinging;
 
@@ -488,9 +488,10 @@ public class MiBandSupport extends AbstractBTLEDeviceSupport {
         return this;
     }
 
-    private void performDefaultNotification(String task, SimpleNotification simpleNotification, short repeat, BtLEAction extraAction) {
+    private void performDefaultNotification(String task, SimpleNotification simpleNotification, short repeat, BtLEAction extraAction, TransactionPriority priority) {
         try {
             TransactionBuilder builder = performInitialized(task);
+            builder.setPriority(priority);
             sendDefaultNotification(builder, simpleNotification, repeat, extraAction);
             builder.queue(getQueue());
         } catch (IOException ex) {
@@ -498,9 +499,10 @@ public class MiBandSupport extends AbstractBTLEDeviceSupport {
         }
     }
 
-    private void performPreferredNotification(String task, @Nullable SimpleNotification simpleNotification, String notificationOrigin, BtLEAction extraAction) {
+    private void performPreferredNotification(String task, @Nullable SimpleNotification simpleNotification, String notificationOrigin, BtLEAction extraAction, TransactionPriority priority) {
         try {
             TransactionBuilder builder = performInitialized(task);
+            builder.setPriority(priority);
             Prefs prefs = GBApplication.getPrefs();
             int vibrateDuration = getPreferredVibrateDuration(notificationOrigin, prefs);
             int vibratePause = getPreferredVibratePause(notificationOrigin, prefs);
@@ -584,7 +586,7 @@ public class MiBandSupport extends AbstractBTLEDeviceSupport {
         }
 
         String origin = notificationSpec.type.getGenericType();
-        performPreferredNotification(origin + " received", null, origin, null);
+        performPreferredNotification(origin + " received", null, origin, null, TransactionPriority.NORMAL);
     }
 
     private void onAlarmClock(NotificationSpec notificationSpec) {
@@ -597,7 +599,7 @@ public class MiBandSupport extends AbstractBTLEDeviceSupport {
         };
         String message = NotificationUtils.getPreferredTextFor(notificationSpec, 40, 40, getContext());
         SimpleNotification simpleNotification = new SimpleNotification(message, AlertCategory.HighPriorityAlert, null);
-        performPreferredNotification("alarm clock ringing", simpleNotification, MiBandConst.ORIGIN_ALARM_CLOCK, abortAction);
+        performPreferredNotification("alarm clock ringing", simpleNotification, MiBandConst.ORIGIN_ALARM_CLOCK, abortAction, TransactionPriority.INTERACTIVE);
     }
 
     @Override
@@ -663,7 +665,7 @@ public class MiBandSupport extends AbstractBTLEDeviceSupport {
             };
             String message = NotificationUtils.getPreferredTextFor(callSpec);
             SimpleNotification simpleNotification = new SimpleNotification(message, AlertCategory.IncomingCall, null);
-            performPreferredNotification("incoming call", simpleNotification, MiBandConst.ORIGIN_INCOMING_CALL, abortAction);
+            performPreferredNotification("incoming call", simpleNotification, MiBandConst.ORIGIN_INCOMING_CALL, abortAction, TransactionPriority.INTERACTIVE);
         } else if ((callSpec.command == CallSpec.CALL_START) || (callSpec.command == CallSpec.CALL_END)) {
             telephoneRinging = false;
         }
@@ -759,7 +761,7 @@ public class MiBandSupport extends AbstractBTLEDeviceSupport {
                 }
             };
             SimpleNotification simpleNotification = new SimpleNotification(getContext().getString(R.string.find_device_you_found_it), AlertCategory.HighPriorityAlert, null);
-            performDefaultNotification("locating device", simpleNotification, (short) 255, abortAction);
+            performDefaultNotification("locating device", simpleNotification, (short) 255, abortAction, TransactionPriority.INTERACTIVE);
         }
     }
 
@@ -975,6 +977,7 @@ public class MiBandSupport extends AbstractBTLEDeviceSupport {
             if (!realtimeSamplesSupport.isRunning()) {
                 // single shot measurement, manually invoke storage and result publishing
                 realtimeSamplesSupport.triggerCurrentSample();
+                getRealtimeSampleSink().flush();
             }
         }
     }
@@ -994,6 +997,9 @@ public class MiBandSupport extends AbstractBTLEDeviceSupport {
             if (realtimeSamplesSupport != null) {
                 realtimeSamplesSupport.stop();
             }
+            if (realtimeSampleSink != null) {
+                realtimeSampleSink.flush();
+            }
         }
     }
 
@@ -1012,44 +1018,52 @@ public class MiBandSupport extends AbstractBTLEDeviceSupport {
             realtimeSamplesSupport = new RealtimeSamplesSupport(1000, 1000) {
                 @Override
                 public void doCurrentSample() {
+                    int ts = (int) (System.currentTimeMillis() / 1000);
+                    MiBandActivitySample sample = createSample(ts);
+                    // set the steps only in the published sample, since realtime steps are also
+                    // recorded in the regular samples and we must not count them twice
+                    MiBandActivitySample published = createSample(ts);
+                    published.setSteps(getSteps());
+                    getRealtimeSampleSink().add(sample, published);
+                }
 
-                    try (DBHandler handler = GBApplication.acquireDB()) {
-                        DaoSession session = handler.getDaoSession();
-
-                        Device device = DBHelper.getDevice(getDevice(), session);
-                        User user = DBHelper.getUser(session);
-                        int ts = (int) (System.currentTimeMillis() / 1000);
-                        MiBandSampleProvider provider = new MiBandSampleProvider(gbDevice, session);
-                        MiBandActivitySample sample = createActivitySample(device, user, ts, provider);
-                        sample.setHeartRate(getHeartrateBpm());
-                        sample.setRawIntensity(ActivitySample.NOT_MEASURED);
-                        sample.setRawKind(MiBandSampleProvider.TYPE_ACTIVITY); // to make it visible in the charts TODO: add a MANUAL kind for that?
-
-                        provider.addGBActivitySample(sample);
-
-                        // set the steps only afterwards, since realtime steps are also recorded
-                        // in the regular samples and we must not count them twice
-                        // Note: we know that the DAO sample is never committed again, so we simply
-                        // change the value here in memory.
-                        sample.setSteps(getSteps());
-
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("realtime sample: " + sample);
-                        }
-
-                        Intent intent = new Intent(DeviceService.ACTION_REALTIME_SAMPLES)
-                                .putExtra(DeviceService.EXTRA_REALTIME_SAMPLE, sample);
-                        LocalBroadcastManager.getInstance(getContext()).sendBroadcast(intent);
-
-                    } catch (Exception e) {
-                        LOG.warn("Unable to acquire db for saving realtime samples", e);
-                    }
+                private MiBandActivitySample createSample(int timestampInSeconds) {
+                    MiBandActivitySample sample = new MiBandActivitySample();
+                    sample.setTimestamp(timestampInSeconds);
+                    sample.setHeartRate(getHeartrateBpm());
+                    sample.setRawIntensity(ActivitySample.NOT_MEASURED);
+                    sample.setRawKind(MiBandSampleProvider.TYPE_ACTIVITY); // to make it visible in the charts TODO: add a MANUAL kind for that?
+                    return sample;
                 }
             };
         }
         return realtimeSamplesSupport;
     }
 
+    private synchronized RealtimeSampleSink<MiBandActivitySample> getRealtimeSampleSink() {
+        if (realtimeSampleSink == null) {
+            realtimeSampleSink = new RealtimeSampleSink<MiBandActivitySample>(getDevice(), getContext()) {
+                @Override
+                protected AbstractSampleProvider<MiBandActivitySample> createSampleProvider(DaoSession session) {
+                    return new MiBandSampleProvider(getDevice(), session);
+                }
+            };
+        }
+        return realtimeSampleSink;
+    }
+
+    @Override
+    public void dispose() {
+        enableRealtimeSamplesTimer(false);
+        synchronized (this) {
+            if (realtimeSampleSink != null) {
+                realtimeSampleSink.close();
+                realtimeSampleSink = null;
+            }
+        }
+        super.dispose();
+    }
+
     /**
      * React to unsolicited messages sent by the Mi Band to the MiBandService.UUID_CHARACTERISTIC_NOTIFICATION
      * characteristic,
@@ -53,6 +53,17 @@ class DatalogSession {
         return taginfo;
     }
 
+    /**
+     * Stores the data of the previous messages that has not been stored yet. Called before a
+     * message is acknowledged, since the watch deletes acknowledged data, and when the session
+     * or the connection is closed.
+     *
+     * @return false if the data could not be stored and is kept for the next call
+     */
+    boolean flush() {
+        return true;
+    }
+
     GBDeviceEvent[] handleMessageForPebbleKit(ByteBuffer buf, int length) {
         if (0 != (length % itemSize)) {
             LOG.warn("invalid length");
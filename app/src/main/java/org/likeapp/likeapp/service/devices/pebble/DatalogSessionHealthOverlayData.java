@@ -26,9 +26,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
-import org.likeapp.likeapp.GBApplication;
-import org.likeapp.likeapp.database.DBHandler;
-import org.likeapp.likeapp.database.DBHelper;
+import org.likeapp.likeapp.database.DailyActivityRollupHelper;
+import org.likeapp.likeapp.database.SleepSessionHelper;
+import org.likeapp.likeapp.devices.pebble.PebbleHealthSampleProvider;
 import org.likeapp.likeapp.deviceevents.GBDeviceEvent;
 import org.likeapp.likeapp.entities.DaoSession;
 import org.likeapp.likeapp.entities.PebbleHealthActivityOverlay;
@@ -40,6 +40,8 @@ class DatalogSessionHealthOverlayData extends DatalogSessionPebbleHealth {
 
     private static final Logger LOG = LoggerFactory.getLogger(DatalogSessionHealthOverlayData.class);
 
+    private final List<OverlayRecord> mBufferedRecords = new ArrayList<>();
+
     DatalogSessionHealthOverlayData(byte id, UUID uuid, int timestamp, int tag, byte item_type, short item_size, GBDevice device) {
         super(id, uuid, timestamp, tag, item_type, item_size, device);
         taginfo = "(Health - overlay data " + tag + " )";
@@ -62,38 +64,47 @@ class DatalogSessionHealthOverlayData extends DatalogSessionPebbleHealth {
             return null;//malformed message?
 
         int recordCount = length / itemSize;
-        OverlayRecord[] overlayRecords = new OverlayRecord[recordCount];
-        byte[] tempRecord = new byte[itemSize];
 
         for (int recordIdx = 0; recordIdx < recordCount; recordIdx++) {
             beginOfRecordPosition = initialPosition + recordIdx * itemSize;
             datalogMessage.position(beginOfRecordPosition);//we may not consume all the bytes of a record
+            byte[] tempRecord = new byte[itemSize];
             datalogMessage.get(tempRecord);
-            overlayRecords[recordIdx] = new OverlayRecord(tempRecord);
+            mBufferedRecords.add(new OverlayRecord(tempRecord));
         }
-
-        store(overlayRecords);
         return new GBDeviceEvent[]{null};
     }
 
-    private void store(OverlayRecord[] overlayRecords) {
-        try (DBHandler dbHandler = GBApplication.acquireDB()) {
-            DaoSession session = dbHandler.getDaoSession();
-            Long userId = DBHelper.getUser(session).getId();
-            Long deviceId = DBHelper.getDevice(getDevice(), session).getId();
-
-            PebbleHealthActivityOverlayDao overlayDao = session.getPebbleHealthActivityOverlayDao();
+    @Override
+    int getBufferedCount() {
+        return mBufferedRecords.size();
+    }
 
-            List<PebbleHealthActivityOverlay> overlayList = new ArrayList<>();
-            for (OverlayRecord overlayRecord : overlayRecords) {
-                overlayList.add(new PebbleHealthActivityOverlay(overlayRecord.timestampStart, overlayRecord.timestampStart + overlayRecord.durationSeconds, overlayRecord.type, deviceId, userId, overlayRecord.getRawData()));
-            }
-            overlayDao.insertOrReplaceInTx(overlayList);
-        } catch (Exception ex) {
-            LOG.debug(ex.getMessage());
+    @Override
+    void storeBuffered(DaoSession session, long deviceId, long userId) {
+        PebbleHealthActivityOverlayDao overlayDao = session.getPebbleHealthActivityOverlayDao();
+
+        List<PebbleHealthActivityOverlay> overlayList = new ArrayList<>();
+        int timestampFrom = Integer.MAX_VALUE;
+        int timestampTo = Integer.MIN_VALUE;
+        for (OverlayRecord overlayRecord : mBufferedRecords) {
+            overlayList.add(new PebbleHealthActivityOverlay(overlayRecord.timestampStart, overlayRecord.timestampStart + overlayRecord.durationSeconds, overlayRecord.type, deviceId, userId, overlayRecord.getRawData()));
+            timestampFrom = Math.min(timestampFrom, overlayRecord.timestampStart);
+            timestampTo = Math.max(timestampTo, overlayRecord.timestampStart + overlayRecord.durationSeconds);
+        }
+        overlayDao.insertOrReplaceInTx(overlayList);
+        if (!overlayList.isEmpty()) {
+            // the overlays change the kind of the samples they cover
+            DailyActivityRollupHelper.update(new PebbleHealthSampleProvider(getDevice(), session), session, deviceId, timestampFrom, timestampTo);
+            SleepSessionHelper.invalidate(session, deviceId, timestampFrom);
         }
     }
 
+    @Override
+    void clearBuffered() {
+        mBufferedRecords.clear();
+    }
+
     private class OverlayRecord {
         byte[] knownVersions = {1, 3};
         short version;
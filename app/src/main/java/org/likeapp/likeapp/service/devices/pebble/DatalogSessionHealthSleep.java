@@ -26,9 +26,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
-import org.likeapp.likeapp.GBApplication;
-import org.likeapp.likeapp.database.DBHandler;
-import org.likeapp.likeapp.database.DBHelper;
+import org.likeapp.likeapp.database.DailyActivityRollupHelper;
+import org.likeapp.likeapp.database.SleepSessionHelper;
+import org.likeapp.likeapp.devices.pebble.PebbleHealthSampleProvider;
 import org.likeapp.likeapp.deviceevents.GBDeviceEvent;
 import org.likeapp.likeapp.entities.DaoSession;
 import org.likeapp.likeapp.entities.PebbleHealthActivityOverlay;
@@ -40,6 +40,8 @@ class DatalogSessionHealthSleep extends DatalogSessionPebbleHealth {
 
     private static final Logger LOG = LoggerFactory.getLogger(DatalogSessionHealthSleep.class);
 
+    private final List<SleepRecord> mBufferedRecords = new ArrayList<>();
+
     DatalogSessionHealthSleep(byte id, UUID uuid, int timestamp, int tag, byte item_type, short item_size, GBDevice device) {
         super(id, uuid, timestamp, tag, item_type, item_size, device);
         taginfo = "(Health - sleep " + tag + " )";
@@ -61,40 +63,49 @@ class DatalogSessionHealthSleep extends DatalogSessionPebbleHealth {
             return null;//malformed message?
 
         int recordCount = length / itemSize;
-        SleepRecord[] sleepRecords = new SleepRecord[recordCount];
-        byte[] tempRecord = new byte[itemSize];
 
         for (int recordIdx = 0; recordIdx < recordCount; recordIdx++) {
             beginOfRecordPosition = initialPosition + recordIdx * itemSize;
             datalogMessage.position(beginOfRecordPosition);//we may not consume all the bytes of a record
+            byte[] tempRecord = new byte[itemSize];
             datalogMessage.get(tempRecord);
 
-            sleepRecords[recordIdx] = new SleepRecord(tempRecord);
+            mBufferedRecords.add(new SleepRecord(tempRecord));
         }
-
-        store(sleepRecords);
         return new GBDeviceEvent[]{null};
     }
 
-    private void store(SleepRecord[] sleepRecords) {
-        try (DBHandler dbHandler = GBApplication.acquireDB()) {
-            DaoSession session = dbHandler.getDaoSession();
-            Long userId = DBHelper.getUser(session).getId();
-            Long deviceId = DBHelper.getDevice(getDevice(), session).getId();
-
-            PebbleHealthActivityOverlayDao overlayDao = session.getPebbleHealthActivityOverlayDao();
+    @Override
+    int getBufferedCount() {
+        return mBufferedRecords.size();
+    }
 
-            List<PebbleHealthActivityOverlay> overlayList = new ArrayList<>();
-            for (SleepRecord sleepRecord : sleepRecords) {
-                //TODO: check the firmware version and don't use the sleep record if overlay is available?
-                overlayList.add(new PebbleHealthActivityOverlay(sleepRecord.bedTimeStart, sleepRecord.bedTimeEnd, sleepRecord.type, deviceId, userId, sleepRecord.getRawData()));
-            }
-            overlayDao.insertOrReplaceInTx(overlayList);
-        } catch (Exception ex) {
-            LOG.debug(ex.getMessage());
+    @Override
+    void storeBuffered(DaoSession session, long deviceId, long userId) {
+        PebbleHealthActivityOverlayDao overlayDao = session.getPebbleHealthActivityOverlayDao();
+
+        List<PebbleHealthActivityOverlay> overlayList = new ArrayList<>();
+        int timestampFrom = Integer.MAX_VALUE;
+        int timestampTo = Integer.MIN_VALUE;
+        for (SleepRecord sleepRecord : mBufferedRecords) {
+            //TODO: check the firmware version and don't use the sleep record if overlay is available?
+            overlayList.add(new PebbleHealthActivityOverlay(sleepRecord.bedTimeStart, sleepRecord.bedTimeEnd, sleepRecord.type, deviceId, userId, sleepRecord.getRawData()));
+            timestampFrom = Math.min(timestampFrom, sleepRecord.bedTimeStart);
+            timestampTo = Math.max(timestampTo, sleepRecord.bedTimeEnd);
+        }
+        overlayDao.insertOrReplaceInTx(overlayList);
+        if (!overlayList.isEmpty()) {
+            // the overlays change the kind of the samples they cover
+            DailyActivityRollupHelper.update(new PebbleHealthSampleProvider(getDevice(), session), session, deviceId, timestampFrom, timestampTo);
+            SleepSessionHelper.invalidate(session, deviceId, timestampFrom);
         }
     }
 
+    @Override
+    void clearBuffered() {
+        mBufferedRecords.clear();
+    }
+
     private class SleepRecord {
         byte[] knownVersions = {1};
         short version;
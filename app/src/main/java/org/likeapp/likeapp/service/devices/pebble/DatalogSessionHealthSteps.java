@@ -23,13 +23,13 @@ import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
-import org.likeapp.likeapp.GBApplication;
-import org.likeapp.likeapp.database.DBHandler;
-import org.likeapp.likeapp.database.DBHelper;
 import org.likeapp.likeapp.deviceevents.GBDeviceEvent;
 import org.likeapp.likeapp.devices.pebble.PebbleHealthSampleProvider;
+import org.likeapp.likeapp.entities.DaoSession;
 import org.likeapp.likeapp.entities.PebbleHealthActivitySample;
 import org.likeapp.likeapp.impl.GBDevice;
 import org.likeapp.likeapp.util.GB;
@@ -38,6 +38,8 @@ class DatalogSessionHealthSteps extends DatalogSessionPebbleHealth {
 
     private static final Logger LOG = LoggerFactory.getLogger(DatalogSessionHealthSteps.class);
 
+    private final List<StepsRecord> mBufferedRecords = new ArrayList<>();
+
     DatalogSessionHealthSteps(byte id, UUID uuid, int timestamp, int tag, byte item_type, short item_size, GBDevice device) {
         super(id, uuid, timestamp, tag, item_type, item_size, device);
         taginfo = "(Health - steps)";
@@ -77,46 +79,46 @@ class DatalogSessionHealthSteps extends DatalogSessionPebbleHealth {
             recordNum = datalogMessage.get();
 
             beginOfRecordPosition = datalogMessage.position();
-            StepsRecord[] stepsRecords = new StepsRecord[recordNum];
-            byte[] tempRecord = new byte[recordLength];
 
             for (int recordIdx = 0; recordIdx < recordNum; recordIdx++) {
                 datalogMessage.position(beginOfRecordPosition + recordIdx * recordLength); //we may not consume all the bytes of a record
+                byte[] tempRecord = new byte[recordLength];
                 datalogMessage.get(tempRecord);
-                stepsRecords[recordIdx] = new StepsRecord(timestamp, recordVersion, tempRecord);
+                mBufferedRecords.add(new StepsRecord(timestamp, recordVersion, tempRecord));
                 timestamp += 60;
             }
-
-            store(stepsRecords);
         }
         return new GBDeviceEvent[]{null};//ACK by default
     }
 
-    private void store(StepsRecord[] stepsRecords) {
-
-        try (DBHandler dbHandler = GBApplication.acquireDB()) {
-            PebbleHealthSampleProvider sampleProvider = new PebbleHealthSampleProvider(getDevice(), dbHandler.getDaoSession());
-            PebbleHealthActivitySample[] samples = new PebbleHealthActivitySample[stepsRecords.length];
-            // TODO: user and device
-            Long userId = DBHelper.getUser(dbHandler.getDaoSession()).getId();
-            Long deviceId = DBHelper.getDevice(getDevice(), dbHandler.getDaoSession()).getId();
-            for (int j = 0; j < stepsRecords.length; j++) {
-                StepsRecord stepsRecord = stepsRecords[j];
-                samples[j] = new PebbleHealthActivitySample(
-                        stepsRecord.timestamp,
-                        deviceId, userId,
-                        stepsRecord.getRawData(),
-                        stepsRecord.intensity,
-                        stepsRecord.steps,
-                        stepsRecord.heart_rate
-                );
-                samples[j].setProvider(sampleProvider);
-            }
+    @Override
+    int getBufferedCount() {
+        return mBufferedRecords.size();
+    }
 
-            sampleProvider.addGBActivitySamples(samples);
-        } catch (Exception ex) {
-            LOG.debug(ex.getMessage());
+    @Override
+    void storeBuffered(DaoSession session, long deviceId, long userId) {
+        PebbleHealthSampleProvider sampleProvider = new PebbleHealthSampleProvider(getDevice(), session);
+        PebbleHealthActivitySample[] samples = new PebbleHealthActivitySample[mBufferedRecords.size()];
+        for (int j = 0; j < samples.length; j++) {
+            StepsRecord stepsRecord = mBufferedRecords.get(j);
+            samples[j] = new PebbleHealthActivitySample(
+                    stepsRecord.timestamp,
+                    deviceId, userId,
+                    stepsRecord.getRawData(),
+                    stepsRecord.intensity,
+                    stepsRecord.steps,
+                    stepsRecord.heart_rate
+            );
+            samples[j].setProvider(sampleProvider);
         }
+
+        sampleProvider.addGBActivitySamples(samples);
+    }
+
+    @Override
+    void clearBuffered() {
+        mBufferedRecords.clear();
     }
 
     private class StepsRecord {
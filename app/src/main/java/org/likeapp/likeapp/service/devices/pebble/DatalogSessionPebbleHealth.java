@@ -17,16 +17,33 @@
     along with this program.  If not, see <http://www.gnu.org/licenses/>. */
 package org.likeapp.likeapp.service.devices.pebble;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.UUID;
 
 import org.likeapp.likeapp.GBApplication;
+import org.likeapp.likeapp.database.DBHandler;
+import org.likeapp.likeapp.database.DBHelper;
+import org.likeapp.likeapp.entities.DaoSession;
 import org.likeapp.likeapp.impl.GBDevice;
 import org.likeapp.likeapp.util.Prefs;
 
+/**
+ * Base class of the Pebble Health datalog sessions. The decoded records of a datalog message
+ * are buffered and stored in a single transaction before the message is acknowledged. The
+ * watch waits for the acknowledgement before it sends the next message, so a batch cannot
+ * span several messages.
+ */
 abstract class DatalogSessionPebbleHealth extends DatalogSession {
+    private static final Logger LOG = LoggerFactory.getLogger(DatalogSessionPebbleHealth.class);
 
     private final GBDevice mDevice;
 
+    // resolved on the first flush and kept for the lifetime of the session
+    private Long mUserId;
+    private Long mDeviceId;
+
     DatalogSessionPebbleHealth(byte id, UUID uuid, int timestamp, int tag, byte itemType, short itemSize, GBDevice device) {
         super(id, uuid, timestamp, tag, itemType, itemSize);
         mDevice = device;
@@ -45,4 +62,52 @@ abstract class DatalogSessionPebbleHealth extends DatalogSession {
         Prefs prefs = GBApplication.getPrefs();
         return prefs.getBoolean("pebble_health_store_raw", true);
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the number of records buffered since the last flush.
+     */
+    int getBufferedCount() {
+        return 0;
+    }
+
+    /**
+     * Stores the buffered records, called within a transaction.
+     */
+    void storeBuffered(DaoSession session, long deviceId, long userId) {
+    }
+
+    /**
+     * Drops the buffered records after they have been stored.
+     */
+    void clearBuffered() {
+    }
+
+    @Override
+    boolean flush() {
+        int count = getBufferedCount();
+        if (count == 0) {
+            return true;
+        }
+        try (DBHandler dbHandler = GBApplication.acquireDB()) {
+            final DaoSession session = dbHandler.getDaoSession();
+            if (mDeviceId == null) {
+                mUserId = DBHelper.getUser(session).getId();
+                mDeviceId = DBHelper.getDevice(getDevice(), session).getId();
+            }
+            session.runInTx(new Runnable() {
+                @Override
+                public void run() {
+                    storeBuffered(session, mDeviceId, mUserId);
+                }
+            });
+            LOG.info("stored " + count + " records " + taginfo);
+        } catch (Exception ex) {
+            // the message is not acknowledged, so the watch keeps the records and sends them again,
+            // they replace the buffered ones then
+            LOG.error("Error storing " + count + " records " + taginfo, ex);
+            return false;
+        }
+        clearBuffered();
+        return true;
+    }
+}
@@ -23,6 +23,7 @@ import android.bluetooth.BluetoothSocket;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
+import android.os.Looper;
 import android.os.ParcelUuid;
 import android.webkit.ValueCallback;
 import android.webkit.WebView;
@@ -61,6 +62,8 @@ import org.likeapp.likeapp.devices.pebble.PBWReader;
 import org.likeapp.likeapp.devices.pebble.PebbleInstallable;
 import org.likeapp.likeapp.impl.GBDevice;
 import org.likeapp.likeapp.impl.GBDeviceApp;
+import org.likeapp.likeapp.model.NotificationSpec;
+import org.likeapp.likeapp.model.WeatherSpec;
 import org.likeapp.likeapp.service.devices.pebble.ble.PebbleLESupport;
 import org.likeapp.likeapp.service.serial.GBDeviceIoThread;
 import org.likeapp.likeapp.service.serial.GBDeviceProtocol;
@@ -69,8 +72,9 @@ import org.likeapp.likeapp.util.PebbleUtils;
 import org.likeapp.likeapp.util.Prefs;
 import org.likeapp.likeapp.util.WebViewSingleton;
 
-class PebbleIoThread extends GBDeviceIoThread {
+class PebbleIoThread extends GBDeviceIoThread implements PebbleProtocol.BufferSource {
     private static final Logger LOG = LoggerFactory.getLogger(PebbleIoThread.class);
+    private static final long ENQUEUE_TIMEOUT_MILLIS = 5000;
 
     private final Prefs prefs = GBApplication.getPrefs();
 
@@ -87,6 +91,7 @@ class PebbleIoThread extends GBDeviceIoThread {
     private InputStream mInStream = null;
     private OutputStream mOutStream = null;
     private PebbleLESupport mPebbleLESupport;
+    private PebbleWriterThread mWriter = null;
 
     private boolean mQuit = false;
     private boolean mIsConnected = false;
@@ -107,7 +112,7 @@ class PebbleIoThread extends GBDeviceIoThread {
     private void sendAppMessageJS(GBDeviceEventAppMessage appMessage) {
         sendAppMessage(appMessage);
         if (appMessage.type == GBDeviceEventAppMessage.TYPE_APPMESSAGE) {
-            write(mPebbleProtocol.encodeApplicationMessageAck(appMessage.appUUID, (byte) appMessage.id));
+            writeApplicationMessageAck(appMessage.appUUID, (byte) appMessage.id);
         }
     }
 
@@ -229,6 +234,9 @@ class PebbleIoThread extends GBDeviceIoThread {
 
         mPebbleProtocol.setForceProtocol(prefs.getBoolean("pebble_force_protocol", false));
 
+        mWriter = new PebbleWriterThread(mOutStream, mIsTCP);
+        mWriter.start();
+
         mIsConnected = true;
         write(mPebbleProtocol.encodeFirmwareVersionReq());
         gbDevice.setState(GBDevice.State.CONNECTED);
@@ -292,7 +300,10 @@ class PebbleIoThread extends GBDeviceIoThread {
                             if (bytes > 0) {
                                 GB.updateInstallNotification(getContext().getString(
                                         R.string.installing_binary_d_d, (mCurrentInstallableIndex + 1), mPebbleInstallables.length), true, (int) (((float) mBytesWritten / mBinarySize) * 100), getContext());
-                                writeInstallApp(mPebbleProtocol.encodeUploadChunk(mAppInstallToken, buffer, bytes));
+                                ByteBuffer chunk = obtainBuffer(PebbleProtocol.getUploadChunkMessageLength(bytes));
+                                mPebbleProtocol.encodeUploadChunk(chunk, mAppInstallToken, buffer, bytes);
+                                chunk.flip();
+                                writeInstallApp(chunk);
                                 mBytesWritten += bytes;
                                 mAppInstallToken = -1;
                                 mInstallState = PebbleAppInstallState.WAIT_TOKEN;
@@ -364,6 +375,7 @@ class PebbleIoThread extends GBDeviceIoThread {
                 if (mIsTCP) {
                     mInStream.skip(2);
                 }
+                mWriter.onMessageReceived(endpoint);
 
                 GBDeviceEvent[] deviceEvents = mPebbleProtocol.decodeResponse(buffer);
                 if (deviceEvents == null) {
@@ -378,11 +390,6 @@ class PebbleIoThread extends GBDeviceIoThread {
                         }
                     }
                 }
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
             } catch (IOException e) {
                 if (e.getMessage() != null && (e.getMessage().equals("broken pipe") || e.getMessage().contains("socket closed"))) { //FIXME: this does not feel right
                     LOG.info(e.getMessage());
@@ -394,6 +401,8 @@ class PebbleIoThread extends GBDeviceIoThread {
             }
         }
         mIsConnected = false;
+        quitWriter();
+        mPebbleProtocol.flushDatalogSessions();
         if (mBtSocket != null) {
             try {
                 mBtSocket.close();
@@ -430,28 +439,9 @@ class PebbleIoThread extends GBDeviceIoThread {
     }
 
 
-    private void write_real(byte[] bytes) {
-        try {
-            if (mIsTCP) {
-                ByteBuffer buf = ByteBuffer.allocate(bytes.length + 8);
-                buf.order(ByteOrder.BIG_ENDIAN);
-                buf.putShort((short) 0xfeed);
-                buf.putShort((short) 1);
-                buf.putShort((short) bytes.length);
-                buf.put(bytes);
-                buf.putShort((short) 0xbeef);
-                mOutStream.write(buf.array());
-                mOutStream.flush();
-            } else {
-                mOutStream.write(bytes);
-                mOutStream.flush();
-            }
-        } catch (IOException e) {
-            LOG.error("Error writing.", e);
-        }
-        try {
-            Thread.sleep(100);
-        } catch (InterruptedException ignored) {
+    private void quitWriter() {
+        if (mWriter != null) {
+            mWriter.quit();
         }
     }
 
@@ -460,11 +450,83 @@ class PebbleIoThread extends GBDeviceIoThread {
         if (bytes == null) {
             return;
         }
-        // on FW < 3.0 block writes if app installation in in progress
-        if (!mIsConnected || (mPebbleProtocol.mFwMajor < 3 && mIsInstalling && mInstallState != PebbleAppInstallState.WAIT_SLOT)) {
+        write(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Like #write(byte[]), for a message between the position and the limit of a buffer,
+     * usually one from #obtainBuffer(int).
+     * <p>
+     * Queueing never blocks the main thread or this thread, which reads the answers the
+     * writer may be waiting for. Other threads are slowed down while many messages are
+     * pending, see PebbleWriterThread#awaitCapacity(long).
+     */
+    void write(ByteBuffer message) {
+        PebbleWriterThread writer;
+        synchronized (this) {
+            // on FW < 3.0 block writes if app installation in in progress
+            if (!mIsConnected || (mPebbleProtocol.mFwMajor < 3 && mIsInstalling && mInstallState != PebbleAppInstallState.WAIT_SLOT)) {
+                recycle(message);
+                return;
+            }
+            writer = mWriter;
+            writer.enqueue(message);
+        }
+        if (Thread.currentThread() != this && Looper.myLooper() != Looper.getMainLooper()) {
+            try {
+                writer.awaitCapacity(ENQUEUE_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Returns a (pooled) buffer to encode a message of the given length into, which is
+     * recycled after the message has been sent with #write(ByteBuffer).
+     */
+    @Override
+    public ByteBuffer obtainBuffer(int length) {
+        PebbleWriterThread writer = mWriter;
+        if (writer == null) {
+            return ByteBuffer.allocate(length);
+        }
+        return writer.obtainBuffer(length);
+    }
+
+    private void recycle(ByteBuffer message) {
+        PebbleWriterThread writer = mWriter;
+        if (writer != null) {
+            writer.recycle(message);
+        }
+    }
+
+    void writeApplicationMessageAck(UUID uuid, byte id) {
+        ByteBuffer buf = obtainBuffer(PebbleProtocol.LENGTH_APPMESSAGEACK_MESSAGE);
+        mPebbleProtocol.encodeApplicationMessageAck(buf, uuid, id);
+        buf.flip();
+        write(buf);
+    }
+
+    void writeSetMusicState(byte state, int position, int playRate, byte shuffle, byte repeat) {
+        if (mPebbleProtocol.mFwMajor < 3) {
             return;
         }
-        write_real(bytes);
+        ByteBuffer buf = obtainBuffer(PebbleProtocol.LENGTH_MUSICSTATE_MESSAGE);
+        mPebbleProtocol.encodeSetMusicState(buf, state, position, playRate, shuffle, repeat);
+        buf.flip();
+        write(buf);
+    }
+
+    void writeNotification(NotificationSpec notificationSpec) {
+        write(mPebbleProtocol.encodeNotification(this, notificationSpec));
+    }
+
+    void writeSendWeather(WeatherSpec weatherSpec) {
+        ByteBuffer buf = mPebbleProtocol.encodeSendWeather(this, weatherSpec);
+        if (buf != null) {
+            write(buf);
+        }
     }
 
     // FIXME: parts are supposed to be generic code
@@ -593,12 +655,17 @@ class PebbleIoThread extends GBDeviceIoThread {
         }
     }
 
-    synchronized private void writeInstallApp(byte[] bytes) {
+    private void writeInstallApp(byte[] bytes) {
+        writeInstallApp(ByteBuffer.wrap(bytes));
+    }
+
+    synchronized private void writeInstallApp(ByteBuffer message) {
         if (!mIsInstalling) {
+            recycle(message);
             return;
         }
-        LOG.info("got " + bytes.length + "bytes for writeInstallApp()");
-        write_real(bytes);
+        LOG.info("got " + message.remaining() + "bytes for writeInstallApp()");
+        mWriter.enqueue(message);
     }
 
     void installApp(Uri uri, int appId) {
@@ -727,6 +794,7 @@ class PebbleIoThread extends GBDeviceIoThread {
     @Override
     public void quit() {
         mQuit = true;
+        quitWriter();
         if (mBtSocket != null) {
             try {
                 mBtSocket.close();
@@ -103,7 +103,7 @@ class PebbleKitSupport {
                     transaction_id = intent.getIntExtra("transaction_id", -1);
                     if (!mPebbleProtocol.mAlwaysACKPebbleKit) {
                         if (transaction_id >= 0 && transaction_id <= 255) {
-                            mPebbleIoThread.write(mPebbleProtocol.encodeApplicationMessageAck(null, (byte) transaction_id));
+                            mPebbleIoThread.writeApplicationMessageAck(null, (byte) transaction_id);
                         } else {
                             LOG.warn("illegal transaction id " + transaction_id);
                         }
@@ -254,7 +254,29 @@ public class PebbleProtocol extends GBDeviceProtocol {
     static final byte TYPE_UINT = 2;
     static final byte TYPE_INT = 3;
 
-    private final short LENGTH_PREFIX = 4;
+    private static final short LENGTH_PREFIX = 4;
+    private static final short LENGTH_UPLOADCHUNK = 9;
+
+    // precomputed lengths of fixed-layout messages, including the prefix
+    static final int LENGTH_MUSICSTATE_MESSAGE = LENGTH_PREFIX + 12;
+    static final int LENGTH_APPMESSAGEACK_MESSAGE = LENGTH_PREFIX + 18;
+
+    /**
+     * Provides the buffers that messages are encoded into, see PebbleIoThread#obtainBuffer(int).
+     */
+    interface BufferSource {
+        /**
+         * Returns a big endian buffer with exactly the given number of bytes remaining.
+         */
+        ByteBuffer obtainBuffer(int length);
+    }
+
+    private static final BufferSource ALLOCATE = new BufferSource() {
+        @Override
+        public ByteBuffer obtainBuffer(int length) {
+            return ByteBuffer.allocate(length);
+        }
+    };
 
     private static final byte LENGTH_UUID = 16;
 
@@ -447,6 +469,34 @@ public class PebbleProtocol extends GBDeviceProtocol {
         return buf.array();
     }
 
+    /**
+     * Returns the endpoint of the encoded message starting at the position of the given buffer.
+     */
+    static short getEndpoint(ByteBuffer message) {
+        int start = message.position();
+        return (short) (((message.get(start + 2) & 0xff) << 8) | (message.get(start + 3) & 0xff));
+    }
+
+    /**
+     * Returns whether the watch answers the encoded message starting at the position of the
+     * given buffer on the same endpoint, i.e. whether the next message should wait for the answer.
+     */
+    static boolean expectsResponse(ByteBuffer message) {
+        if (message.remaining() < LENGTH_PREFIX) {
+            return false;
+        }
+        switch (getEndpoint(message)) {
+            case ENDPOINT_PUTBYTES:
+            case ENDPOINT_BLOBDB:
+                return true;
+            case ENDPOINT_APPLICATIONMESSAGE:
+                // pushes are acked or nacked, our own acks are not
+                return message.remaining() > LENGTH_PREFIX && message.get(message.position() + LENGTH_PREFIX) == APPLICATIONMESSAGE_PUSH;
+            default:
+                return false;
+        }
+    }
+
     private byte[] encodeMessage(short endpoint, byte type, int cookie, String[] parts) {
         // Calculate length first
         int length = LENGTH_PREFIX + 1;
@@ -492,6 +542,14 @@ public class PebbleProtocol extends GBDeviceProtocol {
 
     @Override
     public byte[] encodeNotification(NotificationSpec notificationSpec) {
+        return toArray(encodeNotification(ALLOCATE, notificationSpec));
+    }
+
+    /**
+     * Like #encodeNotification(NotificationSpec), but encodes the message into a buffer of the
+     * given source, between its position and limit.
+     */
+    ByteBuffer encodeNotification(BufferSource source, NotificationSpec notificationSpec) {
         int id = notificationSpec.getId() != -1 ? notificationSpec.getId() : mRandom.nextInt();
         String title;
         String subtitle = null;
@@ -512,15 +570,27 @@ public class PebbleProtocol extends GBDeviceProtocol {
 
         if (mFwMajor >= 3 || mForceProtocol || notificationSpec.type != NotificationType.GENERIC_EMAIL) {
             // 3.x notification
-            return encodeNotification(id, (int) (ts & 0xffffffffL), title, subtitle, notificationSpec.body,
+            return encodeNotification(source, id, (int) (ts & 0xffffffffL), title, subtitle, notificationSpec.body,
                     notificationSpec.type, notificationSpec.pebbleColor,
                     notificationSpec.cannedReplies, notificationSpec.attachedActions);
         } else {
             // 1.x notification on FW 2.X
             String[] parts = {title, notificationSpec.body, String.valueOf(ts), subtitle};
             // be aware that type is at this point always NOTIFICATION_EMAIL
-            return encodeMessage(ENDPOINT_NOTIFICATION, NOTIFICATION_EMAIL, 0, parts);
+            return ByteBuffer.wrap(encodeMessage(ENDPOINT_NOTIFICATION, NOTIFICATION_EMAIL, 0, parts));
+        }
+    }
+
+    private static byte[] toArray(ByteBuffer message) {
+        if (message == null) {
+            return null;
+        }
+        if (message.hasArray() && message.arrayOffset() == 0 && message.position() == 0 && message.remaining() == message.array().length) {
+            return message.array();
         }
+        byte[] result = new byte[message.remaining()];
+        message.duplicate().get(result);
+        return result;
     }
 
     @Override
@@ -598,9 +668,25 @@ public class PebbleProtocol extends GBDeviceProtocol {
     }
 
     private byte[] encodeBlobdb(Object key, byte command, byte db, byte[] blob) {
+        int blob_length = blob != null ? blob.length : -1;
+        int length = getBlobdbMessageLength(key, blob_length);
+        if (length < 0) {
+            return null;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        putBlobdbHeader(buf, key, command, db, blob_length);
+        if (blob != null) {
+            buf.put(blob);
+        }
+        return buf.array();
+    }
 
-        int length = 5;
-
+    /**
+     * Returns the length of a blobdb message including the prefix, or -1 if the key is invalid.
+     *
+     * @param blob_length the length of the blob, or -1 for none
+     */
+    private static int getBlobdbMessageLength(Object key, int blob_length) {
         int key_length;
         if (key instanceof UUID) {
             key_length = LENGTH_UUID;
@@ -608,19 +694,29 @@ public class PebbleProtocol extends GBDeviceProtocol {
             key_length = ((String) key).getBytes().length;
         } else {
             LOG.warn("unknown key type");
-            return null;
+            return -1;
         }
         if (key_length > 255) {
             LOG.warn("key is too long");
-            return null;
+            return -1;
         }
-        length += key_length;
-
-        if (blob != null) {
-            length += blob.length + 2;
+        int length = LENGTH_PREFIX + 5 + key_length;
+        if (blob_length >= 0) {
+            length += blob_length + 2;
         }
+        return length;
+    }
 
-        ByteBuffer buf = ByteBuffer.allocate(LENGTH_PREFIX + length);
+    /**
+     * Puts everything of a blobdb message but the blob itself, which has to follow.
+     * The key must be valid, see #getBlobdbMessageLength(Object, int).
+     */
+    private void putBlobdbHeader(ByteBuffer buf, Object key, byte command, byte db, int blob_length) {
+        int key_length = key instanceof UUID ? LENGTH_UUID : ((String) key).getBytes().length;
+        int length = 5 + key_length;
+        if (blob_length >= 0) {
+            length += blob_length + 2;
+        }
 
         buf.order(ByteOrder.BIG_ENDIAN);
         buf.putShort((short) length);
@@ -642,12 +738,9 @@ public class PebbleProtocol extends GBDeviceProtocol {
             buf.put(((String) key).getBytes());
         }
 
-        if (blob != null) {
-            buf.putShort((short) blob.length);
-            buf.put(blob);
+        if (blob_length >= 0) {
+            buf.putShort((short) blob_length);
         }
-
-        return buf.array();
     }
 
     byte[] encodeActivateHealth(boolean activate) {
@@ -800,7 +893,7 @@ public class PebbleProtocol extends GBDeviceProtocol {
         return encodeBlobdb(uuid, BLOBDB_INSERT, BLOBDB_PIN, buf.array());
     }
 
-    private byte[] encodeNotification(int id, int timestamp, String title, String subtitle, String body,
+    private ByteBuffer encodeNotification(BufferSource source, int id, int timestamp, String title, String subtitle, String body,
                                       NotificationType notificationType, byte backgroundColor, String[] cannedReplies, ArrayList<Action> attachedActions) {
         final short NOTIFICATION_PIN_LENGTH = 46;
         final short ACTION_LENGTH_MIN = 6;
@@ -861,12 +954,15 @@ public class PebbleProtocol extends GBDeviceProtocol {
             length = (short) (NOTIFICATION_PIN_LENGTH + attributes_length);
             max_partlength = 512;
             dismiss_action_type = 0x02; // generic action, dismiss did not do anything
-            buf = ByteBuffer.allocate(length);
+            // the pin is encoded right behind the blobdb header
+            UUID key = UUID.randomUUID();
+            buf = source.obtainBuffer(getBlobdbMessageLength(key, length));
+            putBlobdbHeader(buf, key, BLOBDB_INSERT, BLOBDB_NOTIFICATION, length);
         } else {
             length = (short) (21 + attributes_length);
             max_partlength = 256;
             dismiss_action_type = 0x04; // dismiss
-            buf = ByteBuffer.allocate(length + LENGTH_PREFIX);
+            buf = source.obtainBuffer(length + LENGTH_PREFIX);
         }
 
         buf.order(ByteOrder.BIG_ENDIAN);
@@ -976,11 +1072,12 @@ public class PebbleProtocol extends GBDeviceProtocol {
                 }
             }
         }
-        if (mFwMajor >= 3) {
-            return encodeBlobdb(UUID.randomUUID(), BLOBDB_INSERT, BLOBDB_NOTIFICATION, buf.array());
-        } else {
-            return buf.array();
+        // parts longer than the maximum have been truncated, pooled buffers are not zeroed
+        while (buf.hasRemaining()) {
+            buf.put((byte) 0);
         }
+        buf.flip();
+        return buf;
     }
 
     private byte[] encodeActionResponse2x(int id, byte actionId, int iconId, String caption) {
@@ -1097,33 +1194,45 @@ public class PebbleProtocol extends GBDeviceProtocol {
 
     @Override
     public byte[] encodeSendWeather(WeatherSpec weatherSpec) {
-        byte[] forecastProtocol = null;
+        ByteBuffer buf = encodeSendWeather(ALLOCATE, weatherSpec);
+        return buf != null ? toArray(buf) : new byte[0];
+    }
+
+    /**
+     * Like #encodeSendWeather(WeatherSpec), but encodes the forecast and the message for the
+     * running watchface into a single buffer of the given source, between its position and limit.
+     *
+     * @return the buffer, or null if there is nothing to send
+     */
+    ByteBuffer encodeSendWeather(BufferSource source, WeatherSpec weatherSpec) {
         byte[] watchfaceProtocol = null;
-        int length = 0;
-        if (mFwMajor >= 4) {
-            forecastProtocol = encodeWeatherForecast(weatherSpec);
-            length += forecastProtocol.length;
-        }
         AppMessageHandler handler = mAppMessageHandlers.get(currentRunningApp);
         if (handler != null) {
             watchfaceProtocol = handler.encodeUpdateWeather(weatherSpec);
-            if (watchfaceProtocol != null) {
-                length += watchfaceProtocol.length;
-            }
         }
-        ByteBuffer buf = ByteBuffer.allocate(length);
+        int watchfaceLength = watchfaceProtocol != null ? watchfaceProtocol.length : 0;
+        if (mFwMajor < 4 && watchfaceLength == 0) {
+            return null;
+        }
 
-        if (forecastProtocol != null) {
-            buf.put(forecastProtocol);
+        ByteBuffer buf;
+        if (mFwMajor >= 4) {
+            buf = encodeWeatherForecast(source, weatherSpec, watchfaceLength);
+        } else {
+            buf = source.obtainBuffer(watchfaceLength);
         }
         if (watchfaceProtocol != null) {
             buf.put(watchfaceProtocol);
         }
-
-        return buf.array();
+        buf.flip();
+        return buf;
     }
 
-    private byte[] encodeWeatherForecast(WeatherSpec weatherSpec) {
+    /**
+     * Encodes the forecast into a buffer of the given source, which has the given number of
+     * bytes remaining behind it.
+     */
+    private ByteBuffer encodeWeatherForecast(BufferSource source, WeatherSpec weatherSpec, int trailingLength) {
 
         short currentTemp = (short) (weatherSpec.currentTemp - 273);
         short todayMax = (short) (weatherSpec.todayMaxTemp - 273);
@@ -1161,7 +1270,8 @@ public class PebbleProtocol extends GBDeviceProtocol {
 
         short pin_length = (short) (WEATHER_FORECAST_LENGTH + attributes_length);
 
-        ByteBuffer buf = ByteBuffer.allocate(pin_length);
+        ByteBuffer buf = source.obtainBuffer(getBlobdbMessageLength(UUID_LOCATION, pin_length) + trailingLength);
+        putBlobdbHeader(buf, UUID_LOCATION, BLOBDB_INSERT, BLOBDB_WEATHER, pin_length);
         buf.order(ByteOrder.LITTLE_ENDIAN);
         buf.put((byte) 3); // unknown, always 3?
         buf.putShort(currentTemp);
@@ -1187,7 +1297,12 @@ public class PebbleProtocol extends GBDeviceProtocol {
             buf.put(s.getBytes(), 0, partlength);
         }
 
-        return encodeBlobdb(UUID_LOCATION, BLOBDB_INSERT, BLOBDB_WEATHER, buf.array());
+        // parts longer than the maximum have been truncated, pooled buffers are not zeroed
+        while (buf.position() < buf.limit() - trailingLength) {
+            buf.put((byte) 0);
+        }
+        buf.order(ByteOrder.BIG_ENDIAN);
+        return buf;
     }
 
     private byte[] encodeActionResponse(UUID uuid, int iconId, String caption) {
@@ -1287,7 +1402,16 @@ public class PebbleProtocol extends GBDeviceProtocol {
         if (mFwMajor < 3) {
             return null;
         }
+        ByteBuffer buf = ByteBuffer.allocate(LENGTH_MUSICSTATE_MESSAGE);
+        encodeSetMusicState(buf, state, position, playRate, shuffle, repeat);
+        return buf.array();
+    }
 
+    /**
+     * Encodes the music state at the position of the given buffer, which must have
+     * {@link #LENGTH_MUSICSTATE_MESSAGE} bytes remaining. Only supported on FW 3.x.
+     */
+    void encodeSetMusicState(ByteBuffer buf, byte state, int position, int playRate, byte shuffle, byte repeat) {
         byte playState;
 
         switch (state) {
@@ -1302,11 +1426,9 @@ public class PebbleProtocol extends GBDeviceProtocol {
                 break;
         }
 
-        int length = LENGTH_PREFIX + 12;
         // Encode Prefix
-        ByteBuffer buf = ByteBuffer.allocate(length);
         buf.order(ByteOrder.BIG_ENDIAN);
-        buf.putShort((short) (length - LENGTH_PREFIX));
+        buf.putShort((short) (LENGTH_MUSICSTATE_MESSAGE - LENGTH_PREFIX));
         buf.putShort(ENDPOINT_MUSICCONTROL);
 
         buf.order(ByteOrder.LITTLE_ENDIAN);
@@ -1316,8 +1438,7 @@ public class PebbleProtocol extends GBDeviceProtocol {
         buf.putInt(playRate);
         buf.put(shuffle);
         buf.put(repeat);
-
-        return buf.array();
+        buf.order(ByteOrder.BIG_ENDIAN);
     }
 
     @Override
@@ -1586,16 +1707,26 @@ public class PebbleProtocol extends GBDeviceProtocol {
     }
 
     byte[] encodeUploadChunk(int token, byte[] buffer, int size) {
-        final short LENGTH_UPLOADCHUNK = 9;
-        ByteBuffer buf = ByteBuffer.allocate(LENGTH_PREFIX + LENGTH_UPLOADCHUNK + size);
-        buf.order(ByteOrder.BIG_ENDIAN);
+        ByteBuffer buf = ByteBuffer.allocate(getUploadChunkMessageLength(size));
+        encodeUploadChunk(buf, token, buffer, size);
+        return buf.array();
+    }
+
+    static int getUploadChunkMessageLength(int size) {
+        return LENGTH_PREFIX + LENGTH_UPLOADCHUNK + size;
+    }
+
+    /**
+     * Encodes an upload chunk at the position of the given big endian buffer, which must have
+     * {@link #getUploadChunkMessageLength(int)} bytes remaining.
+     */
+    void encodeUploadChunk(ByteBuffer buf, int token, byte[] buffer, int size) {
         buf.putShort((short) (LENGTH_UPLOADCHUNK + size));
         buf.putShort(ENDPOINT_PUTBYTES);
         buf.put(PUTBYTES_SEND);
         buf.putInt(token);
         buf.putInt(size);
         buf.put(buffer, 0, size);
-        return buf.array();
     }
 
     byte[] encodeUploadCommit(int token, int crc) {
@@ -1681,20 +1812,25 @@ public class PebbleProtocol extends GBDeviceProtocol {
     }
 
     byte[] encodeApplicationMessageAck(UUID uuid, byte id) {
+        ByteBuffer buf = ByteBuffer.allocate(LENGTH_APPMESSAGEACK_MESSAGE);
+        encodeApplicationMessageAck(buf, uuid, id);
+        return buf.array();
+    }
+
+    /**
+     * Encodes an app message ack at the position of the given big endian buffer, which must have
+     * {@link #LENGTH_APPMESSAGEACK_MESSAGE} bytes remaining.
+     */
+    void encodeApplicationMessageAck(ByteBuffer buf, UUID uuid, byte id) {
         if (uuid == null) {
             uuid = currentRunningApp;
         }
-        ByteBuffer buf = ByteBuffer.allocate(LENGTH_PREFIX + 18); // +ACK
-
-        buf.order(ByteOrder.BIG_ENDIAN);
-        buf.putShort((short) 18);
+        buf.putShort((short) (LENGTH_APPMESSAGEACK_MESSAGE - LENGTH_PREFIX));
         buf.putShort(ENDPOINT_APPLICATIONMESSAGE);
         buf.put(APPLICATIONMESSAGE_ACK);
         buf.put(id);
         buf.putLong(uuid.getMostSignificantBits());
         buf.putLong(uuid.getLeastSignificantBits());
-
-        return buf.array();
     }
 
     private byte[] encodePing(byte command, int cookie) {
@@ -2211,6 +2347,15 @@ public class PebbleProtocol extends GBDeviceProtocol {
         return null;
     }
 
+    /**
+     * Stores the data buffered by the open datalog sessions, must be called when the connection is closed.
+     */
+    void flushDatalogSessions() {
+        for (DatalogSession datalogSession : mDatalogSessions.values()) {
+            datalogSession.flush();
+        }
+    }
+
     private GBDeviceEvent[] decodeDatalog(ByteBuffer buf, short length) {
         byte command = buf.get();
         byte id = buf.get();
@@ -2232,6 +2377,10 @@ public class PebbleProtocol extends GBDeviceProtocol {
                     } else {
                         devEvtsDataLogging = datalogSession.handleMessage(buf, length - 10);
                     }
+                    if (devEvtsDataLogging != null && !datalogSession.flush()) {
+                        // the watch deletes acknowledged data, so it must be stored before
+                        devEvtsDataLogging = null;
+                    }
                 }
                 break;
             case DATALOG_OPENSESSION:
@@ -2263,6 +2412,7 @@ public class PebbleProtocol extends GBDeviceProtocol {
                 LOG.info("DATALOG_CLOSE. id=" + (id & 0xff));
                 datalogSession = mDatalogSessions.get(id);
                 if (datalogSession != null) {
+                    datalogSession.flush();
                     if (!datalogSession.uuid.equals(UUID_ZERO) && datalogSession.getClass().equals(DatalogSession.class) && mEnablePebbleKit) {
                         GBDeviceEventDataLogging dataLogging = new GBDeviceEventDataLogging();
                         dataLogging.command = GBDeviceEventDataLogging.COMMAND_FINISH_SESSION;
@@ -28,6 +28,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.UUID;
 
 import org.likeapp.likeapp.GBApplication;
@@ -184,7 +185,8 @@ public class PebbleSupport extends AbstractSerialDeviceSupport {
             }
         }
         if (reconnect()) {
-            super.onNotification(notificationSpec);
+            // encoded into a pooled buffer, like the music state
+            getDeviceIOThread().writeNotification(notificationSpec);
         }
     }
 
@@ -200,7 +202,9 @@ public class PebbleSupport extends AbstractSerialDeviceSupport {
     @Override
     public void onSetMusicState(MusicStateSpec musicStateSpec) {
         if (reconnect()) {
-            super.onSetMusicState(musicStateSpec);
+            // sent often while playing, so encoded into a pooled buffer
+            getDeviceIOThread().writeSetMusicState(musicStateSpec.state, musicStateSpec.position,
+                    musicStateSpec.playRate, musicStateSpec.shuffle, musicStateSpec.repeat);
         }
     }
 
@@ -231,6 +235,13 @@ public class PebbleSupport extends AbstractSerialDeviceSupport {
         }
     }
 
+    @Override
+    public void onUpdateCalendarEvents(List<CalendarEventSpec> deletedEvents, List<CalendarEventSpec> addedEvents) {
+        if (reconnect()) {
+            super.onUpdateCalendarEvents(deletedEvents, addedEvents);
+        }
+    }
+
     @Override
     public void onSendConfiguration(String config) {
         if (reconnect()) {
@@ -253,7 +264,7 @@ public class PebbleSupport extends AbstractSerialDeviceSupport {
     @Override
     public void onSendWeather(WeatherSpec weatherSpec) {
         if (reconnect()) {
-            super.onSendWeather(weatherSpec);
+            getDeviceIOThread().writeSendWeather(weatherSpec);
         }
     }
 }
@@ -0,0 +1,448 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.service.devices.pebble;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the encoded messages queued by the {@link PebbleIoThread}. Queued messages are
+ * gathered into a single buffer and written with one flush. After a message the watch
+ * answers (see {@link PebbleProtocol#expectsResponse(ByteBuffer)}), further messages to the
+ * same endpoint are held back until the answer arrives on that endpoint, or a timeout
+ * elapses. Messages to other endpoints are sent meanwhile.
+ * <p>
+ * Queueing never blocks and never drops a message, see #awaitCapacity(long) for slowing
+ * down producers. Messages that are still pending on #quit() are written without waiting
+ * for answers, as far as the connection allows.
+ * <p>
+ * Frequent fixed-layout messages can be encoded into buffers from {@link #obtainBuffer(int)},
+ * which are returned to the pool once they have been sent.
+ */
+class PebbleWriterThread extends Thread {
+    private static final Logger LOG = LoggerFactory.getLogger(PebbleWriterThread.class);
+
+    /**
+     * The number of pending messages above which #awaitCapacity(long) waits.
+     */
+    static final int QUEUE_CAPACITY = 64;
+    private static final int BUFFER_SIZE = 16384;
+    private static final int TCP_HEADER_SIZE = 6;
+    private static final int TCP_FOOTER_SIZE = 2;
+    static final long RESPONSE_TIMEOUT_MILLIS = 2000;
+    private static final int POOL_SIZE = 16;
+    /**
+     * Large enough for an upload chunk, the largest message encoded into pooled buffers.
+     */
+    private static final int POOLED_BUFFER_SIZE = 2048;
+    /**
+     * Queued by #onMessageReceived(short) to wake up the writer, never written.
+     */
+    private static final ByteBuffer WAKE_UP = ByteBuffer.allocate(0);
+
+    private final OutputStream mOutStream;
+    private final boolean mIsTCP;
+    private final BlockingQueue<ByteBuffer> mQueue = new LinkedBlockingQueue<>();
+    private final ByteBuffer mBuffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.BIG_ENDIAN);
+    private final ByteBuffer[] mPool = new ByteBuffer[POOL_SIZE];
+    private final BlockingQueue<ByteBuffer> mFreeBuffers = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    /**
+     * The endpoints waiting for an answer, with their deadlines, guarded by itself.
+     */
+    private final Map<Integer, Long> mAwaitedEndpoints = new HashMap<>();
+    /**
+     * The messages held back per awaited endpoint, only accessed by the writer thread.
+     */
+    private final Map<Integer, ArrayDeque<ByteBuffer>> mHeld = new HashMap<>();
+
+    private final Object mCapacityLock = new Object();
+    private int mPendingCount;
+
+    private volatile boolean mQuit = false;
+
+    PebbleWriterThread(OutputStream outStream, boolean isTCP) {
+        super("PebbleWriterThread");
+        mOutStream = outStream;
+        mIsTCP = isTCP;
+        for (int i = 0; i < POOL_SIZE; i++) {
+            mPool[i] = ByteBuffer.allocate(POOLED_BUFFER_SIZE);
+            mFreeBuffers.add(mPool[i]);
+        }
+    }
+
+    /**
+     * Returns a big endian buffer to encode a message of the given length into, from the
+     * pool if possible. The buffer must be passed to #enqueue(ByteBuffer) or #recycle(ByteBuffer).
+     */
+    ByteBuffer obtainBuffer(int length) {
+        ByteBuffer buf = length <= POOLED_BUFFER_SIZE ? mFreeBuffers.poll() : null;
+        if (buf == null) {
+            return ByteBuffer.allocate(length).order(ByteOrder.BIG_ENDIAN);
+        }
+        buf.clear();
+        buf.limit(length);
+        buf.order(ByteOrder.BIG_ENDIAN);
+        return buf;
+    }
+
+    /**
+     * Returns the given buffer to the pool, if it has been obtained from it.
+     */
+    void recycle(ByteBuffer buf) {
+        for (ByteBuffer pooled : mPool) {
+            if (pooled == buf) {
+                mFreeBuffers.offer(buf);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Queues the given message without blocking. Messages queued after #quit() are dropped.
+     */
+    void enqueue(byte[] bytes) {
+        enqueue(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Queues the message between the position and the limit of the given buffer, see
+     * #enqueue(byte[]). The buffer must not be modified afterwards.
+     */
+    void enqueue(ByteBuffer message) {
+        if (mQuit) {
+            LOG.warn("writer has quit, dropping message of " + message.remaining() + " bytes");
+            recycle(message);
+            return;
+        }
+        synchronized (mCapacityLock) {
+            mPendingCount++;
+            if (mPendingCount == QUEUE_CAPACITY) {
+                LOG.warn("send queue reached " + QUEUE_CAPACITY + " pending messages");
+            }
+        }
+        mQueue.add(message);
+    }
+
+    /**
+     * Waits until fewer than #QUEUE_CAPACITY messages are pending, or the given time elapsed.
+     * Must not be called by the thread that reads the answers of the watch.
+     */
+    void awaitCapacity(long timeoutMillis) throws InterruptedException {
+        synchronized (mCapacityLock) {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            while (mPendingCount >= QUEUE_CAPACITY && !mQuit) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return;
+                }
+                mCapacityLock.wait(remaining);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of messages that have been queued, but not written yet.
+     */
+    int getPendingCount() {
+        synchronized (mCapacityLock) {
+            return mPendingCount;
+        }
+    }
+
+    /**
+     * Must be called for every message received from the watch.
+     */
+    void onMessageReceived(short endpoint) {
+        synchronized (mAwaitedEndpoints) {
+            if (mAwaitedEndpoints.remove(endpoint & 0xffff) == null) {
+                return;
+            }
+        }
+        mQueue.add(WAKE_UP);
+    }
+
+    void quit() {
+        mQuit = true;
+        interrupt();
+        synchronized (mCapacityLock) {
+            mCapacityLock.notifyAll();
+        }
+    }
+
+    @Override
+    public void run() {
+        ByteBuffer next = null;
+        while (!mQuit) {
+            try {
+                if (next == null) {
+                    next = nextMessage(true);
+                    if (next == null) {
+                        continue;
+                    }
+                }
+
+                mBuffer.clear();
+                if (framedLength(next) > BUFFER_SIZE) {
+                    ByteBuffer large = next;
+                    next = null;
+                    try {
+                        writeLarge(large);
+                    } finally {
+                        onWritten(large, 1);
+                    }
+                    continue;
+                }
+                boolean expectsResponse;
+                int count = 0;
+                do {
+                    expectsResponse = PebbleProtocol.expectsResponse(next);
+                    if (expectsResponse) {
+                        // set before writing, the answer may arrive before write() returns
+                        setAwaitedEndpoint(next);
+                    }
+                    putFramed(next);
+                    recycle(next);
+                    count++;
+                    next = nextMessage(false);
+                } while (next != null && !expectsResponse && framedLength(next) <= mBuffer.remaining());
+
+                try {
+                    mOutStream.write(mBuffer.array(), 0, mBuffer.position());
+                    mOutStream.flush();
+                } finally {
+                    onWritten(null, count);
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (IOException e) {
+                LOG.error("Error writing.", e);
+            }
+        }
+        drain(next);
+    }
+
+    /**
+     * Returns the next message that can be sent, first the held back ones whose endpoint
+     * got its answer. Messages to an endpoint waiting for an answer are held back.
+     *
+     * @param wait whether to wait for a message; the wait ends early when an answer
+     *             arrives or is overdue, null is returned then
+     */
+    private ByteBuffer nextMessage(boolean wait) throws InterruptedException {
+        ByteBuffer released = releaseHeld();
+        if (released != null) {
+            return released;
+        }
+        while (true) {
+            ByteBuffer message;
+            if (wait) {
+                long deadline = getNextDeadline();
+                if (deadline == Long.MAX_VALUE) {
+                    message = mQueue.take();
+                } else {
+                    message = mQueue.poll(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+                }
+            } else {
+                message = mQueue.poll();
+            }
+            if (message == null || message == WAKE_UP) {
+                return wait ? releaseHeld() : null;
+            }
+            int endpoint = PebbleProtocol.getEndpoint(message) & 0xffff;
+            ArrayDeque<ByteBuffer> held = mHeld.get(endpoint);
+            if (held == null && !isAwaited(endpoint)) {
+                return message;
+            }
+            if (held == null) {
+                held = new ArrayDeque<>();
+                mHeld.put(endpoint, held);
+            }
+            // keeps the order of the messages to the same endpoint
+            held.add(message);
+        }
+    }
+
+    /**
+     * Returns the first held back message of an endpoint that is no longer waiting for an answer.
+     */
+    private ByteBuffer releaseHeld() {
+        Iterator<Map.Entry<Integer, ArrayDeque<ByteBuffer>>> it = mHeld.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, ArrayDeque<ByteBuffer>> entry = it.next();
+            if (!isAwaited(entry.getKey())) {
+                ByteBuffer message = entry.getValue().poll();
+                if (entry.getValue().isEmpty()) {
+                    it.remove();
+                }
+                return message;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether the given endpoint is waiting for an answer. Ends the wait if it is overdue.
+     */
+    private boolean isAwaited(int endpoint) {
+        synchronized (mAwaitedEndpoints) {
+            Long deadline = mAwaitedEndpoints.get(endpoint);
+            if (deadline == null) {
+                return false;
+            }
+            if (deadline <= System.currentTimeMillis()) {
+                LOG.warn("no response on endpoint " + endpoint + ", sending anyway");
+                mAwaitedEndpoints.remove(endpoint);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Returns the earliest deadline of an endpoint with held back messages, or Long.MAX_VALUE.
+     */
+    private long getNextDeadline() {
+        long next = Long.MAX_VALUE;
+        synchronized (mAwaitedEndpoints) {
+            for (Integer endpoint : mHeld.keySet()) {
+                Long deadline = mAwaitedEndpoints.get(endpoint);
+                if (deadline != null) {
+                    next = Math.min(next, deadline);
+                }
+            }
+        }
+        return next;
+    }
+
+    private void setAwaitedEndpoint(ByteBuffer message) {
+        synchronized (mAwaitedEndpoints) {
+            mAwaitedEndpoints.put(PebbleProtocol.getEndpoint(message) & 0xffff, System.currentTimeMillis() + RESPONSE_TIMEOUT_MILLIS);
+        }
+    }
+
+    private void onWritten(ByteBuffer message, int count) {
+        if (message != null) {
+            recycle(message);
+        }
+        synchronized (mCapacityLock) {
+            mPendingCount -= count;
+            mCapacityLock.notifyAll();
+        }
+    }
+
+    /**
+     * Writes the pending messages after #quit(), without waiting for answers.
+     *
+     * @param next the message taken from the queue, but not written yet, or null
+     */
+    private void drain(ByteBuffer next) {
+        List<ByteBuffer> pending = new ArrayList<>();
+        if (next != null) {
+            pending.add(next);
+        }
+        for (ArrayDeque<ByteBuffer> held : mHeld.values()) {
+            pending.addAll(held);
+        }
+        mHeld.clear();
+        ByteBuffer message;
+        while ((message = mQueue.poll()) != null) {
+            if (message != WAKE_UP) {
+                pending.add(message);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        int written = 0;
+        try {
+            for (ByteBuffer pendingMessage : pending) {
+                mBuffer.clear();
+                if (framedLength(pendingMessage) > BUFFER_SIZE) {
+                    writeLarge(pendingMessage);
+                } else {
+                    putFramed(pendingMessage);
+                    mOutStream.write(mBuffer.array(), 0, mBuffer.position());
+                }
+                written++;
+            }
+            mOutStream.flush();
+            LOG.info("wrote " + written + " pending messages on quit");
+        } catch (IOException e) {
+            LOG.warn("discarding " + (pending.size() - written) + " of " + pending.size() + " pending messages on quit: " + e.getMessage());
+        } finally {
+            for (ByteBuffer pendingMessage : pending) {
+                recycle(pendingMessage);
+            }
+            onWritten(null, pending.size());
+        }
+    }
+
+    private int framedLength(ByteBuffer message) {
+        return mIsTCP ? message.remaining() + TCP_HEADER_SIZE + TCP_FOOTER_SIZE : message.remaining();
+    }
+
+    private void putFramed(ByteBuffer message) {
+        if (mIsTCP) {
+            putHeader(message);
+            mBuffer.put(message);
+            mBuffer.putShort((short) 0xbeef);
+        } else {
+            mBuffer.put(message);
+        }
+    }
+
+    private void putHeader(ByteBuffer message) {
+        mBuffer.putShort((short) 0xfeed);
+        mBuffer.putShort((short) 1);
+        mBuffer.putShort((short) message.remaining());
+    }
+
+    /**
+     * Writes a message that does not fit into the buffer directly, without copying it.
+     */
+    private void writeLarge(ByteBuffer message) throws IOException {
+        if (PebbleProtocol.expectsResponse(message)) {
+            setAwaitedEndpoint(message);
+        }
+        if (mIsTCP) {
+            putHeader(message);
+            mOutStream.write(mBuffer.array(), 0, mBuffer.position());
+        }
+        mOutStream.write(message.array(), message.arrayOffset() + message.position(), message.remaining());
+        if (mIsTCP) {
+            mOutStream.write(new byte[]{(byte) 0xbe, (byte) 0xef});
+        }
+        mOutStream.flush();
+    }
+}
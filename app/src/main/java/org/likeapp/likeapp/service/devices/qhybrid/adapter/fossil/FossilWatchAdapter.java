@@ -517,6 +517,21 @@ public class FossilWatchAdapter extends WatchAdapter {
         return true;
     }
 
+    /**
+     * Finishes the given request, if it is still the current one, after it has failed
+     * outside of a response, e.g. while writing its data.
+     */
+    public void onRequestFailed(FossilRequest request, Exception e) {
+        if (fossilRequest != request) {
+            return;
+        }
+        GB.log("error", GB.ERROR, e);
+        getDeviceSupport().notifiyException(request.getName(), e);
+        GB.toast(request.getName() + " failed", Toast.LENGTH_SHORT, GB.ERROR);
+        fossilRequest = null;
+        queueNextRequest();
+    }
+
     public void handleHeartRateCharacteristic(BluetoothGattCharacteristic characteristic) {
     }
 
@@ -5,9 +5,6 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
 import android.os.Build;
 
 import org.json.JSONArray;
@@ -50,14 +47,13 @@ import org.likeapp.likeapp.service.devices.qhybrid.requests.fossil_hr.notificati
 import org.likeapp.likeapp.service.devices.qhybrid.requests.fossil_hr.widget.CustomBackgroundWidgetElement;
 import org.likeapp.likeapp.service.devices.qhybrid.requests.fossil_hr.widget.CustomTextWidgetElement;
 import org.likeapp.likeapp.service.devices.qhybrid.requests.fossil_hr.widget.CustomWidget;
-import org.likeapp.likeapp.service.devices.qhybrid.requests.fossil_hr.widget.CustomWidgetElement;
+import org.likeapp.likeapp.service.devices.qhybrid.requests.fossil_hr.widget.CustomWidgetRenderer;
 import org.likeapp.likeapp.service.devices.qhybrid.requests.fossil_hr.widget.Widget;
 import org.likeapp.likeapp.service.devices.qhybrid.requests.fossil_hr.widget.WidgetsPutRequest;
 import org.likeapp.likeapp.util.GB;
 import org.likeapp.likeapp.util.Prefs;
 import org.likeapp.likeapp.util.StringUtils;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.BufferOverflowException;
 import java.util.ArrayList;
@@ -85,6 +81,8 @@ public class FossilHRWatchAdapter extends FossilWatchAdapter
 
     private AssetImage backGroundImage = null;
 
+    private final CustomWidgetRenderer widgetRenderer = new CustomWidgetRenderer();
+
     public FossilHRWatchAdapter(QHybridSupport deviceSupport) {
         super(deviceSupport);
     }
@@ -167,6 +165,7 @@ public class FossilHRWatchAdapter extends FossilWatchAdapter
         String fontColor = forceWhiteBackground ? "black" : "default";
 
         this.widgets.clear();
+        widgetRenderer.resetUploaded();
         String widgetJson = GBApplication.getPrefs().getPreferences().getString("FOSSIL_HR_WIDGETS", "{}");
         String customWidgetJson = GBApplication.getPrefs().getString("QHYBRID_CUSTOM_WIDGETS", "[]");
 
@@ -256,78 +255,15 @@ public class FossilHRWatchAdapter extends FossilWatchAdapter
             for (int i = 0; i < this.widgets.size(); i++) {
                 Widget w = widgets.get(i);
                 if(!(w instanceof CustomWidget)) continue;
-                CustomWidget widget = (CustomWidget) w;
-
-                Bitmap widgetBitmap = Bitmap.createBitmap(76, 76, Bitmap.Config.ARGB_8888);
-
-                Canvas widgetCanvas = new Canvas(widgetBitmap);
-
-                boolean backgroundDrawn = false;
-
-                Paint circlePaint = new Paint();
-                if(!backgroundDrawn){
-                    circlePaint.setColor(forceWhiteBackground ? Color.WHITE : Color.BLACK);
-                    circlePaint.setStyle(Paint.Style.FILL);
-                    circlePaint.setStrokeWidth(3);
-                    widgetCanvas.drawCircle(38, 38, 37, circlePaint);
-
-                    circlePaint.setColor(forceWhiteBackground ? Color.BLACK : Color.WHITE);
-                    circlePaint.setStyle(Paint.Style.STROKE);
-                    circlePaint.setStrokeWidth(3);
-                    widgetCanvas.drawCircle(38, 38, 37, circlePaint);
-                }
-
-                for (CustomWidgetElement element : widget.getElements()) {
-                    if (element.getWidgetElementType() == CustomWidgetElement.WidgetElementType.TYPE_BACKGROUND) {
-                        File imageFile = new File(element.getValue());
-
-                        if(!imageFile.exists() || !imageFile.isFile()){
-                            logger.debug("Image file " + element.getValue() + " not found");
-                            continue;
-                        }
-                        Bitmap imageBitmap = BitmapFactory.decodeFile(element.getValue());
-                        if(imageBitmap == null){
-                            logger.debug("image file " + element.getValue() + " could not be decoded");
-                            continue;
-                        }
-                        Bitmap scaledBitmap = Bitmap.createScaledBitmap(imageBitmap, 76, 76, false);
-
-                        widgetCanvas.drawBitmap(
-                                scaledBitmap,
-                                0,
-                                0,
-                                null);
-                        backgroundDrawn = true;
-                        break;
-                    }
-                }
-
-                for (CustomWidgetElement element : widget.getElements()) {
-                    if (element.getWidgetElementType() == CustomWidgetElement.WidgetElementType.TYPE_TEXT) {
-                        Paint textPaint = new Paint();
-                        textPaint.setStrokeWidth(4);
-                        textPaint.setTextSize(17f);
-                        textPaint.setStyle(Paint.Style.FILL);
-                        textPaint.setColor(forceWhiteBackground ? Color.BLACK : Color.WHITE);
-                        textPaint.setTextAlign(Paint.Align.CENTER);
-
-                        widgetCanvas.drawText(element.getValue(), element.getX(), element.getY() - (textPaint.descent() + textPaint.ascent()) / 2f, textPaint);
-                    }else if(element.getWidgetElementType() == CustomWidgetElement.WidgetElementType.TYPE_IMAGE) {
-                        Bitmap imageBitmap = BitmapFactory.decodeFile(element.getValue());
-
-                        widgetCanvas.drawBitmap(imageBitmap, element.getX() - imageBitmap.getWidth() / 2f, element.getY() - imageBitmap.getHeight() / 2f, null);
-                    }
-                }
-                widgetImages.add(AssetImageFactory.createAssetImage(
-                        widgetBitmap,
-                        true,
-                        widget.getAngle(),
-                        widget.getDistance(),
-                        1
-                ));
+                widgetImages.add(widgetRenderer.render((CustomWidget) w, forceWhiteBackground));
             }
+            widgetRenderer.prune();
 
             AssetImage[] images = widgetImages.toArray(new AssetImage[0]);
+            if (!widgetRenderer.markUploaded(images)) {
+                logger.debug("widgets unchanged, not uploading them");
+                return;
+            }
 
             // queueWrite(new FileDeleteRequest((short) 0x0700));
             queueWrite(new AssetFilePutRequest (
@@ -0,0 +1,220 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.service.devices.qhybrid.requests.fossil.file;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import androidx.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import javax.crypto.Cipher;
+
+import org.likeapp.likeapp.service.btle.BtLEQueue;
+import org.likeapp.likeapp.service.btle.TransactionBuilder;
+import org.likeapp.likeapp.service.btle.actions.PlainAction;
+import org.likeapp.likeapp.util.CheckSums;
+
+/**
+ * Writes the packets of a file put request: a header, the file and its CRC32C, split into
+ * packets of up to maxPacketSize bytes after a packet index byte, and optionally encrypted.
+ * <p>
+ * The packets are created one at a time while the file is read, and queued
+ * {@link #PACKETS_PER_TRANSACTION} at a time: the next ones are only created when the
+ * previous ones have been written, so that memory use does not depend on the size of the file.
+ * They are inserted at the front of the queue then, so that the upload is not interrupted by
+ * other transactions. The CRC32 of the whole data, which the watch answers with, is computed
+ * on the way.
+ */
+public class FilePacketWriter {
+    private static final Logger LOG = LoggerFactory.getLogger(FilePacketWriter.class);
+
+    static final int PACKETS_PER_TRANSACTION = 16;
+    private static final int HEADER_LENGTH = 12;
+    private static final int TRAILER_LENGTH = 4;
+
+    private final InputStream file;
+    private final int fileLength;
+    private final int maxPacketSize;
+    @Nullable
+    private final Cipher cipher;
+
+    private final byte[] header = new byte[HEADER_LENGTH];
+    private final byte[] trailer = new byte[TRAILER_LENGTH];
+    private final byte[] packet;
+    private final Checksum fileCRC = CheckSums.createCRC32C();
+    private final CRC32 fullCRC = new CRC32();
+    private final long length;
+    private long position;
+    private int packetIndex;
+
+    /**
+     * Is told about a failure to create the packets after the first ones, which have been
+     * queued by {@link #queue(BtLEQueue, BluetoothGattCharacteristic, Listener)}.
+     */
+    public interface Listener {
+        void onError(Exception e);
+    }
+
+    public FilePacketWriter(short handle, byte[] file, int maxPacketSize, @Nullable Cipher cipher) {
+        this(handle, new ByteArrayInputStream(file), file.length, maxPacketSize, cipher);
+    }
+
+    /**
+     * @param file the file contents, read as the packets are created
+     * @param cipher an initialized cipher to encrypt every packet with, restarting from its
+     *               initial counter for every packet, or null
+     */
+    public FilePacketWriter(short handle, InputStream file, int fileLength, int maxPacketSize, @Nullable Cipher cipher) {
+        this.file = file;
+        this.fileLength = fileLength;
+        this.maxPacketSize = maxPacketSize;
+        this.cipher = cipher;
+        this.packet = new byte[maxPacketSize + 1];
+        this.length = HEADER_LENGTH + (long) fileLength + TRAILER_LENGTH;
+
+        header[0] = (byte) handle;
+        header[1] = (byte) (handle >> 8);
+        header[2] = 2;
+        header[3] = 0;
+        // bytes 4 to 7 are 0
+        putInt(header, 8, fileLength);
+    }
+
+    public boolean hasNext() {
+        return position < length;
+    }
+
+    /**
+     * Returns the CRC32 of the data of all packets created so far, i.e. of the whole
+     * data after the last one.
+     */
+    public int getFullCRC() {
+        return (int) fullCRC.getValue();
+    }
+
+    /**
+     * Creates the next packet.
+     */
+    public byte[] next() throws IOException, GeneralSecurityException {
+        int packetLength = (int) Math.min(maxPacketSize, length - position);
+        packet[0] = (byte) packetIndex++;
+        int offset = 1;
+        while (offset <= packetLength) {
+            int remaining = packetLength + 1 - offset;
+            if (position < HEADER_LENGTH) {
+                int count = (int) Math.min(remaining, HEADER_LENGTH - position);
+                System.arraycopy(header, (int) position, packet, offset, count);
+                offset += count;
+                position += count;
+            } else if (position < HEADER_LENGTH + (long) fileLength) {
+                int count = (int) Math.min(remaining, HEADER_LENGTH + (long) fileLength - position);
+                int read = file.read(packet, offset, count);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of file after " + (position - HEADER_LENGTH) + " of " + fileLength + " bytes");
+                }
+                fileCRC.update(packet, offset, read);
+                offset += read;
+                position += read;
+                if (position == HEADER_LENGTH + (long) fileLength) {
+                    putInt(trailer, 0, (int) fileCRC.getValue());
+                }
+            } else {
+                int trailerPosition = (int) (position - HEADER_LENGTH - fileLength);
+                int count = Math.min(remaining, TRAILER_LENGTH - trailerPosition);
+                System.arraycopy(trailer, trailerPosition, packet, offset, count);
+                offset += count;
+                position += count;
+            }
+        }
+        fullCRC.update(packet, 1, packetLength);
+
+        byte[] result = new byte[packetLength + 1];
+        if (cipher != null) {
+            cipher.doFinal(packet, 0, packetLength + 1, result, 0);
+        } else {
+            System.arraycopy(packet, 0, result, 0, result.length);
+        }
+        return result;
+    }
+
+    /**
+     * Queues the packets to be written to the given characteristic.
+     *
+     * @param listener is told if creating the later packets fails, the file has been closed then
+     * @throws IOException if creating the first packets fails, the file has been closed then
+     */
+    public void queue(BtLEQueue queue, BluetoothGattCharacteristic characteristic, Listener listener) throws IOException, GeneralSecurityException {
+        try {
+            createTransaction(queue, characteristic, listener).queue(queue);
+        } catch (IOException | GeneralSecurityException e) {
+            closeFile();
+            throw e;
+        }
+    }
+
+    private TransactionBuilder createTransaction(final BtLEQueue queue, final BluetoothGattCharacteristic characteristic, final Listener listener) throws IOException, GeneralSecurityException {
+        TransactionBuilder builder = new TransactionBuilder("file upload " + packetIndex);
+        for (int i = 0; i < PACKETS_PER_TRANSACTION && hasNext(); i++) {
+            builder.write(characteristic, next());
+        }
+        if (hasNext()) {
+            builder.add(new PlainAction() {
+                @Override
+                public boolean run(BluetoothGatt gatt) {
+                    try {
+                        // runs next, before anything else queued meanwhile
+                        queue.insert(createTransaction(queue, characteristic, listener).getTransaction());
+                        return true;
+                    } catch (IOException | GeneralSecurityException e) {
+                        LOG.error("Error creating file upload packets", e);
+                        closeFile();
+                        listener.onError(e);
+                        return false;
+                    }
+                }
+            });
+        } else {
+            closeFile();
+        }
+        return builder;
+    }
+
+    private void closeFile() {
+        try {
+            file.close();
+        } catch (IOException e) {
+            LOG.warn("Error closing file", e);
+        }
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >> 8);
+        buffer[offset + 2] = (byte) (value >> 16);
+        buffer[offset + 3] = (byte) (value >> 24);
+    }
+}
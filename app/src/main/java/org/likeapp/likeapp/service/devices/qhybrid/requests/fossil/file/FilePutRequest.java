@@ -18,32 +18,29 @@ package org.likeapp.likeapp.service.devices.qhybrid.requests.fossil.file;
 
 import android.bluetooth.BluetoothGattCharacteristic;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.ArrayList;
+import java.security.GeneralSecurityException;
 import java.util.UUID;
-import java.util.zip.CRC32;
 
 import org.likeapp.likeapp.service.btle.TransactionBuilder;
 import org.likeapp.likeapp.service.devices.qhybrid.adapter.fossil.FossilWatchAdapter;
 import org.likeapp.likeapp.service.devices.qhybrid.requests.fossil.FossilRequest;
 import org.likeapp.likeapp.service.devices.qhybrid.requests.fossil_hr.file.ResultCode;
-import org.likeapp.likeapp.util.CRC32C;
 
 public class FilePutRequest extends FossilRequest {
     public enum UploadState {INITIALIZED, UPLOADING, CLOSING, UPLOADED}
 
     public UploadState state;
 
-    private ArrayList<byte[]> packets = new ArrayList<>();
-
     private short handle;
 
     private FossilWatchAdapter adapter;
 
     private byte[] file;
 
-    private int fullCRC;
+    private FilePacketWriter packetWriter;
 
     public FilePutRequest(short handle, byte[] file, FossilWatchAdapter adapter) {
         this.handle = handle;
@@ -80,16 +77,21 @@ public class FilePutRequest extends FossilRequest {
                     }
                     state = UploadState.UPLOADING;
 
-                    TransactionBuilder transactionBuilder = new TransactionBuilder("file upload");
                     BluetoothGattCharacteristic uploadCharacteristic = adapter.getDeviceSupport().getCharacteristic(UUID.fromString("3dda0004-957f-7d4a-34a6-74696673696d"));
 
-                    this.prepareFilePackets(this.file);
-
-                    for (byte[] packet : packets) {
-                        transactionBuilder.write(uploadCharacteristic, packet);
+                    packetWriter = new FilePacketWriter(handle, this.file, adapter.getMTU() - 4, null);
+                    try {
+                        packetWriter.queue(adapter.getDeviceSupport().getQueue(), uploadCharacteristic, new FilePacketWriter.Listener() {
+                            @Override
+                            public void onError(Exception e) {
+                                onFilePut(false);
+                                adapter.onRequestFailed(FilePutRequest.this, e);
+                            }
+                        });
+                    } catch (IOException | GeneralSecurityException e) {
+                        onFilePut(false);
+                        throw new RuntimeException("error preparing file upload", e);
                     }
-
-                    transactionBuilder.queue(adapter.getDeviceSupport().getQueue());
                     break;
                 }
                 case 8: {
@@ -109,7 +111,7 @@ public class FilePutRequest extends FossilRequest {
                         throw new RuntimeException("wrong response handle");
                     }
 
-                    if (crc != this.fullCRC) {
+                    if (crc != packetWriter.getFullCRC()) {
                         throw new RuntimeException("file upload exception: wrong crc");
                     }
 
@@ -188,44 +190,6 @@ public class FilePutRequest extends FossilRequest {
         return this.state == UploadState.UPLOADED;
     }
 
-    private void prepareFilePackets(byte[] file) {
-        int maxPacketSize = adapter.getMTU() - 4;
-
-        ByteBuffer buffer = ByteBuffer.allocate(file.length + 12 + 4);
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-
-        buffer.putShort(handle);
-        buffer.put((byte) 2);
-        buffer.put((byte) 0);
-        buffer.putInt(0);
-        buffer.putInt(file.length);
-
-        buffer.put(file);
-
-        CRC32C crc = new CRC32C();
-
-        crc.update(file,0,file.length);
-        buffer.putInt((int) crc.getValue());
-
-        byte[] data = buffer.array();
-
-        CRC32 fullCRC = new CRC32();
-
-        fullCRC.update(data);
-        this.fullCRC = (int) fullCRC.getValue();
-
-        int packetCount = (int) Math.ceil(data.length / (float) maxPacketSize);
-
-        for (int i = 0; i < packetCount; i++) {
-            int currentPacketLength = Math.min(maxPacketSize, data.length - i * maxPacketSize);
-            byte[] packet = new byte[currentPacketLength + 1];
-            packet[0] = (byte) i;
-            System.arraycopy(data, i * maxPacketSize, packet, 1, currentPacketLength);
-
-            packets.add(packet);
-        }
-    }
-
     public void onFilePut(boolean success) {
     }
 
@@ -21,7 +21,7 @@ import java.nio.ByteOrder;
 
 import org.likeapp.likeapp.service.devices.qhybrid.adapter.fossil.FossilWatchAdapter;
 import org.likeapp.likeapp.service.devices.qhybrid.requests.fossil.file.FileGetRequest;
-import org.likeapp.likeapp.util.CRC32C;
+import org.likeapp.likeapp.util.CheckSums;
 
 public class NotificationFilterGetRequest extends FileGetRequest {
     public NotificationFilterGetRequest(FossilWatchAdapter adapter) {
@@ -38,10 +38,7 @@ public class NotificationFilterGetRequest extends FileGetRequest {
 
         System.arraycopy(fileData, 12, data, 0, data.length);
 
-        CRC32C crc32c = new CRC32C();
-        crc32c.update(data,0,data.length);
-
-        if((int) crc32c.getValue() != buffer.getInt(fileData.length - 4)){
+        if(CheckSums.getCRC32C(data) != buffer.getInt(fileData.length - 4)){
             throw new RuntimeException("CRC invalid");
         }
     }
@@ -17,19 +17,15 @@
 package org.likeapp.likeapp.service.devices.qhybrid.requests.fossil_hr.file;
 
 import android.bluetooth.BluetoothGattCharacteristic;
-import android.widget.Toast;
 
 import org.likeapp.likeapp.service.btle.TransactionBuilder;
+import org.likeapp.likeapp.service.devices.qhybrid.requests.fossil.file.FilePacketWriter;
 import org.likeapp.likeapp.service.devices.qhybrid.adapter.fossil_hr.FossilHRWatchAdapter;
 import org.likeapp.likeapp.service.devices.qhybrid.requests.fossil.FossilRequest;
-import org.likeapp.likeapp.util.CRC32C;
-import org.likeapp.likeapp.util.GB;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.ArrayList;
 import java.util.UUID;
-import java.util.zip.CRC32;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.IvParameterSpec;
@@ -41,15 +37,13 @@ public class FileEncryptedPutRequest extends FossilRequest
 
     public UploadState state;
 
-    private ArrayList<byte[]> packets = new ArrayList<>();
-
     private short handle;
 
     private FossilHRWatchAdapter adapter;
 
     private byte[] file;
 
-    private int fullCRC;
+    private FilePacketWriter packetWriter;
 
     public FileEncryptedPutRequest(short handle, byte[] file, FossilHRWatchAdapter adapter) {
         this.handle = handle;
@@ -86,11 +80,8 @@ public class FileEncryptedPutRequest extends FossilRequest
                     }
                     state = UploadState.UPLOADING;
 
-                    TransactionBuilder transactionBuilder = new TransactionBuilder("file upload");
                     BluetoothGattCharacteristic uploadCharacteristic = adapter.getDeviceSupport().getCharacteristic(UUID.fromString("3dda0004-957f-7d4a-34a6-74696673696d"));
 
-                    this.prepareFilePackets(this.file);
-
                     SecretKeySpec keySpec = new SecretKeySpec(this.adapter.getSecretKey(), "AES");
                     try {
                         Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
@@ -108,15 +99,19 @@ public class FileEncryptedPutRequest extends FossilRequest
 
                         cipher.init(Cipher.ENCRYPT_MODE, keySpec, new IvParameterSpec(fileIV));
 
-                        for (byte[] packet : packets) {
-                            byte[] result = cipher.doFinal(packet);
-                            transactionBuilder.write(uploadCharacteristic, result);
-                        }
+                        // every packet is encrypted on its own, starting from the IV again
+                        packetWriter = new FilePacketWriter(handle, this.file, adapter.getMTU() - 4, cipher);
+                        packetWriter.queue(adapter.getDeviceSupport().getQueue(), uploadCharacteristic, new FilePacketWriter.Listener() {
+                            @Override
+                            public void onError(Exception e) {
+                                onFilePut(false);
+                                adapter.onRequestFailed(FileEncryptedPutRequest.this, e);
+                            }
+                        });
                     }catch (Exception e){
-                        GB.toast("error encrypting file", Toast.LENGTH_LONG, GB.ERROR, e);
+                        onFilePut(false);
+                        throw new RuntimeException("error encrypting file", e);
                     }
-
-                    transactionBuilder.queue(adapter.getDeviceSupport().getQueue());
                     break;
                 }
                 case 8: {
@@ -136,7 +131,7 @@ public class FileEncryptedPutRequest extends FossilRequest
                         throw new RuntimeException("wrong response handle");
                     }
 
-                    if (crc != this.fullCRC) {
+                    if (crc != packetWriter.getFullCRC()) {
                         throw new RuntimeException("file upload exception: wrong crc");
                     }
 
@@ -215,44 +210,6 @@ public class FileEncryptedPutRequest extends FossilRequest
         return this.state == UploadState.UPLOADED;
     }
 
-    private void prepareFilePackets(byte[] file) {
-        int maxPacketSize = adapter.getMTU() - 4;
-
-        ByteBuffer buffer = ByteBuffer.allocate(file.length + 12 + 4);
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-
-        buffer.putShort(handle);
-        buffer.put((byte) 2);
-        buffer.put((byte) 0);
-        buffer.putInt(0);
-        buffer.putInt(file.length);
-
-        buffer.put(file);
-
-        CRC32C crc = new CRC32C();
-
-        crc.update(file,0,file.length);
-        buffer.putInt((int) crc.getValue());
-
-        byte[] data = buffer.array();
-
-        CRC32 fullCRC = new CRC32();
-
-        fullCRC.update(data);
-        this.fullCRC = (int) fullCRC.getValue();
-
-        int packetCount = (int) Math.ceil(data.length / (float) maxPacketSize);
-
-        for (int i = 0; i < packetCount; i++) {
-            int currentPacketLength = Math.min(maxPacketSize, data.length - i * maxPacketSize);
-            byte[] packet = new byte[currentPacketLength + 1];
-            packet[0] = (byte) i;
-            System.arraycopy(data, i * maxPacketSize, packet, 1, currentPacketLength);
-
-            packets.add(packet);
-        }
-    }
-
     public void onFilePut(boolean success) {
     }
 
@@ -1,17 +1,19 @@
 package org.likeapp.likeapp.service.devices.qhybrid.requests.fossil_hr.image;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Color;
-import android.graphics.ColorSpace;
+import android.util.LruCache;
 
-import androidx.annotation.ColorInt;
-
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 
 public class AssetImageFactory {
+    // the RLE encoded images, keyed by the size and a 64 bit hash of their pixels
+    private static final LruCache<String, byte[]> encodedImages = new LruCache<String, byte[]>(256 * 1024) {
+        @Override
+        protected int sizeOf(String key, byte[] value) {
+            return value.length;
+        }
+    };
+
     public static AssetImage createAssetImage(byte[] fileData, int angle, int distance, int indexZ){
         return new AssetImage(fileData, angle, distance, indexZ);
     }
@@ -27,18 +29,13 @@ public class AssetImageFactory {
 
             fileData.getPixels(pixels, 0, width, 0, 0, width, height);
 
-            byte[] pixelBytes = new byte[width * height];
-
-            for(int i = 0; i < pixels.length; i++){
-                int monochrome = convertToMonochrome(pixels[i]);
-                monochrome >>= 6;
-
-                int alpha = Color.alpha(pixels[i]);
-                monochrome |= (~((alpha & 0xFF) >> 4) & 0b00001100);
-
-                pixelBytes[i] = (byte) monochrome;
+            String key = width + "x" + height + "|" + hash(pixels);
+            byte[] encoded = encodedImages.get(key);
+            if (encoded == null) {
+                encoded = ImageConverter.encodeToRLEImage(pixels, height, width);
+                encodedImages.put(key, encoded);
             }
-            return new AssetImage(ImageConverter.encodeToRLEImage(pixelBytes, height, width), angle, distance, indexZ);
+            return new AssetImage(encoded, angle, distance, indexZ);
         }else{
             // applies only to big background
             int width = 240;
@@ -46,15 +43,19 @@ public class AssetImageFactory {
 
             byte[] pixelBytes = new byte[width * height];
 
+            // read only the sampled rows, not the whole bitmap, which may be a big photo
+            int[] row = new int[fileData.getWidth()];
+            int[] columns = new int[width];
             float jumpX = fileData.getWidth() / (float) width;
             float jumpY = fileData.getHeight() / (float) height;
+            for(int x = 0; x < width; x++){
+                columns[x] = (int)(x * jumpX);
+            }
             for(int y = 0; y < height; y++){
+                fileData.getPixels(row, 0, row.length, 0, (int)(y * jumpY), row.length, 1);
+                int index = pixelBytes.length - 1 - y * width;
                 for(int x = 0; x < width; x++){
-                    int pixel = fileData.getPixel((int)(x * jumpX), (int)(y * jumpY));
-
-                    int monochrome = convertToMonochrome(pixel);
-
-                    pixelBytes[pixelBytes.length - 1 - (y * width + x)] = (byte) monochrome;
+                    pixelBytes[index - x] = (byte) ImageConverter.toMonochrome(row[columns[x]]);
                 }
             }
 
@@ -62,11 +63,15 @@ public class AssetImageFactory {
         }
     }
 
-    private static @ColorInt int convertToMonochrome(@ColorInt int color){
-        int sum = Color.red(color) + Color.green(color) + Color.blue(color);
-
-        sum /= 3;
-
-        return sum;
+    /**
+     * Returns the 64 bit FNV-1a hash of the given pixels.
+     */
+    private static long hash(int[] pixels) {
+        long hash = 0xcbf29ce484222325L;
+        for (int pixel : pixels) {
+            hash ^= pixel;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
     }
 }
@@ -1,44 +1,101 @@
 package org.likeapp.likeapp.service.devices.qhybrid.requests.fossil_hr.image;
 
-import android.graphics.Bitmap;
-
-import org.likeapp.likeapp.service.devices.qhybrid.encoder.RLEEncoder;
-
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.util.Arrays;
 
 public class ImageConverter {
     public static void encodeToTwoBitImage(byte monochromeImage){
 
     }
 
-    public static byte[] encodeToRLEImage(byte[] monochromeImage, int height, int width) throws IOException {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream(monochromeImage.length * 2);
-
-        bos.write((byte) height);
-        bos.write((byte) width);
+    /**
+     * Encodes the given pixels, see {@link #toRLEPixel(int)}, as run lengths and values.
+     */
+    public static byte[] encodeToRLEImage(byte[] monochromeImage, int height, int width) {
+        RLEWriter writer = new RLEWriter(monochromeImage.length, height, width);
+        for (byte pixel : monochromeImage) {
+            writer.write(pixel);
+        }
+        return writer.finish();
+    }
 
-        bos.write(RLEEncoder.RLEEncode(monochromeImage));
+    /**
+     * Converts and encodes the given ARGB pixels, as returned by Bitmap#getPixels(), in a single pass.
+     */
+    public static byte[] encodeToRLEImage(int[] argbPixels, int height, int width) {
+        RLEWriter writer = new RLEWriter(argbPixels.length, height, width);
+        for (int pixel : argbPixels) {
+            writer.write(toRLEPixel(pixel));
+        }
+        return writer.finish();
+    }
 
-        bos.write((byte) 0x0FF);
-        bos.write((byte) 0x0FF);
+    /**
+     * Returns the 2 bit gray value of the given ARGB color in bits 0 and 1 and its inverted
+     * 2 bit alpha value in bits 2 and 3.
+     */
+    public static byte toRLEPixel(int argb) {
+        int alpha = argb >>> 24;
+        return (byte) ((toMonochrome(argb) >> 6) | (~(alpha >> 4) & 0b00001100));
+    }
 
-        return bos.toByteArray();
+    /**
+     * Returns the average of the red, green and blue values of the given ARGB color.
+     */
+    public static int toMonochrome(int argb) {
+        return (((argb >> 16) & 0xFF) + ((argb >> 8) & 0xFF) + (argb & 0xFF)) / 3;
     }
 
+    /**
+     * Packs the highest 2 bits of every pixel, 4 pixels per byte with the first one in the
+     * highest bits.
+     */
     public static byte[] encodeToRawImage(byte[] monochromeImage){
-        int imageSize = monochromeImage.length;
+        byte[] result = new byte[monochromeImage.length / 4]; // 4 pixels per byte e.g. 2 bits per pixel
 
-        byte[] result = new byte[imageSize / 4]; // 4 pixels per byte e.g. 2 bits per pixel
+        for (int i = 0, pixel = 0; i < result.length; i++, pixel += 4) {
+            result[i] = (byte) ((monochromeImage[pixel] & 0xC0)
+                    | (monochromeImage[pixel + 1] & 0xC0) >> 2
+                    | (monochromeImage[pixel + 2] & 0xC0) >> 4
+                    | (monochromeImage[pixel + 3] & 0xC0) >> 6);
+        }
+
+        return result;
+    }
 
-        for(int i = 0; i < imageSize; i++){
-            int resultPixelIndex = i / 4;
-            int shiftIndex = 6 - i % 4 * 2;
+    /**
+     * Writes run lengths of up to 255 and values into a buffer large enough for the worst case,
+     * after the height and width and followed by 0xFF 0xFF.
+     */
+    private static class RLEWriter {
+        private final byte[] buffer;
+        private int position;
+        private int count;
+        private byte value;
 
-            result[resultPixelIndex] |= (byte) (((monochromeImage[i] & 0xFF) >> 6) << shiftIndex);
-            assert Boolean.TRUE;
+        RLEWriter(int pixelCount, int height, int width) {
+            buffer = new byte[2 + pixelCount * 2 + 2];
+            buffer[position++] = (byte) height;
+            buffer[position++] = (byte) width;
         }
 
-        return result;
+        void write(byte pixel) {
+            if (count > 0 && (pixel != value || count >= 255)) {
+                buffer[position++] = (byte) count;
+                buffer[position++] = value;
+                count = 0;
+            }
+            value = pixel;
+            count++;
+        }
+
+        byte[] finish() {
+            if (count > 0) {
+                buffer[position++] = (byte) count;
+                buffer[position++] = value;
+            }
+            buffer[position++] = (byte) 0xFF;
+            buffer[position++] = (byte) 0xFF;
+            return Arrays.copyOf(buffer, position);
+        }
     }
 }
@@ -0,0 +1,193 @@
+package org.likeapp.likeapp.service.devices.qhybrid.requests.fossil_hr.widget;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.LruCache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.likeapp.likeapp.service.devices.qhybrid.requests.fossil_hr.image.AssetImage;
+import org.likeapp.likeapp.service.devices.qhybrid.requests.fossil_hr.image.AssetImageFactory;
+
+/**
+ * Renders custom widgets to asset images and remembers them by their content, i.e. the
+ * position, the colors and all elements, including the modification time of image files.
+ * A widget whose content did not change is not rendered and encoded again, and decoded image
+ * files are kept for the next render.
+ * <p>
+ * The assets are always uploaded all together, replacing the previous ones on the watch, so
+ * {@link #markUploaded(AssetImage[])} tells whether they differ from the last upload at all.
+ */
+public class CustomWidgetRenderer
+{
+    private static final Logger LOG = LoggerFactory.getLogger(CustomWidgetRenderer.class);
+
+    private static final int SIZE = 76;
+    private static final int MAX_DECODED_BYTES = 1024 * 1024;
+
+    private final Map<String, AssetImage> renderedImages = new HashMap<>();
+    private final Set<String> usedKeys = new HashSet<>();
+    private final LruCache<String, Bitmap> decodedBitmaps = new LruCache<String, Bitmap>(MAX_DECODED_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getByteCount();
+        }
+    };
+    private final Paint circlePaint = new Paint();
+    private final Paint textPaint = new Paint();
+    private String[] uploadedFileNames;
+
+    public CustomWidgetRenderer() {
+        circlePaint.setStrokeWidth(3);
+
+        textPaint.setStrokeWidth(4);
+        textPaint.setTextSize(17f);
+        textPaint.setStyle(Paint.Style.FILL);
+        textPaint.setTextAlign(Paint.Align.CENTER);
+    }
+
+    /**
+     * Returns the asset image of the given widget, rendered now or before with the same content.
+     */
+    public AssetImage render(CustomWidget widget, boolean forceWhiteBackground) throws IOException {
+        String key = getContentKey(widget, forceWhiteBackground);
+        usedKeys.add(key);
+        AssetImage image = renderedImages.get(key);
+        if (image == null) {
+            image = AssetImageFactory.createAssetImage(
+                    draw(widget, forceWhiteBackground),
+                    true,
+                    widget.getAngle(),
+                    widget.getDistance(),
+                    1
+            );
+            renderedImages.put(key, image);
+        }
+        return image;
+    }
+
+    /**
+     * Forgets the images of the widgets that were not rendered since the last call.
+     */
+    public void prune() {
+        renderedImages.keySet().retainAll(usedKeys);
+        usedKeys.clear();
+    }
+
+    /**
+     * Remembers the given images as uploaded.
+     *
+     * @return false if the same images have been uploaded last time, so there is no need to upload them again
+     */
+    public boolean markUploaded(AssetImage[] images) {
+        String[] fileNames = new String[images.length];
+        for (int i = 0; i < images.length; i++) {
+            // the file name is the checksum of the image data
+            fileNames[i] = images[i].getFileName() + "@" + images[i].getAngle() + "," + images[i].getDistance() + "," + images[i].getIndexZ();
+        }
+        if (Arrays.equals(fileNames, uploadedFileNames)) {
+            return false;
+        }
+        uploadedFileNames = fileNames;
+        return true;
+    }
+
+    /**
+     * Makes the next {@link #markUploaded(AssetImage[])} return true, e.g. after reconnecting.
+     */
+    public void resetUploaded() {
+        uploadedFileNames = null;
+    }
+
+    private String getContentKey(CustomWidget widget, boolean forceWhiteBackground) {
+        StringBuilder key = new StringBuilder()
+                .append(forceWhiteBackground).append('|')
+                .append(widget.getAngle()).append('|')
+                .append(widget.getDistance());
+        for (CustomWidgetElement element : widget.getElements()) {
+            key.append('|').append(element.getWidgetElementType())
+                    .append(',').append(element.getX())
+                    .append(',').append(element.getY())
+                    .append(',').append(element.getValue());
+            if (element.getWidgetElementType() != CustomWidgetElement.WidgetElementType.TYPE_TEXT) {
+                File file = new File(element.getValue());
+                key.append(',').append(file.lastModified()).append(',').append(file.length());
+            }
+        }
+        return key.toString();
+    }
+
+    private Bitmap draw(CustomWidget widget, boolean forceWhiteBackground) {
+        Bitmap widgetBitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        Canvas widgetCanvas = new Canvas(widgetBitmap);
+
+        circlePaint.setColor(forceWhiteBackground ? Color.WHITE : Color.BLACK);
+        circlePaint.setStyle(Paint.Style.FILL);
+        widgetCanvas.drawCircle(38, 38, 37, circlePaint);
+
+        circlePaint.setColor(forceWhiteBackground ? Color.BLACK : Color.WHITE);
+        circlePaint.setStyle(Paint.Style.STROKE);
+        widgetCanvas.drawCircle(38, 38, 37, circlePaint);
+
+        for (CustomWidgetElement element : widget.getElements()) {
+            if (element.getWidgetElementType() == CustomWidgetElement.WidgetElementType.TYPE_BACKGROUND) {
+                Bitmap background = getBitmap(element.getValue(), true);
+                if (background != null) {
+                    widgetCanvas.drawBitmap(background, 0, 0, null);
+                    break;
+                }
+            }
+        }
+
+        textPaint.setColor(forceWhiteBackground ? Color.BLACK : Color.WHITE);
+        for (CustomWidgetElement element : widget.getElements()) {
+            if (element.getWidgetElementType() == CustomWidgetElement.WidgetElementType.TYPE_TEXT) {
+                widgetCanvas.drawText(element.getValue(), element.getX(), element.getY() - (textPaint.descent() + textPaint.ascent()) / 2f, textPaint);
+            } else if (element.getWidgetElementType() == CustomWidgetElement.WidgetElementType.TYPE_IMAGE) {
+                Bitmap imageBitmap = getBitmap(element.getValue(), false);
+                if (imageBitmap != null) {
+                    widgetCanvas.drawBitmap(imageBitmap, element.getX() - imageBitmap.getWidth() / 2f, element.getY() - imageBitmap.getHeight() / 2f, null);
+                }
+            }
+        }
+        return widgetBitmap;
+    }
+
+    /**
+     * Returns the decoded image file, scaled to the widget size if requested, or null if
+     * it cannot be read.
+     */
+    private Bitmap getBitmap(String path, boolean scaled) {
+        File imageFile = new File(path);
+        if (!imageFile.exists() || !imageFile.isFile()) {
+            LOG.debug("Image file " + path + " not found");
+            return null;
+        }
+        String key = scaled + "|" + path + "|" + imageFile.lastModified() + "|" + imageFile.length();
+        Bitmap bitmap = decodedBitmaps.get(key);
+        if (bitmap == null) {
+            bitmap = BitmapFactory.decodeFile(path);
+            if (bitmap == null) {
+                LOG.debug("image file " + path + " could not be decoded");
+                return null;
+            }
+            if (scaled) {
+                bitmap = Bitmap.createScaledBitmap(bitmap, SIZE, SIZE, false);
+            }
+            decodedBitmaps.put(key, bitmap);
+        }
+        return bitmap;
+    }
+}
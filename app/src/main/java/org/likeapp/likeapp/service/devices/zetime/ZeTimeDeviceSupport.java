@@ -36,6 +36,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
 
@@ -548,6 +549,33 @@ public class ZeTimeDeviceSupport extends AbstractBTLEDeviceSupport {
 
     @Override
     public void onAddCalendarEvent(CalendarEventSpec calendarEventSpec) {
+        try {
+            TransactionBuilder builder = performInitialized("sendCalendarEvenr");
+            addCalendarEvent(builder, calendarEventSpec);
+            builder.queue(getQueue());
+        } catch (IOException e) {
+            GB.toast(getContext(), "Error sending calendar event: " + e.getLocalizedMessage(), Toast.LENGTH_LONG, GB.ERROR);
+        }
+    }
+
+    @Override
+    public void onUpdateCalendarEvents(List<CalendarEventSpec> deletedEvents, List<CalendarEventSpec> addedEvents) {
+        // events cannot be deleted, send all new ones in a single transaction
+        if (addedEvents.isEmpty()) {
+            return;
+        }
+        try {
+            TransactionBuilder builder = performInitialized("sendCalendarEvents");
+            for (CalendarEventSpec calendarEventSpec : addedEvents) {
+                addCalendarEvent(builder, calendarEventSpec);
+            }
+            builder.queue(getQueue());
+        } catch (IOException e) {
+            GB.toast(getContext(), "Error sending calendar events: " + e.getLocalizedMessage(), Toast.LENGTH_LONG, GB.ERROR);
+        }
+    }
+
+    private void addCalendarEvent(TransactionBuilder builder, CalendarEventSpec calendarEventSpec) {
         Calendar time = GregorianCalendar.getInstance();
         byte[] CalendarEvent = new byte[calendarEventSpec.title.getBytes(StandardCharsets.UTF_8).length + 16]; // 26 bytes for calendar and overhead
         time.setTimeInMillis(calendarEventSpec.timestamp);
@@ -568,13 +596,7 @@ public class ZeTimeDeviceSupport extends AbstractBTLEDeviceSupport {
         CalendarEvent[14] = (byte) calendarEventSpec.title.getBytes(StandardCharsets.UTF_8).length;
         System.arraycopy(calendarEventSpec.title.getBytes(StandardCharsets.UTF_8), 0, CalendarEvent, 15, calendarEventSpec.title.getBytes(StandardCharsets.UTF_8).length);
         CalendarEvent[CalendarEvent.length - 1] = ZeTimeConstants.CMD_END;
-        try {
-            TransactionBuilder builder = performInitialized("sendCalendarEvenr");
-            sendMsgToWatch(builder, CalendarEvent);
-            builder.queue(getQueue());
-        } catch (IOException e) {
-            GB.toast(getContext(), "Error sending calendar event: " + e.getLocalizedMessage(), Toast.LENGTH_LONG, GB.ERROR);
-        }
+        sendMsgToWatch(builder, CalendarEvent);
     }
 
     @Override
@@ -35,6 +35,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Calendar;
+import java.util.List;
 
 public class AutoConnectIntervalReceiver extends BroadcastReceiver {
 
@@ -58,25 +59,33 @@ public class AutoConnectIntervalReceiver extends BroadcastReceiver {
             return;
         }
 
-        GBDevice gbDevice = service.getGBDevice();
-        if (gbDevice == null) {
+        List<GBDevice> gbDevices = service.getGBDevices();
+        if (gbDevices.isEmpty()) {
             return;
         }
 
         if (action.equals(DeviceManager.ACTION_DEVICES_CHANGED)) {
-            if (gbDevice.isInitialized()) {
-                LOG.info("will reset connection delay, device is initialized!");
+            boolean waitingForReconnect = false;
+            boolean allInitialized = true;
+            for (GBDevice gbDevice : gbDevices) {
+                waitingForReconnect |= gbDevice.getState() == GBDevice.State.WAITING_FOR_RECONNECT;
+                allInitialized &= gbDevice.isInitialized();
+            }
+            if (allInitialized) {
+                LOG.info("will reset connection delay, all devices are initialized!");
                 mDelay = 2;
             }
-            else if (gbDevice.getState() == GBDevice.State.WAITING_FOR_RECONNECT) {
+            else if (waitingForReconnect) {
                 scheduleReconnect();
             }
         }
         else if (action.equals("GB_RECONNECT")) {
             am = null;
-            if (gbDevice.getState() == GBDevice.State.WAITING_FOR_RECONNECT) {
-                LOG.info("Will re-connect to " + gbDevice.getAddress() + "(" + gbDevice.getName() + ")");
-                GBApplication.deviceService().connect();
+            for (GBDevice gbDevice : gbDevices) {
+                if (gbDevice.getState() == GBDevice.State.WAITING_FOR_RECONNECT) {
+                    LOG.info("Will re-connect to " + gbDevice.getAddress() + "(" + gbDevice.getName() + ")");
+                    GBApplication.deviceService().connect(gbDevice);
+                }
             }
         }
     }
@@ -16,6 +16,7 @@
     along with this program.  If not, see <http://www.gnu.org/licenses/>. */
 package org.likeapp.likeapp.util;
 
+import java.nio.ByteBuffer;
 import java.util.Collection;
 
 public class ArrayUtils {
@@ -51,6 +52,38 @@ public class ArrayUtils {
         return true;
     }
 
+    /**
+     * Like {@link #equals(byte[], byte[], int)}, but looking inside the given buffer, e.g. a
+     * memory mapped file. The start index is absolute, the buffer's position is not changed.
+     *
+     * @param first      the buffer in which to look for the array
+     * @param second     the data to look for inside the buffer
+     * @param startIndex the absolute start index (inclusive) inside the buffer from which to start the comparison
+     * @return whether the byte array is equal to the specified subset of the buffer
+     * @throws IllegalArgumentException when one of the arguments is null or the start index is wrong
+     */
+    public static boolean equalsAt(ByteBuffer first, byte[] second, int startIndex) {
+        if (first == null) {
+            throw new IllegalArgumentException("first must not be null");
+        }
+        if (second == null) {
+            throw new IllegalArgumentException("second must not be null");
+        }
+        if (startIndex < 0) {
+            throw new IllegalArgumentException("startIndex must be >= 0");
+        }
+
+        if (second.length + startIndex > first.limit()) {
+            return false;
+        }
+        for (int i = 0; i < second.length; i++) {
+            if (first.get(startIndex + i) != second[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Converts a collection of Integer values to an int[] array.
      * @param values
@@ -78,4 +111,14 @@ public class ArrayUtils {
     public static boolean startsWith(byte[] array, byte[] values) {
         return equals(array, values, 0);
     }
+
+    /**
+     * Returns true if the given buffer starts with the given values, regardless of its position
+     * @param buffer the buffer to check
+     * @param values the values which the buffer is checked to start with
+     * @return
+     */
+    public static boolean startsWith(ByteBuffer buffer, byte[] values) {
+        return equalsAt(buffer, values, 0);
+    }
 }
@@ -0,0 +1,95 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.util;
+
+import java.util.zip.Checksum;
+
+/**
+ * The CRC16 used for Mi Band and Huami firmware (CRC-16/CCITT-FALSE: polynomial 0x1021,
+ * initial value 0xFFFF, not reflected), computed 8 bytes at a time with slicing-by-8 tables.
+ */
+public class CRC16 implements Checksum {
+    private static final int POLYNOMIAL = 0x1021;
+    private static final int[][] T = createTables();
+
+    private int crc;
+
+    public CRC16() {
+        reset();
+    }
+
+    @Override
+    public long getValue() {
+        return crc;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xffff;
+    }
+
+    @Override
+    public void update(int b) {
+        crc = ((crc << 8) ^ T[0][((crc >>> 8) ^ b) & 0xff]) & 0xffff;
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        int localCrc = crc;
+        final int[] t0 = T[0], t1 = T[1], t2 = T[2], t3 = T[3], t4 = T[4], t5 = T[5], t6 = T[6], t7 = T[7];
+
+        while (len > 7) {
+            // the 16 bit crc only overlaps the first two bytes of each block
+            localCrc = t7[((localCrc >>> 8) ^ b[off]) & 0xff]
+                    ^ t6[(localCrc ^ b[off + 1]) & 0xff]
+                    ^ t5[b[off + 2] & 0xff]
+                    ^ t4[b[off + 3] & 0xff]
+                    ^ t3[b[off + 4] & 0xff]
+                    ^ t2[b[off + 5] & 0xff]
+                    ^ t1[b[off + 6] & 0xff]
+                    ^ t0[b[off + 7] & 0xff];
+            off += 8;
+            len -= 8;
+        }
+        while (len-- > 0) {
+            localCrc = ((localCrc << 8) ^ t0[((localCrc >>> 8) ^ b[off++]) & 0xff]) & 0xffff;
+        }
+        crc = localCrc;
+    }
+
+    /**
+     * T[0] is the classic byte-wise table, T[k] advances an entry of T[k-1] by one more
+     * zero byte, i.e. it is the contribution of a byte followed by k other bytes.
+     */
+    private static int[][] createTables() {
+        int[][] tables = new int[8][256];
+        for (int i = 0; i < 256; i++) {
+            int value = i << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                value = (value & 0x8000) != 0 ? (value << 1) ^ POLYNOMIAL : value << 1;
+            }
+            tables[0][i] = value & 0xffff;
+        }
+        for (int k = 1; k < 8; k++) {
+            for (int i = 0; i < 256; i++) {
+                int previous = tables[k - 1][i];
+                tables[k][i] = ((previous << 8) ^ tables[0][(previous >>> 8) & 0xff]) & 0xffff;
+            }
+        }
+        return tables;
+    }
+}
@@ -20,9 +20,15 @@ import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
 import java.util.zip.CRC32;
+import java.util.zip.Checksum;
 
 public class CheckSums {
+    private static final int UPDATE_CHUNK_SIZE = 64 * 1024;
+    private static final Constructor<? extends Checksum> INTRINSIC_CRC32C = findIntrinsicCRC32C();
+
     public static int getCRC8(byte[] seq) {
         int len = seq.length;
         int i = 0;
@@ -43,19 +49,16 @@ public class CheckSums {
         return (crc & 0xff);
     }
 
-    //thanks http://stackoverflow.com/questions/13209364/convert-c-crc16-to-java-crc16
     public static int getCRC16(byte[] seq) {
-        int crc = 0xFFFF;
-
-        for (byte b : seq) {
-            crc = ((crc >>> 8) | (crc << 8)) & 0xffff;
-            crc ^= (b & 0xff);//byte to int, trunc sign
-            crc ^= ((crc & 0xff) >> 4);
-            crc ^= (crc << 12) & 0xffff;
-            crc ^= ((crc & 0xFF) << 5) & 0xffff;
-        }
-        crc &= 0xffff;
-        return crc;
+        CRC16 crc = new CRC16();
+        crc.update(seq, 0, seq.length);
+        return (int) crc.getValue();
+    }
+
+    public static int getCRC16(ByteBuffer buffer) {
+        Checksum crc = new CRC16();
+        update(crc, buffer);
+        return (int) crc.getValue();
     }
 
     public static int getCRC32(byte[] seq) {
@@ -64,6 +67,88 @@ public class CheckSums {
         return (int) (crc.getValue());
     }
 
+    public static int getCRC32(ByteBuffer buffer) {
+        Checksum crc = new CRC32();
+        update(crc, buffer);
+        return (int) crc.getValue();
+    }
+
+    public static int getCRC32C(byte[] seq) {
+        Checksum crc = createCRC32C();
+        crc.update(seq, 0, seq.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Returns a CRC32C checksum, backed by the runtime's java.util.zip.CRC32C where available
+     * (Java 9 and Android 8.0 / API 26 onwards, where the JIT may use hardware instructions),
+     * else by {@link CRC32C}.
+     */
+    public static Checksum createCRC32C() {
+        if (INTRINSIC_CRC32C != null) {
+            try {
+                return INTRINSIC_CRC32C.newInstance();
+            } catch (ReflectiveOperationException e) {
+                // fall through
+            }
+        }
+        return new CRC32C();
+    }
+
+    /**
+     * Feeds the remaining bytes of the given buffer into the checksum, advancing the
+     * buffer's position to its limit. Buffers that are not backed by an array, e.g.
+     * memory mapped files, are read in chunks without copying them as a whole.
+     */
+    public static void update(Checksum checksum, ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            int length = buffer.remaining();
+            checksum.update(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            buffer.position(buffer.limit());
+            return;
+        }
+        byte[] chunk = new byte[Math.min(buffer.remaining(), UPDATE_CHUNK_SIZE)];
+        while (buffer.hasRemaining()) {
+            int length = Math.min(buffer.remaining(), chunk.length);
+            buffer.get(chunk, 0, length);
+            checksum.update(chunk, 0, length);
+        }
+    }
+
+    /**
+     * Like {@link #update(Checksum, ByteBuffer)}, but feeds the bytes into several checksums
+     * during a single pass over the buffer.
+     */
+    public static void updateAll(ByteBuffer buffer, Checksum... checksums) {
+        if (buffer.hasArray()) {
+            int offset = buffer.arrayOffset() + buffer.position();
+            int length = buffer.remaining();
+            for (Checksum checksum : checksums) {
+                checksum.update(buffer.array(), offset, length);
+            }
+            buffer.position(buffer.limit());
+            return;
+        }
+        byte[] chunk = new byte[Math.min(buffer.remaining(), UPDATE_CHUNK_SIZE)];
+        while (buffer.hasRemaining()) {
+            int length = Math.min(buffer.remaining(), chunk.length);
+            buffer.get(chunk, 0, length);
+            for (Checksum checksum : checksums) {
+                checksum.update(chunk, 0, length);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Constructor<? extends Checksum> findIntrinsicCRC32C() {
+        try {
+            return ((Class<? extends Checksum>) Class.forName("java.util.zip.CRC32C")).getConstructor();
+        } catch (ReflectiveOperationException e) {
+            // not available before Java 9, and not before Android 8.0 (API 26)
+            return null;
+        }
+    }
+
     public static void main(String[] args) throws IOException {
         if (args == null || args.length == 0) {
             throw new IllegalArgumentException("Pass the files to be checksummed as arguments");
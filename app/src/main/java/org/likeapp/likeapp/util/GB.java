@@ -193,22 +193,7 @@ public class GB {
     }
 
     public static String hexdump(byte[] buffer, int offset, int length, boolean isSpace) {
-        if (length == -1) {
-            length = buffer.length - offset;
-        }
-        final char[] hexArray = "0123456789ABCDEF".toCharArray();
-        int step = isSpace ? 3 : 2;
-        char[] hexChars = new char[length * step];
-        for (int i = 0; i < length; i++) {
-            int v = buffer[i + offset] & 0xFF;
-            hexChars[i * step] = hexArray[v >>> 4];
-            hexChars[i * step + 1] = hexArray[v & 0x0F];
-            if (isSpace)
-            {
-                hexChars[i * step + 2] = ' ';
-            }
-        }
-        return new String(hexChars);
+        return StringUtils.hexdump(buffer, offset, length, isSpace);
     }
 
     public static String hexdump(byte[] buffer, boolean isSpace)
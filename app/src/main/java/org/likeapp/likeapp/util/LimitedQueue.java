@@ -17,50 +17,171 @@
     along with this program.  If not, see <http://www.gnu.org/licenses/>. */
 package org.likeapp.likeapp.util;
 
-import android.util.Pair;
-
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * A map from int ids to objects that holds at most {@code limit} entries and evicts the
+ * least recently added entry when it is full. Adding an id again replaces its value and
+ * makes it the most recently added one.
+ * <p>
+ * All operations take constant time: the entries are kept in preallocated slots, linked
+ * in the order they were added, and found through an open addressing hash table of slot
+ * numbers, so no keys need to be boxed. Lookups only take a read lock and do not block
+ * each other.
+ */
 public class LimitedQueue {
+    private static final int NO_SLOT = -1;
+
     private final int limit;
-    private LinkedList<Pair> list = new LinkedList<>();
+    private final int[] keys;
+    private final Object[] values;
+    private final int[] previous;
+    private final int[] next;
+    private int oldest = NO_SLOT;
+    private int newest = NO_SLOT;
+    private int firstFree;
+    private int size;
+
+    /**
+     * Slot number + 1 of the entry for a key, 0 if unused, with linear probing.
+     */
+    private final int[] table;
+    private final int mask;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
     public LimitedQueue(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive: " + limit);
+        }
         this.limit = limit;
+        keys = new int[limit];
+        values = new Object[limit];
+        previous = new int[limit];
+        next = new int[limit];
+        for (int i = 0; i < limit; i++) {
+            next[i] = i + 1 < limit ? i + 1 : NO_SLOT;
+        }
+        firstFree = 0;
+        int tableSize = Integer.highestOneBit(limit) << 2;
+        table = new int[tableSize];
+        mask = tableSize - 1;
     }
 
-    synchronized public void add(int id, Object obj) {
-        if (list.size() > limit - 1) {
-            list.removeFirst();
+    public void add(int id, Object obj) {
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(id);
+            if (slot != NO_SLOT) {
+                removeSlot(slot);
+            } else if (size == limit) {
+                removeSlot(oldest);
+            }
+            slot = firstFree;
+            firstFree = next[slot];
+            keys[slot] = id;
+            values[slot] = obj;
+            previous[slot] = newest;
+            next[slot] = NO_SLOT;
+            if (newest != NO_SLOT) {
+                next[newest] = slot;
+            } else {
+                oldest = slot;
+            }
+            newest = slot;
+            size++;
+            insertIntoTable(id, slot);
+        } finally {
+            lock.writeLock().unlock();
         }
-        list.add(new Pair<>(id, obj));
     }
 
-    synchronized public void remove(int id) {
-        for (Iterator<Pair> iter = list.iterator(); iter.hasNext(); ) {
-            Pair pair = iter.next();
-            if ((Integer) pair.first == id) {
-                iter.remove();
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(id);
+            if (slot != NO_SLOT) {
+                removeSlot(slot);
             }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Object lookup(int id) {
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(id);
+            return slot != NO_SLOT ? values[slot] : null;
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
-    synchronized public Object lookup(int id) {
-        for (Pair entry : list) {
-            if (id == (Integer) entry.first) {
-                return entry.second;
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeSlot(int slot) {
+        removeFromTable(keys[slot]);
+        if (previous[slot] != NO_SLOT) {
+            next[previous[slot]] = next[slot];
+        } else {
+            oldest = next[slot];
+        }
+        if (next[slot] != NO_SLOT) {
+            previous[next[slot]] = previous[slot];
+        } else {
+            newest = previous[slot];
+        }
+        values[slot] = null;
+        next[slot] = firstFree;
+        firstFree = slot;
+        size--;
+    }
+
+    private int hash(int key) {
+        int h = key * 0x9e3779b9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private int findSlot(int key) {
+        for (int i = hash(key); table[i] != 0; i = (i + 1) & mask) {
+            if (keys[table[i] - 1] == key) {
+                return table[i] - 1;
             }
         }
-        return null;
+        return NO_SLOT;
     }
 
-    synchronized public Object lookupByValue(Object value){
-        for (Pair entry : list) {
-            if (value.equals(entry.second)) {
-                return entry.first;
+    private void insertIntoTable(int key, int slot) {
+        int i = hash(key);
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = slot + 1;
+    }
+
+    private void removeFromTable(int key) {
+        int i = hash(key);
+        while (keys[table[i] - 1] != key) {
+            i = (i + 1) & mask;
+        }
+        table[i] = 0;
+        // move the following entries of the probe sequence back into the gap
+        for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+            int home = hash(keys[table[j] - 1]);
+            boolean reachable = i <= j ? (home > i && home <= j) : (home > i || home <= j);
+            if (!reachable) {
+                table[i] = table[j];
+                table[j] = 0;
+                i = j;
             }
         }
-        return null;
     }
 }
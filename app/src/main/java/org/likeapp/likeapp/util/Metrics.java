@@ -0,0 +1,257 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.util;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A process-wide registry of counters, latency histograms and throughput meters, used to
+ * find out where the time goes during connections and syncs. Recording is lock-free and
+ * cheap, callers on hot paths should still keep a reference to the metric instead of
+ * looking it up by name every time.
+ * <p>
+ * The collected values can be viewed and exported as JSON from the DebugActivity.
+ */
+public class Metrics {
+    private static final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Meter> meters = new ConcurrentHashMap<>();
+
+    private static volatile long startMillis = System.currentTimeMillis();
+
+    /**
+     * Counts bytes (or any other amount), and the rate at which they were counted during the
+     * last {@link #WINDOW_SECONDS} seconds. The window is kept as one bucket per second, so that
+     * the rate follows the current throughput instead of averaging over idle gaps between
+     * transfers.
+     */
+    public static class Meter {
+        public static final int WINDOW_SECONDS = 10;
+
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLongArray bucketAmounts = new AtomicLongArray(WINDOW_SECONDS);
+        private final AtomicLongArray bucketSeconds = new AtomicLongArray(WINDOW_SECONDS);
+        private volatile long firstMillis;
+
+        public void mark(long amount) {
+            mark(amount, System.currentTimeMillis());
+        }
+
+        /**
+         * Like {@link #mark(long)}, at the given time. Times are expected to not go backwards.
+         */
+        public void mark(long amount, long nowMillis) {
+            if (firstMillis == 0) {
+                firstMillis = nowMillis;
+            }
+            long second = nowMillis / 1000;
+            int index = (int) (second % WINDOW_SECONDS);
+            if (bucketSeconds.get(index) != second) {
+                // only taken once per second and bucket, the bucket is cleared before it is
+                // claimed, so that concurrent marks for the same second are not lost
+                synchronized (this) {
+                    if (bucketSeconds.get(index) != second) {
+                        bucketAmounts.set(index, 0);
+                        bucketSeconds.set(index, second);
+                    }
+                }
+            }
+            bucketAmounts.addAndGet(index, amount);
+            total.addAndGet(amount);
+        }
+
+        public long getTotal() {
+            return total.get();
+        }
+
+        /**
+         * Returns the rate per second during the last {@link #WINDOW_SECONDS} seconds, or since
+         * the first mark, if that was more recent.
+         */
+        public long getRatePerSecond() {
+            return getRatePerSecond(System.currentTimeMillis());
+        }
+
+        /**
+         * Like {@link #getRatePerSecond()}, at the given time.
+         */
+        public long getRatePerSecond(long nowMillis) {
+            long first = firstMillis;
+            if (first == 0) {
+                return 0;
+            }
+            long second = nowMillis / 1000;
+            long oldestSecond = second - WINDOW_SECONDS + 1;
+            long amount = 0;
+            for (int i = 0; i < WINDOW_SECONDS; i++) {
+                long bucketSecond = bucketSeconds.get(i);
+                if (bucketSecond >= oldestSecond && bucketSecond <= second) {
+                    amount += bucketAmounts.get(i);
+                }
+            }
+            long duration = nowMillis - Math.max(first, oldestSecond * 1000);
+            return duration <= 0 ? 0 : amount * 1000 / duration;
+        }
+
+        synchronized void reset() {
+            total.set(0);
+            for (int i = 0; i < WINDOW_SECONDS; i++) {
+                bucketAmounts.set(i, 0);
+                bucketSeconds.set(i, 0);
+            }
+            firstMillis = 0;
+        }
+    }
+
+    public static AtomicLong counter(String name) {
+        AtomicLong counter = counters.get(name);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    public static Meter meter(String name) {
+        Meter meter = meters.get(name);
+        if (meter == null) {
+            Meter created = new Meter();
+            meter = meters.putIfAbsent(name, created);
+            if (meter == null) {
+                meter = created;
+            }
+        }
+        return meter;
+    }
+
+    /**
+     * Resets all values, but keeps the metrics registered, since callers may hold references to them.
+     */
+    public static void reset() {
+        for (AtomicLong counter : counters.values()) {
+            counter.set(0);
+        }
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        for (Meter meter : meters.values()) {
+            meter.reset();
+        }
+        startMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns all values, with the histograms summarized by their count, mean, percentiles
+     * and maximum in microseconds, and the meters by their total and rate per second.
+     */
+    public static JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("since", startMillis);
+        json.put("until", System.currentTimeMillis());
+
+        JSONObject countersJson = new JSONObject();
+        for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(counters).entrySet()) {
+            countersJson.put(entry.getKey(), entry.getValue().get());
+        }
+        json.put("counters", countersJson);
+
+        JSONObject histogramsJson = new JSONObject();
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            JSONObject histogramJson = new JSONObject();
+            histogramJson.put("count", histogram.getCount());
+            histogramJson.put("meanMicros", histogram.getMeanMicros());
+            histogramJson.put("p50Micros", histogram.getPercentileMicros(50));
+            histogramJson.put("p90Micros", histogram.getPercentileMicros(90));
+            histogramJson.put("p99Micros", histogram.getPercentileMicros(99));
+            histogramJson.put("maxMicros", histogram.getMaxMicros());
+            histogramsJson.put(entry.getKey(), histogramJson);
+        }
+        json.put("histograms", histogramsJson);
+
+        JSONObject metersJson = new JSONObject();
+        for (Map.Entry<String, Meter> entry : new TreeMap<>(meters).entrySet()) {
+            JSONObject meterJson = new JSONObject();
+            meterJson.put("total", entry.getValue().getTotal());
+            meterJson.put("perSecond", entry.getValue().getRatePerSecond());
+            metersJson.put(entry.getKey(), meterJson);
+        }
+        json.put("meters", metersJson);
+        return json;
+    }
+
+    /**
+     * Returns a human readable summary of all metrics that have recorded something.
+     */
+    public static String format() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            builder.append(String.format(Locale.US, "%s: n=%d mean=%s p50=%s p99=%s max=%s%n", entry.getKey(), histogram.getCount(),
+                    formatMicros(histogram.getMeanMicros()), formatMicros(histogram.getPercentileMicros(50)),
+                    formatMicros(histogram.getPercentileMicros(99)), formatMicros(histogram.getMaxMicros())));
+        }
+        for (Map.Entry<String, Meter> entry : new TreeMap<>(meters).entrySet()) {
+            Meter meter = entry.getValue();
+            if (meter.getTotal() == 0) {
+                continue;
+            }
+            builder.append(String.format(Locale.US, "%s: %d total, %d/s%n", entry.getKey(), meter.getTotal(), meter.getRatePerSecond()));
+        }
+        for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(counters).entrySet()) {
+            if (entry.getValue().get() == 0) {
+                continue;
+            }
+            builder.append(String.format(Locale.US, "%s: %d%n", entry.getKey(), entry.getValue().get()));
+        }
+        return builder.toString();
+    }
+
+    private static String formatMicros(long micros) {
+        if (micros < 10000) {
+            return micros + "us";
+        }
+        return (micros / 1000) + "ms";
+    }
+}
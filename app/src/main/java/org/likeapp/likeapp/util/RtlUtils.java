@@ -16,8 +16,6 @@
     along with this program.  If not, see <http://www.gnu.org/licenses/>. */
 package org.likeapp.likeapp.util;
 
-import android.text.TextUtils;
-
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -599,7 +597,7 @@ public class RtlUtils {
 
         lines.add(line.toString());
 
-        newString = TextUtils.join("", lines);
+        newString = StringUtils.join("", lines.toArray(new String[0])).toString();
 
         debug("after : |" + org.apache.commons.lang3.StringEscapeUtils.escapeJava(newString) + "|");
 
@@ -20,13 +20,17 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 import android.provider.MediaStore;
 
 import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -93,6 +97,31 @@ public class UriHelper {
         throw new FileNotFoundException("Unable to open inputstream for " + uri);
     }
 
+    /**
+     * Maps the contents of the uri into memory, read-only, so that large files can be accessed
+     * without copying them onto the heap. The mapping stays valid after this method returns.
+     * @return the mapped contents, or null if the content is not backed by a regular file
+     * (e.g. a pipe), in which case #openInputStream() has to be used instead
+     * @throws IOException
+     */
+    @Nullable
+    public MappedByteBuffer mapReadOnly() throws IOException {
+        ContentResolver cr = context.getContentResolver();
+        try (ParcelFileDescriptor pfd = cr.openFileDescriptor(uri, "r")) {
+            if (pfd == null) {
+                return null;
+            }
+            try (FileInputStream in = new FileInputStream(pfd.getFileDescriptor())) {
+                FileChannel channel = in.getChannel();
+                long size = channel.size();
+                if (size <= 0 || size > Integer.MAX_VALUE) {
+                    return null;
+                }
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
+    }
+
     /**
      * Returns the content length (file size) in bytes
      */
@@ -0,0 +1,54 @@
+package org.likeapp.likeapp.database;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.likeapp.likeapp.GBApplication;
+import org.likeapp.likeapp.entities.DaoSession;
+import org.likeapp.likeapp.test.TestBase;
+
+import static org.junit.Assert.assertNotNull;
+
+public class DBLifecycleTest extends TestBase {
+
+    @Test
+    public void testCloseAndOpenAreIdempotent() {
+        dbHandler.closeDb();
+        dbHandler.closeDb();
+        dbHandler.openDb();
+        dbHandler.openDb();
+        assertNotNull(dbHandler.getDaoSession());
+    }
+
+    @Test
+    public void testReaderWaitsForReopen() throws Exception {
+        dbHandler.closeDb();
+
+        final AtomicReference<DaoSession> readSession = new AtomicReference<>();
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try (ReadDBHandler handler = GBApplication.acquireReadDB()) {
+                    readSession.set(handler.getDaoSession());
+                } catch (Exception e) {
+                    // readSession stays null
+                }
+            }
+        };
+        reader.start();
+        Thread.sleep(200);
+        dbHandler.openDb();
+        reader.join(10000);
+        assertNotNull(readSession.get());
+    }
+
+    @Test
+    public void testDeleteActivityDatabaseReopens() throws Exception {
+        GBApplication.deleteActivityDatabase(getContext());
+        assertNotNull(dbHandler.getDaoSession());
+        try (ReadDBHandler handler = GBApplication.acquireReadDB()) {
+            assertNotNull(handler.getDaoSession());
+        }
+    }
+}
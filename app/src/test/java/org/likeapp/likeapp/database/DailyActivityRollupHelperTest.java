@@ -0,0 +1,144 @@
+package org.likeapp.likeapp.database;
+
+import org.junit.Test;
+
+import org.likeapp.likeapp.devices.miband.MiBandSampleProvider;
+import org.likeapp.likeapp.entities.DailyActivityRollup;
+import org.likeapp.likeapp.entities.DailyActivityRollupDao;
+import org.likeapp.likeapp.entities.DaoSession;
+import org.likeapp.likeapp.entities.Device;
+import org.likeapp.likeapp.entities.MiBandActivitySample;
+import org.likeapp.likeapp.entities.User;
+import org.likeapp.likeapp.impl.GBDevice;
+import org.likeapp.likeapp.model.ActivitySampleBatch;
+import org.likeapp.likeapp.test.TestBase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DailyActivityRollupHelperTest extends TestBase {
+    private static final int DAY = DailyActivityRollupHelper.WINDOW_SECONDS;
+
+    private GBDevice dummyGBDevice;
+    private MiBandSampleProvider sampleProvider;
+    private User user;
+    private Device device;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        dummyGBDevice = createDummyGDevice("00:00:00:00:30");
+        sampleProvider = new MiBandSampleProvider(dummyGBDevice, daoSession);
+        user = DBHelper.getUser(daoSession);
+        device = DBHelper.getDevice(dummyGBDevice, daoSession);
+    }
+
+    private void addSamples(int rawKind, int timestamp, int count, int steps) {
+        MiBandActivitySample[] samples = new MiBandActivitySample[count];
+        for (int i = 0; i < count; i++) {
+            samples[i] = sampleProvider.createActivitySample();
+            samples[i].setProvider(sampleProvider);
+            samples[i].setTimestamp(timestamp + i * 60);
+            samples[i].setRawKind(rawKind);
+            samples[i].setSteps(steps);
+            samples[i].setUserId(user.getId());
+            samples[i].setDeviceId(device.getId());
+        }
+        sampleProvider.addGBActivitySamples(samples);
+    }
+
+    private DailyActivityRollup loadStoredRollup(int dayStart) {
+        daoSession.getDailyActivityRollupDao().detachAll();
+        return daoSession.getDailyActivityRollupDao().queryBuilder()
+                .where(DailyActivityRollupDao.Properties.DayStart.eq(dayStart)).unique();
+    }
+
+    private long countStoredRollups() {
+        return daoSession.getDailyActivityRollupDao().queryBuilder().count();
+    }
+
+    @Test
+    public void testCreateRollup() {
+        ActivitySampleBatch batch = new ActivitySampleBatch(sampleProvider);
+        batch.add(0, MiBandSampleProvider.TYPE_ACTIVITY, 0, 10, 80);
+        batch.add(60, MiBandSampleProvider.TYPE_ACTIVITY, 0, 10, 100);
+        batch.add(120, MiBandSampleProvider.TYPE_ACTIVITY, 0, 10, 255);
+        batch.add(180, MiBandSampleProvider.TYPE_DEEP_SLEEP, 0, 0, 0);
+        batch.add(240, MiBandSampleProvider.TYPE_DEEP_SLEEP, 0, 0, 51);
+
+        DailyActivityRollup rollup = DailyActivityRollupHelper.createRollup(batch);
+        // the minute between different kinds is shared
+        assertEquals(150, rollup.getActivitySeconds());
+        assertEquals(30, rollup.getActivitySteps());
+        assertEquals(90, rollup.getDeepSleepSeconds());
+        assertEquals(0, rollup.getLightSleepSeconds());
+        // invalid heart rates are ignored
+        assertEquals(51, rollup.getHeartRateMin());
+        assertEquals(77, rollup.getHeartRateAverage());
+        assertEquals(100, rollup.getHeartRateMax());
+    }
+
+    @Test
+    public void testCreateRollupWithoutHeartRate() {
+        ActivitySampleBatch batch = new ActivitySampleBatch(sampleProvider);
+        batch.add(0, MiBandSampleProvider.TYPE_ACTIVITY, 0, 10, 0);
+
+        DailyActivityRollup rollup = DailyActivityRollupHelper.createRollup(batch);
+        assertEquals(0, rollup.getHeartRateMin());
+        assertEquals(0, rollup.getHeartRateAverage());
+        assertEquals(0, rollup.getHeartRateMax());
+    }
+
+    @Test
+    public void testGetRollupAndUpdate() {
+        int day = 10 * DAY;
+        addSamples(MiBandSampleProvider.TYPE_ACTIVITY, day, 10, 5);
+        addSamples(MiBandSampleProvider.TYPE_ACTIVITY, day + DAY, 10, 5);
+
+        DailyActivityRollup rollup = DailyActivityRollupHelper.getRollup(sampleProvider, dummyGBDevice, daoSession, day);
+        assertEquals(50, rollup.getActivitySteps());
+        assertEquals(540, rollup.getActivitySeconds());
+        DailyActivityRollupHelper.getRollup(sampleProvider, dummyGBDevice, daoSession, day + DAY);
+        assertEquals(2, countStoredRollups());
+
+        // only the stored rollup of the changed window is updated, by the writer
+        addSamples(MiBandSampleProvider.TYPE_ACTIVITY, day + 600, 10, 1);
+        assertEquals(2, countStoredRollups());
+        assertEquals(60, loadStoredRollup(day).getActivitySteps());
+        assertEquals(50, loadStoredRollup(day + DAY).getActivitySteps());
+        rollup = DailyActivityRollupHelper.getRollup(sampleProvider, dummyGBDevice, daoSession, day);
+        assertEquals(60, rollup.getActivitySteps());
+
+        // windows that were never requested are not stored by the writers
+        addSamples(MiBandSampleProvider.TYPE_ACTIVITY, day + 2 * DAY, 10, 1);
+        assertEquals(2, countStoredRollups());
+    }
+
+    @Test
+    public void testCurrentWindowNotStored() {
+        int now = (int) (System.currentTimeMillis() / 1000);
+        int day = now - now % DAY;
+        addSamples(MiBandSampleProvider.TYPE_ACTIVITY, day, 2, 5);
+
+        DailyActivityRollup rollup = DailyActivityRollupHelper.getRollup(sampleProvider, dummyGBDevice, daoSession, day);
+        assertEquals(10, rollup.getActivitySteps());
+        assertEquals(0, countStoredRollups());
+    }
+
+    @Test
+    public void testNotStoredAfterConcurrentChange() {
+        SampleGenerationHelper.StoreOperation nothing = new SampleGenerationHelper.StoreOperation() {
+            @Override
+            public void store(DaoSession writerSession) {
+            }
+        };
+        long generation = SampleGenerationHelper.get(daoSession, device.getId());
+        // the samples change after a reader started computing
+        DailyActivityRollupHelper.update(sampleProvider, daoSession, device.getId(), 0, DAY);
+        assertFalse(SampleGenerationHelper.storeIfUnchanged(device.getId(), generation, nothing));
+
+        generation = SampleGenerationHelper.get(daoSession, device.getId());
+        assertTrue(SampleGenerationHelper.storeIfUnchanged(device.getId(), generation, nothing));
+    }
+}
@@ -0,0 +1,101 @@
+package org.likeapp.likeapp.database;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import org.likeapp.likeapp.devices.miband.MiBandSampleProvider;
+import org.likeapp.likeapp.entities.Device;
+import org.likeapp.likeapp.entities.DeviceDao;
+import org.likeapp.likeapp.entities.MiBandActivitySample;
+import org.likeapp.likeapp.entities.MiBandActivitySampleDao;
+import org.likeapp.likeapp.entities.User;
+import org.likeapp.likeapp.impl.GBDevice;
+import org.likeapp.likeapp.test.TestBase;
+import org.likeapp.likeapp.util.FileUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OnlineExporterTest extends TestBase {
+
+    private MiBandSampleProvider sampleProvider;
+    private User user;
+    private Device device;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        GBDevice dummyGBDevice = createDummyGDevice("00:00:00:00:20");
+        sampleProvider = new MiBandSampleProvider(dummyGBDevice, daoSession);
+        user = DBHelper.getUser(daoSession);
+        device = DBHelper.getDevice(dummyGBDevice, daoSession);
+    }
+
+    private void addSamples(int fromTimestamp, int count) {
+        MiBandActivitySample[] samples = new MiBandActivitySample[count];
+        for (int i = 0; i < count; i++) {
+            samples[i] = sampleProvider.createActivitySample();
+            samples[i].setProvider(sampleProvider);
+            samples[i].setTimestamp(fromTimestamp + i * 60);
+            samples[i].setRawKind(MiBandSampleProvider.TYPE_ACTIVITY);
+            samples[i].setSteps(i);
+            samples[i].setUserId(user.getId());
+            samples[i].setDeviceId(device.getId());
+        }
+        sampleProvider.addGBActivitySamples(samples);
+    }
+
+    private long countRows(File file, String table) {
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(file.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        try {
+            return DatabaseUtils.queryNumEntries(db, table);
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void testFullAndIncrementalExport() throws Exception {
+        File dir = FileUtils.createTempDir("export");
+        SharedPreferences watermarks = getContext().getSharedPreferences("export_test", Context.MODE_PRIVATE);
+        OnlineExporter exporter = new OnlineExporter(dbHandler);
+        addSamples(1000, 10);
+
+        File export = new File(dir, "export");
+        exporter.exportFull(export).commitWatermarks(watermarks);
+        assertEquals(10, countRows(export, MiBandActivitySampleDao.TABLENAME));
+        assertEquals(1, countRows(export, DeviceDao.TABLENAME));
+        assertTrue(exporter.canExportIncrementally(export));
+
+        // nothing new
+        assertEquals(0, exporter.exportIncremental(export, watermarks).getSampleCount());
+        assertEquals(10, countRows(export, MiBandActivitySampleDao.TABLENAME));
+        assertEquals(1, countRows(export, DeviceDao.TABLENAME));
+
+        // the new samples are added to the previous export
+        addSamples(10000, 5);
+        OnlineExporter.Result result = exporter.exportIncremental(export, watermarks);
+        assertEquals(5, result.getSampleCount());
+        assertEquals(15, countRows(export, MiBandActivitySampleDao.TABLENAME));
+
+        // the watermarks are not advanced until committed
+        assertEquals(5, exporter.exportIncremental(export, watermarks).getSampleCount());
+        assertEquals(15, countRows(export, MiBandActivitySampleDao.TABLENAME));
+        result.commitWatermarks(watermarks);
+        assertEquals(0, exporter.exportIncremental(export, watermarks).getSampleCount());
+    }
+
+    @Test
+    public void testCannotExportIncrementallyWithoutPreviousExport() throws Exception {
+        File dir = FileUtils.createTempDir("export");
+        OnlineExporter exporter = new OnlineExporter(dbHandler);
+        assertFalse(exporter.canExportIncrementally(new File(dir, "missing")));
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.Test;
 
 import java.util.List;
 
+import org.likeapp.likeapp.activities.charts.SleepAnalysis;
 import org.likeapp.likeapp.devices.SampleProvider;
 import org.likeapp.likeapp.devices.miband.MiBandSampleProvider;
 import org.likeapp.likeapp.entities.AbstractActivitySample;
@@ -12,6 +13,7 @@ import org.likeapp.likeapp.entities.MiBandActivitySample;
 import org.likeapp.likeapp.entities.User;
 import org.likeapp.likeapp.impl.GBDevice;
 import org.likeapp.likeapp.model.ActivityKind;
+import org.likeapp.likeapp.model.ActivitySampleBatch;
 import org.likeapp.likeapp.test.TestBase;
 
 import static org.junit.Assert.assertEquals;
@@ -170,4 +172,93 @@ public class SampleProviderTest extends TestBase {
         sleepSamples = sampleProvider.getSleepSamples(1500, 2500);
         assertEquals(1, sleepSamples.size());
     }
+
+    @Test
+    public void testSampleBatch() {
+        MiBandSampleProvider sampleProvider = new MiBandSampleProvider(dummyGBDevice, daoSession);
+        ActivitySampleBatch batch = sampleProvider.getAllActivitySampleBatch(0, 10000);
+        assertEquals(0, batch.size());
+
+        User user = DBHelper.getUser(daoSession);
+        Device device = DBHelper.getDevice(dummyGBDevice, daoSession);
+        MiBandActivitySample s1 = createSample(sampleProvider, MiBandSampleProvider.TYPE_DEEP_SLEEP, 1200, 10, 62, 4030, user, device);
+        MiBandActivitySample s2 = createSample(sampleProvider, MiBandSampleProvider.TYPE_ACTIVITY, 100, 20, 70, 1000, user, device);
+        MiBandActivitySample s3 = createSample(sampleProvider, MiBandSampleProvider.TYPE_LIGHT_SLEEP, 2000, 10, 60, 4030, user, device);
+        sampleProvider.addGBActivitySamples(new MiBandActivitySample[] { s1, s2, s3 });
+
+        batch = sampleProvider.getAllActivitySampleBatch(0, 1300);
+        assertEquals(2, batch.size());
+        // ordered by timestamp
+        assertEquals(100, batch.getTimestamp(0));
+        assertEquals(MiBandSampleProvider.TYPE_ACTIVITY, batch.getRawKind(0));
+        assertEquals(ActivityKind.TYPE_ACTIVITY, batch.getKind(0));
+        assertEquals(20, batch.getRawIntensity(0));
+        assertEquals(sampleProvider.normalizeIntensity(20), batch.getIntensity(0), 0.0001f);
+        assertEquals(1000, batch.getSteps(0));
+        assertEquals(70, batch.getHeartRate(0));
+        assertEquals(1200, batch.getTimestamp(1));
+        assertEquals(ActivityKind.TYPE_DEEP_SLEEP, batch.getKind(1));
+
+        // same values as the sample entities, which are not ordered by timestamp
+        List<MiBandActivitySample> allSamples = sampleProvider.getAllActivitySamples(0, 10000);
+        batch = sampleProvider.getAllActivitySampleBatch(0, 10000);
+        assertEquals(allSamples.size(), batch.size());
+        int entitySteps = 0;
+        for (MiBandActivitySample sample : allSamples) {
+            entitySteps += sample.getSteps();
+        }
+        int batchSteps = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            batchSteps += batch.getSteps(i);
+        }
+        assertEquals(entitySteps, batchSteps);
+
+        batch.retainRange(1000, 1500);
+        assertEquals(1, batch.size());
+        assertEquals(1200, batch.getTimestamp(0));
+    }
+
+    @Test
+    public void testSleepSessions() {
+        MiBandSampleProvider sampleProvider = new MiBandSampleProvider(dummyGBDevice, daoSession);
+        User user = DBHelper.getUser(daoSession);
+        Device device = DBHelper.getDevice(dummyGBDevice, daoSession);
+        assertEquals(0, SleepSessionHelper.getSleepSessions(sampleProvider, dummyGBDevice, daoSession, 0, Integer.MAX_VALUE).size());
+
+        // 3 hours of sleep, 3 hours awake, 2 hours of sleep
+        sampleProvider.addGBActivitySamples(createMinuteSamples(sampleProvider, MiBandSampleProvider.TYPE_LIGHT_SLEEP, 100000, 180, user, device));
+        sampleProvider.addGBActivitySamples(createMinuteSamples(sampleProvider, MiBandSampleProvider.TYPE_ACTIVITY, 100000 + 180 * 60, 180, user, device));
+        sampleProvider.addGBActivitySamples(createMinuteSamples(sampleProvider, MiBandSampleProvider.TYPE_DEEP_SLEEP, 100000 + 360 * 60, 60, user, device));
+        assertSleepSessions(sampleProvider, 2);
+
+        // incrementally continued with new samples only
+        sampleProvider.addGBActivitySamples(createMinuteSamples(sampleProvider, MiBandSampleProvider.TYPE_LIGHT_SLEEP, 100000 + 420 * 60, 60, user, device));
+        sampleProvider.addGBActivitySamples(createMinuteSamples(sampleProvider, MiBandSampleProvider.TYPE_ACTIVITY, 100000 + 480 * 60, 180, user, device));
+        assertSleepSessions(sampleProvider, 2);
+
+        // changing old samples rewinds the analysis
+        sampleProvider.addGBActivitySamples(createMinuteSamples(sampleProvider, MiBandSampleProvider.TYPE_LIGHT_SLEEP, 100000 + 240 * 60, 10, user, device));
+        assertSleepSessions(sampleProvider, 1);
+    }
+
+    private void assertSleepSessions(MiBandSampleProvider sampleProvider, int expectedCount) {
+        List<SleepAnalysis.SleepSession> expected = new SleepAnalysis().calculateSleepSessions(sampleProvider.getAllActivitySampleBatch(0, Integer.MAX_VALUE));
+        List<SleepAnalysis.SleepSession> actual = SleepSessionHelper.getSleepSessions(sampleProvider, dummyGBDevice, daoSession, 0, Integer.MAX_VALUE);
+        assertEquals(expectedCount, expected.size());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getSleepStart(), actual.get(i).getSleepStart());
+            assertEquals(expected.get(i).getSleepEnd(), actual.get(i).getSleepEnd());
+            assertEquals(expected.get(i).getLightSleepDuration(), actual.get(i).getLightSleepDuration());
+            assertEquals(expected.get(i).getDeepSleepDuration(), actual.get(i).getDeepSleepDuration());
+        }
+    }
+
+    private MiBandActivitySample[] createMinuteSamples(MiBandSampleProvider sampleProvider, int rawKind, int timestamp, int count, User user, Device device) {
+        MiBandActivitySample[] samples = new MiBandActivitySample[count];
+        for (int i = 0; i < count; i++) {
+            samples[i] = createSample(sampleProvider, rawKind, timestamp + i * 60, 10, 60, 0, user, device);
+        }
+        return samples;
+    }
 }
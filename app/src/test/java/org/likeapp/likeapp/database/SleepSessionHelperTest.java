@@ -0,0 +1,102 @@
+package org.likeapp.likeapp.database;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import org.likeapp.likeapp.activities.charts.SleepAnalysis;
+import org.likeapp.likeapp.devices.miband.MiBandSampleProvider;
+import org.likeapp.likeapp.entities.Device;
+import org.likeapp.likeapp.entities.MiBandActivitySample;
+import org.likeapp.likeapp.entities.User;
+import org.likeapp.likeapp.impl.GBDevice;
+import org.likeapp.likeapp.test.TestBase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class SleepSessionHelperTest extends TestBase {
+    private static final int START = 100000;
+
+    private GBDevice dummyGBDevice;
+    private MiBandSampleProvider sampleProvider;
+    private User user;
+    private Device device;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        dummyGBDevice = createDummyGDevice("00:00:00:00:40");
+        sampleProvider = new MiBandSampleProvider(dummyGBDevice, daoSession);
+        user = DBHelper.getUser(daoSession);
+        device = DBHelper.getDevice(dummyGBDevice, daoSession);
+
+        // three sessions of one hour, each followed by three hours awake
+        for (int i = 0; i < 3; i++) {
+            int sessionStart = START + i * 240 * 60;
+            addMinuteSamples(MiBandSampleProvider.TYPE_LIGHT_SLEEP, sessionStart, 60);
+            addMinuteSamples(MiBandSampleProvider.TYPE_ACTIVITY, sessionStart + 60 * 60, 180);
+        }
+    }
+
+    private void addMinuteSamples(int rawKind, int timestamp, int count) {
+        MiBandActivitySample[] samples = new MiBandActivitySample[count];
+        for (int i = 0; i < count; i++) {
+            samples[i] = sampleProvider.createActivitySample();
+            samples[i].setProvider(sampleProvider);
+            samples[i].setTimestamp(timestamp + i * 60);
+            samples[i].setRawKind(rawKind);
+            samples[i].setRawIntensity(10);
+            samples[i].setSteps(0);
+            samples[i].setUserId(user.getId());
+            samples[i].setDeviceId(device.getId());
+        }
+        sampleProvider.addGBActivitySamples(samples);
+    }
+
+    private long countStoredSessions() {
+        return daoSession.getDetectedSleepSessionDao().queryBuilder().count();
+    }
+
+    private void assertSleepSessions() {
+        List<SleepAnalysis.SleepSession> expected = new SleepAnalysis().calculateSleepSessions(sampleProvider.getAllActivitySampleBatch(0, Integer.MAX_VALUE));
+        List<SleepAnalysis.SleepSession> actual = SleepSessionHelper.getSleepSessions(sampleProvider, dummyGBDevice, daoSession, 0, Integer.MAX_VALUE);
+        assertEquals(3, expected.size());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getSleepStart(), actual.get(i).getSleepStart());
+            assertEquals(expected.get(i).getSleepEnd(), actual.get(i).getSleepEnd());
+            assertEquals(expected.get(i).getLightSleepDuration(), actual.get(i).getLightSleepDuration());
+        }
+    }
+
+    @Test
+    public void testInvalidateRewindsAnalysis() {
+        assertSleepSessions();
+        assertEquals(3, countStoredSessions());
+
+        // the last session is changed, the analysis restarts after the first one
+        SleepSessionHelper.invalidate(daoSession, device.getId(), START + 500 * 60);
+        assertEquals(1, countStoredSessions());
+        assertNotNull(daoSession.getSleepDetectionStateDao().load(device.getId()));
+        assertSleepSessions();
+        assertEquals(3, countStoredSessions());
+
+        // only the first session precedes the change, the analysis starts over
+        SleepSessionHelper.invalidate(daoSession, device.getId(), START + 100 * 60);
+        assertEquals(0, countStoredSessions());
+        assertNull(daoSession.getSleepDetectionStateDao().load(device.getId()));
+        assertSleepSessions();
+        assertEquals(3, countStoredSessions());
+    }
+
+    @Test
+    public void testInvalidateNewSamples() {
+        assertSleepSessions();
+
+        // samples after the analyzed ones are picked up by the next request anyway
+        SleepSessionHelper.invalidate(daoSession, device.getId(), START + 720 * 60);
+        assertEquals(3, countStoredSessions());
+    }
+}
@@ -22,9 +22,10 @@ import static org.junit.Assert.assertTrue;
 
 public class DeviceCommunicationServiceTestCase extends TestBase {
     private static final java.lang.String TEST_DEVICE_ADDRESS = TestDeviceSupport.class.getName();
+    private static final java.lang.String SECOND_DEVICE_ADDRESS = TEST_DEVICE_ADDRESS + ".second";
 
     /**
-     * Factory that always returns the mockSupport instance
+     * Factory that returns the mockSupport instance, or secondSupport for the second device
      */
     private class TestDeviceSupportFactory extends DeviceSupportFactory {
         TestDeviceSupportFactory(Context context) {
@@ -33,6 +34,9 @@ public class DeviceCommunicationServiceTestCase extends TestBase {
 
         @Override
         public synchronized DeviceSupport createDeviceSupport(GBDevice device) throws GBException {
+            if (SECOND_DEVICE_ADDRESS.equals(device.getAddress())) {
+                return secondSupport;
+            }
             return mockSupport;
         }
     }
@@ -41,6 +45,7 @@ public class DeviceCommunicationServiceTestCase extends TestBase {
     @Mock
     private TestDeviceSupport realSupport;
     private TestDeviceSupport mockSupport;
+    private TestDeviceSupport secondSupport;
 
     public DeviceCommunicationServiceTestCase() {
         super();
@@ -53,6 +58,9 @@ public class DeviceCommunicationServiceTestCase extends TestBase {
         realSupport = new TestDeviceSupport();
         realSupport.setContext(new GBDevice(TEST_DEVICE_ADDRESS, "Test Device", DeviceType.TEST), null, getContext());
         mockSupport = Mockito.spy(realSupport);
+        TestDeviceSupport secondRealSupport = new TestDeviceSupport();
+        secondRealSupport.setContext(new GBDevice(SECOND_DEVICE_ADDRESS, "Second Test Device", DeviceType.TEST), null, getContext());
+        secondSupport = Mockito.spy(secondRealSupport);
         DeviceCommunicationService.setDeviceSupportFactory(new TestDeviceSupportFactory(getContext()));
 
         mDeviceService = new TestDeviceService(getContext());
@@ -130,4 +138,56 @@ public class DeviceCommunicationServiceTestCase extends TestBase {
 
         assertEquals("Rtl support fail!", "תירבע English and", result);
     }
+
+    private void connectBoth() {
+        ensureConnected();
+        mDeviceService.connect(secondSupport.getDevice());
+        Mockito.verify(secondSupport, Mockito.times(1)).connect();
+        assertTrue(secondSupport.getDevice().isInitialized());
+    }
+
+    @Test
+    public void testBroadcastAction() {
+        connectBoth();
+
+        mDeviceService.onSetTime();
+        Mockito.verify(mockSupport, Mockito.times(1)).onSetTime();
+        Mockito.verify(secondSupport, Mockito.times(1)).onSetTime();
+    }
+
+    @Test
+    public void testAddressedAction() {
+        connectBoth();
+
+        mDeviceService.forDevice(secondSupport.getDevice()).onFindDevice(true);
+        Mockito.verify(mockSupport, Mockito.never()).onFindDevice(true);
+        Mockito.verify(secondSupport, Mockito.times(1)).onFindDevice(true);
+
+        // without an address, only the selected device is addressed
+        TestDeviceSupport selectedSupport = getSelectedSupport();
+        mDeviceService.onFindDevice(false);
+        Mockito.verify(mockSupport, Mockito.times(selectedSupport == mockSupport ? 1 : 0)).onFindDevice(false);
+        Mockito.verify(secondSupport, Mockito.times(selectedSupport == secondSupport ? 1 : 0)).onFindDevice(false);
+    }
+
+    private TestDeviceSupport getSelectedSupport() {
+        GBDevice selected = GBApplication.app().getDeviceManager().getSelectedDevice();
+        if (selected == null) {
+            return null;
+        }
+        return SECOND_DEVICE_ADDRESS.equals(selected.getAddress()) ? secondSupport : mockSupport;
+    }
+
+    @Test
+    public void testDisconnect() {
+        connectBoth();
+
+        mDeviceService.forDevice(getDevice()).disconnect();
+        Mockito.verify(mockSupport, Mockito.times(1)).dispose();
+        Mockito.verify(secondSupport, Mockito.never()).dispose();
+        assertTrue(secondSupport.getDevice().isInitialized());
+
+        mDeviceService.forAllDevices().disconnect();
+        Mockito.verify(secondSupport, Mockito.times(1)).dispose();
+    }
 }
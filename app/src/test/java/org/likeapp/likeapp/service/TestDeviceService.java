@@ -7,7 +7,9 @@ import android.content.Intent;
 import org.robolectric.Robolectric;
 import org.robolectric.android.controller.ServiceController;
 
+import org.likeapp.likeapp.impl.GBDevice;
 import org.likeapp.likeapp.impl.GBDeviceService;
+import org.likeapp.likeapp.model.DeviceService;
 
 /**
  * Extends GBDeviceServer so that communication with the service works
@@ -24,6 +26,22 @@ class TestDeviceService extends GBDeviceService {
         service = serviceController.create().get();
     }
 
+    private TestDeviceService(TestDeviceService parent, String deviceAddress, boolean allDevices) {
+        super(parent.mContext, deviceAddress, allDevices);
+        serviceController = parent.serviceController;
+        service = parent.service;
+    }
+
+    @Override
+    public DeviceService forDevice(GBDevice device) {
+        return new TestDeviceService(this, device.getAddress(), false);
+    }
+
+    @Override
+    public DeviceService forAllDevices() {
+        return new TestDeviceService(this, null, true);
+    }
+
     @Override
     protected void invokeService(Intent intent) {
         // calling though to the service natively does not work with robolectric,
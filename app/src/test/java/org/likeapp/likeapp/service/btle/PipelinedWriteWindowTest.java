@@ -0,0 +1,79 @@
+package org.likeapp.likeapp.service.btle;
+
+import org.junit.Test;
+
+import org.likeapp.likeapp.test.TestBase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedWriteWindowTest extends TestBase {
+
+    private static long inMillis(long millis) {
+        return System.currentTimeMillis() + millis;
+    }
+
+    @Test
+    public void testWindow() throws Exception {
+        PipelinedWriteWindow window = new PipelinedWriteWindow();
+        window.setMaxSize(2);
+        assertEquals(0, window.acquire(20, inMillis(100)));
+        assertEquals(0, window.acquire(10, inMillis(100)));
+        assertEquals(2, window.size());
+
+        // full, and the callback got lost
+        long start = System.currentTimeMillis();
+        assertEquals(-1, window.acquire(5, inMillis(50)));
+        assertTrue(System.currentTimeMillis() - start >= 50);
+
+        // completions return the lengths in the order of the writes
+        assertEquals(20, window.complete(true));
+        assertEquals(1, window.acquire(5, inMillis(100)));
+        assertEquals(10, window.complete(true));
+        assertEquals(5, window.complete(true));
+        assertEquals(-1, window.complete(true));
+        assertTrue(window.awaitEmpty(inMillis(100)));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        PipelinedWriteWindow window = new PipelinedWriteWindow();
+        window.setMaxSize(4);
+        window.acquire(1, inMillis(100));
+        long completed = window.acquire(2, inMillis(100));
+        window.cancel();
+        assertEquals(1, window.size());
+        assertFalse(window.awaitCompletion(completed, inMillis(20)));
+        assertEquals(1, window.complete(true));
+        assertTrue(window.awaitCompletion(completed, inMillis(20)));
+    }
+
+    @Test
+    public void testAbort() throws Exception {
+        final PipelinedWriteWindow window = new PipelinedWriteWindow();
+        window.acquire(1, inMillis(100));
+        assertFalse(window.awaitEmpty(inMillis(20)));
+
+        Thread disconnect = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException ignored) {
+                }
+                window.abort();
+            }
+        };
+        disconnect.start();
+        assertEquals(-1, window.acquire(2, inMillis(5000)));
+        disconnect.join();
+
+        window.reset();
+        assertEquals(0, window.size());
+        assertEquals(0, window.acquire(3, inMillis(100)));
+        // a failed write aborts the window
+        assertEquals(3, window.complete(false));
+        assertFalse(window.awaitEmpty(inMillis(100)));
+    }
+}
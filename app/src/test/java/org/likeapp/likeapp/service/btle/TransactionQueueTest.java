@@ -0,0 +1,142 @@
+package org.likeapp.likeapp.service.btle;
+
+import org.junit.Test;
+
+import org.likeapp.likeapp.test.TestBase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TransactionQueueTest extends TestBase {
+
+    private static Transaction createTransaction(String name, TransactionPriority priority, String coalescingKey) {
+        Transaction transaction = new Transaction(name);
+        transaction.setPriority(priority);
+        transaction.setCoalescingKey(coalescingKey);
+        return transaction;
+    }
+
+    @Test
+    public void testPriorityLanes() throws Exception {
+        TransactionQueue queue = new TransactionQueue();
+        Transaction fetch1 = createTransaction("fetch 1", TransactionPriority.BULK, null);
+        Transaction fetch2 = createTransaction("fetch 2", TransactionPriority.BULK, null);
+        Transaction notification = createTransaction("notification", TransactionPriority.NORMAL, null);
+        Transaction call = createTransaction("incoming call", TransactionPriority.INTERACTIVE, null);
+        queue.add(fetch1);
+        queue.add(fetch2);
+        queue.add(notification);
+        queue.add(call);
+
+        assertEquals(4, queue.size());
+        assertSame(call, queue.take());
+        assertSame(notification, queue.take());
+        assertSame(fetch1, queue.take());
+        assertSame(fetch2, queue.take());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testInsert() throws Exception {
+        TransactionQueue queue = new TransactionQueue();
+        Transaction call = createTransaction("incoming call", TransactionPriority.INTERACTIVE, null);
+        Transaction immediate = createTransaction("immediate", TransactionPriority.NORMAL, null);
+        queue.add(call);
+        queue.insert(immediate);
+
+        assertSame(immediate, queue.take());
+        assertSame(call, queue.take());
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        TransactionQueue queue = new TransactionQueue();
+        Transaction music1 = createTransaction("music 1", TransactionPriority.NORMAL, "music");
+        Transaction notification = createTransaction("notification", TransactionPriority.NORMAL, null);
+        Transaction music2 = createTransaction("music 2", TransactionPriority.NORMAL, "music");
+        Transaction weather = createTransaction("weather", TransactionPriority.NORMAL, "weather");
+        queue.add(music1);
+        queue.add(notification);
+        queue.add(music2);
+        queue.add(weather);
+
+        // the newer music info takes the place of the older one
+        assertEquals(3, queue.size());
+        assertSame(music2, queue.take());
+        assertSame(notification, queue.take());
+        assertSame(weather, queue.take());
+
+        // once taken, a transaction is not replaced anymore
+        Transaction music3 = createTransaction("music 3", TransactionPriority.NORMAL, "music");
+        queue.add(music3);
+        assertEquals(1, queue.size());
+        assertSame(music3, queue.take());
+    }
+
+    @Test
+    public void testCoalescingAcrossLanes() throws Exception {
+        TransactionQueue queue = new TransactionQueue();
+        Transaction bulk = createTransaction("bulk", TransactionPriority.BULK, "key");
+        Transaction normal = createTransaction("normal", TransactionPriority.NORMAL, null);
+        Transaction interactive = createTransaction("interactive", TransactionPriority.INTERACTIVE, "key");
+        queue.add(bulk);
+        queue.add(normal);
+        queue.add(interactive);
+
+        assertEquals(2, queue.size());
+        assertSame(interactive, queue.take());
+        assertSame(normal, queue.take());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testOverdueTransactionIsNotStarved() throws Exception {
+        TransactionQueue queue = new TransactionQueue(50);
+        Transaction fetch1 = createTransaction("fetch 1", TransactionPriority.BULK, null);
+        Transaction fetch2 = createTransaction("fetch 2", TransactionPriority.BULK, null);
+        queue.add(fetch1);
+        queue.add(fetch2);
+        Thread.sleep(100);
+
+        Transaction notification1 = createTransaction("notification 1", TransactionPriority.NORMAL, null);
+        Transaction notification2 = createTransaction("notification 2", TransactionPriority.NORMAL, null);
+        queue.add(notification1);
+        queue.add(notification2);
+
+        // both bulk transactions have waited too long, the lane keeps its order
+        assertSame(fetch1, queue.take());
+        assertSame(fetch2, queue.take());
+        assertSame(notification1, queue.take());
+        assertSame(notification2, queue.take());
+    }
+
+    @Test
+    public void testOldestOverdueTransactionFirst() throws Exception {
+        TransactionQueue queue = new TransactionQueue(50);
+        Transaction fetch = createTransaction("fetch", TransactionPriority.BULK, null);
+        queue.add(fetch);
+        Thread.sleep(20);
+        Transaction notification = createTransaction("notification", TransactionPriority.NORMAL, null);
+        queue.add(notification);
+        Thread.sleep(100);
+
+        Transaction call = createTransaction("incoming call", TransactionPriority.INTERACTIVE, null);
+        queue.add(call);
+        assertSame(fetch, queue.take());
+        assertSame(notification, queue.take());
+        assertSame(call, queue.take());
+    }
+
+    @Test
+    public void testInsertBeforeOverdue() throws Exception {
+        TransactionQueue queue = new TransactionQueue(50);
+        Transaction fetch = createTransaction("fetch", TransactionPriority.BULK, null);
+        queue.add(fetch);
+        Thread.sleep(100);
+
+        Transaction immediate = createTransaction("immediate", TransactionPriority.NORMAL, null);
+        queue.insert(immediate);
+        assertSame(immediate, queue.take());
+        assertSame(fetch, queue.take());
+    }
+}
@@ -0,0 +1,112 @@
+package org.likeapp.likeapp.service.devices.hplus;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import org.likeapp.likeapp.database.DBHelper;
+import org.likeapp.likeapp.devices.hplus.HPlusHealthSampleProvider;
+import org.likeapp.likeapp.entities.Device;
+import org.likeapp.likeapp.entities.HPlusHealthActivityOverlay;
+import org.likeapp.likeapp.entities.HPlusHealthActivitySample;
+import org.likeapp.likeapp.entities.HPlusHealthActivitySampleDao;
+import org.likeapp.likeapp.entities.User;
+import org.likeapp.likeapp.impl.GBDevice;
+import org.likeapp.likeapp.model.ActivityKind;
+import org.likeapp.likeapp.test.TestBase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HPlusDaySlotBufferTest extends TestBase {
+    private static final int SLOT = 10 * 60;
+    private static final int START = 100000 * SLOT;
+
+    private HPlusHealthSampleProvider provider;
+    private User user;
+    private Device device;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        GBDevice dummyGBDevice = createDummyGDevice("00:00:00:00:50");
+        provider = new HPlusHealthSampleProvider(dummyGBDevice, daoSession);
+        user = DBHelper.getUser(daoSession);
+        device = DBHelper.getDevice(dummyGBDevice, daoSession);
+    }
+
+    private static HPlusDataRecordDaySlot createSlot(int timestamp, int heartRate, int steps, int secondsInactive) {
+        byte[] data = new byte[]{0, (byte) heartRate, (byte) (steps >> 8), (byte) steps, 0, 0, 0, (byte) secondsInactive};
+        HPlusDataRecordDaySlot slot = new HPlusDataRecordDaySlot(data, 30);
+        slot.timestamp = timestamp;
+        return slot;
+    }
+
+    private List<HPlusHealthActivitySample> loadSamples() {
+        return daoSession.getHPlusHealthActivitySampleDao().queryBuilder()
+                .orderAsc(HPlusHealthActivitySampleDao.Properties.Timestamp).list();
+    }
+
+    @Test
+    public void testWriteOrderedAndReplaced() {
+        HPlusDaySlotBuffer buffer = new HPlusDaySlotBuffer();
+        assertTrue(buffer.add(createSlot(START + 2 * SLOT, 70, 30, 0)));
+        assertTrue(buffer.add(createSlot(START, 70, 10, 0)));
+        assertTrue(buffer.add(createSlot(START + SLOT, 70, 20, 0)));
+        // received again with more steps
+        assertTrue(buffer.add(createSlot(START, 70, 15, 0)));
+        // without any data
+        assertTrue(buffer.add(createSlot(START + 3 * SLOT, 0, 0, 0)));
+
+        buffer.write(daoSession, provider, device.getId(), user.getId(), false);
+        assertTrue(buffer.isEmpty());
+
+        List<HPlusHealthActivitySample> samples = loadSamples();
+        assertEquals(3, samples.size());
+        assertEquals(START, samples.get(0).getTimestamp());
+        assertEquals(15, samples.get(0).getSteps());
+        assertEquals(START + SLOT, samples.get(1).getTimestamp());
+        assertEquals(START + 2 * SLOT, samples.get(2).getTimestamp());
+    }
+
+    @Test
+    public void testAddTooFarApart() {
+        HPlusDaySlotBuffer buffer = new HPlusDaySlotBuffer();
+        assertTrue(buffer.add(createSlot(START, 70, 10, 0)));
+        // one day before and after the first slot still fit
+        assertTrue(buffer.add(createSlot(START - 144 * SLOT, 70, 10, 0)));
+        assertTrue(buffer.add(createSlot(START + 144 * SLOT, 70, 10, 0)));
+
+        HPlusDataRecordDaySlot later = createSlot(START + 145 * SLOT, 70, 10, 0);
+        assertFalse(buffer.add(later));
+
+        // once written, the buffer takes any slot
+        buffer.write(daoSession, provider, device.getId(), user.getId(), false);
+        assertTrue(buffer.add(later));
+        assertFalse(buffer.isEmpty());
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        assertEquals(3, loadSamples().size());
+    }
+
+    @Test
+    public void testNotWornOverlays() {
+        HPlusDaySlotBuffer buffer = new HPlusDaySlotBuffer();
+        // no heart rate and no steps, but inactive seconds
+        buffer.add(createSlot(START, 0, 0, 60));
+        buffer.add(createSlot(START + SLOT, 0, 0, 60));
+        buffer.add(createSlot(START + 2 * SLOT, 70, 0, 60));
+        buffer.add(createSlot(START + 3 * SLOT, 0, 0, 60));
+        buffer.write(daoSession, provider, device.getId(), user.getId(), true);
+
+        List<HPlusHealthActivityOverlay> overlays = daoSession.getHPlusHealthActivityOverlayDao().loadAll();
+        assertEquals(2, overlays.size());
+        assertEquals(START, overlays.get(0).getTimestampFrom());
+        assertEquals(START + 2 * SLOT, overlays.get(0).getTimestampTo());
+        assertEquals(START + 3 * SLOT, overlays.get(1).getTimestampFrom());
+        assertEquals(START + 4 * SLOT, overlays.get(1).getTimestampTo());
+        assertEquals(ActivityKind.TYPE_NOT_WORN, overlays.get(1).getRawKind());
+        assertEquals(4, loadSamples().size());
+    }
+}
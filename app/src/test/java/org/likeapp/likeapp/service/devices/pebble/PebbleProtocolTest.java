@@ -0,0 +1,91 @@
+package org.likeapp.likeapp.service.devices.pebble;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.likeapp.likeapp.model.NotificationSpec;
+import org.likeapp.likeapp.model.NotificationType;
+import org.likeapp.likeapp.model.WeatherSpec;
+import org.likeapp.likeapp.test.TestBase;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PebbleProtocolTest extends TestBase {
+
+    /**
+     * Hands out larger buffers with garbage in them, like the pool of the writer thread.
+     */
+    private static final PebbleProtocol.BufferSource DIRTY = new PebbleProtocol.BufferSource() {
+        @Override
+        public ByteBuffer obtainBuffer(int length) {
+            ByteBuffer buf = ByteBuffer.allocate(length + 32);
+            Arrays.fill(buf.array(), (byte) 0x55);
+            buf.limit(length);
+            return buf;
+        }
+    };
+
+    private static byte[] toArray(ByteBuffer message) {
+        byte[] result = new byte[message.remaining()];
+        message.get(result);
+        return result;
+    }
+
+    /**
+     * Zeroes the random blobdb token and key.
+     */
+    private static void clearBlobdbRandom(byte[] message) {
+        Arrays.fill(message, 5, 7, (byte) 0);
+        Arrays.fill(message, 9, 25, (byte) 0);
+    }
+
+    @Test
+    public void testNotificationIntoPooledBuffer() {
+        PebbleProtocol protocol = new PebbleProtocol(createDummyGDevice("00:00:00:00:30"));
+        NotificationSpec notificationSpec = new NotificationSpec(42);
+        notificationSpec.type = NotificationType.GENERIC_SMS;
+        notificationSpec.title = "title";
+        char[] body = new char[600];
+        Arrays.fill(body, 'x');
+        // truncated to 512 bytes
+        notificationSpec.body = new String(body);
+
+        byte[] expected = protocol.encodeNotification(notificationSpec);
+        byte[] actual = toArray(protocol.encodeNotification(DIRTY, notificationSpec));
+        assertEquals(expected.length, actual.length);
+        assertEquals(actual.length - 4, ByteBuffer.wrap(actual).getShort() & 0xffff);
+
+        clearBlobdbRandom(expected);
+        clearBlobdbRandom(actual);
+        // the timestamps may differ by a second
+        Arrays.fill(expected, 59, 63, (byte) 0);
+        Arrays.fill(actual, 59, 63, (byte) 0);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testWeatherIntoPooledBuffer() {
+        PebbleProtocol protocol = new PebbleProtocol(createDummyGDevice("00:00:00:00:30"));
+        WeatherSpec weatherSpec = new WeatherSpec();
+        weatherSpec.timestamp = 1000;
+        weatherSpec.location = "Berlin";
+        weatherSpec.currentCondition = "Sunny";
+        weatherSpec.currentTemp = 290;
+
+        // nothing to send without the weather app and a watchface supporting it
+        assertNull(protocol.encodeSendWeather(DIRTY, weatherSpec));
+        assertEquals(0, protocol.encodeSendWeather(weatherSpec).length);
+
+        protocol.mFwMajor = 4;
+        byte[] expected = protocol.encodeSendWeather(weatherSpec);
+        byte[] actual = toArray(protocol.encodeSendWeather(DIRTY, weatherSpec));
+        assertEquals(actual.length - 4, ByteBuffer.wrap(actual).getShort() & 0xffff);
+        Arrays.fill(expected, 5, 7, (byte) 0);
+        Arrays.fill(actual, 5, 7, (byte) 0);
+        assertArrayEquals(expected, actual);
+    }
+}
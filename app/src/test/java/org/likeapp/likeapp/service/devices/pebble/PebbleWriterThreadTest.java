@@ -0,0 +1,154 @@
+package org.likeapp.likeapp.service.devices.pebble;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.likeapp.likeapp.test.TestBase;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PebbleWriterThreadTest extends TestBase {
+    private static final short ENDPOINT_PING = 2001;
+    private static final short ENDPOINT_PUTBYTES = (short) 0xbeef;
+
+    private static class RecordingStream extends OutputStream {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        @Override
+        public synchronized void write(int b) {
+            out.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            out.write(b, off, len);
+        }
+
+        synchronized byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] message(short endpoint, int payload) {
+        return new byte[]{0, 1, (byte) (endpoint >> 8), (byte) endpoint, (byte) payload};
+    }
+
+    private static byte[] concat(byte[]... messages) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] message : messages) {
+            out.write(message, 0, message.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static void assertOutput(RecordingStream stream, byte[] expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!Arrays.equals(expected, stream.toByteArray()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertArrayEquals(expected, stream.toByteArray());
+    }
+
+    @Test
+    public void testOnlyAwaitedEndpointIsHeldBack() throws Exception {
+        RecordingStream stream = new RecordingStream();
+        PebbleWriterThread writer = new PebbleWriterThread(stream, false);
+        writer.start();
+        try {
+            byte[] first = message(ENDPOINT_PUTBYTES, 1);
+            byte[] second = message(ENDPOINT_PUTBYTES, 2);
+            byte[] ping = message(ENDPOINT_PING, 3);
+            writer.enqueue(first);
+            assertOutput(stream, first);
+
+            // the second upload message waits for the answer, others do not
+            writer.enqueue(second);
+            writer.enqueue(ping);
+            assertOutput(stream, concat(first, ping));
+            Thread.sleep(100);
+            assertArrayEquals(concat(first, ping), stream.toByteArray());
+            assertEquals(1, writer.getPendingCount());
+
+            writer.onMessageReceived(ENDPOINT_PUTBYTES);
+            assertOutput(stream, concat(first, ping, second));
+        } finally {
+            writer.quit();
+            writer.join();
+        }
+    }
+
+    @Test
+    public void testUnansweredEndpointTimesOut() throws Exception {
+        RecordingStream stream = new RecordingStream();
+        PebbleWriterThread writer = new PebbleWriterThread(stream, false);
+        writer.start();
+        try {
+            byte[] first = message(ENDPOINT_PUTBYTES, 1);
+            byte[] second = message(ENDPOINT_PUTBYTES, 2);
+            writer.enqueue(first);
+            writer.enqueue(second);
+            assertOutput(stream, first);
+
+            long deadline = System.currentTimeMillis() + PebbleWriterThread.RESPONSE_TIMEOUT_MILLIS + 1000;
+            while (stream.toByteArray().length < 10 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertArrayEquals(concat(first, second), stream.toByteArray());
+        } finally {
+            writer.quit();
+            writer.join();
+        }
+    }
+
+    @Test
+    public void testNoMessageIsDropped() throws Exception {
+        RecordingStream stream = new RecordingStream();
+        PebbleWriterThread writer = new PebbleWriterThread(stream, false);
+        int count = PebbleWriterThread.QUEUE_CAPACITY * 4;
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            byte[] ping = message(ENDPOINT_PING, i);
+            writer.enqueue(ping);
+            expected.write(ping, 0, ping.length);
+        }
+        assertEquals(count, writer.getPendingCount());
+
+        // the queue is full, so background producers are slowed down until the timeout
+        long start = System.currentTimeMillis();
+        writer.awaitCapacity(50);
+        assertTrue(System.currentTimeMillis() - start >= 50);
+
+        writer.start();
+        try {
+            writer.awaitCapacity(2000);
+            assertTrue(writer.getPendingCount() < PebbleWriterThread.QUEUE_CAPACITY);
+            assertOutput(stream, expected.toByteArray());
+            assertEquals(0, writer.getPendingCount());
+        } finally {
+            writer.quit();
+            writer.join();
+        }
+    }
+
+    @Test
+    public void testPendingMessagesAreWrittenOnQuit() throws Exception {
+        RecordingStream stream = new RecordingStream();
+        PebbleWriterThread writer = new PebbleWriterThread(stream, false);
+        writer.start();
+        byte[] first = message(ENDPOINT_PUTBYTES, 1);
+        byte[] second = message(ENDPOINT_PUTBYTES, 2);
+        writer.enqueue(first);
+        assertOutput(stream, first);
+        writer.enqueue(second);
+
+        writer.quit();
+        writer.join();
+        assertArrayEquals(concat(first, second), stream.toByteArray());
+        assertEquals(0, writer.getPendingCount());
+    }
+}
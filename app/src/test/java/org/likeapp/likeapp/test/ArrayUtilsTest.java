@@ -2,8 +2,11 @@ package org.likeapp.likeapp.test;
 
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+
 import org.likeapp.likeapp.util.ArrayUtils;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -151,6 +154,23 @@ public class ArrayUtilsTest extends TestBase {
         assertFalse(ArrayUtils.startsWith(DATA_5, new byte[] {1, 2, 3, 4, 5, 6}));
     }
 
+    @Test
+    public void testBufferEqualsAt() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(DATA_5);
+        buffer.position(3);
+        assertTrue(ArrayUtils.equalsAt(buffer, new byte[] {2, 3, 4}, 1));
+        assertFalse(ArrayUtils.equalsAt(buffer, new byte[] {4, 5, 6}, 3));
+        assertEquals(3, buffer.position());
+    }
+
+    @Test
+    public void testBufferStartsWith() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(DATA_5).asReadOnlyBuffer();
+        buffer.position(2);
+        assertTrue(ArrayUtils.startsWith(buffer, new byte[] {1, 2}));
+        assertFalse(ArrayUtils.startsWith(buffer, new byte[] {3, 4}));
+    }
+
     private byte[] b(int b) {
         return new byte[] {(byte) b};
     }
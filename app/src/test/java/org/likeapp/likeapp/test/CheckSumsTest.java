@@ -0,0 +1,70 @@
+package org.likeapp.likeapp.test;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Checksum;
+
+import org.likeapp.likeapp.util.CRC16;
+import org.likeapp.likeapp.util.CRC32C;
+import org.likeapp.likeapp.util.CheckSums;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests CheckSums
+ */
+public class CheckSumsTest extends TestBase {
+    private static final byte[] CHECK = "123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void testCheckValues() {
+        assertEquals(0x29b1, CheckSums.getCRC16(CHECK));
+        assertEquals(0xcbf43926, CheckSums.getCRC32(CHECK));
+        assertEquals(0xe3069283, CheckSums.getCRC32C(CHECK));
+    }
+
+    @Test
+    public void testCRC16BlockAndByteWise() {
+        byte[] data = new byte[1027];
+        new Random(42).nextBytes(data);
+
+        CRC16 byteWise = new CRC16();
+        for (byte b : data) {
+            byteWise.update(b);
+        }
+        for (int length = 0; length <= data.length; length += 97) {
+            CRC16 single = new CRC16();
+            for (int i = 0; i < length; i++) {
+                single.update(data[i]);
+            }
+            CRC16 blocks = new CRC16();
+            blocks.update(data, 0, length);
+            assertEquals(single.getValue(), blocks.getValue());
+        }
+        assertEquals(byteWise.getValue(), CheckSums.getCRC16(data));
+    }
+
+    @Test
+    public void testByteBuffers() {
+        byte[] data = new byte[200 * 1024 + 3];
+        new Random(42).nextBytes(data);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data).flip();
+        assertEquals(CheckSums.getCRC16(data), CheckSums.getCRC16(direct));
+        assertEquals(0, direct.remaining());
+
+        direct.rewind();
+        assertEquals(CheckSums.getCRC32(data), CheckSums.getCRC32(direct));
+
+        ByteBuffer slice = ByteBuffer.wrap(data, 100, 1000).slice();
+        Checksum crc32c = new CRC32C();
+        crc32c.update(data, 100, 1000);
+        Checksum engine = CheckSums.createCRC32C();
+        CheckSums.update(engine, slice);
+        assertEquals(crc32c.getValue(), engine.getValue());
+    }
+}
@@ -0,0 +1,115 @@
+package org.likeapp.likeapp.test;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.likeapp.likeapp.service.devices.qhybrid.requests.fossil.file.FilePacketWriter;
+import org.likeapp.likeapp.util.CheckSums;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FilePacketWriterTest extends TestBase {
+
+    /**
+     * Returns the whole data of a file put request, as it used to be created in one buffer.
+     */
+    private byte[] createData(short handle, byte[] file) {
+        ByteBuffer buffer = ByteBuffer.allocate(file.length + 16);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort(handle);
+        buffer.put((byte) 2);
+        buffer.put((byte) 0);
+        buffer.putInt(0);
+        buffer.putInt(file.length);
+        buffer.put(file);
+        buffer.putInt(CheckSums.getCRC32C(file));
+        return buffer.array();
+    }
+
+    @Test
+    public void testPackets() throws Exception {
+        byte[] file = new byte[1000];
+        new Random(42).nextBytes(file);
+        byte[] data = createData((short) 0x0601, file);
+        int maxPacketSize = 100;
+
+        FilePacketWriter writer = new FilePacketWriter((short) 0x0601, file, maxPacketSize, null);
+        for (int i = 0; i * maxPacketSize < data.length; i++) {
+            byte[] packet = writer.next();
+            int length = Math.min(maxPacketSize, data.length - i * maxPacketSize);
+            assertEquals(length + 1, packet.length);
+            assertEquals((byte) i, packet[0]);
+            assertArrayEquals(Arrays.copyOfRange(data, i * maxPacketSize, i * maxPacketSize + length), Arrays.copyOfRange(packet, 1, packet.length));
+        }
+        assertFalse(writer.hasNext());
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        assertEquals((int) crc.getValue(), writer.getFullCRC());
+    }
+
+    @Test
+    public void testEncryptedPackets() throws Exception {
+        byte[] file = new byte[300];
+        new Random(42).nextBytes(file);
+        SecretKeySpec key = new SecretKeySpec(new byte[16], "AES");
+        IvParameterSpec iv = new IvParameterSpec(new byte[16]);
+        Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, iv);
+        Cipher expectedCipher = Cipher.getInstance("AES/CTR/NoPadding");
+        expectedCipher.init(Cipher.ENCRYPT_MODE, key, iv);
+
+        FilePacketWriter plainWriter = new FilePacketWriter((short) 1, file, 64, null);
+        FilePacketWriter writer = new FilePacketWriter((short) 1, file, 64, cipher);
+        while (plainWriter.hasNext()) {
+            // every packet is encrypted on its own
+            assertArrayEquals(expectedCipher.doFinal(plainWriter.next()), writer.next());
+        }
+        assertFalse(writer.hasNext());
+        assertEquals(plainWriter.getFullCRC(), writer.getFullCRC());
+    }
+
+    @Test
+    public void testQueueFailure() throws Exception {
+        final boolean[] closed = new boolean[1];
+        InputStream file = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("read failed");
+            }
+
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        FilePacketWriter writer = new FilePacketWriter((short) 1, file, 1000, 100, null);
+        try {
+            writer.queue(null, null, new FilePacketWriter.Listener() {
+                @Override
+                public void onError(Exception e) {
+                    fail("the first packets are reported to the caller");
+                }
+            });
+            fail("expected an IOException");
+        } catch (IOException e) {
+            assertEquals("read failed", e.getMessage());
+        }
+        assertTrue(closed[0]);
+    }
+}
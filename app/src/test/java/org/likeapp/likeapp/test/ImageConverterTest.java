@@ -0,0 +1,44 @@
+package org.likeapp.likeapp.test;
+
+import org.junit.Test;
+
+import org.likeapp.likeapp.service.devices.qhybrid.requests.fossil_hr.image.ImageConverter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ImageConverterTest extends TestBase {
+
+    @Test
+    public void testRLEImage() {
+        byte[] pixels = new byte[300];
+        pixels[299] = 3;
+        byte[] expected = {
+                10, 30,
+                (byte) 255, 0,
+                44, 0,
+                1, 3,
+                (byte) 0xFF, (byte) 0xFF
+        };
+        assertArrayEquals(expected, ImageConverter.encodeToRLEImage(pixels, 10, 30));
+    }
+
+    @Test
+    public void testRLEImageFromColors() {
+        int[] colors = {0xFFFFFFFF, 0xFFFFFFFF, 0x00000000, 0xFF808080};
+        byte[] pixels = new byte[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            pixels[i] = ImageConverter.toRLEPixel(colors[i]);
+        }
+        assertEquals(0b0011, pixels[0]);
+        assertEquals(0b1100, pixels[2]);
+        assertEquals(0b0010, pixels[3]);
+        assertArrayEquals(ImageConverter.encodeToRLEImage(pixels, 2, 2), ImageConverter.encodeToRLEImage(colors, 2, 2));
+    }
+
+    @Test
+    public void testRawImage() {
+        byte[] pixels = {(byte) 0xFF, 0x40, (byte) 0x80, 0x3F, 0, 0, 0, (byte) 0xC0};
+        assertArrayEquals(new byte[]{(byte) 0b11011000, 0b00000011}, ImageConverter.encodeToRawImage(pixels));
+    }
+}
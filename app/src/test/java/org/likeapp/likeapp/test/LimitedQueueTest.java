@@ -0,0 +1,54 @@
+package org.likeapp.likeapp.test;
+
+import org.junit.Test;
+
+import org.likeapp.likeapp.util.LimitedQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LimitedQueueTest extends TestBase {
+
+    @Test
+    public void testEviction() {
+        LimitedQueue queue = new LimitedQueue(3);
+        queue.add(1, "one");
+        queue.add(2, "two");
+        queue.add(3, "three");
+        queue.add(4, "four");
+
+        assertEquals(3, queue.size());
+        assertNull(queue.lookup(1));
+        assertEquals("two", queue.lookup(2));
+        assertEquals("four", queue.lookup(4));
+    }
+
+    @Test
+    public void testReplace() {
+        LimitedQueue queue = new LimitedQueue(2);
+        queue.add(1, "one");
+        queue.add(2, "two");
+        // replacing makes 1 the most recently added id, so 2 is evicted next
+        queue.add(1, "uno");
+        queue.add(3, "three");
+
+        assertEquals(2, queue.size());
+        assertEquals("uno", queue.lookup(1));
+        assertNull(queue.lookup(2));
+    }
+
+    @Test
+    public void testRemove() {
+        LimitedQueue queue = new LimitedQueue(4);
+        for (int i = 0; i < 4; i++) {
+            queue.add(i * 16, "value" + i);
+        }
+        queue.remove(16);
+        queue.remove(42);
+
+        assertEquals(3, queue.size());
+        assertNull(queue.lookup(16));
+        assertEquals("value2", queue.lookup(32));
+        assertEquals("value3", queue.lookup(48));
+    }
+}
@@ -3,12 +3,22 @@ package org.likeapp.likeapp.test;
 import org.junit.After;
 import org.junit.Test;
 
+import org.slf4j.LoggerFactory;
+
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import androidx.annotation.NonNull;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import org.likeapp.likeapp.AsyncLogAppender;
 import org.likeapp.likeapp.GBApplication;
 import org.likeapp.likeapp.Logging;
 import org.likeapp.likeapp.util.FileUtils;
+import org.likeapp.likeapp.util.GB;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -80,4 +90,65 @@ public class LoggingTest extends TestBase {
         tempOut = Logging.formatBytes(new byte[] {0xa, 1, (byte) 255});
         assertEquals("0x0a 0x01 0xff", tempOut);
     }
+
+    @Test
+    public void testToggleAsyncLogging() {
+        logging.setupLogging(true, true);
+        assertTrue(logging.isAsync());
+        assertTrue(logging.getFileLogger().isStarted());
+
+        logging.setupLogging(false);
+        assertFalse(logging.getFileLogger().isStarted());
+
+        logging.setupLogging(true, false);
+        assertFalse(logging.isAsync());
+        assertTrue(logging.getFileLogger().isStarted());
+    }
+
+    @Test
+    public void testLazyFormat() {
+        byte[] bytes = new byte[] {0xa, 1, (byte) 255};
+        Object lazy = Logging.formatBytesLazily(bytes);
+        Object lazyHexdump = Logging.hexdumpLazily(bytes);
+        bytes[0] = 0;
+        assertEquals("0x0a 0x01 0xff", lazy.toString());
+        assertEquals(GB.hexdump(new byte[] {0xa, 1, (byte) 255}, true), lazyHexdump.toString());
+        assertEquals("(null)", Logging.formatBytesLazily(null).toString());
+    }
+
+    @Test
+    public void testAsyncAppender() {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        final List<String> messages = new ArrayList<>();
+        final List<String> threads = new ArrayList<>();
+        AppenderBase<ILoggingEvent> target = new AppenderBase<ILoggingEvent>() {
+            @Override
+            protected void append(ILoggingEvent event) {
+                messages.add(event.getFormattedMessage());
+                threads.add(event.getThreadName());
+            }
+        };
+        target.setContext(context);
+        target.start();
+        AsyncLogAppender async = new AsyncLogAppender(target);
+        async.setContext(context);
+        async.start();
+
+        Logger logger = context.getLogger("AsyncLogAppenderTest");
+        logger.setAdditive(false);
+        logger.addAppender(async);
+        byte[] bytes = new byte[] {1, 2};
+        for (int i = 0; i < 100; i++) {
+            logger.info("message {}: {}", i, Logging.formatBytesLazily(bytes));
+        }
+        async.stop();
+        logger.detachAppender(async);
+
+        assertFalse(target.isStarted());
+        assertEquals(100, messages.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("message " + i + ": 0x01 0x02", messages.get(i));
+            assertEquals(Thread.currentThread().getName(), threads.get(i));
+        }
+    }
 }
@@ -0,0 +1,102 @@
+package org.likeapp.likeapp.test;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import org.likeapp.likeapp.util.LatencyHistogram;
+import org.likeapp.likeapp.util.Metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest extends TestBase {
+
+    @Test
+    public void testHistogramEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMicros(50));
+        assertEquals(0, histogram.getMeanMicros());
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i, TimeUnit.MICROSECONDS);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500, histogram.getMeanMicros());
+        assertEquals(1000, histogram.getMaxMicros());
+        assertEquals(1000, histogram.getPercentileMicros(100));
+
+        // within the precision of the buckets
+        long p50 = histogram.getPercentileMicros(50);
+        assertTrue("p50 " + p50, p50 >= 500 && p50 <= 500 * 1.125);
+        long p90 = histogram.getPercentileMicros(90);
+        assertTrue("p90 " + p90, p90 >= 900 && p90 <= 900 * 1.125);
+    }
+
+    @Test
+    public void testHistogramLargeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10, TimeUnit.SECONDS);
+        histogram.record(100, TimeUnit.DAYS);
+        assertEquals(2, histogram.getCount());
+        assertEquals(TimeUnit.DAYS.toMicros(100), histogram.getPercentileMicros(100));
+        long p50 = histogram.getPercentileMicros(50);
+        assertTrue("p50 " + p50, p50 >= 10000000 && p50 <= 10000000 * 1.125);
+    }
+
+    @Test
+    public void testMeterRate() {
+        Metrics.Meter meter = new Metrics.Meter();
+        long start = 1000000;
+        assertEquals(0, meter.getRatePerSecond(start));
+        for (int i = 0; i < 4; i++) {
+            meter.mark(500, start + i * 500);
+        }
+        assertEquals(2000, meter.getTotal());
+        assertEquals(1000, meter.getRatePerSecond(start + 2000));
+    }
+
+    @Test
+    public void testMeterRateForgetsOldMarks() {
+        Metrics.Meter meter = new Metrics.Meter();
+        long start = 1000000;
+        meter.mark(100000, start);
+        long later = start + Metrics.Meter.WINDOW_SECONDS * 1000 * 6;
+        assertEquals(0, meter.getRatePerSecond(later));
+
+        // a new transfer after a long idle gap is measured on its own
+        for (int i = 0; i < Metrics.Meter.WINDOW_SECONDS; i++) {
+            meter.mark(300, later + i * 1000);
+        }
+        long now = later + Metrics.Meter.WINDOW_SECONDS * 1000;
+        assertEquals(300, meter.getRatePerSecond(now - 1));
+        assertEquals(100000 + 300 * Metrics.Meter.WINDOW_SECONDS, meter.getTotal());
+    }
+
+    @Test
+    public void testRegistry() throws Exception {
+        Metrics.reset();
+        assertSame(Metrics.histogram("test.latency"), Metrics.histogram("test.latency"));
+        Metrics.histogram("test.latency").recordMicros(42);
+        Metrics.counter("test.counter").addAndGet(3);
+        Metrics.meter("test.meter").mark(20);
+
+        JSONObject json = Metrics.toJson();
+        assertEquals(3, json.getJSONObject("counters").getLong("test.counter"));
+        assertEquals(1, json.getJSONObject("histograms").getJSONObject("test.latency").getLong("count"));
+        assertEquals(42, json.getJSONObject("histograms").getJSONObject("test.latency").getLong("maxMicros"));
+        assertEquals(20, json.getJSONObject("meters").getJSONObject("test.meter").getLong("total"));
+        assertTrue(Metrics.format().contains("test.counter: 3"));
+
+        Metrics.reset();
+        assertEquals(0, Metrics.counter("test.counter").get());
+        assertEquals(0, Metrics.histogram("test.latency").getCount());
+    }
+}
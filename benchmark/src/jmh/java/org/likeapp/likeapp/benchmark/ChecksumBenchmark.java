@@ -0,0 +1,96 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.likeapp.likeapp.util.CRC32C;
+import org.likeapp.likeapp.util.CheckSums;
+
+/**
+ * Throughput of the checksums used for firmware and file transfers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ChecksumBenchmark {
+
+    /** "dump" is the recorded activity details transfer, the numbers are random payload sizes */
+    @Param({"dump", "20", "4096", "262144"})
+    public String payload;
+
+    private byte[] data;
+    private ByteBuffer directData;
+    private CRC32C crc32c;
+
+    @Setup
+    public void setUp() throws IOException {
+        if ("dump".equals(payload)) {
+            data = Fixtures.activityDetailsDump();
+        } else {
+            data = Fixtures.randomBytes(Integer.parseInt(payload));
+        }
+        directData = ByteBuffer.allocateDirect(data.length);
+        directData.put(data).flip();
+        crc32c = new CRC32C();
+    }
+
+    @Benchmark
+    public int crc8() {
+        return CheckSums.getCRC8(data);
+    }
+
+    @Benchmark
+    public int crc16() {
+        return CheckSums.getCRC16(data);
+    }
+
+    @Benchmark
+    public int crc32() {
+        return CheckSums.getCRC32(data);
+    }
+
+    @Benchmark
+    public int crc32Direct() {
+        directData.rewind();
+        return CheckSums.getCRC32(directData);
+    }
+
+    @Benchmark
+    public long crc32c() {
+        crc32c.reset();
+        crc32c.update(data, 0, data.length);
+        return crc32c.getValue();
+    }
+
+    /** Uses the runtime's CRC32C where available */
+    @Benchmark
+    public int crc32cEngine() {
+        return CheckSums.getCRC32C(data);
+    }
+}
@@ -0,0 +1,134 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.benchmark;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Payloads for the benchmarks.
+ */
+final class Fixtures {
+    private Fixtures() {
+    }
+
+    /**
+     * Returns the recorded Huami activity details transfer, as also used by
+     * HuamiActivityDetailsParserTest.
+     */
+    static byte[] activityDetailsDump() throws IOException {
+        return readHexDump("/ActivityDetailsDump1.txt");
+    }
+
+    /**
+     * Returns reproducible random bytes, e.g. resembling compressed firmware.
+     */
+    static byte[] randomBytes(int length) {
+        byte[] result = new byte[length];
+        new Random(42).nextBytes(result);
+        return result;
+    }
+
+    /**
+     * Returns a black and white image with long runs, like a rendered watch face widget.
+     */
+    static byte[] monochromeImage(int width, int height) {
+        byte[] result = new byte[width * height];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) (inCircle(i % width, i / width, width, height) ? 0xff : 0);
+        }
+        return result;
+    }
+
+    /**
+     * Returns opaque white on transparent ARGB pixels with long runs, as Bitmap#getPixels()
+     * returns them for a rendered watch face widget.
+     */
+    static int[] argbImage(int width, int height) {
+        int[] result = new int[width * height];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = inCircle(i % width, i / width, width, height) ? 0xffffffff : 0;
+        }
+        return result;
+    }
+
+    /**
+     * Returns reproducible random opaque ARGB pixels, like a photo used as background.
+     */
+    static int[] argbNoise(int width, int height) {
+        int[] result = new int[width * height];
+        Random random = new Random(42);
+        for (int i = 0; i < result.length; i++) {
+            result[i] = 0xff000000 | random.nextInt(0x1000000);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a chat notification in the given language, as the transliteration and
+     * right-to-left conversions get it.
+     */
+    static String notificationText(String language) {
+        switch (language) {
+            case "latin":
+                return "Are we still meeting at the station at 7? I'll bring the tickets, see you there!";
+            case "german":
+                return "Treffen wir uns um 7 am Bahnhof? Ich bringe die Karten mit, bis später, Grüße aus München!";
+            case "russian":
+                return "Мы всё ещё встречаемся на вокзале в 7? Я возьму билеты, до встречи!";
+            case "bengali":
+                return "আমরা কি এখনও সাতটায় স্টেশনে দেখা করছি? আমি টিকিট নিয়ে আসব, দেখা হবে!";
+            case "hebrew":
+                return "אנחנו עדיין נפגשים בתחנה ב-7? אני אביא את הכרטיסים, נתראה שם!";
+            case "arabic":
+                return "هل ما زلنا نلتقي في المحطة الساعة 7؟ سأحضر التذاكر، أراك هناك!";
+            default:
+                throw new IllegalArgumentException("No notification text for " + language);
+        }
+    }
+
+    private static boolean inCircle(int x, int y, int width, int height) {
+        return (x - width / 2) * (x - width / 2) + (y - height / 2) * (y - height / 2) < width * width / 9;
+    }
+
+    /**
+     * Reads a resource consisting of whitespace separated hex values like "0x1f".
+     */
+    private static byte[] readHexDump(String resource) throws IOException {
+        InputStream in = Fixtures.class.getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("Missing fixture " + resource);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                for (String value : line.trim().split("\\s+")) {
+                    if (!value.isEmpty()) {
+                        out.write(Integer.decode(value));
+                    }
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+}
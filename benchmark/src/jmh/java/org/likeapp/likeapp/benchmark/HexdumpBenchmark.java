@@ -0,0 +1,66 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.likeapp.likeapp.util.StringUtils;
+
+/**
+ * Throughput of the hex formatting behind GB.hexdump(), which is called for most
+ * Bluetooth packets that get logged.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HexdumpBenchmark {
+
+    /** "dump" is the recorded activity details transfer, the numbers are random payload sizes */
+    @Param({"dump", "20", "512"})
+    public String payload;
+
+    private byte[] data;
+
+    @Setup
+    public void setUp() throws IOException {
+        if ("dump".equals(payload)) {
+            data = Fixtures.activityDetailsDump();
+        } else {
+            data = Fixtures.randomBytes(Integer.parseInt(payload));
+        }
+    }
+
+    @Benchmark
+    public String hexdump() {
+        return StringUtils.hexdump(data, 0, -1, false);
+    }
+
+    @Benchmark
+    public String hexdumpWithSpaces() {
+        return StringUtils.hexdump(data, 0, -1, true);
+    }
+}
@@ -0,0 +1,71 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.likeapp.likeapp.GBException;
+import org.likeapp.likeapp.entities.BaseActivitySummary;
+import org.likeapp.likeapp.entities.Device;
+import org.likeapp.likeapp.entities.User;
+import org.likeapp.likeapp.model.ActivityTrack;
+import org.likeapp.likeapp.service.devices.huami.HuamiActivityDetailsParser;
+
+/**
+ * Time to parse the recorded activity details transfer into a GPS track.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HuamiActivityDetailsParserBenchmark {
+    private byte[] details;
+    private BaseActivitySummary summary;
+
+    @Setup
+    public void setUp() throws IOException {
+        details = Fixtures.activityDetailsDump();
+
+        summary = new BaseActivitySummary();
+        summary.setId(1L);
+        summary.setName("benchmark");
+        summary.setStartTime(new Date(1484920800000L));
+        // the base location of the recording, as in HuamiActivityDetailsParserTest
+        summary.setBaseLongitude(0x0262c4d6);
+        summary.setBaseLatitude(0x0961a9ff);
+        summary.setBaseAltitude(0x30);
+        summary.setUser(new User(0L));
+        summary.setDevice(new Device(0L));
+    }
+
+    @Benchmark
+    public ActivityTrack parse() throws GBException {
+        // the parser accumulates the track, so it cannot be reused
+        HuamiActivityDetailsParser parser = new HuamiActivityDetailsParser(summary);
+        parser.setSkipCounterByte(true);
+        return parser.parse(details);
+    }
+}
@@ -0,0 +1,77 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import org.likeapp.likeapp.service.devices.qhybrid.requests.fossil_hr.image.ImageConverter;
+
+/**
+ * Throughput of the image encodings used for Fossil Hybrid HR widgets and backgrounds.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ImageConverterBenchmark {
+    private static final int WIDGET_SIZE = 76;
+    private static final int BACKGROUND_SIZE = 240;
+
+    private int[] widget;
+    private int[] background;
+    private byte[] monochromeWidget;
+    private byte[] monochromeBackground;
+
+    @Setup
+    public void setUp() {
+        widget = Fixtures.argbImage(WIDGET_SIZE, WIDGET_SIZE);
+        background = Fixtures.argbNoise(BACKGROUND_SIZE, BACKGROUND_SIZE);
+        monochromeWidget = Fixtures.monochromeImage(WIDGET_SIZE, WIDGET_SIZE);
+        monochromeBackground = new byte[background.length];
+        for (int i = 0; i < background.length; i++) {
+            monochromeBackground[i] = (byte) ImageConverter.toMonochrome(background[i]);
+        }
+    }
+
+    @Benchmark
+    public byte[] encodeWidgetToRLE() {
+        return ImageConverter.encodeToRLEImage(widget, WIDGET_SIZE, WIDGET_SIZE);
+    }
+
+    @Benchmark
+    public byte[] encodeBackgroundToRLE() {
+        // no runs, the worst case for the encoder
+        return ImageConverter.encodeToRLEImage(background, BACKGROUND_SIZE, BACKGROUND_SIZE);
+    }
+
+    @Benchmark
+    public byte[] encodeMonochromeWidgetToRLE() {
+        return ImageConverter.encodeToRLEImage(monochromeWidget, WIDGET_SIZE, WIDGET_SIZE);
+    }
+
+    @Benchmark
+    public byte[] encodeBackgroundToRaw() {
+        return ImageConverter.encodeToRawImage(monochromeBackground);
+    }
+}
@@ -0,0 +1,78 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.likeapp.likeapp.util.LatencyHistogram;
+
+/**
+ * Cost of recording a latency, which happens for every Bluetooth transaction and database
+ * access, with one and with several threads recording into the same histogram.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LatencyHistogramBenchmark {
+    private static final int VALUE_COUNT = 1024;
+
+    private LatencyHistogram histogram;
+    private long[] values;
+
+    @State(Scope.Thread)
+    public static class Position {
+        int index;
+    }
+
+    @Setup
+    public void setUp() {
+        histogram = new LatencyHistogram();
+        values = new long[VALUE_COUNT];
+        Random random = new Random(42);
+        for (int i = 0; i < values.length; i++) {
+            // log-uniform between 1us and about 1s
+            values[i] = (long) Math.pow(2, random.nextDouble() * 20);
+            histogram.recordMicros(values[i]);
+        }
+    }
+
+    @Benchmark
+    public void record(Position position) {
+        histogram.recordMicros(values[position.index++ & (VALUE_COUNT - 1)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordContended(Position position) {
+        histogram.recordMicros(values[position.index++ & (VALUE_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public long percentile() {
+        return histogram.getPercentileMicros(99);
+    }
+}
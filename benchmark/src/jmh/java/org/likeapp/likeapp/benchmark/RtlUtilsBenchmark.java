@@ -0,0 +1,61 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import org.likeapp.likeapp.GBApplication;
+import org.likeapp.likeapp.util.GBPrefs;
+import org.likeapp.likeapp.util.RtlUtils;
+
+/**
+ * Time to reorder a right-to-left notification for devices without bidi support.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RtlUtilsBenchmark {
+
+    @Param({"hebrew", "arabic"})
+    public String language;
+
+    /** whether Arabic letters are replaced by their contextual forms */
+    @Param({"false", "true"})
+    public boolean contextual;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        text = Fixtures.notificationText(language);
+        GBApplication.getPrefs().put(GBPrefs.RTL_CONTEXTUAL_ARABIC, contextual);
+    }
+
+    @Benchmark
+    public String fixRtl() {
+        return RtlUtils.fixRtl(text);
+    }
+}
@@ -0,0 +1,31 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp;
+
+import org.likeapp.likeapp.util.Prefs;
+
+/**
+ * Stand-in for the application, which only exists on Android. Provides the preferences
+ * read by the benchmarked code.
+ */
+public class GBApplication {
+    private static final Prefs prefs = new Prefs();
+
+    public static Prefs getPrefs() {
+        return prefs;
+    }
+}
@@ -0,0 +1,98 @@
+/*  Copyright (C) 2020 Andreas Shimokawa, Carsten Pfeiffer
+
+    This file is part of Gadgetbridge.
+
+    Gadgetbridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Gadgetbridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+package org.likeapp.likeapp.entities;
+
+import java.util.Date;
+
+/**
+ * Stand-in for the BaseActivitySummary entity generated by GBDaoGenerator, with the
+ * properties HuamiActivityDetailsParser reads.
+ */
+public class BaseActivitySummary {
+    private Long id;
+    private String name;
+    private Date startTime;
+    private Integer baseLongitude;
+    private Integer baseLatitude;
+    private Integer baseAltitude;
+    private User user;
+    private Device device;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Date getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(Date startTime) {
+        this.startTime = startTime;
+    }
+
+    public Integer getBaseLongitude() {
+        return baseLongitude;
+    }
+
+    public void setBaseLongitude(Integer baseLongitude) {
+        this.baseLongitude = baseLongitude;
+    }
+
+    public Integer getBaseLatitude() {
+        return baseLatitude;
+    }
+
+    public void setBaseLatitude(Integer baseLatitude) {
+        this.baseLatitude = baseLatitude;
+    }
+
+    public Integer getBaseAltitude() {
+        return baseAltitude;
+    }
+
+    public void setBaseAltitude(Integer baseAltitude) {
+        this.baseAltitude = baseAltitude;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public Device getDevice() {
+        return device;
+    }
+
+    public void setDevice(Device device) {
+        this.device = device;
+    }
+}